@@ -0,0 +1,304 @@
+package crawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import fetch.PageResponse;
+import page.FingerprintSeenLinkSet;
+import page.URLFingerprint;
+
+/**
+ * Recognises pages whose content has already been seen under another URL,
+ * such as colour variants or sort orders of the same listing, so they don't
+ * need to be parsed, scanned and analysed again. Each body is read once, to
+ * compute both:
+ * <ul>
+ * <li>an exact 64-bit hash of all its bytes, and</li>
+ * <li>a 64-bit SimHash of the words outside its tags, which differs in only a
+ * few bits between pages that differ in only a few words.</li>
+ * </ul>
+ * A page is a near duplicate if its SimHash is within a small Hamming distance
+ * of one seen before. The SimHashes are indexed by each of their four 16-bit
+ * bands: two SimHashes at most three bits apart agree on at least one band, so
+ * only the SimHashes sharing a band with the page need to be compared.
+ *
+ * Near duplicates are only looked for when asked for: pages that share their
+ * header, menus and footer, such as the product pages of a site, can be a few
+ * bits apart even though their names and prices differ, and a near duplicate
+ * is neither scanned nor analysed. By default only exact duplicates are skipped.
+ *
+ * @author ted.kuo
+ */
+public class ContentDeduplicator {
+
+	/**
+	 * How a page compares with the pages seen before.
+	 */
+	public enum DuplicateStatus {
+		/** No page seen before has the same content. */
+		UNIQUE,
+		/** A page seen before has exactly the same bytes. */
+		EXACT_DUPLICATE,
+		/** A page seen before has nearly the same words. */
+		NEAR_DUPLICATE
+	}
+
+	/**
+	 * The number of bands the SimHash is indexed by.
+	 */
+	private static final int NUMBER_OF_BANDS = 4;
+
+	/**
+	 * The number of bits in each band.
+	 */
+	private static final int BAND_BITS = Long.SIZE / NUMBER_OF_BANDS;
+
+	/**
+	 * The default Hamming distance within which a page is a near duplicate,
+	 * once near duplicates are looked for.
+	 */
+	public static final int DEFAULT_MAX_HAMMING_DISTANCE = 3;
+
+	/**
+	 * The Hamming distance of a deduplicator that doesn't look for near duplicates.
+	 */
+	private static final int NO_NEAR_DUPLICATES = -1;
+
+	/**
+	 * Offset basis of the 64-bit FNV-1a hash.
+	 */
+	private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+	/**
+	 * Prime of the 64-bit FNV-1a hash.
+	 */
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	/**
+	 * Size of the buffer the body is read with.
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * The Hamming distance within which a page is a near duplicate,
+	 * {@value #NO_NEAR_DUPLICATES} if near duplicates aren't looked for.
+	 */
+	private final int maxHammingDistance;
+
+	/**
+	 * The exact hashes of the pages seen.
+	 */
+	private final FingerprintSeenLinkSet exactHashes;
+
+	/**
+	 * The SimHashes of the pages seen, in one bucket per value of each band.
+	 */
+	private final long[][] bandBuckets;
+
+	/**
+	 * The number of SimHashes in each bucket.
+	 */
+	private final int[] bandBucketSizes;
+
+	/**
+	 * The number of exact duplicates found.
+	 */
+	private long numberOfExactDuplicates;
+
+	/**
+	 * The number of near duplicates found.
+	 */
+	private long numberOfNearDuplicates;
+
+	/**
+	 * Constructor. Only exact duplicates are recognised.
+	 */
+	public ContentDeduplicator() {
+		this.maxHammingDistance = NO_NEAR_DUPLICATES;
+		this.exactHashes = new FingerprintSeenLinkSet();
+		this.bandBuckets = null;
+		this.bandBucketSizes = null;
+	}
+
+	/**
+	 * Constructor. Near duplicates are recognised as well as exact ones.
+	 *
+	 * @param maxHammingDistance the number of bits two SimHashes may differ by
+	 *        for the pages to be near duplicates, from 0 to 3.
+	 */
+	public ContentDeduplicator(int maxHammingDistance) {
+		if (maxHammingDistance < 0 || maxHammingDistance >= NUMBER_OF_BANDS) {
+			throw new IllegalArgumentException("maxHammingDistance must be from 0 to " + (NUMBER_OF_BANDS - 1)
+					+ ": " + maxHammingDistance);
+		}
+		this.maxHammingDistance = maxHammingDistance;
+		this.exactHashes = new FingerprintSeenLinkSet();
+		this.bandBuckets = new long[NUMBER_OF_BANDS << BAND_BITS][];
+		this.bandBucketSizes = new int[NUMBER_OF_BANDS << BAND_BITS];
+	}
+
+	/**
+	 * Compares the body of the given response with the pages seen before, and
+	 * remembers it if it's unique.
+	 *
+	 * @param response of a page.
+	 * @return how the page compares with the pages seen before.
+	 * @throws IOException if the body can't be read.
+	 */
+	public DuplicateStatus check(PageResponse response) throws IOException {
+		long exactHash = FNV_OFFSET_BASIS;
+		boolean isNearDuplicateLookedFor = this.maxHammingDistance != NO_NEAR_DUPLICATES;
+		int[] bitWeights = new int[Long.SIZE];
+		long wordHash = 0;
+		boolean isInWord = false;
+		boolean isInTag = false;
+
+		try (InputStream in = response.openBody()) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				for (int i = 0; i < read; i++) {
+					int b = buffer[i] & 0xFF;
+					exactHash = (exactHash ^ b) * FNV_PRIME;
+					if (!isNearDuplicateLookedFor) {
+						continue;
+					}
+
+					// Words are runs of letters and digits outside tags, any non-ASCII byte included.
+					if (!isInTag && (b >= 0x80 || Character.isLetterOrDigit(b))) {
+						wordHash = ((isInWord ? wordHash : FNV_OFFSET_BASIS) ^ toLowerCase(b)) * FNV_PRIME;
+						isInWord = true;
+						continue;
+					}
+					if (isInWord) {
+						addWord(bitWeights, wordHash);
+						isInWord = false;
+					}
+					if (b == '<') {
+						isInTag = true;
+					}
+					else if (b == '>') {
+						isInTag = false;
+					}
+				}
+			}
+		}
+		if (isInWord) {
+			addWord(bitWeights, wordHash);
+		}
+
+		long simHash = 0;
+		for (int bit = 0; bit < Long.SIZE; bit++) {
+			if (bitWeights[bit] > 0) {
+				simHash |= 1L << bit;
+			}
+		}
+		return check(URLFingerprint.mix(exactHash), simHash);
+	}
+
+	/**
+	 * @return the number of exact duplicates found.
+	 */
+	public synchronized long getNumberOfExactDuplicates() {
+		return this.numberOfExactDuplicates;
+	}
+
+	/**
+	 * @return the number of near duplicates found.
+	 */
+	public synchronized long getNumberOfNearDuplicates() {
+		return this.numberOfNearDuplicates;
+	}
+
+	/**
+	 * Compares the hashes of a page with the pages seen before, and remembers
+	 * them if the page is unique.
+	 *
+	 * @param exactHash of all the bytes of the page.
+	 * @param simHash of the words of the page.
+	 * @return how the page compares with the pages seen before.
+	 */
+	synchronized DuplicateStatus check(long exactHash, long simHash) {
+		if (!this.exactHashes.addFingerprint(exactHash)) {
+			this.numberOfExactDuplicates++;
+			return DuplicateStatus.EXACT_DUPLICATE;
+		}
+		if (this.maxHammingDistance == NO_NEAR_DUPLICATES) {
+			return DuplicateStatus.UNIQUE;
+		}
+		for (int band = 0; band < NUMBER_OF_BANDS; band++) {
+			int bucket = getBucket(simHash, band);
+			long[] simHashes = this.bandBuckets[bucket];
+			for (int i = 0; i < this.bandBucketSizes[bucket]; i++) {
+				if (Long.bitCount(simHashes[i] ^ simHash) <= this.maxHammingDistance) {
+					this.numberOfNearDuplicates++;
+					return DuplicateStatus.NEAR_DUPLICATE;
+				}
+			}
+		}
+		for (int band = 0; band < NUMBER_OF_BANDS; band++) {
+			addToBucket(getBucket(simHash, band), simHash);
+		}
+		return DuplicateStatus.UNIQUE;
+	}
+
+	/**
+	 * String representation of the duplicates found.
+	 *
+	 * @return toString
+	 */
+	@Override
+	public synchronized String toString() {
+		return "Skipped " + this.numberOfExactDuplicates + " exact and " + this.numberOfNearDuplicates
+				+ " near duplicate pages";
+	}
+
+	/**
+	 * Adds the votes of a word to the weight of each bit of the SimHash.
+	 *
+	 * @param bitWeights of the SimHash.
+	 * @param wordHash of the word.
+	 */
+	private static void addWord(int[] bitWeights, long wordHash) {
+		long hash = URLFingerprint.mix(wordHash);
+		for (int bit = 0; bit < Long.SIZE; bit++) {
+			bitWeights[bit] += ((hash >>> bit) & 1) == 0 ? -1 : 1;
+		}
+	}
+
+	/**
+	 * @param b byte of the body.
+	 * @return the byte lower-cased if it's an ASCII letter.
+	 */
+	private static int toLowerCase(int b) {
+		return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+	}
+
+	/**
+	 * @param simHash of a page.
+	 * @param band of the SimHash.
+	 * @return the bucket of the value of the band.
+	 */
+	private static int getBucket(long simHash, int band) {
+		return band << BAND_BITS | (int) ((simHash >>> (band * BAND_BITS)) & ((1 << BAND_BITS) - 1));
+	}
+
+	/**
+	 * @param bucket to add to.
+	 * @param simHash of a page.
+	 */
+	private void addToBucket(int bucket, long simHash) {
+		long[] simHashes = this.bandBuckets[bucket];
+		int size = this.bandBucketSizes[bucket];
+		if (simHashes == null) {
+			simHashes = new long[2];
+		}
+		else if (size == simHashes.length) {
+			simHashes = Arrays.copyOf(simHashes, size * 2);
+		}
+		simHashes[size] = simHash;
+		this.bandBuckets[bucket] = simHashes;
+		this.bandBucketSizes[bucket] = size + 1;
+	}
+}
@@ -0,0 +1,197 @@
+package crawler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import page.HTMLLink;
+import page.LinkRepository;
+
+/**
+ * Puts links that failed for a transient reason back into the
+ * {@link LinkRepository} after a delay, instead of retrying them straight
+ * away on the crawler's thread. The delay doubles with every failed attempt of
+ * a link, up to a maximum, and is randomised so that links failing together
+ * are not all retried at the same moment.
+ * 
+ * A crawl owns one scheduler, shared by all its crawlers, and shuts it down
+ * once the crawl has ended. The timer thread is only started by the first
+ * retry.
+ * 
+ * @author ted.kuo
+ */
+public class FetchRetryScheduler {
+
+	/**
+	 * The number of times a link is retried before it's given up on.
+	 */
+	private static final int DEFAULT_MAX_RETRIES = 3;
+	
+	/**
+	 * The delay before the first retry of a link, in milliseconds.
+	 */
+	private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 1000;
+	
+	/**
+	 * The longest delay before a retry, in milliseconds.
+	 */
+	private static final long DEFAULT_MAX_BACKOFF_MILLIS = 60 * 1000;
+	
+	/**
+	 * Repository the links are put back into.
+	 */
+	private LinkRepository htmlLinkRepository;
+	
+	/**
+	 * The number of times a link is retried before it's given up on.
+	 */
+	private int maxRetries;
+	
+	/**
+	 * The delay before the first retry of a link, in milliseconds.
+	 */
+	private long initialBackoffMillis;
+	
+	/**
+	 * The longest delay before a retry, in milliseconds.
+	 */
+	private long maxBackoffMillis;
+	
+	/**
+	 * The number of times each link waiting to be retried has failed.
+	 */
+	private ConcurrentMap<HTMLLink, Integer> failedAttempts;
+	
+	/**
+	 * Timer that puts the links back when they are due, null until the first retry.
+	 */
+	private ScheduledExecutorService timer;
+	
+	/**
+	 * True once the scheduler has been shut down.
+	 */
+	private boolean isShutdown;
+	
+	/**
+	 * Constructor. Retries each link three times, waiting up to 1, 2 and 4
+	 * seconds.
+	 * 
+	 * @param htmlLinkRepository the links are put back into.
+	 */
+	public FetchRetryScheduler(LinkRepository htmlLinkRepository) {
+		this(htmlLinkRepository, DEFAULT_MAX_RETRIES, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param htmlLinkRepository the links are put back into.
+	 * @param maxRetries the number of times a link is retried before it's given up on.
+	 * @param initialBackoffMillis the delay before the first retry of a link.
+	 * @param maxBackoffMillis the longest delay before a retry.
+	 */
+	public FetchRetryScheduler(LinkRepository htmlLinkRepository, int maxRetries, long initialBackoffMillis, 
+			long maxBackoffMillis) {
+		if (initialBackoffMillis < 1 || maxBackoffMillis < initialBackoffMillis) {
+			throw new IllegalArgumentException("invalid backoff: " + initialBackoffMillis + " to " + maxBackoffMillis);
+		}
+		this.htmlLinkRepository = htmlLinkRepository;
+		this.maxRetries = maxRetries;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.failedAttempts = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Schedules the given link, currently in progress, to be put back into the
+	 * repository once its backoff has passed. The caller still marks the link as
+	 * visited as usual.
+	 * 
+	 * @param link that failed for a transient reason.
+	 * @return true if the link will be retried, false if it has failed too many
+	 *         times and is given up on, or the scheduler has been shut down.
+	 */
+	public boolean scheduleRetry(final HTMLLink link) {
+		int attempt = this.failedAttempts.merge(link, 1, Integer::sum);
+		if (attempt > this.maxRetries) {
+			this.failedAttempts.remove(link);
+			return false;
+		}
+		
+		synchronized (this) {
+			if (this.isShutdown) {
+				this.failedAttempts.remove(link);
+				return false;
+			}
+			this.htmlLinkRepository.deferLink(link);
+			getTimer().schedule(new Runnable() {
+				@Override
+				public void run() {
+					htmlLinkRepository.requeueDeferredLink(link);
+				}
+			}, getBackoffMillis(attempt), TimeUnit.MILLISECONDS);
+		}
+		return true;
+	}
+	
+	/**
+	 * Stops the timer thread, once the crawl has ended. Links failing from now
+	 * on are given up on.
+	 */
+	public synchronized void shutdown() {
+		this.isShutdown = true;
+		if (this.timer != null) {
+			// Nothing is due once the crawl has ended, as it waits for the deferred links.
+			this.timer.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Forgets the failed attempts of the given link once it has been retrieved.
+	 * 
+	 * @param link that has been retrieved.
+	 */
+	public void recordSuccess(HTMLLink link) {
+		this.failedAttempts.remove(link);
+	}
+	
+	/**
+	 * The caller must hold the lock on this scheduler.
+	 * 
+	 * @return the timer, started the first time it's needed.
+	 */
+	private ScheduledExecutorService getTimer() {
+		if (this.timer == null) {
+			this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					// A daemon, so a crawl that gives up early doesn't keep the JVM alive.
+					Thread thread = new Thread(task, "fetch-retry-timer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return this.timer;
+	}
+	
+	/**
+	 * Returns the delay before the given retry: half of it grows exponentially,
+	 * and the other half is random.
+	 * 
+	 * @param attempt the number of times the link has failed, from 1.
+	 * @return the delay in milliseconds.
+	 */
+	public long getBackoffMillis(int attempt) {
+		long backoff = this.initialBackoffMillis << Math.min(attempt - 1, 30);
+		if (backoff <= 0 || backoff > this.maxBackoffMillis) {
+			backoff = this.maxBackoffMillis;
+		}
+		long halfBackoff = backoff / 2;
+		return halfBackoff + ThreadLocalRandom.current().nextLong(backoff - halfBackoff + 1);
+	}
+}
@@ -0,0 +1,400 @@
+package crawler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.jsoup.nodes.Document;
+
+import fetch.PageFetcher;
+import fetch.PageResponse;
+import fetch.RejectedResponseException;
+import page.HTMLLink;
+import page.LinkRepository;
+import policy.BoilerplateDetector;
+import policy.HTMLLinkScanner;
+import policy.PageAnalyser;
+import policy.PageVisitor;
+import policy.SinglePassTraversal;
+import policy.VisitingLinkScanner;
+import policy.VisitingPageAnalyser;
+import policy.WholePageVisitor;
+
+/**
+ * This holds the logic to crawl a single {@link HTMLLink}: retrieve its
+ * content, insert the links found on it into the {@link LinkRepository},
+ * and give every {@link PageAnalyser} a chance to analyse it. It keeps no state
+ * about the link being crawled, so one instance can be shared by any number of
+ * threads.
+ *
+ * @author ted.kuo
+ */
+public class PageProcessor {
+
+	/**
+	 * Specifies the repository to insert all the links found in a page.
+	 */
+	private LinkRepository htmlLinkRepository;
+
+	/**
+	 * Retrieves the content of each page.
+	 */
+	private PageFetcher pageFetcher;
+
+	/**
+	 * Puts the links that failed for a transient reason back into the repository later.
+	 */
+	private FetchRetryScheduler retryScheduler;
+
+	/**
+	 * Scanners for scanning the links on a page.
+	 */
+	private List<HTMLLinkScanner> linkScanners;
+
+	/**
+	 * Specifies the role that analyses a page for information.
+	 */
+	private List<PageAnalyser> pageAnalysers;
+
+	/**
+	 * Recognises pages already seen under another URL, null to process every page.
+	 */
+	private volatile ContentDeduplicator contentDeduplicator;
+	
+	/**
+	 * Learns and skips the boilerplate subtrees of the pages, null to walk every subtree.
+	 */
+	private volatile BoilerplateDetector boilerplateDetector;
+
+	/**
+	 * Remembers the kinds of links whose responses aren't pages, so they aren't crawled again.
+	 */
+	private RejectedLinkPatterns rejectedLinkPatterns;
+
+	/**
+	 * Constructor
+	 *
+	 * @param htmlLinkRepository to insert all the links found in a page.
+	 * @param pageFetcher for retrieving the content of each page.
+	 * @param retryScheduler for retrying the links that failed for a transient reason, 
+	 *        owned by the crawl and shut down once it has ended.
+	 * @param linkScanners for scanning links in a page
+	 * @param pageAnalysers for analysing information in a page.
+	 */
+	public PageProcessor(LinkRepository htmlLinkRepository, PageFetcher pageFetcher,
+			FetchRetryScheduler retryScheduler, List<HTMLLinkScanner> linkScanners, 
+			List<PageAnalyser> pageAnalysers) {
+		this.htmlLinkRepository = htmlLinkRepository;
+		this.pageFetcher = pageFetcher;
+		this.retryScheduler = retryScheduler;
+		this.rejectedLinkPatterns = new RejectedLinkPatterns();
+		this.linkScanners = new ArrayList<>(linkScanners);
+		this.pageAnalysers = new ArrayList<>(pageAnalysers);
+	}
+
+	/**
+	 * Skips the pages whose content has already been seen under another URL,
+	 * before they are parsed, scanned and analysed.
+	 *
+	 * @param contentDeduplicator to recognise the duplicate pages with, null to
+	 *        process every page.
+	 */
+	public void setContentDeduplicator(ContentDeduplicator contentDeduplicator) {
+		this.contentDeduplicator = contentDeduplicator;
+	}
+
+	/**
+	 * Skips the subtrees found the same on every page of the site, such as the
+	 * menus and the footer, once they have been scanned and analysed on the
+	 * first pages.
+	 * 
+	 * @param boilerplateDetector to learn and skip the boilerplate subtrees with,
+	 *        null to walk every subtree.
+	 */
+	public void setBoilerplateDetector(BoilerplateDetector boilerplateDetector) {
+		this.boilerplateDetector = boilerplateDetector;
+	}
+
+	/**
+	 * @return the kinds of links whose responses weren't pages.
+	 */
+	public RejectedLinkPatterns getRejectedLinkPatterns() {
+		return rejectedLinkPatterns;
+	}
+
+	/**
+	 * Crawls the given link. Links found on the page are inserted into the
+	 * repository, and the page is then analysed, unless it hasn't changed since
+	 * it was cached and so was already analysed. A page whose content has
+	 * already been seen under another URL is neither scanned nor analysed. A
+	 * page no analyser needs is only scanned, from its href values streamed out
+	 * of the body, without building a document of it.
+	 *
+	 * @param linkToCrawl the link to be crawled.
+	 */
+	public void process(HTMLLink linkToCrawl) {
+		PageResponse response = fetch(linkToCrawl);
+		if (response == null || isDuplicate(response)) {
+			return;
+		}
+		boolean isAnalysed = isAnalysed(response);
+		if (!isAnalysed && scanHrefs(response)) {
+			return;
+		}
+		Document pageContent = parse(response);
+
+		if (pageContent != null) {
+			// One walk of the page for the scanners and analysers alike.
+			visitPage(linkToCrawl, pageContent, isAnalysed);
+		}
+	}
+
+	/**
+	 * Retrieves the given link. If that fails because of a connection issue, or
+	 * because the host is throttling or temporarily unavailable, the link is
+	 * handed to the {@link FetchRetryScheduler} to be crawled again later. If the
+	 * response is rejected from its headers, because it isn't HTML or is too
+	 * large, the kind of link is remembered so links like it are filtered.
+	 * Returns null if the destination URL cannot be found, or if the page cannot
+	 * be retrieved for any other reasons.
+	 *
+	 * @param linkToCrawl the link to be retrieved.
+	 * @return the successful response of the given {@link HTMLLink}, null if there is none.
+	 */
+	public PageResponse fetch(HTMLLink linkToCrawl) {
+		try {
+			PageResponse response = this.pageFetcher.fetch(linkToCrawl).get();
+			if (isTransientStatus(response.getStatusCode())) {
+				response.release();
+				this.retryScheduler.scheduleRetry(linkToCrawl);
+				return null;
+			}
+			this.retryScheduler.recordSuccess(linkToCrawl);
+			
+			// If the link is broken, then just skip this page.
+			if (!response.isSuccessful()) {
+				response.release();
+				return null;
+			}
+			this.rejectedLinkPatterns.recordAccepted(linkToCrawl);
+			return response;
+		}
+		catch (ExecutionException e) {
+			Throwable cause = getRootCause(e);
+			if (cause instanceof RejectedResponseException) {
+				this.rejectedLinkPatterns.recordRejected(linkToCrawl);
+			}
+			else if (!isConnectionIssue(cause) || !this.retryScheduler.scheduleRetry(linkToCrawl)) {
+				System.err.println("Error:" + cause.getMessage() + " for link: " + linkToCrawl.getCanonicalPageURLString());
+			}
+		}
+		catch (InterruptedException e) {
+			// Give up on the page, and leave the interrupt for the caller to handle.
+			Thread.currentThread().interrupt();
+		}
+		catch (RuntimeException e) {
+			System.err.println("Error:" + e.getMessage() + " for link: " + linkToCrawl.getCanonicalPageURLString());
+		}
+		return null;
+	}
+	
+	/**
+	 * Checks whether the content of the given response has already been seen
+	 * under another URL, in which case the response is released. A page that
+	 * can't be checked is taken as unique.
+	 * 
+	 * @param response of a page.
+	 * @return true if the page is a duplicate, and so has been released.
+	 */
+	public boolean isDuplicate(PageResponse response) {
+		ContentDeduplicator deduplicator = this.contentDeduplicator;
+		if (deduplicator == null) {
+			return false;
+		}
+		try {
+			if (deduplicator.check(response) == ContentDeduplicator.DuplicateStatus.UNIQUE) {
+				return false;
+			}
+		} catch (IOException e) {
+			System.err.println("Error:" + e.getMessage() + " for link: " + response.getLink().getCanonicalPageURLString());
+			return false;
+		}
+		response.release();
+		return true;
+	}
+	
+	/**
+	 * Tells whether the page of the given response is to be analysed: it has
+	 * changed since it was cached, and an analyser needs it. An analyser that
+	 * isn't a {@link VisitingPageAnalyser} is taken as needing every page.
+	 * 
+	 * @param response of a page.
+	 * @return true if the page is to be analysed, and so parsed into a document.
+	 */
+	public boolean isAnalysed(PageResponse response) {
+		if (response.isNotModified()) {
+			return false;
+		}
+		for (PageAnalyser pageAnalyser : this.pageAnalysers) {
+			if (!(pageAnalyser instanceof VisitingPageAnalyser)
+					|| ((VisitingPageAnalyser) pageAnalyser).needsDocument(response)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Scans the href values streamed out of the body of the given response with
+	 * every {@link HTMLLinkScanner}, and inserts the links found into the
+	 * repository, apart from those of a kind that has been rejected. This only
+	 * works if every scanner is a {@link VisitingLinkScanner}; otherwise the
+	 * page is left alone to be parsed and scanned as a document. The response is
+	 * released once scanned, and also if it can't be read.
+	 * 
+	 * @param response of a page.
+	 * @return true if the page has been dealt with, false if it's still to be
+	 *         parsed.
+	 */
+	public boolean scanHrefs(PageResponse response) {
+		for (HTMLLinkScanner linkScanner : this.linkScanners) {
+			if (!(linkScanner instanceof VisitingLinkScanner)) {
+				return false;
+			}
+		}
+		HTMLLink link = response.getLink();
+		try {
+			List<String> hrefValues = response.extractHrefs();
+			Collection<HTMLLink> linksFound = new ArrayList<>();
+			for (HTMLLinkScanner linkScanner : this.linkScanners) {
+				((VisitingLinkScanner) linkScanner).scanHrefs(link, hrefValues, linksFound);
+			}
+			this.rejectedLinkPatterns.filter(linksFound);
+			this.htmlLinkRepository.insert(linksFound);
+		} catch (IOException e) {
+			System.err.println("Error:" + e.getMessage() + " for link: " + link.getCanonicalPageURLString());
+		}
+		finally {
+			response.release();
+		}
+		return true;
+	}
+	
+	/**
+	 * Parses the body of the given response.
+	 * 
+	 * @param response to be parsed.
+	 * @return the page content, null if it cannot be parsed.
+	 */
+	public Document parse(PageResponse response) {
+		try {
+			return response.parse();
+		} catch (Exception e) {
+			System.err.println("Error:" + e.getMessage() + " for link: " + response.getLink().getCanonicalPageURLString());
+			return null;
+		}
+	}
+	
+	/**
+	 * Walks the given page once with every {@link HTMLLinkScanner}, and every
+	 * {@link PageAnalyser} if the page is to be analysed, and inserts the links
+	 * found into the repository, apart from those of a kind that has been
+	 * rejected.
+	 * 
+	 * @param link of the page.
+	 * @param pageContent of the page.
+	 * @param isAnalysed true to analyse the page as well as scan it.
+	 */
+	public void visitPage(HTMLLink link, Document pageContent, boolean isAnalysed) {
+		Collection<HTMLLink> linksFound = new ArrayList<>();
+		List<PageVisitor> visitors = new ArrayList<>();
+		for (HTMLLinkScanner linkScanner : this.linkScanners) {
+			visitors.add(newPageVisitor(linkScanner, link, linksFound));
+		}
+		if (isAnalysed) {
+			for (PageAnalyser pageAnalyser : this.pageAnalysers) {
+				visitors.add(newPageVisitor(pageAnalyser, link));
+			}
+		}
+		SinglePassTraversal.traverse(pageContent, visitors, this.boilerplateDetector);
+		
+		this.rejectedLinkPatterns.filter(linksFound);
+		this.htmlLinkRepository.insert(linksFound);
+	}
+	
+	/**
+	 * @param linkScanner to scan the page with.
+	 * @param link of the page.
+	 * @param linksFound to add the links found to.
+	 * @return a visitor scanning the page, which scans it on its own if the
+	 *         scanner can't be a visitor.
+	 */
+	private static PageVisitor newPageVisitor(final HTMLLinkScanner linkScanner, final HTMLLink link, 
+			final Collection<HTMLLink> linksFound) {
+		if (linkScanner instanceof VisitingLinkScanner) {
+			return ((VisitingLinkScanner) linkScanner).newPageVisitor(link, linksFound);
+		}
+		return new WholePageVisitor() {
+			@Override
+			public void endPage(Document pageContent) {
+				linksFound.addAll(linkScanner.scanPage(link, pageContent));
+			}
+		};
+	}
+	
+	/**
+	 * @param pageAnalyser to analyse the page with.
+	 * @param link of the page.
+	 * @return a visitor analysing the page, which analyses it on its own if the
+	 *         analyser can't be a visitor.
+	 */
+	private static PageVisitor newPageVisitor(final PageAnalyser pageAnalyser, final HTMLLink link) {
+		if (pageAnalyser instanceof VisitingPageAnalyser) {
+			return ((VisitingPageAnalyser) pageAnalyser).newPageVisitor(link);
+		}
+		return new WholePageVisitor() {
+			@Override
+			public void endPage(Document pageContent) {
+				pageAnalyser.analyse(link, pageContent);
+			}
+		};
+	}
+	
+	/**
+	 * Returns the exception that caused the fetch to fail.
+	 * 
+	 * @param e thrown by the fetch.
+	 * @return the underlying exception.
+	 */
+	private static Throwable getRootCause(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof UncheckedIOException) {
+			cause = cause.getCause();
+		}
+		return cause;
+	}
+	
+	/**
+	 * @param statusCode of a response.
+	 * @return true if the host is throttling or temporarily unavailable, and the link is worth retrying.
+	 */
+	private static boolean isTransientStatus(int statusCode) {
+		return statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+	}
+	
+	/**
+	 * @param cause of a failed fetch.
+	 * @return true if the fetch failed because of a connection issue and is worth retrying.
+	 */
+	private static boolean isConnectionIssue(Throwable cause) {
+		return cause instanceof SocketException || cause instanceof SocketTimeoutException 
+				|| cause instanceof HttpTimeoutException 
+				|| (cause instanceof IOException && cause.getCause() instanceof SocketException);
+	}
+}
@@ -0,0 +1,112 @@
+package crawler;
+
+/**
+ * Specifies how a {@link PipelineWebCrawler} sizes each of its stages. Fetching
+ * waits on the network and wants many threads, whereas parsing, and the walk
+ * of a page that scans and analyses it, are CPU bound and by default get one thread per core.
+ * 
+ * @author ted.kuo
+ */
+public class PipelineSettings {
+
+	/**
+	 * The number of threads retrieving pages.
+	 */
+	private int fetchThreads;
+	
+	/**
+	 * The number of threads parsing pages.
+	 */
+	private int parseThreads;
+	
+	/**
+	 * The number of threads scanning pages for links and analysing them.
+	 */
+	private int visitThreads;
+	
+	/**
+	 * The number of pages each queue between two stages holds before the
+	 * upstream stage has to wait.
+	 */
+	private int queueCapacity;
+	
+	/**
+	 * Constructor. Uses 50 fetch threads, one thread per core for every other
+	 * stage, and queues of 100 pages.
+	 */
+	public PipelineSettings() {
+		int cores = Runtime.getRuntime().availableProcessors();
+		this.fetchThreads = 50;
+		this.parseThreads = cores;
+		this.visitThreads = cores;
+		this.queueCapacity = 100;
+	}
+
+	/**
+	 * @return the number of threads retrieving pages.
+	 */
+	public int getFetchThreads() {
+		return fetchThreads;
+	}
+
+	/**
+	 * @param fetchThreads the number of threads retrieving pages.
+	 */
+	public void setFetchThreads(int fetchThreads) {
+		this.fetchThreads = requirePositive(fetchThreads);
+	}
+
+	/**
+	 * @return the number of threads parsing pages.
+	 */
+	public int getParseThreads() {
+		return parseThreads;
+	}
+
+	/**
+	 * @param parseThreads the number of threads parsing pages.
+	 */
+	public void setParseThreads(int parseThreads) {
+		this.parseThreads = requirePositive(parseThreads);
+	}
+
+	/**
+	 * @return the number of threads scanning pages for links and analysing them.
+	 */
+	public int getVisitThreads() {
+		return visitThreads;
+	}
+
+	/**
+	 * @param visitThreads the number of threads scanning pages for links and analysing them.
+	 */
+	public void setVisitThreads(int visitThreads) {
+		this.visitThreads = requirePositive(visitThreads);
+	}
+
+	/**
+	 * @return the capacity of each queue between two stages.
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * @param queueCapacity the capacity of each queue between two stages.
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = requirePositive(queueCapacity);
+	}
+	
+	/**
+	 * @param value to be checked.
+	 * @return the given value.
+	 * @throws IllegalArgumentException if the value is less than 1.
+	 */
+	private static int requirePositive(int value) {
+		if (value < 1) {
+			throw new IllegalArgumentException("the value must be at least 1: " + value);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,363 @@
+package crawler;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.jsoup.nodes.Document;
+
+import fetch.PageFetcher;
+import fetch.PageResponse;
+import page.HTMLLink;
+import page.LinkRepository;
+import policy.BoilerplateDetector;
+import policy.HTMLLinkScanner;
+import policy.PageAnalyser;
+
+/**
+ * This {@link PipelineWebCrawler} crawls in three stages: fetch, parse, and a
+ * single walk of each page that scans it for links and analyses it. Each
+ * stage has its own threads and hands pages to the next stage through a
+ * bounded queue, so network bound fetching and CPU bound parsing no longer
+ * compete for the same threads. When a stage falls behind,
+ * its queue fills up and the stage before it waits, all the way back to the
+ * fetchers taking links from the {@link LinkRepository}.
+ *
+ * @author ted.kuo
+ */
+public class PipelineWebCrawler {
+
+	/**
+	 * Storage of all the pages that have been discovered.
+	 */
+	private LinkRepository htmlPageRepository;
+
+	/**
+	 * Does the work of each stage.
+	 */
+	private PageProcessor pageProcessor;
+
+	/**
+	 * Sizes of the stages.
+	 */
+	private PipelineSettings settings;
+
+	/**
+	 * Retries the links that failed for a transient reason, shut down once the crawl has ended.
+	 */
+	private FetchRetryScheduler retryScheduler;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param linkScanners used to identify all the links.
+	 * @param pageRepository storage of all the pages that have been discovered.
+	 * @param pageAnalysers for analysing information on pages.
+	 * @param pageFetcher for retrieving the content of each page.
+	 * @param settings sizes of the stages.
+	 */
+	public PipelineWebCrawler(List<HTMLLinkScanner> linkScanners, LinkRepository pageRepository,
+			List<PageAnalyser> pageAnalysers, PageFetcher pageFetcher, PipelineSettings settings) {
+		this.htmlPageRepository = pageRepository;
+		this.retryScheduler = new FetchRetryScheduler(pageRepository);
+		this.pageProcessor = new PageProcessor(pageRepository, pageFetcher, this.retryScheduler, linkScanners, 
+				pageAnalysers);
+		this.settings = settings;
+	}
+
+	/**
+	 * Skips the pages whose content has already been seen under another URL,
+	 * right after they are fetched.
+	 *
+	 * @param contentDeduplicator to recognise the duplicate pages with, null to
+	 *        process every page.
+	 */
+	public void setContentDeduplicator(ContentDeduplicator contentDeduplicator) {
+		this.pageProcessor.setContentDeduplicator(contentDeduplicator);
+	}
+
+	/**
+	 * Skips the subtrees found the same on every page of the site, such as the
+	 * menus and the footer, once they have been scanned and analysed on the
+	 * first pages.
+	 * 
+	 * @param boilerplateDetector to learn and skip the boilerplate subtrees with,
+	 *        null to walk every subtree.
+	 */
+	public void setBoilerplateDetector(BoilerplateDetector boilerplateDetector) {
+		this.pageProcessor.setBoilerplateDetector(boilerplateDetector);
+	}
+
+	/**
+	 * Crawls through the given URL and all the pages found under it, and returns
+	 * once every link has been through all the stages.
+	 *
+	 * @param rootURL under which all the web pages are crawled.
+	 */
+	public void crawl(URL rootURL) {
+		System.out.println("Crawling " + rootURL.toString());
+		this.htmlPageRepository.insert(new HTMLLink(rootURL));
+
+		BlockingQueue<PageResponse> parseQueue = new ArrayBlockingQueue<>(this.settings.getQueueCapacity());
+		BlockingQueue<ParsedPage> visitQueue = new ArrayBlockingQueue<>(this.settings.getQueueCapacity());
+
+		List<Thread> stageThreads = new ArrayList<>();
+		startThreads(stageThreads, "fetch", this.settings.getFetchThreads(), new FetchStage(parseQueue));
+		startThreads(stageThreads, "parse", this.settings.getParseThreads(), new ParseStage(parseQueue, visitQueue));
+		startThreads(stageThreads, "visit", this.settings.getVisitThreads(), new VisitStage(visitQueue));
+
+		try {
+			this.htmlPageRepository.awaitAllLinksVisited();
+		} catch (InterruptedException e) {
+			// Stop the stages below if the crawl itself is interrupted.
+			Thread.currentThread().interrupt();
+		}
+
+		// The fetchers finish on their own, the other stages wait on their queues until interrupted.
+		for (Thread stageThread : stageThreads) {
+			stageThread.interrupt();
+		}
+		for (Thread stageThread : stageThreads) {
+			try {
+				stageThread.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+		this.retryScheduler.shutdown();
+
+		System.out.println("Finished Crawling " + rootURL.toString());
+		System.out.println("Found " + this.htmlPageRepository.getNumberOfLinksDiscovered() + " links");
+	}
+
+	/**
+	 * Starts the given number of threads running the given stage.
+	 *
+	 * @param threads to add the started threads to.
+	 * @param stageName used to name the threads.
+	 * @param numberOfThreads to be started.
+	 * @param stage to be run by each thread.
+	 */
+	private static void startThreads(List<Thread> threads, String stageName, int numberOfThreads, Runnable stage) {
+		for (int i = 0; i < numberOfThreads; i++) {
+			Thread thread = new Thread(stage, stageName + "-" + i);
+			thread.start();
+			threads.add(thread);
+		}
+	}
+
+	/**
+	 * A page that has been parsed, on its way to be scanned and analysed.
+	 */
+	private static class ParsedPage {
+
+		/**
+		 * Link of the page.
+		 */
+		private final HTMLLink link;
+
+		/**
+		 * Content of the page.
+		 */
+		private final Document pageContent;
+
+		/**
+		 * True if the page is to be analysed as well as scanned.
+		 */
+		private final boolean isAnalysed;
+
+		/**
+		 * Constructor
+		 *
+		 * @param link of the page.
+		 * @param pageContent of the page.
+		 * @param isAnalysed true if the page is to be analysed as well as scanned.
+		 */
+		ParsedPage(HTMLLink link, Document pageContent, boolean isAnalysed) {
+			this.link = link;
+			this.pageContent = pageContent;
+			this.isAnalysed = isAnalysed;
+		}
+	}
+
+	/**
+	 * A stage that takes its work from a queue. When the work for a page is
+	 * finished, or fails, without being handed to the next stage, the page is
+	 * marked as visited in the repository.
+	 *
+	 * @param <T> the type of work taken from the queue.
+	 */
+	private abstract class QueueStage<T> implements Runnable {
+
+		/**
+		 * Queue this stage takes its work from.
+		 */
+		private final BlockingQueue<T> input;
+
+		/**
+		 * Constructor
+		 *
+		 * @param input queue this stage takes its work from.
+		 */
+		QueueStage(BlockingQueue<T> input) {
+			this.input = input;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					T work = this.input.take();
+					boolean isHandedOn = false;
+					try {
+						isHandedOn = process(work);
+					}
+					catch (RuntimeException e) {
+						System.err.println("Error:" + e.getMessage() + " for link: " + getLink(work).getCanonicalPageURLString());
+					}
+					finally {
+						if (!isHandedOn) {
+							htmlPageRepository.markLinkVisited(getLink(work));
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				// Interrupted once the crawl is finished.
+			}
+		}
+
+		/**
+		 * Does the work of this stage.
+		 *
+		 * @param work to be done.
+		 * @return true if the work has been handed to the next stage.
+		 * @throws InterruptedException if interrupted while waiting for the next stage.
+		 */
+		abstract boolean process(T work) throws InterruptedException;
+
+		/**
+		 * @param work taken from the queue.
+		 * @return the link the given work is for.
+		 */
+		abstract HTMLLink getLink(T work);
+	}
+
+	/**
+	 * Takes links from the repository and retrieves them.
+	 */
+	private class FetchStage implements Runnable {
+
+		/**
+		 * Queue of the parse stage.
+		 */
+		private final BlockingQueue<PageResponse> output;
+
+		/**
+		 * Constructor
+		 *
+		 * @param output queue of the parse stage.
+		 */
+		FetchStage(BlockingQueue<PageResponse> output) {
+			this.output = output;
+		}
+
+		@Override
+		public void run() {
+			try {
+				HTMLLink link;
+				while ((link = htmlPageRepository.takeUnvisitedLink()) != null) {
+					boolean isHandedOn = false;
+					try {
+						PageResponse response = pageProcessor.fetch(link);
+						if (response != null && !pageProcessor.isDuplicate(response)) {
+							this.output.put(response);
+							isHandedOn = true;
+						}
+					}
+					finally {
+						if (!isHandedOn) {
+							htmlPageRepository.markLinkVisited(link);
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				// Interrupted if the crawl is stopped.
+			}
+		}
+	}
+
+	/**
+	 * Parses the retrieved pages. Pages no analyser needs are scanned from
+	 * their href values instead, without building a document, and finish here.
+	 */
+	private class ParseStage extends QueueStage<PageResponse> {
+
+		/**
+		 * Queue of the visit stage.
+		 */
+		private final BlockingQueue<ParsedPage> output;
+
+		/**
+		 * Constructor
+		 *
+		 * @param input queue of the retrieved pages.
+		 * @param output queue of the visit stage.
+		 */
+		ParseStage(BlockingQueue<PageResponse> input, BlockingQueue<ParsedPage> output) {
+			super(input);
+			this.output = output;
+		}
+
+		@Override
+		boolean process(PageResponse response) throws InterruptedException {
+			boolean isAnalysed = pageProcessor.isAnalysed(response);
+			if (!isAnalysed && pageProcessor.scanHrefs(response)) {
+				// Scanned without a document, so the page finishes here.
+				return false;
+			}
+			Document pageContent = pageProcessor.parse(response);
+			if (pageContent == null) {
+				return false;
+			}
+			this.output.put(new ParsedPage(response.getLink(), pageContent, isAnalysed));
+			return true;
+		}
+
+		@Override
+		HTMLLink getLink(PageResponse response) {
+			return response.getLink();
+		}
+	}
+
+	/**
+	 * Scans the parsed pages for links and analyses them, in a single walk of
+	 * each page, which is the last stage of a page. Pages that haven't changed
+	 * since they were cached were already analysed, and pages parsed only
+	 * because a scanner needs a document aren't analysed, so they are only
+	 * scanned.
+	 */
+	private class VisitStage extends QueueStage<ParsedPage> {
+
+		/**
+		 * Constructor
+		 *
+		 * @param input queue of the parsed pages.
+		 */
+		VisitStage(BlockingQueue<ParsedPage> input) {
+			super(input);
+		}
+
+		@Override
+		boolean process(ParsedPage page) {
+			pageProcessor.visitPage(page.link, page.pageContent, page.isAnalysed);
+			return false;
+		}
+
+		@Override
+		HTMLLink getLink(ParsedPage page) {
+			return page.link;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package crawler;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import page.CanonicalURL;
+import page.HTMLLink;
+
+/**
+ * Remembers the kinds of links whose responses were rejected from their
+ * headers with a {@link fetch.RejectedResponseException}, such as images,
+ * PDFs or JSON endpoints, so links of the same kind are no longer put into
+ * the repository. The kind of a link is its host together with:
+ * <ul>
+ * <li>the extension of its file name, like "www.zalora.sg *.jpg", or</li>
+ * <li>the directory it's in if it has no extension, like "www.zalora.sg /api/".</li>
+ * </ul>
+ * A kind of link is only filtered once it has been rejected a number of times,
+ * and never once one of its links has turned out to be a page.
+ *
+ * @author ted.kuo
+ */
+public class RejectedLinkPatterns {
+
+	/**
+	 * The default number of rejections before a kind of link is filtered.
+	 */
+	private static final int DEFAULT_REJECTION_THRESHOLD = 3;
+
+	/**
+	 * Marks a kind of link that has produced a page, so it's never filtered.
+	 */
+	private static final int ACCEPTED = -1;
+
+	/**
+	 * The number of rejections before a kind of link is filtered.
+	 */
+	private final int rejectionThreshold;
+
+	/**
+	 * The number of times each kind of link has been rejected, or
+	 * {@link #ACCEPTED}.
+	 */
+	private final ConcurrentMap<String, Integer> rejections;
+
+	/**
+	 * The number of links filtered.
+	 */
+	private final AtomicLong numberOfLinksFiltered;
+
+	/**
+	 * Constructor. Kinds of links are filtered once rejected
+	 * {@value #DEFAULT_REJECTION_THRESHOLD} times.
+	 */
+	public RejectedLinkPatterns() {
+		this(DEFAULT_REJECTION_THRESHOLD);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param rejectionThreshold the number of rejections before a kind of link is filtered.
+	 */
+	public RejectedLinkPatterns(int rejectionThreshold) {
+		if (rejectionThreshold < 1) {
+			throw new IllegalArgumentException("the rejection threshold must be at least 1: " + rejectionThreshold);
+		}
+		this.rejectionThreshold = rejectionThreshold;
+		this.rejections = new ConcurrentHashMap<>();
+		this.numberOfLinksFiltered = new AtomicLong();
+	}
+
+	/**
+	 * Records that the response of the given link was rejected.
+	 *
+	 * @param link whose response was rejected.
+	 */
+	public void recordRejected(HTMLLink link) {
+		this.rejections.merge(getPattern(link), 1, (count, one) -> count == ACCEPTED ? ACCEPTED : count + one);
+	}
+
+	/**
+	 * Records that the given link turned out to be a page, so links of its kind
+	 * are never filtered.
+	 *
+	 * @param link whose response was accepted.
+	 */
+	public void recordAccepted(HTMLLink link) {
+		String pattern = getPattern(link);
+		Integer count = this.rejections.get(pattern);
+		if (count == null || count != ACCEPTED) {
+			this.rejections.put(pattern, ACCEPTED);
+		}
+	}
+
+	/**
+	 * @param link to be checked.
+	 * @return true if links of its kind have been rejected often enough to be filtered.
+	 */
+	public boolean isRejected(HTMLLink link) {
+		Integer count = this.rejections.get(getPattern(link));
+		return count != null && count >= this.rejectionThreshold;
+	}
+
+	/**
+	 * Removes the links whose kind has been rejected from the given links.
+	 *
+	 * @param links to be filtered.
+	 */
+	public void filter(Collection<HTMLLink> links) {
+		for (Iterator<HTMLLink> iterator = links.iterator(); iterator.hasNext();) {
+			if (isRejected(iterator.next())) {
+				iterator.remove();
+				this.numberOfLinksFiltered.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of links filtered.
+	 */
+	public long getNumberOfLinksFiltered() {
+		return this.numberOfLinksFiltered.get();
+	}
+
+	/**
+	 * String representation of the links filtered.
+	 *
+	 * @return toString
+	 */
+	@Override
+	public String toString() {
+		return "Filtered " + this.numberOfLinksFiltered.get() + " links to rejected content";
+	}
+
+	/**
+	 * @param link to be classified.
+	 * @return the kind of the link.
+	 */
+	static String getPattern(HTMLLink link) {
+		CanonicalURL canonicalURL = link.getCanonicalURL();
+		String url = canonicalURL.toString();
+		int authorityStart = url.indexOf("://");
+		int pathStart = authorityStart < 0 ? -1 : url.indexOf('/', authorityStart + 3);
+		String host = canonicalURL.getHost();
+		String path = pathStart < 0 ? "" : url.substring(pathStart);
+		int nameStart = path.lastIndexOf('/') + 1;
+		int extensionStart = path.lastIndexOf('.');
+		if (extensionStart > nameStart && extensionStart < path.length() - 1) {
+			return host + " *" + path.substring(extensionStart).toLowerCase(Locale.ROOT);
+		}
+		return host + " " + (nameStart == 0 ? "/" : path.substring(0, nameStart));
+	}
+}
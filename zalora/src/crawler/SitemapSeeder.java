@@ -0,0 +1,420 @@
+package crawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import page.HTMLLink;
+import page.LinkRepository;
+
+/**
+ * Seeds the {@link LinkRepository} with the pages listed in the sitemaps
+ * of a site, so the product pages don't have to be reached by crawling every
+ * category and listing page on the way to them. The sitemaps are those
+ * advertised by the Sitemap lines of robots.txt, or /sitemap.xml if there are
+ * none, and any sitemap they list in turn if they are sitemap indexes.
+ *
+ * Sitemaps are streamed, gzip compressed or not, and their URLs are inserted in
+ * batches of a fixed size, each batch most recently modified first. So a
+ * sitemap of millions of URLs is seeded in constant memory, apart from the
+ * repository itself.
+ *
+ * @author ted.kuo
+ */
+public class SitemapSeeder {
+
+	/**
+	 * Specifies the time out in milliseconds when connecting to a host.
+	 */
+	private static final int CONNECT_TIMEOUT = 5 * 1000;
+
+	/**
+	 * Specifies the time out in milliseconds when reading from a host.
+	 */
+	private static final int READ_TIMEOUT = 30 * 1000;
+
+	/**
+	 * The default number of URLs inserted at a time.
+	 */
+	private static final int DEFAULT_BATCH_SIZE = 10000;
+
+	/**
+	 * The largest number of sitemaps read, in case sitemap indexes list each other.
+	 */
+	private static final int MAX_SITEMAPS = 10000;
+
+	/**
+	 * Start of the namespace of the sitemap protocol, whatever its version.
+	 */
+	private static final String SITEMAP_NAMESPACE_PREFIX = "http://www.sitemaps.org/schemas/sitemap/";
+
+	/**
+	 * Orders the URLs of a batch most recently modified first.
+	 */
+	private static final Comparator<SitemapEntry> MOST_RECENT_FIRST = new Comparator<SitemapEntry>() {
+		@Override
+		public int compare(SitemapEntry entry, SitemapEntry other) {
+			return Long.compare(other.lastModified, entry.lastModified);
+		}
+	};
+
+	/**
+	 * The repository the URLs are inserted into.
+	 */
+	private LinkRepository htmlLinkRepository;
+
+	/**
+	 * Only URLs under this host are inserted.
+	 */
+	private String host;
+
+	/**
+	 * The number of URLs inserted at a time.
+	 */
+	private int batchSize;
+
+	/**
+	 * Creates the stream readers of the sitemaps.
+	 */
+	private XMLInputFactory xmlInputFactory;
+
+	/**
+	 * Constructor
+	 *
+	 * @param htmlLinkRepository to insert the URLs into.
+	 * @param host only URLs under the given host are inserted.
+	 */
+	public SitemapSeeder(LinkRepository htmlLinkRepository, String host) {
+		this(htmlLinkRepository, host, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param htmlLinkRepository to insert the URLs into.
+	 * @param host only URLs under the given host are inserted.
+	 * @param batchSize the number of URLs inserted at a time.
+	 */
+	public SitemapSeeder(LinkRepository htmlLinkRepository, String host, int batchSize) {
+		if (host == null) {
+			throw new IllegalArgumentException("host cannot be null");
+		}
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+		}
+		this.htmlLinkRepository = htmlLinkRepository;
+		this.host = host;
+		this.batchSize = batchSize;
+		this.xmlInputFactory = XMLInputFactory.newInstance();
+		// Sitemaps come from the network, so never resolve anything they refer to.
+		this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	/**
+	 * Seeds the repository from the sitemaps of the site of the given URL.
+	 *
+	 * @param rootURL of the site.
+	 * @return the number of URLs listed in the sitemaps under the host.
+	 */
+	public long seed(URL rootURL) {
+		List<URL> sitemapURLs;
+		try {
+			sitemapURLs = readSitemapURLs(new URL(rootURL, "/robots.txt"));
+		} catch (IOException e) {
+			System.err.println("Error:" + e.getMessage() + " reading robots.txt of: " + rootURL);
+			sitemapURLs = new ArrayList<>();
+		}
+		if (sitemapURLs.isEmpty()) {
+			try {
+				sitemapURLs.add(new URL(rootURL, "/sitemap.xml"));
+			} catch (MalformedURLException e) {
+				return 0;
+			}
+		}
+		return seed(sitemapURLs);
+	}
+
+	/**
+	 * Seeds the repository from the given sitemaps, and the sitemaps they list
+	 * if they are sitemap indexes.
+	 *
+	 * @param sitemapURLs of the sitemaps.
+	 * @return the number of URLs listed in the sitemaps under the host.
+	 */
+	public long seed(List<URL> sitemapURLs) {
+		Deque<URL> sitemapsToRead = new ArrayDeque<>(sitemapURLs);
+		Set<String> sitemapsRead = new HashSet<>();
+		long numberOfURLs = 0;
+		URL sitemapURL;
+		while ((sitemapURL = sitemapsToRead.poll()) != null && sitemapsRead.size() < MAX_SITEMAPS) {
+			if (!sitemapsRead.add(sitemapURL.toString())) {
+				continue;
+			}
+			try {
+				numberOfURLs += readSitemap(sitemapURL, sitemapsToRead);
+			} catch (IOException | XMLStreamException e) {
+				System.err.println("Error:" + e.getMessage() + " for sitemap: " + sitemapURL);
+			}
+		}
+		return numberOfURLs;
+	}
+
+	/**
+	 * Reads the Sitemap lines of robots.txt.
+	 *
+	 * @param robotsURL the URL of robots.txt.
+	 * @return the URLs of the sitemaps, empty if there are none or no robots.txt.
+	 * @throws IOException if robots.txt can't be read.
+	 */
+	private List<URL> readSitemapURLs(URL robotsURL) throws IOException {
+		List<URL> sitemapURLs = new ArrayList<>();
+		try (InputStream in = open(robotsURL)) {
+			if (in == null) {
+				return sitemapURLs;
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int colon = line.indexOf(':');
+				if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("sitemap")) {
+					String location = line.substring(colon + 1).trim();
+					try {
+						sitemapURLs.add(new URL(robotsURL, location));
+					} catch (MalformedURLException e) {
+						System.err.println("Malformed sitemap found: " + location);
+					}
+				}
+			}
+		}
+		return sitemapURLs;
+	}
+
+	/**
+	 * Streams the given sitemap. The URLs of a sitemap are inserted into the
+	 * repository batch by batch, and the sitemaps of a sitemap index are added to
+	 * the sitemaps to be read.
+	 *
+	 * @param sitemapURL of the sitemap.
+	 * @param sitemapsToRead to add the sitemaps of a sitemap index to.
+	 * @return the number of URLs listed in the sitemap under the host.
+	 * @throws IOException if the sitemap can't be read.
+	 * @throws XMLStreamException if the sitemap isn't well formed.
+	 */
+	private long readSitemap(URL sitemapURL, Deque<URL> sitemapsToRead) throws IOException, XMLStreamException {
+		long numberOfURLs = 0;
+		List<SitemapEntry> batch = new ArrayList<>(Math.min(this.batchSize, DEFAULT_BATCH_SIZE));
+		try (InputStream in = open(sitemapURL)) {
+			if (in == null) {
+				return 0;
+			}
+			XMLStreamReader reader = this.xmlInputFactory.createXMLStreamReader(in);
+			try {
+				String location = null;
+				String lastModified = null;
+				while (reader.hasNext()) {
+					int event = reader.next();
+					if ((event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_ELEMENT)
+							&& !isSitemapElement(reader)) {
+						// Such as the locations of images, which are not pages.
+						continue;
+					}
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						String name = reader.getLocalName();
+						if (name.equals("loc")) {
+							location = reader.getElementText().trim();
+						}
+						else if (name.equals("lastmod")) {
+							lastModified = reader.getElementText().trim();
+						}
+					}
+					else if (event == XMLStreamConstants.END_ELEMENT) {
+						String name = reader.getLocalName();
+						if (name.equals("url") && location != null) {
+							if (addEntry(batch, location, lastModified)) {
+								numberOfURLs++;
+								if (batch.size() >= this.batchSize) {
+									insert(batch);
+								}
+							}
+						}
+						else if (name.equals("sitemap") && location != null) {
+							try {
+								sitemapsToRead.add(new URL(sitemapURL, location));
+							} catch (MalformedURLException e) {
+								System.err.println("Malformed sitemap found: " + location);
+							}
+						}
+						if (name.equals("url") || name.equals("sitemap")) {
+							location = null;
+							lastModified = null;
+						}
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+		finally {
+			insert(batch);
+		}
+		return numberOfURLs;
+	}
+
+	/**
+	 * @param reader positioned on an element.
+	 * @return true if it's an element of the sitemap protocol rather than of an extension.
+	 */
+	private static boolean isSitemapElement(XMLStreamReader reader) {
+		String namespace = reader.getNamespaceURI();
+		return namespace == null || namespace.isEmpty() || namespace.startsWith(SITEMAP_NAMESPACE_PREFIX);
+	}
+
+	/**
+	 * Adds a URL of a sitemap to the batch, if it's under the host.
+	 *
+	 * @param batch to add to.
+	 * @param location of the page.
+	 * @param lastModified date of the page, null if unknown.
+	 * @return true if the URL was added.
+	 */
+	private boolean addEntry(List<SitemapEntry> batch, String location, String lastModified) {
+		try {
+			URL url = new URL(location);
+			if (!this.host.equals(url.getHost())) {
+				return false;
+			}
+			batch.add(new SitemapEntry(new HTMLLink(url), parseLastModified(lastModified)));
+			return true;
+		} catch (MalformedURLException | IllegalArgumentException e) {
+			System.err.println("Malformed link found: " + location);
+			return false;
+		}
+	}
+
+	/**
+	 * Inserts the batch into the repository, most recently modified first, and
+	 * empties it.
+	 *
+	 * @param batch to be inserted.
+	 */
+	private void insert(List<SitemapEntry> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		Collections.sort(batch, MOST_RECENT_FIRST);
+		List<HTMLLink> links = new ArrayList<>(batch.size());
+		for (SitemapEntry entry : batch) {
+			links.add(entry.link);
+		}
+		this.htmlLinkRepository.insert(links);
+		batch.clear();
+	}
+
+	/**
+	 * Opens the given URL, unzipping it if it's gzip compressed.
+	 *
+	 * @param url to be opened.
+	 * @return a stream of the content, null if the host says it doesn't exist.
+	 * @throws IOException if it can't be opened.
+	 */
+	private static InputStream open(URL url) throws IOException {
+		URLConnection connection = url.openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		if (connection instanceof HttpURLConnection) {
+			HttpURLConnection httpConnection = (HttpURLConnection) connection;
+			int statusCode = httpConnection.getResponseCode();
+			if (statusCode >= 400) {
+				httpConnection.disconnect();
+				return null;
+			}
+		}
+
+		// A .gz sitemap, or one sent gzip encoded, both start with the gzip magic number.
+		BufferedInputStream in = new BufferedInputStream(connection.getInputStream());
+		in.mark(2);
+		int first = in.read();
+		int second = in.read();
+		in.reset();
+		if (first == 0x1F && second == 0x8B) {
+			return new GZIPInputStream(in);
+		}
+		return in;
+	}
+
+	/**
+	 * Parses a W3C date time of a sitemap.
+	 *
+	 * @param lastModified as written in the sitemap, null if there is none.
+	 * @return the date in milliseconds since the epoch, 0 if it's unknown.
+	 */
+	static long parseLastModified(String lastModified) {
+		if (lastModified == null || lastModified.isEmpty()) {
+			return 0;
+		}
+		try {
+			if (lastModified.length() <= 10) {
+				return LocalDate.parse(lastModified).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+			}
+			return OffsetDateTime.parse(lastModified.toUpperCase(Locale.ROOT)).toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * A URL listed in a sitemap.
+	 */
+	private static class SitemapEntry {
+
+		/**
+		 * Link of the page.
+		 */
+		private final HTMLLink link;
+
+		/**
+		 * The date the page was last modified, in milliseconds since the epoch.
+		 */
+		private final long lastModified;
+
+		/**
+		 * Constructor
+		 *
+		 * @param link of the page.
+		 * @param lastModified date of the page, in milliseconds since the epoch.
+		 */
+		SitemapEntry(HTMLLink link, long lastModified) {
+			this.link = link;
+			this.lastModified = lastModified;
+		}
+	}
+}
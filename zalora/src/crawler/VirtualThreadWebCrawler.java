@@ -0,0 +1,231 @@
+package crawler;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fetch.PageFetcher;
+import page.HTMLLink;
+import page.LinkRepository;
+import policy.BoilerplateDetector;
+import policy.HTMLLinkScanner;
+import policy.PageAnalyser;
+
+/**
+ * A crawl mode that starts one thread per link instead of keeping a fixed
+ * number of {@link PageCrawler}s. Crawling a page spends almost all of its time
+ * waiting on the network, so on a JVM that supports virtual threads this runs
+ * every fetch on a virtual thread, and thousands of them can be in flight
+ * without the memory and context-switch cost of platform threads. A
+ * {@link Semaphore} caps how many links are crawled at the same time.
+ *
+ * @author ted.kuo
+ */
+public class VirtualThreadWebCrawler {
+
+	/**
+	 * Storage of all the pages that have been discovered.
+	 */
+	private LinkRepository htmlPageRepository;
+
+	/**
+	 * Crawls each link, shared by all the threads.
+	 */
+	private PageProcessor pageProcessor;
+
+	/**
+	 * Retries the links that failed for a transient reason, shut down once the crawl has ended.
+	 */
+	private FetchRetryScheduler retryScheduler;
+
+	/**
+	 * Creates a thread for each link to be crawled.
+	 */
+	private ThreadFactory threadFactory;
+
+	/**
+	 * Permits for the links currently being crawled.
+	 */
+	private Semaphore crawlPermits;
+
+	/**
+	 * Constructor. Uses virtual threads if the JVM supports them.
+	 *
+	 * @param linkScanners used to identify all the links.
+	 * @param pageRepository storage of all the pages that have been discovered.
+	 * @param maxConcurrentCrawls the maximum number of links crawled at the same time.
+	 * @param pageAnalysers for analysing information on pages.
+	 * @param pageFetcher for retrieving the content of each page.
+	 */
+	public VirtualThreadWebCrawler(List<HTMLLinkScanner> linkScanners, LinkRepository pageRepository,
+			int maxConcurrentCrawls, List<PageAnalyser> pageAnalysers, PageFetcher pageFetcher) {
+		this(linkScanners, pageRepository, maxConcurrentCrawls, pageAnalysers, pageFetcher, 
+				newVirtualThreadFactory());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param linkScanners used to identify all the links.
+	 * @param pageRepository storage of all the pages that have been discovered.
+	 * @param maxConcurrentCrawls the maximum number of links crawled at the same time.
+	 * @param pageAnalysers for analysing information on pages.
+	 * @param pageFetcher for retrieving the content of each page.
+	 * @param threadFactory creates the thread that crawls each link.
+	 */
+	public VirtualThreadWebCrawler(List<HTMLLinkScanner> linkScanners, LinkRepository pageRepository,
+			int maxConcurrentCrawls, List<PageAnalyser> pageAnalysers, PageFetcher pageFetcher, 
+			ThreadFactory threadFactory) {
+		if (maxConcurrentCrawls < 1) {
+			throw new IllegalArgumentException("at least one crawl must be allowed at a time");
+		}
+		this.htmlPageRepository = pageRepository;
+		this.retryScheduler = new FetchRetryScheduler(pageRepository);
+		this.pageProcessor = new PageProcessor(pageRepository, pageFetcher, this.retryScheduler, linkScanners, 
+				pageAnalysers);
+		this.threadFactory = threadFactory;
+		this.crawlPermits = new Semaphore(maxConcurrentCrawls);
+	}
+
+	/**
+	 * Skips the pages whose content has already been seen under another URL.
+	 *
+	 * @param contentDeduplicator to recognise the duplicate pages with, null to
+	 *        process every page.
+	 */
+	public void setContentDeduplicator(ContentDeduplicator contentDeduplicator) {
+		this.pageProcessor.setContentDeduplicator(contentDeduplicator);
+	}
+
+	/**
+	 * Skips the subtrees found the same on every page of the site, such as the
+	 * menus and the footer, once they have been scanned and analysed on the
+	 * first pages.
+	 * 
+	 * @param boilerplateDetector to learn and skip the boilerplate subtrees with,
+	 *        null to walk every subtree.
+	 */
+	public void setBoilerplateDetector(BoilerplateDetector boilerplateDetector) {
+		this.pageProcessor.setBoilerplateDetector(boilerplateDetector);
+	}
+
+	/**
+	 * Crawls through the given URL and all the pages found under it. The calling
+	 * thread hands each unvisited link to a new thread, waiting for a permit when
+	 * too many links are in flight, and returns once every link has been visited.
+	 *
+	 * @param rootURL under which all the web pages are crawled.
+	 */
+	public void crawl(URL rootURL) {
+		System.out.println("Crawling " + rootURL.toString());
+		this.htmlPageRepository.insert(new HTMLLink(rootURL));
+
+		try {
+			while (true) {
+				// Taken only once a permit is held, so a link is never left in progress without a thread.
+				this.crawlPermits.acquire();
+				HTMLLink link;
+				try {
+					link = this.htmlPageRepository.takeUnvisitedLink();
+				} catch (InterruptedException e) {
+					this.crawlPermits.release();
+					throw e;
+				}
+				if (link == null) {
+					this.crawlPermits.release();
+					break;
+				}
+				startLinkCrawl(link);
+			}
+		} catch (InterruptedException e) {
+			// Stop handing out links, the threads already started will finish on their own.
+			Thread.currentThread().interrupt();
+		}
+		this.retryScheduler.shutdown();
+
+		System.out.println("Finished Crawling " + rootURL.toString());
+		System.out.println("Found " + this.htmlPageRepository.getNumberOfLinksDiscovered() + " links");
+	}
+
+	/**
+	 * Starts a thread crawling the given link. If the thread can't be started,
+	 * the permit is given back and the link is marked as visited, so the crawl
+	 * still finishes.
+	 *
+	 * @param link taken from the repository, for which a permit is held.
+	 */
+	private void startLinkCrawl(HTMLLink link) {
+		boolean isStarted = false;
+		try {
+			this.threadFactory.newThread(new LinkCrawl(link)).start();
+			isStarted = true;
+		}
+		finally {
+			if (!isStarted) {
+				this.crawlPermits.release();
+				this.htmlPageRepository.markLinkVisited(link);
+			}
+		}
+	}
+
+	/**
+	 * Returns a {@link ThreadFactory} that creates virtual threads when running on
+	 * a JVM that has them. Otherwise it falls back to daemon platform threads, so
+	 * this mode still works, only with the cost of a platform thread per link.
+	 *
+	 * @return a factory for the threads that crawl each link.
+	 */
+	public static ThreadFactory newVirtualThreadFactory() {
+		try {
+			// Looked up reflectively so this compiles and runs on JVMs without virtual threads.
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "crawler-", 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			final AtomicInteger threadNumber = new AtomicInteger();
+			return new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "crawler-" + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Crawls a single link, then gives back its permit and marks the link as
+	 * visited.
+	 */
+	private class LinkCrawl implements Runnable {
+
+		/**
+		 * The link to be crawled.
+		 */
+		private final HTMLLink link;
+
+		/**
+		 * Constructor
+		 *
+		 * @param link to be crawled.
+		 */
+		LinkCrawl(HTMLLink link) {
+			this.link = link;
+		}
+
+		@Override
+		public void run() {
+			try {
+				pageProcessor.process(this.link);
+			}
+			finally {
+				crawlPermits.release();
+				htmlPageRepository.markLinkVisited(this.link);
+			}
+		}
+	}
+}
@@ -1,117 +1,182 @@
-package crawler;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-
-import page.HTMLLink;
-import page.HTMLLinkRepository;
-import policy.HTMLLinkScanner;
-import policy.PageAnalyser;
-
-/**
- * This {@link WebCrawler} crawls through the given URL and the pages that's
- * linked to this page under the same host.
- * 
- * @author ted.kuo
- * 
- */
-public class WebCrawler {
-
-	/**
-	 * Specifies a queue of the links still to be crawled through.
-	 */
-	private HTMLLinkRepository htmlPageRepository;
-	
-	/**
-	 * Scanner for scanning links in a document.
-	 */
-	private List<HTMLLinkScanner> linkScanners;
-	
-	/**
-	 * crawlersQueue free crawlers that can be used.
-	 */
-	private Queue<PageCrawler> freeCrawlersPool;
-	
-	/**
-	 * Number of crawlers kept in this pool.
-	 */
-	private final int numberOfCrawlers;
-	
-	/**
-	 * {@link PageAnalyser}
-	 */
-	private List<PageAnalyser> pageAnalysers;
-	
-	/**
-	 * Constructor.
-	 * 
-	 * @param linkScanners used by this {@link WebCrawler} to identify all the links.
-	 * @param pageRepository storage of all the pages that have been discovered.
-	 * @param numberOfCrawlers the number of crawler threads to create
-	 * @param pageAnalyzer for analysing information on pages.
-	 */
-	public WebCrawler(List<HTMLLinkScanner> linkScanners, HTMLLinkRepository pageRepository, 
-			int numberOfCrawlers, List<PageAnalyser> pageAnalysers) {
-		this.htmlPageRepository = pageRepository;
-		this.numberOfCrawlers = numberOfCrawlers;
-		this.freeCrawlersPool = new ConcurrentLinkedQueue<>();
-		this.linkScanners = new ArrayList<>(linkScanners);
-		this.pageAnalysers = new ArrayList<>(pageAnalysers);
-	}
-
-	/**
-	 * Initialise all the page crawlers, at present, starts 5 crawler threads to crawl through a page.
-	 */
-	public synchronized void initialiseCrawlers() {
-		for (int i = 0; i < numberOfCrawlers; i++) {
-			PageCrawler newCrawler = new PageCrawler(this.htmlPageRepository, this.linkScanners, 
-					this.freeCrawlersPool, this.pageAnalysers);
-			newCrawler.start();
-		}
-	}
-	
-	/**
-	 * This recursively crawls through the URLs that are found through the pages,
-	 * and only stop until reach the end. It needs to check for uniqueness of each
-	 * URL to avoid an endless loop.
-	 * 
-	 * @param rootURL under which all the web pages are crawled. 
-	 */
-	public void crawl(URL rootURL) {
-		System.out.println("Crawling " + rootURL.toString());
-		this.htmlPageRepository.insert(new HTMLLink(rootURL));
-		
-		/*
-		 * Iterate through the web pages using the Breadth-first search approach.
-		 * Keep distributing tasks while there are page to visit. Only stop if the
-		 * page queue is empty and all crawlers have finished.
-		 */ 
-		while(true) {
-			if (!this.freeCrawlersPool.isEmpty() && !this.htmlPageRepository.isAllLinksVisited()) {
-				this.freeCrawlersPool.poll().startCrawling(this.htmlPageRepository.pollUnvisitedPageQueue());
-			}
-
-			if (this.htmlPageRepository.isAllLinksVisited()) {
-				if (this.freeCrawlersPool.size() == this.numberOfCrawlers) {
-					break;
-				}
-			}
-		}
-		
-		// Stop each thread.
-		for (PageCrawler pageCrawler : this.freeCrawlersPool) {
-			pageCrawler.stopCrawling();
-			try {
-				pageCrawler.join();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
-		
-		System.out.println("Finished Crawling " + rootURL.toString());
-		System.out.println("Found " + this.htmlPageRepository.getNumberOfLinksDiscovered() + " links");
-		return;
-	}
-}
+package crawler;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import fetch.PageFetcher;
+import fetch.URLConnectionPageFetcher;
+import page.HTMLLink;
+import page.LinkRepository;
+import policy.BoilerplateDetector;
+import policy.HTMLLinkScanner;
+import policy.PageAnalyser;
+
+/**
+ * This {@link WebCrawler} crawls through the given URL and the pages that's
+ * linked to this page under the same host.
+ * 
+ * @author ted.kuo
+ * 
+ */
+public class WebCrawler {
+
+	/**
+	 * Specifies a queue of the links still to be crawled through.
+	 */
+	private LinkRepository htmlPageRepository;
+	
+	/**
+	 * Scanner for scanning links in a document.
+	 */
+	private List<HTMLLinkScanner> linkScanners;
+	
+	/**
+	 * The crawler threads, all of which take their work from the repository.
+	 */
+	private List<PageCrawler> pageCrawlers;
+	
+	/**
+	 * Number of crawlers kept in this pool.
+	 */
+	private final int numberOfCrawlers;
+	
+	/**
+	 * {@link PageAnalyser}
+	 */
+	private List<PageAnalyser> pageAnalysers;
+	
+	/**
+	 * Retrieves the content of each page, shared by all the crawlers.
+	 */
+	private PageFetcher pageFetcher;
+	
+	/**
+	 * Retries the links that failed for a transient reason, shut down once the crawl has ended.
+	 */
+	private FetchRetryScheduler retryScheduler;
+	
+	/**
+	 * Recognises pages already seen under another URL, null to process every page.
+	 */
+	private ContentDeduplicator contentDeduplicator;
+	
+	/**
+	 * Learns and skips the boilerplate subtrees of the pages, null to walk every subtree.
+	 */
+	private BoilerplateDetector boilerplateDetector;
+	
+	/**
+	 * Constructor. Retrieves the pages with a {@link URLConnectionPageFetcher}.
+	 * 
+	 * @param linkScanners used by this {@link WebCrawler} to identify all the links.
+	 * @param pageRepository storage of all the pages that have been discovered.
+	 * @param numberOfCrawlers the number of crawler threads to create
+	 * @param pageAnalyzer for analysing information on pages.
+	 */
+	public WebCrawler(List<HTMLLinkScanner> linkScanners, LinkRepository pageRepository, 
+			int numberOfCrawlers, List<PageAnalyser> pageAnalysers) {
+		this(linkScanners, pageRepository, numberOfCrawlers, pageAnalysers, new URLConnectionPageFetcher());
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param linkScanners used by this {@link WebCrawler} to identify all the links.
+	 * @param pageRepository storage of all the pages that have been discovered.
+	 * @param numberOfCrawlers the number of crawler threads to create
+	 * @param pageAnalyzer for analysing information on pages.
+	 * @param pageFetcher for retrieving the content of each page.
+	 */
+	public WebCrawler(List<HTMLLinkScanner> linkScanners, LinkRepository pageRepository, 
+			int numberOfCrawlers, List<PageAnalyser> pageAnalysers, PageFetcher pageFetcher) {
+		this.htmlPageRepository = pageRepository;
+		this.pageFetcher = pageFetcher;
+		this.numberOfCrawlers = numberOfCrawlers;
+		this.pageCrawlers = new ArrayList<>();
+		this.linkScanners = new ArrayList<>(linkScanners);
+		this.pageAnalysers = new ArrayList<>(pageAnalysers);
+		this.retryScheduler = new FetchRetryScheduler(pageRepository);
+	}
+
+	/**
+	 * Skips the pages whose content has already been seen under another URL.
+	 * Must be set before {@link #initialiseCrawlers()}.
+	 * 
+	 * @param contentDeduplicator to recognise the duplicate pages with, null to
+	 *        process every page.
+	 */
+	public synchronized void setContentDeduplicator(ContentDeduplicator contentDeduplicator) {
+		this.contentDeduplicator = contentDeduplicator;
+	}
+
+	/**
+	 * Skips the subtrees found the same on every page of the site, such as the
+	 * menus and the footer, once they have been scanned and analysed on the
+	 * first pages.
+	 * Must be set before {@link #initialiseCrawlers()}.
+	 * 
+	 * @param boilerplateDetector to learn and skip the boilerplate subtrees with,
+	 *        null to walk every subtree.
+	 */
+	public synchronized void setBoilerplateDetector(BoilerplateDetector boilerplateDetector) {
+		this.boilerplateDetector = boilerplateDetector;
+	}
+
+	/**
+	 * Initialise all the page crawlers. The crawlers are started by
+	 * {@link #crawl(URL)} once the root URL has been put into the repository.
+	 */
+	public synchronized void initialiseCrawlers() {
+		PageProcessor pageProcessor = new PageProcessor(this.htmlPageRepository, this.pageFetcher, 
+				this.retryScheduler, this.linkScanners, this.pageAnalysers);
+		pageProcessor.setContentDeduplicator(this.contentDeduplicator);
+		pageProcessor.setBoilerplateDetector(this.boilerplateDetector);
+		for (int i = 0; i < numberOfCrawlers; i++) {
+			this.pageCrawlers.add(new PageCrawler(this.htmlPageRepository, pageProcessor));
+		}
+	}
+	
+	/**
+	 * This recursively crawls through the URLs that are found through the pages,
+	 * and only stop until reach the end. It needs to check for uniqueness of each
+	 * URL to avoid an endless loop.
+	 * 
+	 * @param rootURL under which all the web pages are crawled. 
+	 */
+	public void crawl(URL rootURL) {
+		System.out.println("Crawling " + rootURL.toString());
+		this.htmlPageRepository.insert(new HTMLLink(rootURL));
+		
+		/*
+		 * Iterate through the web pages using the Breadth-first search approach.
+		 * The crawlers take pages from the repository themselves, and wait on it
+		 * when it is empty. The crawl is finished once the queue is empty and no
+		 * crawler is still working on a page.
+		 */ 
+		for (PageCrawler pageCrawler : this.pageCrawlers) {
+			pageCrawler.start();
+		}
+		
+		try {
+			this.htmlPageRepository.awaitAllLinksVisited();
+		} catch (InterruptedException e) {
+			// Stop the crawlers below if the crawl itself is interrupted.
+			Thread.currentThread().interrupt();
+		}
+		
+		// Stop each thread.
+		for (PageCrawler pageCrawler : this.pageCrawlers) {
+			pageCrawler.stopCrawling();
+			try {
+				pageCrawler.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+		this.retryScheduler.shutdown();
+		
+		System.out.println("Finished Crawling " + rootURL.toString());
+		System.out.println("Found " + this.htmlPageRepository.getNumberOfLinksDiscovered() + " links");
+		return;
+	}
+}
@@ -1,52 +1,372 @@
-package crawler;
-
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.util.Arrays;
-
-import page.HTMLLinkRepository;
-import policy.HTMLLinkScanner;
-import policy.LinkScanner;
-import policy.PageAnalyser;
-import price.PriceAnalyser;
-
-/**
- * This class represents the application that runs the web crawler to crawl
- * through the Zalora website for price errors.
- * 
- * @author ted.kuo
- */
-public class WebCrawlerApplication {
-
-	/**
-	 * The main class to trigger the application
-	 * 
-	 * @param args argument to this console application
-	 */
-	public static void main(String[] args) {
-		
-		String url = "http://www.zalora.sg";
-		
-		/* It's assumed that price is stated in the same currency to what the url
-		 * site uses, and the site only uses 1 currency.
-		 */
-		double minPrice = 20; 
-		double maxPrice = 2000;
-		
-		URL rootURL = null;
-		try {
-			rootURL = new URL(url);
-		} catch (MalformedURLException e) {
-			System.err.println("The given URL: " + url + " is malformed.");
-		}
-
-		PageAnalyser priceAnalyzer = new PriceAnalyser(minPrice, maxPrice);
-
-		HTMLLinkRepository htmlPageRepository = new HTMLLinkRepository();
-		HTMLLinkScanner linkScanner = new LinkScanner(rootURL.getHost());
-		WebCrawler webCrawler = new WebCrawler(Arrays.asList(linkScanner), htmlPageRepository, 50, Arrays.asList(priceAnalyzer));
-		
-		webCrawler.initialiseCrawlers();
-		webCrawler.crawl(rootURL);
-	}
-}
+package crawler;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import fetch.CachingPageFetcher;
+import fetch.HttpClientPageFetcher;
+import fetch.PageFetcher;
+import fetch.PolitePageFetcher;
+import fetch.PolitenessSettings;
+import fetch.WarcRecordingPageFetcher;
+import fetch.WarcReplayPageFetcher;
+import page.BloomSeenLinkSet;
+import page.ConcurrentHTMLLinkRepository;
+import page.CrawlJournal;
+import page.FingerprintSeenLinkSet;
+import page.HTMLLink;
+import page.LinkFrontier;
+import page.LinkRepository;
+import page.QueueLinkFrontier;
+import page.SeenLinkSet;
+import page.SpillingLinkFrontier;
+import policy.BoilerplateDetector;
+import policy.HTMLLinkScanner;
+import policy.LinkFilter;
+import policy.LinkScanner;
+import policy.ResolvedLinkCache;
+import policy.PageAnalyser;
+import price.PriceAnalyser;
+
+/**
+ * This class represents the application that runs the web crawler to crawl
+ * through the Zalora website for price errors.
+ * 
+ * @author ted.kuo
+ */
+public class WebCrawlerApplication {
+
+	/**
+	 * Argument to crawl with one virtual thread per link rather than a fixed
+	 * number of crawler threads.
+	 */
+	private static final String VIRTUAL_THREADS_ARGUMENT = "--virtual-threads";
+	
+	/**
+	 * Argument to crawl with separate fetch, parse, scan and analyse stages.
+	 */
+	private static final String PIPELINE_ARGUMENT = "--pipeline";
+	
+	/**
+	 * Argument to remember the links discovered in a Bloom filter of a fixed
+	 * size, rather than exactly.
+	 */
+	private static final String BLOOM_FILTER_ARGUMENT = "--bloom-filter";
+	
+	/**
+	 * Argument to spill the links waiting to be crawled to disk, rather than
+	 * keep them all on the heap.
+	 */
+	private static final String SPILL_FRONTIER_ARGUMENT = "--spill-frontier";
+	
+	/**
+	 * Argument to journal the crawl, and resume the crawl journaled last time if
+	 * it didn't finish.
+	 */
+	private static final String JOURNAL_ARGUMENT = "--journal";
+	
+	/**
+	 * The directory the crawl is journaled to.
+	 */
+	private static final String JOURNAL_DIRECTORY = "crawl-journal";
+	
+	/**
+	 * Argument to keep the pages in an HTTP cache, so the next crawl only
+	 * downloads the pages that have changed.
+	 */
+	private static final String CACHE_ARGUMENT = "--cache";
+	
+	/**
+	 * The directory of the HTTP cache.
+	 */
+	private static final String CACHE_DIRECTORY = "page-cache";
+	
+	/**
+	 * Argument to record every response of the crawl into a WARC archive.
+	 */
+	private static final String RECORD_ARGUMENT = "--record";
+	
+	/**
+	 * Argument to crawl the responses of the WARC archive rather than the network.
+	 */
+	private static final String REPLAY_ARGUMENT = "--replay";
+	
+	/**
+	 * The directory of the WARC archive.
+	 */
+	private static final String ARCHIVE_DIRECTORY = "crawl-archive";
+	
+	/**
+	 * Argument to skip the pages whose words nearly match those of a page
+	 * already crawled, rather than only the exact duplicates.
+	 */
+	private static final String NEAR_DUPLICATES_ARGUMENT = "--near-duplicates";
+	
+	/**
+	 * Argument to stop walking the subtrees found the same on every page, such
+	 * as the menus and the footer, once they have been learned. The analysers
+	 * don't see those subtrees either.
+	 */
+	private static final String SKIP_BOILERPLATE_ARGUMENT = "--skip-boilerplate";
+	
+	/**
+	 * Argument to seed the crawl with the pages listed in the sitemaps of the site.
+	 */
+	private static final String SITEMAP_ARGUMENT = "--sitemap";
+	
+	/**
+	 * Argument to decide which links are crawled by the rules of the link filter file.
+	 */
+	private static final String LINK_FILTER_ARGUMENT = "--link-filter";
+	
+	/**
+	 * The file of the rules of the link filter.
+	 */
+	private static final String LINK_FILTER_FILE = "link-filter.rules";
+	
+	/**
+	 * The memory used by the Bloom filter, in bytes.
+	 */
+	private static final long BLOOM_FILTER_MEMORY_BYTES = 256L * 1024 * 1024;
+	
+	/**
+	 * The rate of new links the Bloom filter takes as already seen, once full.
+	 */
+	private static final double BLOOM_FILTER_FALSE_POSITIVE_RATE = 0.001;
+	
+	/**
+	 * The number of href values the link scanner remembers, to drop the repeated ones.
+	 */
+	private static final int RESOLVED_LINK_CACHE_CAPACITY = 64 * 1024;
+	
+	/**
+	 * The number of crawler threads used by the default crawl mode.
+	 */
+	private static final int NUMBER_OF_CRAWLERS = 50;
+	
+	/**
+	 * The maximum number of links crawled at the same time in the virtual thread mode.
+	 */
+	private static final int MAX_CONCURRENT_CRAWLS = 2000;
+	
+	/**
+	 * The main class to trigger the application
+	 * 
+	 * @param args argument to this console application, {@value #VIRTUAL_THREADS_ARGUMENT}
+	 *        to crawl with a virtual thread per link, or {@value #PIPELINE_ARGUMENT} to
+	 *        crawl in stages. {@value #BLOOM_FILTER_ARGUMENT} remembers the links
+	 *        discovered in a Bloom filter of a fixed size, and 
+	 *        {@value #SPILL_FRONTIER_ARGUMENT} spills the links waiting to be 
+	 *        crawled to disk. {@value #JOURNAL_ARGUMENT} journals the crawl so it
+	 *        can be resumed, and {@value #CACHE_ARGUMENT} keeps the pages in an
+	 *        HTTP cache between crawls. {@value #SITEMAP_ARGUMENT} seeds the crawl
+	 *        with the pages listed in the sitemaps of the site, and
+	 *        {@value #LINK_FILTER_ARGUMENT} crawls the links allowed by the rules
+	 *        of {@value #LINK_FILTER_FILE} rather than all those under the host.
+	 *        {@value #RECORD_ARGUMENT} records the responses into a WARC archive,
+	 *        and {@value #REPLAY_ARGUMENT} crawls that archive instead of the
+	 *        network, so a crawl can be benchmarked offline.
+	 *        {@value #NEAR_DUPLICATES_ARGUMENT} skips the pages nearly the same as
+	 *        one already crawled, which may skip prices, as well as exact duplicates.
+	 */
+	public static void main(String[] args) {
+		
+		String url = "http://www.zalora.sg";
+		
+		/* It's assumed that price is stated in the same currency to what the url
+		 * site uses, and the site only uses 1 currency.
+		 */
+		double minPrice = 20; 
+		double maxPrice = 2000;
+		
+		URL rootURL = null;
+		try {
+			rootURL = new URL(url);
+		} catch (MalformedURLException e) {
+			System.err.println("The given URL: " + url + " is malformed.");
+		}
+
+		PageAnalyser priceAnalyzer = new PriceAnalyser(minPrice, maxPrice);
+
+		SeenLinkSet seenLinks;
+		if (Arrays.asList(args).contains(BLOOM_FILTER_ARGUMENT)) {
+			seenLinks = new BloomSeenLinkSet(BLOOM_FILTER_MEMORY_BYTES, BLOOM_FILTER_FALSE_POSITIVE_RATE);
+		}
+		else {
+			seenLinks = new FingerprintSeenLinkSet();
+		}
+		LinkFrontier unvisitedLinks;
+		Path frontierDirectory = null;
+		if (Arrays.asList(args).contains(SPILL_FRONTIER_ARGUMENT)) {
+			try {
+				frontierDirectory = Files.createTempDirectory("frontier");
+				// Still removed if the application gives up before crawling, when it's left empty.
+				frontierDirectory.toFile().deleteOnExit();
+				unvisitedLinks = new SpillingLinkFrontier(frontierDirectory);
+			} catch (IOException e) {
+				System.err.println("Error:" + e.getMessage() + " creating the frontier directory.");
+				return;
+			}
+		}
+		else {
+			unvisitedLinks = new QueueLinkFrontier(new ConcurrentLinkedQueue<HTMLLink>());
+		}
+		LinkRepository htmlPageRepository = new ConcurrentHTMLLinkRepository(seenLinks, unvisitedLinks);
+		
+		CrawlJournal crawlJournal = null;
+		if (Arrays.asList(args).contains(JOURNAL_ARGUMENT)) {
+			try {
+				crawlJournal = new CrawlJournal(Paths.get(JOURNAL_DIRECTORY));
+				int numberOfLinksResumed = crawlJournal.recover(htmlPageRepository);
+				System.out.println("Resumed " + htmlPageRepository.getNumberOfLinksDiscovered() + " links, " 
+						+ numberOfLinksResumed + " still to be crawled");
+			} catch (IOException e) {
+				System.err.println("Error:" + e.getMessage() + " reading the journal in: " + JOURNAL_DIRECTORY);
+				return;
+			}
+			htmlPageRepository.setCrawlJournal(crawlJournal);
+		}
+		
+		if (Arrays.asList(args).contains(SITEMAP_ARGUMENT)) {
+			long numberOfLinksSeeded = new SitemapSeeder(htmlPageRepository, rootURL.getHost()).seed(rootURL);
+			System.out.println("Seeded " + numberOfLinksSeeded + " links from the sitemaps");
+		}
+		
+		LinkScanner linkScanner;
+		if (Arrays.asList(args).contains(LINK_FILTER_ARGUMENT)) {
+			try {
+				linkScanner = new LinkScanner(LinkFilter.load(Paths.get(LINK_FILTER_FILE)));
+			} catch (IOException | IllegalArgumentException e) {
+				System.err.println("Error:" + e.getMessage() + " reading the link filter: " + LINK_FILTER_FILE);
+				return;
+			}
+		}
+		else {
+			linkScanner = new LinkScanner(rootURL.getHost());
+		}
+		// The header, footer and menu anchors of every page are only resolved once.
+		ResolvedLinkCache resolvedLinkCache = new ResolvedLinkCache(RESOLVED_LINK_CACHE_CAPACITY);
+		linkScanner.setResolvedLinkCache(resolvedLinkCache);
+		PageFetcher pageFetcher;
+		if (Arrays.asList(args).contains(REPLAY_ARGUMENT)) {
+			try {
+				// Straight from disk, there is no host to be polite to.
+				pageFetcher = new WarcReplayPageFetcher(Paths.get(ARCHIVE_DIRECTORY));
+			} catch (IOException e) {
+				System.err.println("Error:" + e.getMessage() + " reading the archive in: " + ARCHIVE_DIRECTORY);
+				return;
+			}
+		}
+		else {
+			pageFetcher = new PolitePageFetcher(new HttpClientPageFetcher(), new PolitenessSettings());
+		}
+		CachingPageFetcher cachingPageFetcher = null;
+		if (Arrays.asList(args).contains(CACHE_ARGUMENT)) {
+			try {
+				cachingPageFetcher = new CachingPageFetcher(pageFetcher, Paths.get(CACHE_DIRECTORY));
+				pageFetcher = cachingPageFetcher;
+			} catch (IOException e) {
+				System.err.println("Error:" + e.getMessage() + " creating the cache in: " + CACHE_DIRECTORY);
+				return;
+			}
+		}
+		WarcRecordingPageFetcher recordingPageFetcher = null;
+		if (Arrays.asList(args).contains(RECORD_ARGUMENT)) {
+			try {
+				recordingPageFetcher = new WarcRecordingPageFetcher(pageFetcher, Paths.get(ARCHIVE_DIRECTORY));
+				pageFetcher = recordingPageFetcher;
+			} catch (IOException e) {
+				System.err.println("Error:" + e.getMessage() + " creating the archive in: " + ARCHIVE_DIRECTORY);
+				return;
+			}
+		}
+		
+		// Colour variants and sort orders of a listing are the same page under different URLs.
+		ContentDeduplicator contentDeduplicator;
+		if (Arrays.asList(args).contains(NEAR_DUPLICATES_ARGUMENT)) {
+			// Product pages differing only in their name and price can be near duplicates too.
+			contentDeduplicator = new ContentDeduplicator(ContentDeduplicator.DEFAULT_MAX_HAMMING_DISTANCE);
+		}
+		else {
+			contentDeduplicator = new ContentDeduplicator();
+		}
+		BoilerplateDetector boilerplateDetector = null;
+		if (Arrays.asList(args).contains(SKIP_BOILERPLATE_ARGUMENT)) {
+			// The menus and footer of every page are only walked until they're learned.
+			boilerplateDetector = new BoilerplateDetector();
+		}
+		
+		if (Arrays.asList(args).contains(VIRTUAL_THREADS_ARGUMENT)) {
+			VirtualThreadWebCrawler webCrawler = new VirtualThreadWebCrawler(Arrays.<HTMLLinkScanner>asList(linkScanner), 
+					htmlPageRepository, MAX_CONCURRENT_CRAWLS, Arrays.asList(priceAnalyzer), pageFetcher);
+			webCrawler.setContentDeduplicator(contentDeduplicator);
+			webCrawler.setBoilerplateDetector(boilerplateDetector);
+			webCrawler.crawl(rootURL);
+		}
+		else if (Arrays.asList(args).contains(PIPELINE_ARGUMENT)) {
+			PipelineWebCrawler webCrawler = new PipelineWebCrawler(Arrays.<HTMLLinkScanner>asList(linkScanner), 
+					htmlPageRepository, Arrays.asList(priceAnalyzer), pageFetcher, new PipelineSettings());
+			webCrawler.setContentDeduplicator(contentDeduplicator);
+			webCrawler.setBoilerplateDetector(boilerplateDetector);
+			webCrawler.crawl(rootURL);
+		}
+		else {
+			WebCrawler webCrawler = new WebCrawler(Arrays.<HTMLLinkScanner>asList(linkScanner), htmlPageRepository, 
+					NUMBER_OF_CRAWLERS, Arrays.asList(priceAnalyzer), pageFetcher);
+			
+			webCrawler.setContentDeduplicator(contentDeduplicator);
+			webCrawler.setBoilerplateDetector(boilerplateDetector);
+			webCrawler.initialiseCrawlers();
+			webCrawler.crawl(rootURL);
+		}
+		
+		System.out.println(contentDeduplicator);
+		System.out.println(resolvedLinkCache);
+		if (boilerplateDetector != null) {
+			System.out.println(boilerplateDetector);
+		}
+		if (cachingPageFetcher != null) {
+			// Kept apart from the page fetcher, which may be the recording fetcher around it.
+			System.out.println(cachingPageFetcher.getNumberOfPagesNotModified() + " pages not modified, " 
+					+ cachingPageFetcher.getNumberOfPagesDownloaded() + " downloaded");
+		}
+		if (seenLinks instanceof BloomSeenLinkSet) {
+			System.out.println(seenLinks);
+		}
+		if (recordingPageFetcher != null) {
+			try {
+				recordingPageFetcher.close();
+			} catch (IOException e) {
+				System.err.println("Error:" + e.getMessage() + " closing the archive in: " + ARCHIVE_DIRECTORY);
+			}
+		}
+		if (crawlJournal != null) {
+			try {
+				if (!Thread.currentThread().isInterrupted() && htmlPageRepository.isAllLinksVisited()) {
+					// Nothing is left to resume, the next crawl starts afresh.
+					crawlJournal.finish();
+				}
+				else {
+					crawlJournal.close();
+				}
+			} catch (IOException e) {
+				System.err.println("Error:" + e.getMessage() + " closing the journal in: " + JOURNAL_DIRECTORY);
+			}
+		}
+		if (unvisitedLinks instanceof SpillingLinkFrontier) {
+			try {
+				((SpillingLinkFrontier) unvisitedLinks).close();
+				Files.deleteIfExists(frontierDirectory);
+			} catch (IOException e) {
+				System.err.println("Error:" + e.getMessage() + " deleting the frontier segments in: " 
+						+ frontierDirectory);
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package fetch;
+
+/**
+ * Thrown when the body of a page is larger than a {@link PageFetcher} is
+ * willing to download. The download is abandoned as soon as that is known.
+ * 
+ * @author ted.kuo
+ */
+public class BodyTooLargeException extends RejectedResponseException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param maxBodySize the largest body allowed, in bytes.
+	 */
+	public BodyTooLargeException(long maxBodySize) {
+		super("the body is larger than " + maxBodySize + " bytes");
+	}
+
+	/**
+	 * Constructor, for a response rejected from its headers.
+	 * 
+	 * @param maxBodySize the largest body allowed, in bytes.
+	 * @param statusCode of the response.
+	 * @param contentType of the response, null if unknown.
+	 * @param contentLength of the response.
+	 */
+	public BodyTooLargeException(long maxBodySize, int statusCode, String contentType, long contentLength) {
+		super("the body is larger than " + maxBodySize + " bytes", statusCode, contentType, contentLength);
+	}
+}
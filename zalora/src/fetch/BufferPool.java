@@ -0,0 +1,97 @@
+package fetch;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of byte array chunks of the same size, which the bodies of pages are
+ * read into. Chunks are taken from the pool and given back once the page has
+ * been parsed, so the fetchers reuse the same few chunks instead of
+ * allocating new arrays the size of every page.
+ * 
+ * @author ted.kuo
+ */
+public class BufferPool {
+
+	/**
+	 * The size of each chunk, in bytes.
+	 */
+	private final int chunkSize;
+	
+	/**
+	 * The maximum number of free chunks kept, any more given back are left to
+	 * the garbage collector.
+	 */
+	private final int maxFreeChunks;
+	
+	/**
+	 * The free chunks.
+	 */
+	private final Queue<byte[]> freeChunks;
+	
+	/**
+	 * The number of free chunks, as the size of the queue itself is not constant time.
+	 */
+	private final AtomicInteger numberOfFreeChunks;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param chunkSize the size of each chunk, in bytes.
+	 * @param maxFreeChunks the maximum number of free chunks kept.
+	 */
+	public BufferPool(int chunkSize, int maxFreeChunks) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+		this.maxFreeChunks = maxFreeChunks;
+		this.freeChunks = new ConcurrentLinkedQueue<>();
+		this.numberOfFreeChunks = new AtomicInteger();
+	}
+	
+	/**
+	 * Takes a chunk from the pool, or allocates a new one if there is none free.
+	 * 
+	 * @return a chunk of {@link #getChunkSize()} bytes, its content is undefined.
+	 */
+	public byte[] acquire() {
+		byte[] chunk = this.freeChunks.poll();
+		if (chunk == null) {
+			return new byte[this.chunkSize];
+		}
+		this.numberOfFreeChunks.decrementAndGet();
+		return chunk;
+	}
+	
+	/**
+	 * Gives a chunk back to the pool. It must not be used after this.
+	 * 
+	 * @param chunk taken by {@link #acquire()}.
+	 */
+	public void release(byte[] chunk) {
+		if (chunk.length != this.chunkSize) {
+			return;
+		}
+		if (this.numberOfFreeChunks.incrementAndGet() > this.maxFreeChunks) {
+			this.numberOfFreeChunks.decrementAndGet();
+			return;
+		}
+		this.freeChunks.add(chunk);
+	}
+	
+	/**
+	 * @return the size of each chunk, in bytes.
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+	
+	/**
+	 * @return the number of free chunks in the pool.
+	 */
+	public int getNumberOfFreeChunks() {
+		return this.numberOfFreeChunks.get();
+	}
+}
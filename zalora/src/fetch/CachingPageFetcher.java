@@ -0,0 +1,320 @@
+package fetch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import page.HTMLLink;
+
+/**
+ * A {@link PageFetcher} that keeps the pages retrieved by another fetcher in
+ * an on-disk HTTP cache, so a recrawl mostly revalidates pages rather than
+ * downloading them again. Each page is stored under the fingerprint of its
+ * canonical URL, with its ETag and Last-Modified validators and its body
+ * gzip compressed. A page already in the cache is requested with
+ * If-None-Match and If-Modified-Since, and when the host answers 304 Not
+ * Modified, the cached body is returned instead, in a response marked
+ * {@link PageResponse#isNotModified()}.
+ *
+ * Only successful responses with at least one validator are cached, as the
+ * others could never be revalidated.
+ *
+ * @author ted.kuo
+ */
+public class CachingPageFetcher implements PageFetcher {
+
+	/**
+	 * Marks the start of a cache file, and its format.
+	 */
+	private static final int CACHE_FILE_MAGIC = 0x5A434331;
+
+	/**
+	 * The largest cached body read back, in bytes.
+	 */
+	private static final long MAX_CACHED_BODY_SIZE = 10 * 1024 * 1024;
+
+	/**
+	 * Retrieves the pages from the network.
+	 */
+	private PageFetcher pageFetcher;
+
+	/**
+	 * Directory of the cache files.
+	 */
+	private Path directory;
+
+	/**
+	 * The pool the cached bodies are read back into.
+	 */
+	private BufferPool bufferPool;
+
+	/**
+	 * The number of pages answered from the cache after a 304.
+	 */
+	private AtomicLong numberOfPagesNotModified;
+
+	/**
+	 * The number of pages downloaded in full.
+	 */
+	private AtomicLong numberOfPagesDownloaded;
+
+	/**
+	 * Constructor
+	 *
+	 * @param pageFetcher to retrieve the pages from the network with.
+	 * @param directory of the cache files, created if it doesn't exist.
+	 * @throws IOException if the directory can't be created.
+	 */
+	public CachingPageFetcher(PageFetcher pageFetcher, Path directory) throws IOException {
+		this.pageFetcher = pageFetcher;
+		this.directory = directory;
+		this.bufferPool = new BufferPool(16 * 1024, 256);
+		this.numberOfPagesNotModified = new AtomicLong();
+		this.numberOfPagesDownloaded = new AtomicLong();
+		Files.createDirectories(directory);
+	}
+
+	@Override
+	public CompletableFuture<PageResponse> fetch(HTMLLink link) {
+		return fetch(link, Collections.<String, String>emptyMap());
+	}
+
+	@Override
+	public CompletableFuture<PageResponse> fetch(final HTMLLink link, Map<String, String> requestHeaders) {
+		final CacheEntry cacheEntry = readCacheEntry(link);
+		Map<String, String> conditionalHeaders = new HashMap<>(requestHeaders);
+		if (cacheEntry != null) {
+			if (!cacheEntry.eTag.isEmpty()) {
+				conditionalHeaders.put("If-None-Match", cacheEntry.eTag);
+			}
+			if (!cacheEntry.lastModified.isEmpty()) {
+				conditionalHeaders.put("If-Modified-Since", cacheEntry.lastModified);
+			}
+		}
+
+		return this.pageFetcher.fetch(link, conditionalHeaders).thenCompose(response -> {
+			if (response.getStatusCode() == 304 && cacheEntry != null) {
+				response.release();
+				try {
+					return CompletableFuture.completedFuture(toNotModifiedResponse(link, cacheEntry));
+				} catch (IOException e) {
+					// The cached body is unreadable, so download the page again.
+					System.err.println("Error:" + e.getMessage() + " reading the cache for link: " + link.getCanonicalPageURLString());
+					deleteCacheEntry(link);
+					return fetch(link, requestHeaders);
+				}
+			}
+			if (response.isSuccessful()) {
+				this.numberOfPagesDownloaded.incrementAndGet();
+				writeCacheEntry(link, response);
+			}
+			return CompletableFuture.completedFuture(response);
+		});
+	}
+
+	/**
+	 * @return the number of pages answered from the cache after a 304.
+	 */
+	public long getNumberOfPagesNotModified() {
+		return this.numberOfPagesNotModified.get();
+	}
+
+	/**
+	 * @return the number of pages downloaded in full.
+	 */
+	public long getNumberOfPagesDownloaded() {
+		return this.numberOfPagesDownloaded.get();
+	}
+
+	/**
+	 * Builds the response of a page that hasn't changed from its cache entry.
+	 *
+	 * @param link of the page.
+	 * @param cacheEntry of the page.
+	 * @return the cached response.
+	 * @throws IOException if the cached body can't be read.
+	 */
+	private PageResponse toNotModifiedResponse(HTMLLink link, CacheEntry cacheEntry) throws IOException {
+		PageBody body;
+		try (DataInputStream in = openCacheFile(link)) {
+			readHeader(in);
+			body = PageBody.read(new GZIPInputStream(in), this.bufferPool, MAX_CACHED_BODY_SIZE);
+		}
+		Map<String, List<String>> headers = new HashMap<>();
+		if (!cacheEntry.contentType.isEmpty()) {
+			headers.put("Content-Type", Collections.singletonList(cacheEntry.contentType));
+		}
+		this.numberOfPagesNotModified.incrementAndGet();
+		return new PageResponse(link, 200, headers, body, true);
+	}
+
+	/**
+	 * Reads the validators of the given link from its cache file.
+	 *
+	 * @param link to be looked up.
+	 * @return the cache entry, null if the link isn't cached.
+	 */
+	private CacheEntry readCacheEntry(HTMLLink link) {
+		Path file = getCacheFile(link);
+		if (!Files.exists(file)) {
+			return null;
+		}
+		try (DataInputStream in = openCacheFile(link)) {
+			CacheEntry cacheEntry = readHeader(in);
+			// A different URL with the same fingerprint.
+			return link.getCanonicalPageURLString().equals(cacheEntry.url) ? cacheEntry : null;
+		} catch (IOException e) {
+			System.err.println("Error:" + e.getMessage() + " reading the cache for link: " + link.getCanonicalPageURLString());
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the given response in the cache, if it has a validator. The file is
+	 * written aside and moved into place, so a crawl dying half way never leaves
+	 * a broken entry.
+	 *
+	 * @param link the response was retrieved for.
+	 * @param response to be stored.
+	 */
+	private void writeCacheEntry(HTMLLink link, PageResponse response) {
+		String eTag = response.getHeader("ETag");
+		String lastModified = response.getHeader("Last-Modified");
+		String cacheControl = response.getHeader("Cache-Control");
+		if ((eTag == null && lastModified == null) || (cacheControl != null && cacheControl.contains("no-store"))) {
+			return;
+		}
+
+		Path file = getCacheFile(link);
+		Path temporaryFile = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			Files.createDirectories(file.getParent());
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+				out.writeInt(CACHE_FILE_MAGIC);
+				out.writeUTF(link.getCanonicalPageURLString());
+				out.writeUTF(eTag == null ? "" : eTag);
+				out.writeUTF(lastModified == null ? "" : lastModified);
+				String contentType = response.getHeader("Content-Type");
+				out.writeUTF(contentType == null ? "" : contentType);
+				try (OutputStream body = new GZIPOutputStream(out);
+						InputStream in = response.openBody()) {
+					byte[] buffer = new byte[8 * 1024];
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						body.write(buffer, 0, read);
+					}
+				}
+			}
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println("Error:" + e.getMessage() + " writing the cache for link: " + link.getCanonicalPageURLString());
+			try {
+				Files.deleteIfExists(temporaryFile);
+			} catch (IOException deleteFailure) {
+				// Left for the next crawl to overwrite.
+			}
+		}
+	}
+
+	/**
+	 * Removes the given link from the cache.
+	 * 
+	 * @param link to be removed.
+	 */
+	private void deleteCacheEntry(HTMLLink link) {
+		try {
+			Files.deleteIfExists(getCacheFile(link));
+		} catch (IOException e) {
+			System.err.println("Error:" + e.getMessage() + " deleting the cache for link: " + link.getCanonicalPageURLString());
+		}
+	}
+
+	/**
+	 * @param link to be looked up.
+	 * @return the cache file of the link, whether or not it exists.
+	 */
+	private Path getCacheFile(HTMLLink link) {
+		String fingerprint = Long.toHexString(link.getCanonicalURL().getFingerprint());
+		// Spread over subdirectories, so no directory gets too large.
+		return this.directory.resolve(fingerprint.substring(0, Math.min(2, fingerprint.length()))).resolve(fingerprint);
+	}
+
+	/**
+	 * @param link to be looked up.
+	 * @return a stream of the cache file of the link.
+	 * @throws IOException if the file can't be opened.
+	 */
+	private DataInputStream openCacheFile(HTMLLink link) throws IOException {
+		return new DataInputStream(new BufferedInputStream(Files.newInputStream(getCacheFile(link))));
+	}
+
+	/**
+	 * Reads the header of a cache file, up to the body.
+	 *
+	 * @param in stream of the cache file.
+	 * @return the cache entry in the header.
+	 * @throws IOException if the file can't be read or isn't a cache file.
+	 */
+	private static CacheEntry readHeader(DataInputStream in) throws IOException {
+		if (in.readInt() != CACHE_FILE_MAGIC) {
+			throw new IOException("not a cache file");
+		}
+		return new CacheEntry(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+	}
+
+	/**
+	 * The header of a cache file. A missing value is empty.
+	 */
+	private static class CacheEntry {
+
+		/**
+		 * The canonical URL of the page.
+		 */
+		private final String url;
+
+		/**
+		 * The ETag of the page.
+		 */
+		private final String eTag;
+
+		/**
+		 * The Last-Modified date of the page.
+		 */
+		private final String lastModified;
+
+		/**
+		 * The Content-Type of the page.
+		 */
+		private final String contentType;
+
+		/**
+		 * Constructor
+		 *
+		 * @param url the canonical URL of the page.
+		 * @param eTag of the page.
+		 * @param lastModified date of the page.
+		 * @param contentType of the page.
+		 */
+		CacheEntry(String url, String eTag, String lastModified, String contentType) {
+			this.url = url;
+			this.eTag = eTag;
+			this.lastModified = lastModified;
+			this.contentType = contentType;
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package fetch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controls the requests sent to a single host. A token bucket limits the rate
+ * of requests, and the number of concurrent requests is adapted with additive
+ * increase, multiplicative decrease: every healthy response raises the limit
+ * by roughly one per round of requests, while throttling, errors or slow
+ * responses halve it. A 429 or 503 also stops all requests to the host for as
+ * long as its Retry-After header asks.
+ *
+ * @author ted.kuo
+ */
+public class HostThrottle {
+
+	/**
+	 * Weight of the latest response in the smoothed error rate.
+	 */
+	private static final double ERROR_RATE_WEIGHT = 0.1;
+
+	/**
+	 * Smoothed error rate above which the host is taken as overloaded.
+	 */
+	private static final double MAX_ERROR_RATE = 0.1;
+
+	/**
+	 * How long the host is paused for after a 429 or 503 without a Retry-After header.
+	 */
+	private static final long DEFAULT_RETRY_AFTER_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+	/**
+	 * Token bucket refill rate, in tokens per nanosecond.
+	 */
+	private final double tokensPerNano;
+
+	/**
+	 * Capacity of the token bucket.
+	 */
+	private final double burstSize;
+
+	/**
+	 * Maximum value of the concurrency limit.
+	 */
+	private final double maxConcurrency;
+
+	/**
+	 * Responses slower than this are taken as a sign of overload.
+	 */
+	private final long latencyTargetNanos;
+
+	/**
+	 * Tokens currently in the bucket.
+	 */
+	private double tokens;
+
+	/**
+	 * When the bucket was last refilled.
+	 */
+	private long lastRefillNanos;
+
+	/**
+	 * The number of requests allowed at the same time, fractional so it can grow
+	 * by less than one per response.
+	 */
+	private double concurrencyLimit;
+
+	/**
+	 * The number of requests currently being sent.
+	 */
+	private int requestsInFlight;
+
+	/**
+	 * Smoothed fraction of the responses that failed.
+	 */
+	private double errorRate;
+
+	/**
+	 * No request is sent before this time.
+	 */
+	private long pausedUntilNanos;
+
+	/**
+	 * The limit is not decreased again before this time, so that a burst of
+	 * failures from the same round of requests only halves it once.
+	 */
+	private long nextDecreaseNanos;
+
+	/**
+	 * Constructor
+	 *
+	 * @param settings of the rate and concurrency allowed.
+	 */
+	public HostThrottle(PolitenessSettings settings) {
+		this.tokensPerNano = settings.getRequestsPerSecond() / TimeUnit.SECONDS.toNanos(1);
+		this.burstSize = settings.getBurstSize();
+		this.maxConcurrency = settings.getMaxConcurrency();
+		this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(settings.getLatencyTargetMillis());
+		this.tokens = this.burstSize;
+		this.lastRefillNanos = System.nanoTime();
+		this.concurrencyLimit = Math.min(settings.getInitialConcurrency(), this.maxConcurrency);
+		this.pausedUntilNanos = this.lastRefillNanos;
+		this.nextDecreaseNanos = this.lastRefillNanos;
+	}
+
+	/**
+	 * Waits until a request may be sent to the host: there is a token in the
+	 * bucket, the host is not paused, and fewer requests than the limit are in
+	 * flight. Each successful call must be followed by a call to
+	 * {@link #release(long, PageResponse, Throwable)}.
+	 *
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		while (true) {
+			long now = System.nanoTime();
+			refill(now);
+
+			long waitNanos;
+			if (now - this.pausedUntilNanos < 0) {
+				waitNanos = this.pausedUntilNanos - now;
+			}
+			else if (this.requestsInFlight >= (int) this.concurrencyLimit) {
+				// Woken up by release().
+				waitNanos = 0;
+			}
+			else if (this.tokens < 1) {
+				waitNanos = (long) Math.ceil((1 - this.tokens) / this.tokensPerNano);
+			}
+			else {
+				this.tokens--;
+				this.requestsInFlight++;
+				return;
+			}
+
+			if (waitNanos == 0) {
+				this.wait();
+			}
+			else {
+				TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+			}
+		}
+	}
+
+	/**
+	 * Records the outcome of a request allowed by {@link #acquire()}, and adapts
+	 * the concurrency limit to it.
+	 *
+	 * @param latencyNanos how long the request took.
+	 * @param response to the request, null if it failed.
+	 * @param failure that stopped the request, null if there was a response.
+	 */
+	public synchronized void release(long latencyNanos, PageResponse response, Throwable failure) {
+		this.requestsInFlight--;
+		long now = System.nanoTime();
+
+		boolean isThrottled = response != null && (response.getStatusCode() == 429 || response.getStatusCode() == 503);
+		boolean isError = failure != null || (response != null && response.getStatusCode() >= 500);
+		this.errorRate += ERROR_RATE_WEIGHT * ((isError ? 1 : 0) - this.errorRate);
+
+		if (isThrottled) {
+			this.pausedUntilNanos = now + getRetryAfterNanos(response);
+			decrease(now);
+		}
+		else if (latencyNanos > this.latencyTargetNanos || (isError && this.errorRate > MAX_ERROR_RATE)) {
+			decrease(now);
+		}
+		else if (!isError) {
+			// Additive increase: one more request per round of healthy responses.
+			this.concurrencyLimit = Math.min(this.maxConcurrency, this.concurrencyLimit + 1 / this.concurrencyLimit);
+		}
+		this.notifyAll();
+	}
+
+	/**
+	 * @return the number of requests currently allowed at the same time.
+	 */
+	public synchronized int getConcurrencyLimit() {
+		return (int) this.concurrencyLimit;
+	}
+
+	/**
+	 * @return the number of requests currently being sent.
+	 */
+	public synchronized int getRequestsInFlight() {
+		return this.requestsInFlight;
+	}
+
+	/**
+	 * Halves the concurrency limit, at most once per round of requests.
+	 *
+	 * @param now the current time.
+	 */
+	private void decrease(long now) {
+		if (now - this.nextDecreaseNanos >= 0) {
+			this.concurrencyLimit = Math.max(1, this.concurrencyLimit / 2);
+			this.nextDecreaseNanos = now + this.latencyTargetNanos;
+		}
+	}
+
+	/**
+	 * Adds the tokens accumulated since the last refill.
+	 *
+	 * @param now the current time.
+	 */
+	private void refill(long now) {
+		this.tokens = Math.min(this.burstSize, this.tokens + (now - this.lastRefillNanos) * this.tokensPerNano);
+		this.lastRefillNanos = now;
+	}
+
+	/**
+	 * @param response that throttled the request.
+	 * @return how long the host asked to be left alone for.
+	 */
+	private static long getRetryAfterNanos(PageResponse response) {
+		String retryAfter = response.getHeader("Retry-After");
+		if (retryAfter != null) {
+			try {
+				return TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfter.trim()));
+			} catch (NumberFormatException e) {
+				// An HTTP-date rather than a number of seconds, use the default.
+			}
+		}
+		return DEFAULT_RETRY_AFTER_NANOS;
+	}
+}
@@ -0,0 +1,396 @@
+package fetch;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jsoup.parser.Parser;
+
+/**
+ * Pulls the href values of the anchors out of an HTML page while it streams
+ * past, without building a tree of the page. Only what's needed to find the
+ * anchors reliably is tokenized: tags and their attributes, comments and other
+ * markup declarations, and the raw text of script, style, textarea and title
+ * elements, in which a "&lt;a" isn't a tag. Character references in the href
+ * values are decoded the way Jsoup decodes them in attributes. The same
+ * tokenizing finds the charset the start of a page declares, in a meta tag or
+ * an XML declaration, so the charset can be sniffed without a tree either.
+ *
+ * @author ted.kuo
+ */
+public class HrefTokenizer {
+
+	/**
+	 * Elements whose content is text, not markup, up to their end tag.
+	 */
+	private static final String[] RAW_TEXT_ELEMENTS = { "script", "style", "textarea", "title" };
+
+	/**
+	 * The page being tokenized.
+	 */
+	private final PushbackReader in;
+
+	/**
+	 * Name of the tag or attribute being read, reused.
+	 */
+	private final StringBuilder name;
+
+	/**
+	 * Value of the attribute being read, reused.
+	 */
+	private final StringBuilder value;
+
+	/**
+	 * The charset declared by the first meta tag declaring one, null until it's found.
+	 */
+	private String metaCharset;
+
+	/**
+	 * The encoding of the XML declaration the page starts with, null if there's none.
+	 */
+	private String xmlEncoding;
+
+	/**
+	 * Constructor
+	 *
+	 * @param in the page to be tokenized, it's not closed.
+	 */
+	private HrefTokenizer(Reader in) {
+		this.in = new PushbackReader(in, 16);
+		this.name = new StringBuilder();
+		this.value = new StringBuilder();
+	}
+
+	/**
+	 * Returns the href values of the anchors of the given page, in the order of
+	 * the page.
+	 *
+	 * @param in the page, it's not closed.
+	 * @return the href values.
+	 * @throws IOException if the page can't be read.
+	 */
+	public static List<String> extractHrefs(Reader in) throws IOException {
+		List<String> hrefs = new ArrayList<>();
+		new HrefTokenizer(in).tokenize(hrefs);
+		return hrefs;
+	}
+
+	/**
+	 * Returns the charset the given start of a page declares, as Jsoup looks for
+	 * it: the first meta tag with a charset attribute, or with an http-equiv of
+	 * content-type whose content declares one, and otherwise the encoding of the
+	 * XML declaration the page starts with.
+	 *
+	 * @param in the start of the page, it's not closed.
+	 * @return the charset name, null if the page doesn't declare one.
+	 * @throws IOException if the page can't be read.
+	 */
+	public static String extractCharset(Reader in) throws IOException {
+		HrefTokenizer tokenizer = new HrefTokenizer(in);
+		tokenizer.tokenize(null);
+		return tokenizer.metaCharset != null ? tokenizer.metaCharset : tokenizer.xmlEncoding;
+	}
+
+	/**
+	 * Tokenizes the whole page, or only up to the first meta charset when
+	 * looking for the charset.
+	 *
+	 * @param hrefs to add the href values to, null to look for the charset instead.
+	 * @throws IOException if the page can't be read.
+	 */
+	private void tokenize(List<String> hrefs) throws IOException {
+		boolean isStart = true;
+		int c;
+		while ((hrefs != null || this.metaCharset == null) && (c = this.in.read()) != -1) {
+			if (c != '<') {
+				isStart = isStart && Character.isWhitespace(c);
+				continue;
+			}
+			c = this.in.read();
+			if (c == '!') {
+				skipMarkupDeclaration();
+			}
+			else if (c == '?' && isStart && hrefs == null) {
+				readXmlDeclaration();
+			}
+			else if (c == '?') {
+				skipPast('>');
+			}
+			else if (c == '/') {
+				skipPast('>');
+			}
+			else if (isLetter(c)) {
+				this.in.unread(c);
+				readStartTag(hrefs);
+			}
+			else if (c != -1) {
+				// A "<" that is just text.
+				this.in.unread(c);
+			}
+			isStart = false;
+		}
+	}
+
+	/**
+	 * Reads a start tag, adding its href value if it's an anchor, or noting the
+	 * charset it declares if it's a meta tag and the charset is looked for, and
+	 * skips the content of the element if it's raw text.
+	 *
+	 * @param hrefs to add the href value to, null if the charset is looked for.
+	 * @throws IOException if the page can't be read.
+	 */
+	private void readStartTag(List<String> hrefs) throws IOException {
+		readName(this.name);
+		String tagName = this.name.toString();
+		boolean isAnchor = hrefs != null && tagName.equals("a");
+		boolean isMeta = hrefs == null && tagName.equals("meta");
+		String href = null;
+		String httpEquiv = null;
+		String content = null;
+		String charset = null;
+
+		int c;
+		while ((c = skipWhitespace()) != -1 && c != '>') {
+			if (c == '/') {
+				continue;
+			}
+			this.in.unread(c);
+			readName(this.name);
+			c = skipWhitespace();
+			boolean hasValue = c == '=';
+			if (hasValue) {
+				readAttributeValue();
+			}
+			else if (c != -1) {
+				this.in.unread(c);
+			}
+			// The first of duplicate attributes wins, as it does in a parser.
+			if (isAnchor && href == null && hasValue && this.name.toString().equals("href")) {
+				href = Parser.unescapeEntities(this.value.toString(), true);
+			}
+			else if (isMeta) {
+				String attributeValue = hasValue ? Parser.unescapeEntities(this.value.toString(), true) : "";
+				String attributeName = this.name.toString();
+				if (httpEquiv == null && attributeName.equals("http-equiv")) {
+					httpEquiv = attributeValue;
+				}
+				else if (content == null && attributeName.equals("content")) {
+					content = attributeValue;
+				}
+				else if (charset == null && attributeName.equals("charset")) {
+					charset = attributeValue;
+				}
+			}
+		}
+		if (href != null) {
+			hrefs.add(href);
+		}
+		if (isMeta && (charset != null || (httpEquiv != null && httpEquiv.trim().equalsIgnoreCase("content-type")))) {
+			String metaCharset = httpEquiv != null ? PageResponse.getCharsetFromContentType(content) : null;
+			this.metaCharset = metaCharset != null ? metaCharset : charset;
+		}
+
+		for (String rawTextElement : RAW_TEXT_ELEMENTS) {
+			if (rawTextElement.equals(tagName)) {
+				skipRawText(tagName);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Reads a tag or attribute name, lower-cased, up to whitespace, "=", "/" or ">".
+	 *
+	 * @param to the builder to read the name into.
+	 * @throws IOException if the page can't be read.
+	 */
+	private void readName(StringBuilder to) throws IOException {
+		to.setLength(0);
+		int c;
+		while ((c = this.in.read()) != -1) {
+			if (Character.isWhitespace(c) || c == '=' || c == '>' || (c == '/' && to.length() > 0)) {
+				this.in.unread(c);
+				return;
+			}
+			to.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : (char) c);
+		}
+	}
+
+	/**
+	 * Reads an attribute value after its "=", quoted or not.
+	 *
+	 * @throws IOException if the page can't be read.
+	 */
+	private void readAttributeValue() throws IOException {
+		this.value.setLength(0);
+		int c = skipWhitespace();
+		if (c == '"' || c == '\'') {
+			int quote = c;
+			while ((c = this.in.read()) != -1 && c != quote) {
+				this.value.append((char) c);
+			}
+			return;
+		}
+		while (c != -1 && !Character.isWhitespace(c) && c != '>') {
+			this.value.append((char) c);
+			c = this.in.read();
+		}
+		if (c != -1) {
+			this.in.unread(c);
+		}
+	}
+
+	/**
+	 * Reads an XML declaration after its "&lt;?", noting its encoding.
+	 *
+	 * @throws IOException if the page can't be read.
+	 */
+	private void readXmlDeclaration() throws IOException {
+		readName(this.name);
+		boolean isXml = this.name.toString().equals("xml");
+		int c;
+		while ((c = skipWhitespace()) != -1 && c != '>') {
+			if (c == '?' || c == '/') {
+				continue;
+			}
+			this.in.unread(c);
+			readName(this.name);
+			c = skipWhitespace();
+			boolean hasValue = c == '=';
+			if (hasValue) {
+				readAttributeValue();
+			}
+			else if (c != -1) {
+				this.in.unread(c);
+			}
+			if (isXml && this.xmlEncoding == null && hasValue && this.name.toString().equals("encoding")) {
+				this.xmlEncoding = this.value.toString();
+			}
+		}
+	}
+
+	/**
+	 * Skips a comment, or a declaration such as a DOCTYPE or CDATA section.
+	 *
+	 * @throws IOException if the page can't be read.
+	 */
+	private void skipMarkupDeclaration() throws IOException {
+		int first = this.in.read();
+		int second = first == -1 ? -1 : this.in.read();
+		if (first == '-' && second == '-') {
+			skipPast("-->");
+			return;
+		}
+		if (second != -1) {
+			this.in.unread(second);
+		}
+		if (first != -1) {
+			this.in.unread(first);
+		}
+		skipPast('>');
+	}
+
+	/**
+	 * Skips the raw text content of an element up to and including its end tag.
+	 *
+	 * @param tagName of the element.
+	 * @throws IOException if the page can't be read.
+	 */
+	private void skipRawText(String tagName) throws IOException {
+		while (true) {
+			skipPast("</");
+			int matched = 0;
+			int c = 0;
+			while (matched < tagName.length() && (c = this.in.read()) != -1
+					&& Character.toLowerCase(c) == tagName.charAt(matched)) {
+				matched++;
+			}
+			if (c == -1) {
+				return;
+			}
+			if (matched == tagName.length()) {
+				c = this.in.read();
+				if (c == -1 || c == '>' || c == '/' || Character.isWhitespace(c)) {
+					if (c != '>') {
+						skipPast('>');
+					}
+					return;
+				}
+			}
+			// Something else, such as "</" in a string of a script.
+			this.in.unread(c);
+		}
+	}
+
+	/**
+	 * Skips past the given character.
+	 *
+	 * @param end the character to skip past.
+	 * @throws IOException if the page can't be read.
+	 */
+	private void skipPast(char end) throws IOException {
+		int c;
+		while ((c = this.in.read()) != -1 && c != end) {
+			// Skipped.
+		}
+	}
+
+	/**
+	 * Skips past the given sequence of characters.
+	 *
+	 * @param end the characters to skip past.
+	 * @throws IOException if the page can't be read.
+	 */
+	private void skipPast(String end) throws IOException {
+		int matched = 0;
+		int c;
+		while (matched < end.length() && (c = this.in.read()) != -1) {
+			if (c == end.charAt(matched)) {
+				matched++;
+			}
+			else if (c != end.charAt(0)) {
+				matched = 0;
+			}
+			else if (!isRunOfFirst(end, matched)) {
+				matched = 1;
+			}
+			// Otherwise, as in "--->", the characters matched are still a prefix of the end.
+		}
+	}
+
+	/**
+	 * @param end sequence of characters.
+	 * @param length of its prefix.
+	 * @return true if the prefix is made of its first character only.
+	 */
+	private static boolean isRunOfFirst(String end, int length) {
+		for (int i = 1; i < length; i++) {
+			if (end.charAt(i) != end.charAt(0)) {
+				return false;
+			}
+		}
+		return length > 0;
+	}
+
+	/**
+	 * @return the first character that isn't whitespace, -1 at the end of the page.
+	 * @throws IOException if the page can't be read.
+	 */
+	private int skipWhitespace() throws IOException {
+		int c;
+		while ((c = this.in.read()) != -1 && Character.isWhitespace(c)) {
+			// Skipped.
+		}
+		return c;
+	}
+
+	/**
+	 * @param c character of the page.
+	 * @return true if it's an ASCII letter, which starts a tag name.
+	 */
+	private static boolean isLetter(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+}
@@ -0,0 +1,294 @@
+package fetch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import page.HTMLLink;
+
+/**
+ * A non-blocking {@link PageFetcher} built on {@link HttpClient}. All the pages
+ * are retrieved through one shared client, so connections to a host are kept
+ * alive and reused, and multiplexed over HTTP/2 where the host supports it.
+ * Bodies are requested gzip or deflate encoded and decoded here.
+ * 
+ * The body is copied from the network buffers straight into chunks of a
+ * {@link BufferPool} as it arrives. The download is abandoned before any of it
+ * is read if the {@link ResponseGate} rejects the headers, and as soon as the
+ * bytes received show it's larger than the maximum body size. The body of an
+ * unsuccessful response is read off the connection but not kept.
+ * 
+ * @author ted.kuo
+ */
+public class HttpClientPageFetcher implements PageFetcher {
+
+	/**
+	 * Specifies the time out when connecting to a host.
+	 */
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+	
+	/**
+	 * Specifies the time out for the whole response to arrive.
+	 */
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+	
+	/**
+	 * The largest body downloaded by default, in bytes.
+	 */
+	private static final long DEFAULT_MAX_BODY_SIZE = 10 * 1024 * 1024;
+	
+	/**
+	 * The client shared by every fetch, it owns the connection pool.
+	 */
+	private HttpClient httpClient;
+	
+	/**
+	 * The pool the bodies are read into.
+	 */
+	private BufferPool bufferPool;
+	
+	/**
+	 * The largest body downloaded, in bytes.
+	 */
+	private long maxBodySize;
+	
+	/**
+	 * Constructor. Creates a client that prefers HTTP/2 and follows redirects.
+	 */
+	public HttpClientPageFetcher() {
+		this(HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(CONNECT_TIMEOUT)
+				.build());
+	}
+	
+	/**
+	 * Constructor. Downloads bodies of up to {@value #DEFAULT_MAX_BODY_SIZE} bytes.
+	 * 
+	 * @param httpClient to retrieve all the pages with.
+	 */
+	public HttpClientPageFetcher(HttpClient httpClient) {
+		this(httpClient, new BufferPool(16 * 1024, 1024), DEFAULT_MAX_BODY_SIZE);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param httpClient to retrieve all the pages with.
+	 * @param bufferPool the pool the bodies are read into.
+	 * @param maxBodySize the largest body downloaded, in bytes.
+	 */
+	public HttpClientPageFetcher(HttpClient httpClient, BufferPool bufferPool, long maxBodySize) {
+		if (httpClient == null) {
+			throw new IllegalArgumentException("the HTTP client cannot be null");
+		}
+		this.httpClient = httpClient;
+		this.bufferPool = bufferPool;
+		this.maxBodySize = maxBodySize;
+	}
+
+	@Override
+	public CompletableFuture<PageResponse> fetch(HTMLLink link) {
+		return fetch(link, Collections.<String, String>emptyMap());
+	}
+
+	@Override
+	public CompletableFuture<PageResponse> fetch(final HTMLLink link, Map<String, String> requestHeaders) {
+		HttpRequest request;
+		try {
+			HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(link.getPageURL().toURI())
+					.timeout(REQUEST_TIMEOUT)
+					.header("Accept", "text/html,application/xhtml+xml")
+					.header("Accept-Encoding", "gzip, deflate");
+			for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+				requestBuilder.header(header.getKey(), header.getValue());
+			}
+			request = requestBuilder.GET().build();
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return CompletableFuture.failedFuture(new IOException("Cannot request " + link.getCanonicalPageURLString(), e));
+		}
+		
+		BodyHandler<PageBody> bodyHandler = responseInfo -> {
+			try {
+				ResponseGate.check(responseInfo.statusCode(), 
+						responseInfo.headers().firstValue("Content-Type").orElse(null), 
+						responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1), this.maxBodySize);
+			} catch (RejectedResponseException e) {
+				return new PooledBodySubscriber(e, false);
+			}
+			return new PooledBodySubscriber(null, ResponseGate.isBodyWanted(responseInfo.statusCode()));
+		};
+		return this.httpClient.sendAsync(request, bodyHandler)
+				.thenApply(response -> toPageResponse(link, response));
+	}
+	
+	/**
+	 * Converts the given response, decoding its body.
+	 * 
+	 * @param link the response was retrieved for.
+	 * @param response to be converted.
+	 * @return the {@link PageResponse} of the given response.
+	 */
+	private PageResponse toPageResponse(HTMLLink link, HttpResponse<PageBody> response) {
+		String contentEncoding = response.headers().firstValue("Content-Encoding").orElse("identity");
+		try {
+			PageBody body = decode(response.body(), contentEncoding);
+			return new PageResponse(link, response.statusCode(), response.headers().map(), body);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Decodes the given body according to its Content-Encoding, releasing it if
+	 * it is decoded into a new body.
+	 * 
+	 * @param body to be decoded.
+	 * @param contentEncoding of the body.
+	 * @return the decoded body.
+	 * @throws IOException if the body is not validly encoded, or too large once decoded.
+	 */
+	private PageBody decode(PageBody body, String contentEncoding) throws IOException {
+		if ("gzip".equalsIgnoreCase(contentEncoding) || "x-gzip".equalsIgnoreCase(contentEncoding)) {
+			try (InputStream in = new GZIPInputStream(body.openStream())) {
+				return PageBody.read(in, this.bufferPool, this.maxBodySize);
+			}
+			finally {
+				body.release();
+			}
+		}
+		else if ("deflate".equalsIgnoreCase(contentEncoding)) {
+			// Servers disagree on whether deflate is zlib wrapped, so check the zlib header.
+			Inflater inflater;
+			try (InputStream header = body.openStream()) {
+				int first = header.read();
+				int second = header.read();
+				boolean isZlibWrapped = second != -1 && (first & 0x0F) == 8 && (first << 8 | second) % 31 == 0;
+				inflater = new Inflater(!isZlibWrapped);
+			}
+			try (InputStream in = new InflaterInputStream(body.openStream(), inflater)) {
+				return PageBody.read(in, this.bufferPool, this.maxBodySize);
+			}
+			finally {
+				inflater.end();
+				body.release();
+			}
+		}
+		return body;
+	}
+	
+	/**
+	 * Copies the body into pooled chunks as it arrives, and cancels the download
+	 * once it's larger than the maximum body size.
+	 */
+	private class PooledBodySubscriber implements BodySubscriber<PageBody> {
+		
+		/**
+		 * The body received so far.
+		 */
+		private final PageBody body;
+		
+		/**
+		 * Why the response was rejected from its headers, null if it wasn't.
+		 */
+		private final RejectedResponseException rejection;
+		
+		/**
+		 * False if the body is of no use, so the bytes received are dropped.
+		 */
+		private final boolean isBodyKept;
+		
+		/**
+		 * Completed with the body once it has all been received.
+		 */
+		private final CompletableFuture<PageBody> result;
+		
+		/**
+		 * The subscription to the body.
+		 */
+		private Flow.Subscription subscription;
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param rejection why the response was rejected from its headers, null
+		 *        if it wasn't.
+		 * @param isBodyKept false if the body is of no use.
+		 */
+		PooledBodySubscriber(RejectedResponseException rejection, boolean isBodyKept) {
+			this.body = new PageBody(bufferPool, maxBodySize);
+			this.rejection = rejection;
+			this.isBodyKept = isBodyKept;
+			this.result = new CompletableFuture<>();
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (this.rejection != null) {
+				fail(this.rejection);
+				return;
+			}
+			subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+			if (this.result.isDone() || !this.isBodyKept) {
+				return;
+			}
+			try {
+				for (ByteBuffer buffer : buffers) {
+					this.body.append(buffer);
+				}
+			} catch (BodyTooLargeException e) {
+				fail(e);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			this.body.release();
+			this.result.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			this.result.complete(this.body);
+		}
+
+		@Override
+		public CompletionStage<PageBody> getBody() {
+			return this.result;
+		}
+		
+		/**
+		 * Abandons the download.
+		 * 
+		 * @param e the reason for abandoning it.
+		 */
+		private void fail(IOException e) {
+			this.subscription.cancel();
+			this.body.release();
+			this.result.completeExceptionally(e);
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package fetch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The body of a page, held in chunks taken from a {@link BufferPool} rather
+ * than one array of its full size. The body is read through
+ * {@link #openStream()}, and the chunks are given back with
+ * {@link #release()} once it's no longer needed.
+ *
+ * @author ted.kuo
+ */
+public class PageBody {
+
+	/**
+	 * The pool the chunks were taken from, null if they are not pooled.
+	 */
+	private final BufferPool bufferPool;
+
+	/**
+	 * The largest number of bytes this body may hold.
+	 */
+	private final long maxLength;
+
+	/**
+	 * The chunks holding the body, all full but the last.
+	 */
+	private final List<byte[]> chunks;
+
+	/**
+	 * The number of bytes in the body.
+	 */
+	private long length;
+
+	/**
+	 * The number of bytes in the last chunk.
+	 */
+	private int lastChunkLength;
+
+	/**
+	 * True once the chunks have been given back to the pool.
+	 */
+	private boolean isReleased;
+
+	/**
+	 * Constructor. Creates an empty body to be appended to.
+	 *
+	 * @param bufferPool to take the chunks from.
+	 * @param maxLength the largest number of bytes the body may hold.
+	 */
+	public PageBody(BufferPool bufferPool, long maxLength) {
+		this.bufferPool = bufferPool;
+		this.maxLength = maxLength;
+		this.chunks = new ArrayList<>();
+	}
+
+	/**
+	 * Constructor. Wraps the given bytes, which are not pooled.
+	 *
+	 * @param body the bytes of the body.
+	 */
+	public PageBody(byte[] body) {
+		this(null, body.length);
+		if (body.length > 0) {
+			this.chunks.add(body);
+			this.length = body.length;
+			this.lastChunkLength = body.length;
+		}
+	}
+
+	/**
+	 * Reads the whole of the given stream into a new body.
+	 *
+	 * @param in to be read, it's not closed.
+	 * @param bufferPool to take the chunks from.
+	 * @param maxLength the largest number of bytes the body may hold.
+	 * @return the body read.
+	 * @throws BodyTooLargeException if there are more bytes than allowed, none of them are kept.
+	 * @throws IOException if the stream can't be read.
+	 */
+	public static PageBody read(InputStream in, BufferPool bufferPool, long maxLength) throws IOException {
+		PageBody body = new PageBody(bufferPool, maxLength);
+		try {
+			while (true) {
+				if (body.length >= maxLength) {
+					// A body of exactly the largest size is allowed, only a byte past it is too large.
+					if (in.read() == -1) {
+						return body;
+					}
+					throw new BodyTooLargeException(maxLength);
+				}
+				byte[] chunk = body.getWritableChunk();
+				int offset = body.lastChunkLength;
+				int read = in.read(chunk, offset, chunk.length - offset);
+				if (read == -1) {
+					return body;
+				}
+				body.written(read);
+			}
+		} catch (IOException e) {
+			body.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Appends the remaining bytes of the given buffer to this body.
+	 *
+	 * @param buffer to be appended.
+	 * @throws BodyTooLargeException if the body would be larger than allowed.
+	 */
+	public void append(ByteBuffer buffer) throws BodyTooLargeException {
+		while (buffer.hasRemaining()) {
+			byte[] chunk = getWritableChunk();
+			int count = Math.min(buffer.remaining(), chunk.length - this.lastChunkLength);
+			buffer.get(chunk, this.lastChunkLength, count);
+			written(count);
+		}
+	}
+
+	/**
+	 * @return the number of bytes in the body.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns a stream of the bytes in the body. The body must not be released
+	 * until the stream has been read.
+	 *
+	 * @return a stream of the body.
+	 */
+	public InputStream openStream() {
+		checkNotReleased();
+		return new ChunkInputStream();
+	}
+
+	/**
+	 * Copies the body into a single array.
+	 *
+	 * @return the bytes of the body.
+	 */
+	public byte[] toByteArray() {
+		checkNotReleased();
+		if (this.bufferPool == null && this.chunks.size() == 1 && this.chunks.get(0).length == this.length) {
+			return this.chunks.get(0);
+		}
+		byte[] bytes = new byte[(int) this.length];
+		int offset = 0;
+		for (int i = 0; i < this.chunks.size(); i++) {
+			int chunkLength = getChunkLength(i);
+			System.arraycopy(this.chunks.get(i), 0, bytes, offset, chunkLength);
+			offset += chunkLength;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Gives the chunks back to the pool. The body can't be read after this.
+	 */
+	public synchronized void release() {
+		if (this.isReleased) {
+			return;
+		}
+		this.isReleased = true;
+		if (this.bufferPool != null) {
+			for (byte[] chunk : this.chunks) {
+				this.bufferPool.release(chunk);
+			}
+		}
+		this.chunks.clear();
+	}
+
+	/**
+	 * Must only be called with a byte left to be written.
+	 *
+	 * @return the last chunk if it has room left, or a new one from the pool.
+	 * @throws BodyTooLargeException if the body is already as large as allowed.
+	 */
+	private byte[] getWritableChunk() throws BodyTooLargeException {
+		checkNotReleased();
+		if (this.length >= this.maxLength) {
+			throw new BodyTooLargeException(this.maxLength);
+		}
+		if (!this.chunks.isEmpty()) {
+			byte[] lastChunk = this.chunks.get(this.chunks.size() - 1);
+			if (this.lastChunkLength < lastChunk.length) {
+				return lastChunk;
+			}
+		}
+		byte[] chunk = this.bufferPool.acquire();
+		this.chunks.add(chunk);
+		this.lastChunkLength = 0;
+		return chunk;
+	}
+
+	/**
+	 * Records bytes written to the last chunk.
+	 *
+	 * @param count of bytes written.
+	 * @throws BodyTooLargeException if the body is now larger than allowed.
+	 */
+	private void written(int count) throws BodyTooLargeException {
+		this.lastChunkLength += count;
+		this.length += count;
+		if (this.length > this.maxLength) {
+			release();
+			throw new BodyTooLargeException(this.maxLength);
+		}
+	}
+
+	/**
+	 * @param index of a chunk.
+	 * @return the number of bytes of the body in the chunk.
+	 */
+	private int getChunkLength(int index) {
+		return index == this.chunks.size() - 1 ? this.lastChunkLength : this.chunks.get(index).length;
+	}
+
+	/**
+	 * @throws IllegalStateException if the body has been released.
+	 */
+	private void checkNotReleased() {
+		if (this.isReleased) {
+			throw new IllegalStateException("the body has been released");
+		}
+	}
+
+	/**
+	 * Reads the chunks one after the other.
+	 */
+	private class ChunkInputStream extends InputStream {
+
+		/**
+		 * Index of the chunk being read.
+		 */
+		private int chunkIndex;
+
+		/**
+		 * Position in the chunk being read.
+		 */
+		private int position;
+
+		@Override
+		public int read() {
+			if (!nextChunkIfNeeded()) {
+				return -1;
+			}
+			return chunks.get(this.chunkIndex)[this.position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int count) {
+			if (count == 0) {
+				return 0;
+			}
+			if (!nextChunkIfNeeded()) {
+				return -1;
+			}
+			int read = Math.min(count, getChunkLength(this.chunkIndex) - this.position);
+			System.arraycopy(chunks.get(this.chunkIndex), this.position, buffer, offset, read);
+			this.position += read;
+			return read;
+		}
+
+		@Override
+		public int available() {
+			return this.chunkIndex < chunks.size() ? getChunkLength(this.chunkIndex) - this.position : 0;
+		}
+
+		/**
+		 * Moves on to the next chunk once the current one has been read.
+		 *
+		 * @return false at the end of the body.
+		 */
+		private boolean nextChunkIfNeeded() {
+			while (this.chunkIndex < chunks.size() && this.position >= getChunkLength(this.chunkIndex)) {
+				this.chunkIndex++;
+				this.position = 0;
+			}
+			return this.chunkIndex < chunks.size();
+		}
+	}
+}
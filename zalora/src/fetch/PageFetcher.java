@@ -0,0 +1,39 @@
+package fetch;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import page.HTMLLink;
+
+/**
+ * Interface for retrieving the content of a {@link HTMLLink}. Each
+ * implementation decides how the content is retrieved, eg. over the network or
+ * from a local store.
+ * 
+ * @author ted.kuo
+ */
+public interface PageFetcher {
+
+	/**
+	 * Starts retrieving the content of the given link. The returned future
+	 * completes with the response once the whole body has been read, or
+	 * exceptionally with the {@link java.io.IOException} that stopped it.
+	 * 
+	 * @param link to be retrieved.
+	 * @return the response of the given link, when it becomes available.
+	 */
+	CompletableFuture<PageResponse> fetch(HTMLLink link);
+	
+	/**
+	 * Starts retrieving the content of the given link, sending the given headers
+	 * with the request. A fetcher that doesn't send requests of its own ignores
+	 * the headers.
+	 * 
+	 * @param link to be retrieved.
+	 * @param requestHeaders to be sent with the request, eg. to make it conditional.
+	 * @return the response of the given link, when it becomes available.
+	 */
+	default CompletableFuture<PageResponse> fetch(HTMLLink link, Map<String, String> requestHeaders) {
+		return fetch(link);
+	}
+}
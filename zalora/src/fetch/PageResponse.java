@@ -0,0 +1,374 @@
+package fetch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import page.HTMLLink;
+
+/**
+ * Represents the response retrieved by a {@link PageFetcher} for a
+ * {@link HTMLLink}: its status code, headers and body.
+ * 
+ * @author ted.kuo
+ */
+public class PageResponse {
+
+	/**
+	 * The number of bytes at the start of a page the parser looks through for a meta charset.
+	 */
+	private static final int CHARSET_SNIFF_SIZE = 5 * 1024;
+	
+	/**
+	 * The byte order mark of a UTF-8 body.
+	 */
+	private static final int[] UTF_8_BYTE_ORDER_MARK = {0xEF, 0xBB, 0xBF};
+
+	/**
+	 * The link this response was retrieved for.
+	 */
+	private HTMLLink link;
+	
+	/**
+	 * The HTTP status code.
+	 */
+	private int statusCode;
+	
+	/**
+	 * The response headers, keyed case-insensitively by header name.
+	 */
+	private Map<String, List<String>> headers;
+	
+	/**
+	 * The body of the response, already decoded from any content encoding.
+	 */
+	private PageBody body;
+	
+	/**
+	 * True if the page hasn't changed since it was cached, and the body is the
+	 * cached one.
+	 */
+	private boolean isNotModified;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param link this response was retrieved for.
+	 * @param statusCode the HTTP status code.
+	 * @param headers the response headers, a null key is ignored.
+	 * @param body of the response, already decoded from any content encoding.
+	 */
+	public PageResponse(HTMLLink link, int statusCode, Map<String, List<String>> headers, byte[] body) {
+		this(link, statusCode, headers, new PageBody(body == null ? new byte[0] : body));
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param link this response was retrieved for.
+	 * @param statusCode the HTTP status code.
+	 * @param headers the response headers, a null key is ignored.
+	 * @param body of the response, already decoded from any content encoding.
+	 */
+	public PageResponse(HTMLLink link, int statusCode, Map<String, List<String>> headers, PageBody body) {
+		this(link, statusCode, headers, body, false);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param link this response was retrieved for.
+	 * @param statusCode the HTTP status code.
+	 * @param headers the response headers, a null key is ignored.
+	 * @param body of the response, already decoded from any content encoding.
+	 * @param isNotModified true if the page hasn't changed since it was cached,
+	 *        and the body is the cached one.
+	 */
+	public PageResponse(HTMLLink link, int statusCode, Map<String, List<String>> headers, PageBody body, 
+			boolean isNotModified) {
+		if (link == null) {
+			throw new IllegalArgumentException("the link cannot be null");
+		}
+		this.link = link;
+		this.statusCode = statusCode;
+		this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			// URLConnection reports the status line under a null key.
+			if (header.getKey() != null) {
+				this.headers.put(header.getKey(), header.getValue());
+			}
+		}
+		this.body = body;
+		this.isNotModified = isNotModified;
+	}
+
+	/**
+	 * @return the link this response was retrieved for.
+	 */
+	public HTMLLink getLink() {
+		return link;
+	}
+
+	/**
+	 * @return the HTTP status code.
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+	
+	/**
+	 * @return true if the status code is 2xx.
+	 */
+	public boolean isSuccessful() {
+		return this.statusCode >= 200 && this.statusCode < 300;
+	}
+	
+	/**
+	 * @return true if the page hasn't changed since it was cached, and the body
+	 *         is the cached one.
+	 */
+	public boolean isNotModified() {
+		return isNotModified;
+	}
+	
+	/**
+	 * @return all the response headers, keyed case-insensitively.
+	 */
+	public Map<String, List<String>> getHeaders() {
+		return Collections.unmodifiableMap(this.headers);
+	}
+	
+	/**
+	 * Returns the first value of the given header.
+	 * 
+	 * @param name of the header, case-insensitive.
+	 * @return the first value of the header, null if it's not present.
+	 */
+	public String getHeader(String name) {
+		List<String> values = this.headers.get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+	
+	/**
+	 * Returns the charset declared by the Content-Type header.
+	 * 
+	 * @return the charset name, null if the header doesn't declare one.
+	 */
+	public String getCharset() {
+		return getCharsetFromContentType(getHeader("Content-Type"));
+	}
+	
+	/**
+	 * Returns the charset declared by a Content-Type value.
+	 * 
+	 * @param contentType the value of a Content-Type header or meta tag.
+	 * @return the charset name, null if the value doesn't declare one.
+	 */
+	static String getCharsetFromContentType(String contentType) {
+		if (contentType == null) {
+			return null;
+		}
+		int charsetIndex = contentType.toLowerCase().indexOf("charset=");
+		if (charsetIndex < 0) {
+			return null;
+		}
+		String charset = contentType.substring(charsetIndex + "charset=".length()).trim();
+		int parameterEnd = charset.indexOf(';');
+		if (parameterEnd >= 0) {
+			charset = charset.substring(0, parameterEnd).trim();
+		}
+		charset = charset.replace("\"", "");
+		return charset.isEmpty() ? null : charset;
+	}
+
+	/**
+	 * Returns a copy of the body in a single array. {@link #parse()} reads the
+	 * body without copying it.
+	 * 
+	 * @return the body of the response.
+	 */
+	public byte[] getBody() {
+		return this.body.toByteArray();
+	}
+	
+	/**
+	 * Returns a stream of the body, read straight from the buffers holding it.
+	 * 
+	 * @return a stream of the body.
+	 */
+	public InputStream openBody() {
+		return this.body.openStream();
+	}
+	
+	/**
+	 * @return the number of bytes in the body.
+	 */
+	public long getBodyLength() {
+		return this.body.getLength();
+	}
+	
+	/**
+	 * Returns the href values of the anchors of the page, streamed through a
+	 * {@link HrefTokenizer} without building a document. The body is decoded
+	 * with the charset {@link #parse()} would decode it with, and isn't
+	 * released, so the page can still be parsed afterwards.
+	 * 
+	 * @return the href values, in the order of the page.
+	 * @throws IOException if the body cannot be decoded.
+	 */
+	public List<String> extractHrefs() throws IOException {
+		byte[] prefix = readBodyPrefix();
+		Charset charset = getDecodingCharset(prefix);
+		try (InputStream in = this.body.openStream()) {
+			if (startsWith(prefix, UTF_8_BYTE_ORDER_MARK)) {
+				in.skip(UTF_8_BYTE_ORDER_MARK.length);
+			}
+			return HrefTokenizer.extractHrefs(new InputStreamReader(in, charset));
+		}
+	}
+	
+	/**
+	 * Parses the body into a document, straight from the chunks it was read
+	 * into. If the Content-Type header doesn't declare the charset, the parser
+	 * sniffs it from a byte order mark or a meta tag of the page itself. The
+	 * body is released once parsed.
+	 * 
+	 * @return the document that represents the body.
+	 * @throws IOException if the body cannot be decoded.
+	 */
+	public Document parse() throws IOException {
+		try (InputStream in = this.body.openStream()) {
+			return Jsoup.parse(in, getCharset(), this.link.getPageURL().toString());
+		}
+		finally {
+			release();
+		}
+	}
+	
+	/**
+	 * Returns the charset of the body, found the same way the parser finds it:
+	 * from a byte order mark, then the Content-Type header, then a meta tag or
+	 * XML declaration near the start of the page, and UTF-8 otherwise.
+	 * 
+	 * @param prefix the first bytes of the body.
+	 * @return the charset to decode the body with.
+	 * @throws IOException if the start of the page cannot be decoded.
+	 */
+	private Charset getDecodingCharset(byte[] prefix) throws IOException {
+		Charset charset = getCharsetFromByteOrderMark(prefix);
+		if (charset == null) {
+			charset = toSupportedCharset(getCharset());
+		}
+		if (charset == null) {
+			charset = toSupportedCharset(getCharsetFromPage(prefix));
+		}
+		return charset == null ? StandardCharsets.UTF_8 : charset;
+	}
+	
+	/**
+	 * @return the first bytes of the body, as many as the parser looks through for a meta charset.
+	 * @throws IOException if the body cannot be read.
+	 */
+	private byte[] readBodyPrefix() throws IOException {
+		byte[] prefix = new byte[(int) Math.min(CHARSET_SNIFF_SIZE, this.body.getLength())];
+		try (InputStream in = this.body.openStream()) {
+			int length = 0;
+			while (length < prefix.length) {
+				int read = in.read(prefix, length, prefix.length - length);
+				if (read == -1) {
+					break;
+				}
+				length += read;
+			}
+		}
+		return prefix;
+	}
+	
+	/**
+	 * @param prefix the first bytes of the body.
+	 * @return the charset of the byte order mark the body starts with, null if there's none.
+	 */
+	private static Charset getCharsetFromByteOrderMark(byte[] prefix) {
+		if (startsWith(prefix, 0x00, 0x00, 0xFE, 0xFF) || startsWith(prefix, 0xFF, 0xFE, 0x00, 0x00)) {
+			return toSupportedCharset("UTF-32");
+		}
+		if (startsWith(prefix, 0xFE, 0xFF) || startsWith(prefix, 0xFF, 0xFE)) {
+			// The decoder reads the byte order mark itself.
+			return StandardCharsets.UTF_16;
+		}
+		if (startsWith(prefix, UTF_8_BYTE_ORDER_MARK)) {
+			return StandardCharsets.UTF_8;
+		}
+		return null;
+	}
+	
+	/**
+	 * Looks for the charset in the meta tags, or the XML declaration, of the
+	 * start of the page decoded as UTF-8, as the parser does, with a
+	 * {@link HrefTokenizer} rather than a document.
+	 * 
+	 * @param prefix the first bytes of the body.
+	 * @return the charset name, null if the page doesn't declare one.
+	 * @throws IOException if the start of the page cannot be decoded.
+	 */
+	private static String getCharsetFromPage(byte[] prefix) throws IOException {
+		return HrefTokenizer.extractCharset(new StringReader(new String(prefix, StandardCharsets.UTF_8)));
+	}
+	
+	/**
+	 * @param charset a charset name, possibly quoted.
+	 * @return the charset of that name, null if there's none or it isn't supported.
+	 */
+	private static Charset toSupportedCharset(String charset) {
+		if (charset == null) {
+			return null;
+		}
+		charset = charset.trim().replaceAll("[\"']", "");
+		for (String name : new String[] {charset, charset.toUpperCase(Locale.ENGLISH)}) {
+			try {
+				return Charset.forName(name);
+			} catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+				// Tried in upper case, then given up on.
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @param bytes to look at.
+	 * @param start the values of the bytes expected at the start.
+	 * @return true if the bytes start with the given values.
+	 */
+	private static boolean startsWith(byte[] bytes, int... start) {
+		if (bytes.length < start.length) {
+			return false;
+		}
+		for (int i = 0; i < start.length; i++) {
+			if ((bytes[i] & 0xFF) != start[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Gives the buffers holding the body back to their pool. The body can't be
+	 * read after this.
+	 */
+	public void release() {
+		this.body.release();
+	}
+}
@@ -0,0 +1,86 @@
+package fetch;
+
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import page.HTMLLink;
+
+/**
+ * A {@link PageFetcher} that keeps the requests to each host within a
+ * {@link HostThrottle}, and leaves the actual retrieval to another fetcher.
+ * {@link #fetch(HTMLLink)} waits until the host of the link may receive
+ * another request, so a crawler taking links from the repository is held back
+ * before the request is sent rather than after the host starts refusing it.
+ * 
+ * @author ted.kuo
+ */
+public class PolitePageFetcher implements PageFetcher {
+
+	/**
+	 * Retrieves the pages once a host allows it.
+	 */
+	private PageFetcher pageFetcher;
+	
+	/**
+	 * Settings for the throttle of each host.
+	 */
+	private PolitenessSettings settings;
+	
+	/**
+	 * The throttle of each host, created on the first request to the host.
+	 */
+	private ConcurrentMap<String, HostThrottle> hostThrottles;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param pageFetcher to retrieve the pages with.
+	 * @param settings of the rate and concurrency allowed for each host.
+	 */
+	public PolitePageFetcher(PageFetcher pageFetcher, PolitenessSettings settings) {
+		this.pageFetcher = pageFetcher;
+		this.settings = settings;
+		this.hostThrottles = new ConcurrentHashMap<>();
+	}
+
+	@Override
+	public CompletableFuture<PageResponse> fetch(HTMLLink link) {
+		return fetch(link, Collections.<String, String>emptyMap());
+	}
+
+	@Override
+	public CompletableFuture<PageResponse> fetch(HTMLLink link, Map<String, String> requestHeaders) {
+		final HostThrottle hostThrottle = getHostThrottle(link.getPageURL().getHost());
+		try {
+			hostThrottle.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return CompletableFuture.failedFuture(new InterruptedIOException("Interrupted waiting to fetch " 
+					+ link.getCanonicalPageURLString()));
+		}
+		
+		final long startNanos = System.nanoTime();
+		try {
+			return this.pageFetcher.fetch(link, requestHeaders).whenComplete((response, failure) -> 
+					hostThrottle.release(System.nanoTime() - startNanos, response, failure));
+		} catch (RuntimeException e) {
+			hostThrottle.release(System.nanoTime() - startNanos, null, e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns the throttle of the given host, creating it if this is the first
+	 * request to the host.
+	 * 
+	 * @param host of a link.
+	 * @return the throttle of the host.
+	 */
+	public HostThrottle getHostThrottle(String host) {
+		return this.hostThrottles.computeIfAbsent(host.toLowerCase(), h -> new HostThrottle(this.settings));
+	}
+}
@@ -0,0 +1,138 @@
+package fetch;
+
+/**
+ * Specifies how hard a {@link PolitePageFetcher} may hit each host: the rate
+ * of requests allowed by its token bucket, and the bounds within which the
+ * number of concurrent requests is adapted.
+ * 
+ * @author ted.kuo
+ */
+public class PolitenessSettings {
+
+	/**
+	 * The number of requests per second each host is allowed on average.
+	 */
+	private double requestsPerSecond;
+	
+	/**
+	 * The number of requests a host may receive in a burst after being idle.
+	 */
+	private int burstSize;
+	
+	/**
+	 * The number of concurrent requests each host starts with.
+	 */
+	private int initialConcurrency;
+	
+	/**
+	 * The number of concurrent requests each host never goes above.
+	 */
+	private int maxConcurrency;
+	
+	/**
+	 * Responses slower than this, in milliseconds, are taken as a sign that the
+	 * host is overloaded.
+	 */
+	private long latencyTargetMillis;
+	
+	/**
+	 * Constructor. Allows 10 requests per second in bursts of 10, starting at 4
+	 * concurrent requests and going up to 50, and treats responses slower than
+	 * 2 seconds as overload.
+	 */
+	public PolitenessSettings() {
+		this.requestsPerSecond = 10;
+		this.burstSize = 10;
+		this.initialConcurrency = 4;
+		this.maxConcurrency = 50;
+		this.latencyTargetMillis = 2000;
+	}
+
+	/**
+	 * @return the number of requests per second each host is allowed on average.
+	 */
+	public double getRequestsPerSecond() {
+		return requestsPerSecond;
+	}
+
+	/**
+	 * @param requestsPerSecond the number of requests per second each host is allowed on average.
+	 */
+	public void setRequestsPerSecond(double requestsPerSecond) {
+		if (requestsPerSecond <= 0) {
+			throw new IllegalArgumentException("the rate must be positive: " + requestsPerSecond);
+		}
+		this.requestsPerSecond = requestsPerSecond;
+	}
+
+	/**
+	 * @return the number of requests a host may receive in a burst.
+	 */
+	public int getBurstSize() {
+		return burstSize;
+	}
+
+	/**
+	 * @param burstSize the number of requests a host may receive in a burst.
+	 */
+	public void setBurstSize(int burstSize) {
+		this.burstSize = requirePositive(burstSize);
+	}
+
+	/**
+	 * @return the number of concurrent requests each host starts with.
+	 */
+	public int getInitialConcurrency() {
+		return initialConcurrency;
+	}
+
+	/**
+	 * @param initialConcurrency the number of concurrent requests each host starts with.
+	 */
+	public void setInitialConcurrency(int initialConcurrency) {
+		this.initialConcurrency = requirePositive(initialConcurrency);
+	}
+
+	/**
+	 * @return the number of concurrent requests each host never goes above.
+	 */
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * @param maxConcurrency the number of concurrent requests each host never goes above.
+	 */
+	public void setMaxConcurrency(int maxConcurrency) {
+		this.maxConcurrency = requirePositive(maxConcurrency);
+	}
+
+	/**
+	 * @return the latency in milliseconds above which a host is taken as overloaded.
+	 */
+	public long getLatencyTargetMillis() {
+		return latencyTargetMillis;
+	}
+
+	/**
+	 * @param latencyTargetMillis the latency in milliseconds above which a host is taken as overloaded.
+	 */
+	public void setLatencyTargetMillis(long latencyTargetMillis) {
+		if (latencyTargetMillis < 1) {
+			throw new IllegalArgumentException("the latency target must be positive: " + latencyTargetMillis);
+		}
+		this.latencyTargetMillis = latencyTargetMillis;
+	}
+	
+	/**
+	 * @param value to be checked.
+	 * @return the given value.
+	 * @throws IllegalArgumentException if the value is less than 1.
+	 */
+	private static int requirePositive(int value) {
+		if (value < 1) {
+			throw new IllegalArgumentException("the value must be at least 1: " + value);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,83 @@
+package fetch;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a {@link PageFetcher} abandons a response because its headers
+ * show it isn't a page worth crawling. Links to the same kind of resource are
+ * likely to be rejected as well. A response rejected from its headers keeps
+ * the headers it was rejected for, so the rejection can be recorded.
+ * 
+ * @author ted.kuo
+ */
+public class RejectedResponseException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Status code of the response, -1 if it wasn't rejected from its headers.
+	 */
+	private final int statusCode;
+
+	/**
+	 * Content-Type of the response, null if unknown.
+	 */
+	private final String contentType;
+
+	/**
+	 * Content-Length of the response, -1 if unknown.
+	 */
+	private final long contentLength;
+
+	/**
+	 * Constructor, for a response rejected while its body was read.
+	 * 
+	 * @param message why the response was rejected.
+	 */
+	public RejectedResponseException(String message) {
+		this(message, -1, null, -1);
+	}
+
+	/**
+	 * Constructor, for a response rejected from its headers.
+	 * 
+	 * @param message why the response was rejected.
+	 * @param statusCode of the response.
+	 * @param contentType of the response, null if unknown.
+	 * @param contentLength of the response, -1 if unknown.
+	 */
+	public RejectedResponseException(String message, int statusCode, String contentType, long contentLength) {
+		super(message);
+		this.statusCode = statusCode;
+		this.contentType = contentType;
+		this.contentLength = contentLength;
+	}
+
+	/**
+	 * @return true if the response was rejected from its headers, which are then known.
+	 */
+	public boolean isRejectedFromHeaders() {
+		return this.statusCode != -1;
+	}
+
+	/**
+	 * @return the status code of the response, -1 if it wasn't rejected from its headers.
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return the Content-Type of the response, null if unknown.
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @return the Content-Length of the response, -1 if unknown.
+	 */
+	public long getContentLength() {
+		return contentLength;
+	}
+}
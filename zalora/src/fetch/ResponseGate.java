@@ -0,0 +1,66 @@
+package fetch;
+
+import java.util.Locale;
+
+/**
+ * Decides from the status and headers of a response, before its body is read,
+ * whether the body is worth downloading:
+ * <ul>
+ * <li>the body of an unsuccessful response is never used, so it's discarded,</li>
+ * <li>a successful response that isn't HTML, or is larger than the maximum
+ * body size, is rejected and its download abandoned.</li>
+ * </ul>
+ * A response without a Content-Type or Content-Length is given the benefit of
+ * the doubt.
+ * 
+ * @author ted.kuo
+ */
+public final class ResponseGate {
+
+	/**
+	 * Constructor. Only static methods.
+	 */
+	private ResponseGate() {
+	}
+
+	/**
+	 * Checks the headers of a response.
+	 * 
+	 * @param statusCode of the response.
+	 * @param contentType of the response, null if unknown.
+	 * @param contentLength of the response, -1 if unknown.
+	 * @param maxBodySize the largest body downloaded, in bytes.
+	 * @throws UnsupportedContentTypeException if the response is successful but isn't HTML.
+	 * @throws BodyTooLargeException if the body is larger than the maximum body size.
+	 */
+	public static void check(int statusCode, String contentType, long contentLength, long maxBodySize) 
+			throws RejectedResponseException {
+		if (!isBodyWanted(statusCode)) {
+			return;
+		}
+		if (contentType != null && !isHTML(contentType)) {
+			throw new UnsupportedContentTypeException(statusCode, contentType, contentLength);
+		}
+		if (contentLength > maxBodySize) {
+			throw new BodyTooLargeException(maxBodySize, statusCode, contentType, contentLength);
+		}
+	}
+
+	/**
+	 * @param statusCode of a response.
+	 * @return true if the body of the response is used, ie. it's successful.
+	 */
+	public static boolean isBodyWanted(int statusCode) {
+		return statusCode >= 200 && statusCode < 300;
+	}
+
+	/**
+	 * @param contentType header of a response.
+	 * @return true if the media type is HTML or XHTML, whatever its parameters.
+	 */
+	static boolean isHTML(String contentType) {
+		int end = contentType.indexOf(';');
+		String mediaType = (end < 0 ? contentType : contentType.substring(0, end)).trim().toLowerCase(Locale.ROOT);
+		return mediaType.equals("text/html") || mediaType.equals("application/xhtml+xml") || mediaType.isEmpty();
+	}
+}
@@ -0,0 +1,126 @@
+package fetch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import page.HTMLLink;
+
+/**
+ * A {@link PageFetcher} that retrieves each page with its own
+ * {@link URLConnection} on the calling thread. The returned future is always
+ * already complete. The body is read into chunks of a {@link BufferPool}, up to
+ * a maximum body size, once the {@link ResponseGate} has accepted the headers.
+ * 
+ * @author ted.kuo
+ */
+public class URLConnectionPageFetcher implements PageFetcher {
+
+	/**
+	 * Specifies the time out in milliseconds when connecting to a page.
+	 */
+	private static final int CONNECT_TIMEOUT = 5 * 1000;
+	
+	/**
+	 * Specifies the time out in milliseconds when reading from a page.
+	 */
+	private static final int READ_TIMEOUT = 5 * 1000;
+	
+	/**
+	 * The largest body downloaded by default, in bytes.
+	 */
+	private static final long DEFAULT_MAX_BODY_SIZE = 10 * 1024 * 1024;
+	
+	/**
+	 * The pool the bodies are read into.
+	 */
+	private BufferPool bufferPool;
+	
+	/**
+	 * The largest body downloaded, in bytes.
+	 */
+	private long maxBodySize;
+	
+	/**
+	 * Constructor. Downloads bodies of up to {@value #DEFAULT_MAX_BODY_SIZE} bytes.
+	 */
+	public URLConnectionPageFetcher() {
+		this(new BufferPool(16 * 1024, 256), DEFAULT_MAX_BODY_SIZE);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param bufferPool the pool the bodies are read into.
+	 * @param maxBodySize the largest body downloaded, in bytes.
+	 */
+	public URLConnectionPageFetcher(BufferPool bufferPool, long maxBodySize) {
+		this.bufferPool = bufferPool;
+		this.maxBodySize = maxBodySize;
+	}
+
+	@Override
+	public CompletableFuture<PageResponse> fetch(HTMLLink link) {
+		return fetch(link, Collections.<String, String>emptyMap());
+	}
+
+	@Override
+	public CompletableFuture<PageResponse> fetch(HTMLLink link, Map<String, String> requestHeaders) {
+		try {
+			return CompletableFuture.completedFuture(get(link, requestHeaders));
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Retrieves the given link.
+	 * 
+	 * @param link to be retrieved.
+	 * @param requestHeaders to be sent with the request.
+	 * @return the response of the link.
+	 * @throws IOException when there is an issue retrieving content, or the
+	 *         response is rejected from its headers or is larger than the
+	 *         maximum body size.
+	 */
+	private PageResponse get(HTMLLink link, Map<String, String> requestHeaders) throws IOException {
+		URLConnection connection = link.getPageURL().openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
+		for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+			connection.setRequestProperty(header.getKey(), header.getValue());
+		}
+		
+		int statusCode = 200;
+		String contentType = null;
+		InputStream bodyStream;
+		if (connection instanceof HttpURLConnection) {
+			HttpURLConnection httpConnection = (HttpURLConnection) connection;
+			statusCode = httpConnection.getResponseCode();
+			// Only trusted from HTTP, other protocols guess it from the file name.
+			contentType = httpConnection.getContentType();
+			bodyStream = statusCode >= 400 ? httpConnection.getErrorStream() : httpConnection.getInputStream();
+		}
+		else {
+			bodyStream = connection.getInputStream();
+		}
+		
+		PageBody body;
+		if (bodyStream != null) {
+			try (InputStream in = bodyStream) {
+				ResponseGate.check(statusCode, contentType, connection.getContentLengthLong(), 
+						this.maxBodySize);
+				body = ResponseGate.isBodyWanted(statusCode) 
+						? PageBody.read(in, this.bufferPool, this.maxBodySize) : new PageBody(new byte[0]);
+			}
+		}
+		else {
+			body = new PageBody(new byte[0]);
+		}
+		return new PageResponse(link, statusCode, connection.getHeaderFields(), body);
+	}
+}
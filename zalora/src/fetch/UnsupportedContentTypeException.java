@@ -0,0 +1,32 @@
+package fetch;
+
+/**
+ * Thrown when the Content-Type of a page shows it isn't HTML, such as an
+ * image, a PDF or a JSON endpoint. The body isn't downloaded.
+ * 
+ * @author ted.kuo
+ */
+public class UnsupportedContentTypeException extends RejectedResponseException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param contentType of the page.
+	 */
+	public UnsupportedContentTypeException(String contentType) {
+		this(-1, contentType, -1);
+	}
+
+	/**
+	 * Constructor, for a response rejected from its headers.
+	 * 
+	 * @param statusCode of the response.
+	 * @param contentType of the response.
+	 * @param contentLength of the response, -1 if unknown.
+	 */
+	public UnsupportedContentTypeException(int statusCode, String contentType, long contentLength) {
+		super("the content type " + contentType + " is not HTML", statusCode, contentType, contentLength);
+	}
+}
@@ -0,0 +1,303 @@
+package fetch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.GZIPOutputStream;
+
+import page.HTMLLink;
+
+/**
+ * A {@link PageFetcher} that records every response retrieved by another
+ * fetcher into a WARC archive, so the crawl can be replayed from disk by a
+ * {@link WarcReplayPageFetcher} without the noise of the network.
+ *
+ * Each response is written as a WARC response record, compressed as a gzip
+ * member of its own, to segment files named segment-&lt;n&gt;.warc.gz. A new
+ * segment is started once the current one is larger than the segment size. The
+ * position of each record is appended to a CDX index, one line per record with
+ * the canonical URL, the segment, and the offset and length of the record in
+ * it.
+ *
+ * The body recorded is the one the crawler sees, already decoded, so the
+ * Content-Encoding and Content-Length headers are left out of the record.
+ *
+ * A response the {@link ResponseGate} rejected from its headers is recorded as
+ * well, with its status, Content-Type and Content-Length but without a body,
+ * and marked as truncated, so the replay rejects it just the same. Fetches
+ * that failed without a response are not recorded.
+ *
+ * @author ted.kuo
+ */
+public class WarcRecordingPageFetcher implements PageFetcher, Closeable {
+
+	/**
+	 * Name of the CDX index in the archive directory.
+	 */
+	static final String INDEX_FILE_NAME = "index.cdx";
+
+	/**
+	 * Line separator of the WARC and HTTP headers.
+	 */
+	static final String CRLF = "\r\n";
+
+	/**
+	 * WARC header of a record whose body was not downloaded because of its length.
+	 */
+	static final String TRUNCATED_HEADER = "WARC-Truncated: length";
+
+	/**
+	 * The default size after which a new segment is started, in bytes.
+	 */
+	private static final long DEFAULT_SEGMENT_SIZE = 1024L * 1024 * 1024;
+
+	/**
+	 * Retrieves the pages recorded.
+	 */
+	private PageFetcher pageFetcher;
+
+	/**
+	 * Directory of the archive.
+	 */
+	private Path directory;
+
+	/**
+	 * The size after which a new segment is started, in bytes.
+	 */
+	private long segmentSize;
+
+	/**
+	 * The number of the segment being written.
+	 */
+	private int segmentNumber;
+
+	/**
+	 * The segment being written.
+	 */
+	private FileChannel segment;
+
+	/**
+	 * The CDX index being written.
+	 */
+	private Writer index;
+
+	/**
+	 * Constructor. Starts a new segment every {@value #DEFAULT_SEGMENT_SIZE} bytes.
+	 *
+	 * @param pageFetcher to retrieve the pages with.
+	 * @param directory of the archive, created if it doesn't exist.
+	 * @throws IOException if the archive can't be created.
+	 */
+	public WarcRecordingPageFetcher(PageFetcher pageFetcher, Path directory) throws IOException {
+		this(pageFetcher, directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Constructor. An archive already in the directory is appended to.
+	 *
+	 * @param pageFetcher to retrieve the pages with.
+	 * @param directory of the archive, created if it doesn't exist.
+	 * @param segmentSize the size after which a new segment is started, in bytes.
+	 * @throws IOException if the archive can't be created.
+	 */
+	public WarcRecordingPageFetcher(PageFetcher pageFetcher, Path directory, long segmentSize) throws IOException {
+		this.pageFetcher = pageFetcher;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		Files.createDirectories(directory);
+		while (Files.exists(directory.resolve(getSegmentFileName(this.segmentNumber + 1)))) {
+			this.segmentNumber++;
+		}
+		this.segment = openSegment(this.segmentNumber);
+		this.index = Files.newBufferedWriter(directory.resolve(INDEX_FILE_NAME), StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	@Override
+	public CompletableFuture<PageResponse> fetch(HTMLLink link) {
+		return fetch(link, Collections.<String, String>emptyMap());
+	}
+
+	@Override
+	public CompletableFuture<PageResponse> fetch(final HTMLLink link, Map<String, String> requestHeaders) {
+		return this.pageFetcher.fetch(link, requestHeaders).whenComplete((response, failure) -> {
+			try {
+				if (response != null) {
+					record(link, response.getStatusCode(), response.getHeaders(), response.openBody(), 
+							response.getBodyLength(), false);
+				}
+				else {
+					recordRejection(link, failure);
+				}
+			} catch (IOException e) {
+				System.err.println("Error:" + e.getMessage() + " recording link: " + link.getCanonicalPageURLString());
+			}
+		});
+	}
+
+	/**
+	 * Flushes the index and closes the archive.
+	 *
+	 * @throws IOException if the archive can't be written.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			this.index.close();
+		}
+		finally {
+			this.segment.close();
+		}
+	}
+
+	/**
+	 * Writes the headers of a response rejected from them to the archive.
+	 *
+	 * @param link of the response.
+	 * @param failure of the fetch.
+	 * @throws IOException if the archive can't be written.
+	 */
+	private void recordRejection(HTMLLink link, Throwable failure) throws IOException {
+		while (failure instanceof CompletionException && failure.getCause() != null) {
+			failure = failure.getCause();
+		}
+		if (!(failure instanceof RejectedResponseException) || !((RejectedResponseException) failure).isRejectedFromHeaders()) {
+			return;
+		}
+		RejectedResponseException rejection = (RejectedResponseException) failure;
+		Map<String, List<String>> headers = new LinkedHashMap<>();
+		if (rejection.getContentType() != null) {
+			headers.put("Content-Type", Arrays.asList(rejection.getContentType()));
+		}
+		if (rejection.getContentLength() >= 0) {
+			headers.put("Content-Length", Arrays.asList(Long.toString(rejection.getContentLength())));
+		}
+		record(link, rejection.getStatusCode(), headers, new ByteArrayInputStream(new byte[0]), 0, true);
+	}
+
+	/**
+	 * Writes a response to the archive.
+	 *
+	 * @param link of the response.
+	 * @param statusCode of the response.
+	 * @param headers of the response.
+	 * @param body of the response, closed once written.
+	 * @param bodyLength of the response.
+	 * @param isTruncated true if the body was not downloaded, in which case the
+	 *        Content-Length header is kept.
+	 * @throws IOException if the archive can't be written.
+	 */
+	private void record(HTMLLink link, int statusCode, Map<String, List<String>> headers, InputStream body, 
+			long bodyLength, boolean isTruncated) throws IOException {
+		// Compressed before taking the lock, so the threads only queue up for the write itself.
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		try (OutputStream out = new GZIPOutputStream(record)) {
+			writeRecord(out, link, statusCode, headers, body, bodyLength, isTruncated);
+		}
+
+		synchronized (this) {
+			if (this.segment.size() >= this.segmentSize) {
+				this.segment.close();
+				this.segmentNumber++;
+				this.segment = openSegment(this.segmentNumber);
+			}
+			long offset = this.segment.size();
+			ByteBuffer buffer = ByteBuffer.wrap(record.toByteArray());
+			while (buffer.hasRemaining()) {
+				this.segment.write(buffer);
+			}
+			this.index.write(link.getCanonicalPageURLString() + " "
+					+ getSegmentFileName(this.segmentNumber) + " " + offset + " " + record.size() + "\n");
+			this.index.flush();
+		}
+	}
+
+	/**
+	 * Writes the WARC response record of a response.
+	 *
+	 * @param out to write to.
+	 * @param link of the response.
+	 * @param statusCode of the response.
+	 * @param headers of the response.
+	 * @param body of the response, closed once written.
+	 * @param bodyLength of the response.
+	 * @param isTruncated true if the body was not downloaded, in which case the
+	 *        Content-Length header is kept.
+	 * @throws IOException if it can't be written.
+	 */
+	private static void writeRecord(OutputStream out, HTMLLink link, int statusCode, Map<String, List<String>> headers, 
+			InputStream body, long bodyLength, boolean isTruncated) throws IOException {
+		StringBuilder httpHeader = new StringBuilder("HTTP/1.1 ").append(statusCode).append(CRLF);
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			if (header.getKey().equalsIgnoreCase("Content-Encoding") || header.getKey().equalsIgnoreCase("Transfer-Encoding")
+					|| (header.getKey().equalsIgnoreCase("Content-Length") && !isTruncated)) {
+				continue;
+			}
+			for (String value : header.getValue()) {
+				httpHeader.append(header.getKey()).append(": ").append(value).append(CRLF);
+			}
+		}
+		httpHeader.append(CRLF);
+		byte[] httpHeaderBytes = httpHeader.toString().getBytes(StandardCharsets.UTF_8);
+
+		StringBuilder warcHeader = new StringBuilder("WARC/1.0").append(CRLF)
+				.append("WARC-Type: response").append(CRLF)
+				.append("WARC-Record-ID: <urn:uuid:").append(UUID.randomUUID()).append('>').append(CRLF)
+				.append("WARC-Date: ").append(Instant.now().truncatedTo(ChronoUnit.SECONDS)).append(CRLF)
+				.append("WARC-Target-URI: ").append(link.getCanonicalPageURLString()).append(CRLF)
+				.append("Content-Type: application/http; msgtype=response").append(CRLF)
+				.append("Content-Length: ").append(httpHeaderBytes.length + bodyLength).append(CRLF);
+		if (isTruncated) {
+			warcHeader.append(TRUNCATED_HEADER).append(CRLF);
+		}
+		warcHeader.append(CRLF);
+		out.write(warcHeader.toString().getBytes(StandardCharsets.UTF_8));
+		out.write(httpHeaderBytes);
+		try (InputStream in = body) {
+			byte[] buffer = new byte[8 * 1024];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		}
+		out.write((CRLF + CRLF).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param segmentNumber number of a segment.
+	 * @return the file name of the segment.
+	 */
+	static String getSegmentFileName(int segmentNumber) {
+		return "segment-" + segmentNumber + ".warc.gz";
+	}
+
+	/**
+	 * @param segmentNumber number of the segment.
+	 * @return the segment, opened to be appended to.
+	 * @throws IOException if it can't be opened.
+	 */
+	private FileChannel openSegment(int segmentNumber) throws IOException {
+		return FileChannel.open(this.directory.resolve(getSegmentFileName(segmentNumber)),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+}
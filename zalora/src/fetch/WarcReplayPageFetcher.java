@@ -0,0 +1,324 @@
+package fetch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+
+import page.HTMLLink;
+
+/**
+ * A {@link PageFetcher} that answers every link from a WARC archive written
+ * by a {@link WarcRecordingPageFetcher}, without going to the network. The
+ * CDX index is loaded when the fetcher is created, and each record is then
+ * read with a single positioned read of its segment, so a crawl can be
+ * replayed as fast as the disk allows, and gives the same results every time.
+ * A link that wasn't recorded is answered 404 Not Found. Every record is
+ * passed through the {@link ResponseGate}, so a response rejected from its
+ * headers when it was recorded is rejected again.
+ *
+ * @author ted.kuo
+ */
+public class WarcReplayPageFetcher implements PageFetcher, Closeable {
+
+	/**
+	 * The largest body replayed by default, in bytes.
+	 */
+	private static final long DEFAULT_MAX_BODY_SIZE = 10 * 1024 * 1024;
+
+	/**
+	 * Directory of the archive.
+	 */
+	private Path directory;
+
+	/**
+	 * Where the record of each canonical URL is, the last one if it was recorded more than once.
+	 */
+	private Map<String, RecordLocation> recordLocations;
+
+	/**
+	 * The segments opened so far, by file name.
+	 */
+	private ConcurrentMap<String, FileChannel> segments;
+
+	/**
+	 * The pool the bodies are read into.
+	 */
+	private BufferPool bufferPool;
+
+	/**
+	 * The largest body replayed, in bytes.
+	 */
+	private long maxBodySize;
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory of the archive.
+	 * @throws IOException if the index of the archive can't be read.
+	 */
+	public WarcReplayPageFetcher(Path directory) throws IOException {
+		this(directory, new BufferPool(16 * 1024, 1024), DEFAULT_MAX_BODY_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory of the archive.
+	 * @param bufferPool the pool the bodies are read into.
+	 * @param maxBodySize the largest body replayed, in bytes.
+	 * @throws IOException if the index of the archive can't be read.
+	 */
+	public WarcReplayPageFetcher(Path directory, BufferPool bufferPool, long maxBodySize) throws IOException {
+		this.directory = directory;
+		this.bufferPool = bufferPool;
+		this.maxBodySize = maxBodySize;
+		this.segments = new ConcurrentHashMap<>();
+		this.recordLocations = new HashMap<>();
+		try (BufferedReader index = Files.newBufferedReader(directory.resolve(WarcRecordingPageFetcher.INDEX_FILE_NAME),
+				StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = index.readLine()) != null) {
+				String[] fields = line.split(" ");
+				if (fields.length != 4) {
+					// The last line of a recording that died half way.
+					continue;
+				}
+				this.recordLocations.put(fields[0],
+						new RecordLocation(fields[1], Long.parseLong(fields[2]), Integer.parseInt(fields[3])));
+			}
+		}
+	}
+
+	@Override
+	public CompletableFuture<PageResponse> fetch(HTMLLink link) {
+		RecordLocation location = this.recordLocations.get(link.getCanonicalPageURLString());
+		if (location == null) {
+			return CompletableFuture.completedFuture(new PageResponse(link, 404,
+					Collections.<String, List<String>>emptyMap(), new byte[0]));
+		}
+		try {
+			return CompletableFuture.completedFuture(readRecord(link, location));
+		} catch (IOException e) {
+			// A RejectedResponseException included, as the fetcher recorded would have failed.
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * @return the number of responses in the archive.
+	 */
+	public int getNumberOfRecords() {
+		return this.recordLocations.size();
+	}
+
+	/**
+	 * Closes the segments.
+	 *
+	 * @throws IOException if a segment can't be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (FileChannel segment : this.segments.values()) {
+			segment.close();
+		}
+	}
+
+	/**
+	 * Reads the response recorded for the given link.
+	 *
+	 * @param link of the response.
+	 * @param location of the record.
+	 * @return the recorded response.
+	 * @throws IOException if the record can't be read.
+	 */
+	private PageResponse readRecord(HTMLLink link, RecordLocation location) throws IOException {
+		ByteBuffer compressed = ByteBuffer.allocate(location.length);
+		FileChannel segment = getSegment(location.segment);
+		while (compressed.hasRemaining()) {
+			if (segment.read(compressed, location.offset + compressed.position()) == -1) {
+				throw new IOException("truncated record in " + location.segment + " at " + location.offset);
+			}
+		}
+
+		try (InputStream in = new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(compressed.array())))) {
+			// WARC header, of which only the length of the block is needed.
+			long blockLength = -1;
+			boolean isTruncated = false;
+			String line;
+			while (!(line = readLine(in)).isEmpty()) {
+				if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+					blockLength = Long.parseLong(line.substring(15).trim());
+				}
+				isTruncated |= line.equalsIgnoreCase(WarcRecordingPageFetcher.TRUNCATED_HEADER);
+			}
+			if (blockLength < 0) {
+				throw new IOException("no Content-Length in record in " + location.segment + " at " + location.offset);
+			}
+
+			// HTTP status line and headers.
+			String statusLine = readLine(in);
+			long httpHeaderLength = statusLine.length() + 2;
+			int statusCode = Integer.parseInt(statusLine.split(" ")[1]);
+			Map<String, List<String>> headers = new LinkedHashMap<>();
+			while (!(line = readLine(in)).isEmpty()) {
+				httpHeaderLength += line.getBytes(StandardCharsets.UTF_8).length + 2;
+				int colon = line.indexOf(':');
+				if (colon > 0) {
+					List<String> values = headers.get(line.substring(0, colon));
+					if (values == null) {
+						values = new ArrayList<>(1);
+						headers.put(line.substring(0, colon), values);
+					}
+					values.add(line.substring(colon + 1).trim());
+				}
+			}
+			httpHeaderLength += 2;
+
+			// The body of a truncated record wasn't downloaded, its length is the one the headers gave.
+			long contentLength = blockLength - httpHeaderLength;
+			if (isTruncated) {
+				String contentLengthHeader = getHeader(headers, "Content-Length");
+				contentLength = contentLengthHeader == null ? -1 : Long.parseLong(contentLengthHeader);
+			}
+			ResponseGate.check(statusCode, getHeader(headers, "Content-Type"), contentLength, this.maxBodySize);
+			return new PageResponse(link, statusCode, headers, readBody(in, blockLength - httpHeaderLength));
+		}
+	}
+
+	/**
+	 * Reads the body of a record into pooled chunks.
+	 *
+	 * @param in positioned at the start of the body.
+	 * @param length of the body.
+	 * @return the body.
+	 * @throws IOException if the record is truncated, or the body too large.
+	 */
+	private PageBody readBody(InputStream in, long length) throws IOException {
+		if (length > this.maxBodySize) {
+			throw new BodyTooLargeException(this.maxBodySize);
+		}
+		PageBody body = new PageBody(this.bufferPool, this.maxBodySize);
+		byte[] buffer = new byte[8 * 1024];
+		long remaining = length;
+		try {
+			while (remaining > 0) {
+				int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (read == -1) {
+					throw new IOException("truncated body");
+				}
+				body.append(ByteBuffer.wrap(buffer, 0, read));
+				remaining -= read;
+			}
+		} catch (IOException e) {
+			body.release();
+			throw e;
+		}
+		return body;
+	}
+
+	/**
+	 * @param headers of a response.
+	 * @param name of a header, in any case.
+	 * @return the first value of the header, null if there is none.
+	 */
+	private static String getHeader(Map<String, List<String>> headers, String name) {
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+				return header.getValue().get(0);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads a header line.
+	 *
+	 * @param in to be read.
+	 * @return the line, without its line separator.
+	 * @throws IOException if the stream ends before the line.
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != '\n') {
+			if (b == -1) {
+				throw new IOException("truncated header");
+			}
+			line.write(b);
+		}
+		String value = line.toString(StandardCharsets.UTF_8.name());
+		return value.endsWith("\r") ? value.substring(0, value.length() - 1) : value;
+	}
+
+	/**
+	 * @param fileName of a segment.
+	 * @return the segment, opened to be read.
+	 * @throws IOException if it can't be opened.
+	 */
+	private FileChannel getSegment(String fileName) throws IOException {
+		FileChannel segment = this.segments.get(fileName);
+		if (segment == null) {
+			segment = FileChannel.open(this.directory.resolve(fileName), StandardOpenOption.READ);
+			FileChannel opened = this.segments.putIfAbsent(fileName, segment);
+			if (opened != null) {
+				segment.close();
+				segment = opened;
+			}
+		}
+		return segment;
+	}
+
+	/**
+	 * Where a record is in the archive.
+	 */
+	private static class RecordLocation {
+
+		/**
+		 * File name of the segment.
+		 */
+		private final String segment;
+
+		/**
+		 * Offset of the record in the segment.
+		 */
+		private final long offset;
+
+		/**
+		 * Length of the compressed record.
+		 */
+		private final int length;
+
+		/**
+		 * Constructor
+		 *
+		 * @param segment file name of the segment.
+		 * @param offset of the record in the segment.
+		 * @param length of the compressed record.
+		 */
+		RecordLocation(String segment, long offset, int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+}
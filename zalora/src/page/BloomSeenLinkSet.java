@@ -0,0 +1,198 @@
+package page;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link SeenLinkSet} backed by a Bloom filter of a fixed size, for crawls
+ * too large even for {@link FingerprintSeenLinkSet}. Memory use never grows
+ * past the given budget, at the cost of sometimes taking a new link for one
+ * already seen. The filter is sized so that this happens at the given false
+ * positive rate once it holds as many links as the budget allows for, and less
+ * often before that.
+ *
+ * Since links taken for duplicates are not counted, {@link #size()} is an
+ * approximate count that falls slightly short of the links really discovered.
+ *
+ * The bits of a link are set under a lock striped by its fingerprint, so when
+ * crawlers add the same new link at the same time only one of them takes it
+ * as new.
+ *
+ * @author ted.kuo
+ */
+public class BloomSeenLinkSet implements SeenLinkSet {
+
+	/**
+	 * The number of locks the fingerprints are striped over, a power of two.
+	 */
+	private static final int NUMBER_OF_LOCKS = 64;
+
+	/**
+	 * The number of bits in the filter.
+	 */
+	private final long numberOfBits;
+
+	/**
+	 * The number of bits set for each link.
+	 */
+	private final int numberOfHashes;
+
+	/**
+	 * The number of links the filter is sized for.
+	 */
+	private final long capacity;
+
+	/**
+	 * The bits of the filter.
+	 */
+	private final AtomicLongArray bits;
+
+	/**
+	 * The number of bits set.
+	 */
+	private final AtomicLong numberOfBitsSet;
+
+	/**
+	 * The number of links added that were taken as new.
+	 */
+	private final AtomicLong numberOfLinksAdded;
+
+	/**
+	 * The locks the bits of a fingerprint are set under, by fingerprint.
+	 */
+	private final Object[] locks;
+
+	/**
+	 * Constructor
+	 *
+	 * @param memoryBudgetBytes the number of bytes the filter may use.
+	 * @param falsePositiveRate the rate of new links taken as already seen,
+	 *        once the filter is full.
+	 */
+	public BloomSeenLinkSet(long memoryBudgetBytes, double falsePositiveRate) {
+		if (memoryBudgetBytes < Long.BYTES) {
+			throw new IllegalArgumentException("the memory budget is too small: " + memoryBudgetBytes);
+		}
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+			throw new IllegalArgumentException("the false positive rate must be between 0 and 1: " + falsePositiveRate);
+		}
+		int numberOfWords = (int) Math.min(memoryBudgetBytes / Long.BYTES, Integer.MAX_VALUE - 8);
+		this.numberOfBits = (long) numberOfWords * Long.SIZE;
+		this.bits = new AtomicLongArray(numberOfWords);
+
+		// The optimal number of hashes and capacity for the rate, with ln(2)^2 bits per link.
+		double ln2 = Math.log(2);
+		this.numberOfHashes = Math.max(1, (int) Math.round(-Math.log(falsePositiveRate) / ln2));
+		this.capacity = (long) (-this.numberOfBits * ln2 * ln2 / Math.log(falsePositiveRate));
+		this.numberOfBitsSet = new AtomicLong();
+		this.numberOfLinksAdded = new AtomicLong();
+		this.locks = new Object[NUMBER_OF_LOCKS];
+		for (int i = 0; i < NUMBER_OF_LOCKS; i++) {
+			this.locks[i] = new Object();
+		}
+	}
+
+	@Override
+	public boolean add(HTMLLink link) {
+		return addFingerprint(link.getCanonicalURL().getFingerprint());
+	}
+
+	/**
+	 * Adds the given fingerprint to this filter. The bits are derived from the
+	 * two halves of the fingerprint by double hashing.
+	 *
+	 * @param fingerprint of a link.
+	 * @return true if any of the bits of the fingerprint was not yet set, ie. it
+	 *         has certainly not been added before.
+	 */
+	public boolean addFingerprint(long fingerprint) {
+		long hash1 = fingerprint & 0xFFFFFFFFL;
+		long hash2 = (fingerprint >>> 32) | 1;
+		boolean isNew = false;
+		// Other fingerprints may share the words, so the bits are still set atomically.
+		synchronized (this.locks[(int) (fingerprint ^ (fingerprint >>> 32)) & (NUMBER_OF_LOCKS - 1)]) {
+			for (int i = 0; i < this.numberOfHashes; i++) {
+				isNew |= setBit(Math.floorMod(hash1 + i * hash2, this.numberOfBits));
+			}
+		}
+		if (isNew) {
+			this.numberOfLinksAdded.incrementAndGet();
+		}
+		return isNew;
+	}
+
+	@Override
+	public int size() {
+		return (int) Math.min(this.numberOfLinksAdded.get(), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return the number of links the filter is sized for.
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the fraction of the bits that are set.
+	 */
+	public double getFillRatio() {
+		return (double) this.numberOfBitsSet.get() / this.numberOfBits;
+	}
+
+	/**
+	 * Returns the probability that a new link added now is taken as already
+	 * seen, estimated from the bits set so far.
+	 *
+	 * @return the estimated false positive rate.
+	 */
+	public double getEstimatedFalsePositiveRate() {
+		return Math.pow(getFillRatio(), this.numberOfHashes);
+	}
+
+	/**
+	 * Returns the number of distinct links in the filter, estimated from the bits
+	 * set so far rather than counted.
+	 *
+	 * @return the estimated number of links.
+	 */
+	public long getEstimatedNumberOfLinks() {
+		double fillRatio = getFillRatio();
+		if (fillRatio >= 1) {
+			return Long.MAX_VALUE;
+		}
+		return Math.round(-(double) this.numberOfBits / this.numberOfHashes * Math.log(1 - fillRatio));
+	}
+
+	/**
+	 * Sets the given bit.
+	 *
+	 * @param bitIndex of the bit.
+	 * @return true if the bit was not set before.
+	 */
+	private boolean setBit(long bitIndex) {
+		int wordIndex = (int) (bitIndex >>> 6);
+		long mask = 1L << bitIndex;
+		long word;
+		do {
+			word = this.bits.get(wordIndex);
+			if ((word & mask) != 0) {
+				return false;
+			}
+		} while (!this.bits.compareAndSet(wordIndex, word, word | mask));
+		this.numberOfBitsSet.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * String representation of the statistics of this filter.
+	 *
+	 * @return toString
+	 */
+	@Override
+	public String toString() {
+		return String.format("Bloom filter: %d links added, about %d in the filter, capacity %d, "
+				+ "%.1f%% of the bits set, estimated false positive rate %.4f%%", this.numberOfLinksAdded.get(),
+				getEstimatedNumberOfLinks(), this.capacity, getFillRatio() * 100, getEstimatedFalsePositiveRate() * 100);
+	}
+}
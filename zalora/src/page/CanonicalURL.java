@@ -0,0 +1,376 @@
+package page;
+
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The canonical form of a URL, used to tell whether two links lead to the
+ * same page. It's worked out once, in a single pass over the URL without any
+ * regular expression:
+ * <ul>
+ * <li>the scheme and host are lower-cased, and the port dropped if it's the
+ * default one of the scheme,</li>
+ * <li>"." and ".." segments of the path are resolved,</li>
+ * <li>percent-escapes are upper-cased, escapes of unreserved characters are
+ * decoded, and characters that aren't allowed in a URL are escaped,</li>
+ * <li>the query and fragment are removed, and so is a trailing slash.</li>
+ * </ul>
+ * The canonical string, its hash code and its {@link URLFingerprint} are all
+ * kept, so comparing two of them is mostly comparing fields.
+ *
+ * @author ted.kuo
+ */
+public final class CanonicalURL {
+
+	/**
+	 * The maximum number of hosts kept in the pool of interned hosts.
+	 */
+	private static final int MAX_INTERNED_HOSTS = 10000;
+
+	/**
+	 * Upper-case hexadecimal digits of percent-escapes.
+	 */
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * Pool of interned hosts, so the many links to the same host share one string.
+	 */
+	private static final ConcurrentMap<String, String> INTERNED_HOSTS = new ConcurrentHashMap<>();
+
+	/**
+	 * The canonical form of the URL.
+	 */
+	private final String value;
+
+	/**
+	 * The host of the URL, lower-cased.
+	 */
+	private final String host;
+
+	/**
+	 * Hash code of the canonical form.
+	 */
+	private final int hash;
+
+	/**
+	 * {@link URLFingerprint} of the canonical form.
+	 */
+	private final long fingerprint;
+
+	/**
+	 * Constructor
+	 *
+	 * @param value the canonical form of the URL.
+	 * @param host of the URL.
+	 */
+	private CanonicalURL(String value, String host) {
+		this.value = value;
+		this.host = host;
+		this.hash = value.hashCode();
+		this.fingerprint = URLFingerprint.of(value);
+	}
+
+	/**
+	 * Returns the canonical form of the given URL, with its host interned.
+	 *
+	 * @param url to be normalised.
+	 * @return the canonical form.
+	 */
+	public static CanonicalURL of(URL url) {
+		return of(url.toString(), true);
+	}
+
+	/**
+	 * Returns the canonical form of the given URL.
+	 *
+	 * @param url to be normalised, an absolute URL.
+	 * @param isHostInterned true to share the host string with other URLs of the
+	 *        same host.
+	 * @return the canonical form.
+	 */
+	public static CanonicalURL of(String url, boolean isHostInterned) {
+		int length = url.length();
+		StringBuilder canonical = new StringBuilder(length);
+
+		// Scheme, lower-cased.
+		int schemeEnd = url.indexOf(':');
+		int authorityStart = schemeEnd + 3;
+		if (schemeEnd < 0 || !url.startsWith("//", schemeEnd + 1)) {
+			// Not a hierarchical URL, all that can be done is to remove the query and fragment.
+			return new CanonicalURL(url.substring(0, findEnd(url, 0)), "");
+		}
+		for (int i = 0; i < schemeEnd; i++) {
+			canonical.append(toLowerCase(url.charAt(i)));
+		}
+		canonical.append("://");
+
+		// Authority: user information as it is, the host lower-cased, and the port unless it's the default.
+		int authorityEnd = authorityStart;
+		while (authorityEnd < length && "/?#".indexOf(url.charAt(authorityEnd)) < 0) {
+			authorityEnd++;
+		}
+		int hostStart = url.lastIndexOf('@', authorityEnd - 1) + 1;
+		if (hostStart <= authorityStart) {
+			hostStart = authorityStart;
+		}
+		int portStart = url.lastIndexOf(':', authorityEnd - 1);
+		if (portStart < hostStart || url.lastIndexOf(']', authorityEnd - 1) > portStart) {
+			portStart = authorityEnd;
+		}
+		canonical.append(url, authorityStart, hostStart);
+		int canonicalHostStart = canonical.length();
+		for (int i = hostStart; i < portStart; i++) {
+			canonical.append(toLowerCase(url.charAt(i)));
+		}
+		int canonicalHostEnd = canonical.length();
+		if (portStart + 1 < authorityEnd && !isDefaultPort(canonical, url, portStart + 1, authorityEnd)) {
+			canonical.append(url, portStart, authorityEnd);
+		}
+
+		// Path, up to the query or fragment.
+		int pathEnd = findEnd(url, authorityEnd);
+		appendPath(canonical, url, authorityEnd, pathEnd);
+		if (canonical.length() > 0 && canonical.charAt(canonical.length() - 1) == '/') {
+			canonical.setLength(canonical.length() - 1);
+		}
+
+		String host = canonical.substring(canonicalHostStart, canonicalHostEnd);
+		if (isHostInterned) {
+			host = intern(host);
+		}
+		return new CanonicalURL(canonical.toString(), host);
+	}
+
+	/**
+	 * @return the host of the URL, lower-cased.
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * @return the {@link URLFingerprint} of the canonical form.
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * HashCode
+	 *
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	/**
+	 * Returns true if equals
+	 *
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CanonicalURL)) {
+			return false;
+		}
+		CanonicalURL other = (CanonicalURL) obj;
+		return this.fingerprint == other.fingerprint && this.hash == other.hash && this.value.equals(other.value);
+	}
+
+	/**
+	 * @return the canonical form of the URL.
+	 */
+	@Override
+	public String toString() {
+		return this.value;
+	}
+
+	/**
+	 * Appends the normalised path, resolving dot-segments as each segment ends.
+	 *
+	 * @param canonical to append to.
+	 * @param url being normalised.
+	 * @param start of the path in the URL.
+	 * @param end of the path in the URL.
+	 */
+	private static void appendPath(StringBuilder canonical, String url, int start, int end) {
+		int pathStart = canonical.length();
+		int segmentStart = pathStart;
+		int i = start;
+		while (i < end) {
+			char c = url.charAt(i);
+			if (c == '/') {
+				if (!removeDotSegment(canonical, pathStart, segmentStart)) {
+					canonical.append('/');
+				}
+				segmentStart = canonical.length();
+				i++;
+			}
+			else if (c == '%' && i + 2 < end && isHex(url.charAt(i + 1)) && isHex(url.charAt(i + 2))) {
+				int decoded = Character.digit(url.charAt(i + 1), 16) << 4 | Character.digit(url.charAt(i + 2), 16);
+				if (isUnreserved(decoded)) {
+					canonical.append((char) decoded);
+				}
+				else {
+					appendEscape(canonical, decoded);
+				}
+				i += 3;
+			}
+			else if (c > ' ' && c < 0x7F && c != '%') {
+				canonical.append(c);
+				i++;
+			}
+			else {
+				// Not allowed in a URL, so escaped as UTF-8.
+				int codePoint = url.codePointAt(i);
+				appendUTF8Escapes(canonical, codePoint);
+				i += Character.charCount(codePoint);
+			}
+		}
+		removeDotSegment(canonical, pathStart, segmentStart);
+	}
+
+	/**
+	 * Removes the segment just appended if it's "." or "..", and for ".." the
+	 * segment before it as well.
+	 *
+	 * @param canonical being appended to.
+	 * @param pathStart where the path starts in the canonical form.
+	 * @param segmentStart where the segment starts in the canonical form.
+	 * @return true if the segment was removed, so the slash before it ends the path.
+	 */
+	private static boolean removeDotSegment(StringBuilder canonical, int pathStart, int segmentStart) {
+		int segmentLength = canonical.length() - segmentStart;
+		if (segmentLength == 1 && canonical.charAt(segmentStart) == '.') {
+			canonical.setLength(segmentStart);
+			return true;
+		}
+		if (segmentLength == 2 && canonical.charAt(segmentStart) == '.' && canonical.charAt(segmentStart + 1) == '.') {
+			canonical.setLength(segmentStart);
+			if (segmentStart - 1 > pathStart) {
+				// Back to just after the slash before the previous segment.
+				int previousSlash = canonical.lastIndexOf("/", segmentStart - 2);
+				canonical.setLength(Math.max(previousSlash + 1, pathStart + 1));
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param url being normalised.
+	 * @param start where to start looking.
+	 * @return where the query or fragment starts, or the length of the URL.
+	 */
+	private static int findEnd(String url, int start) {
+		for (int i = start; i < url.length(); i++) {
+			char c = url.charAt(i);
+			if (c == '?' || c == '#') {
+				return i;
+			}
+		}
+		return url.length();
+	}
+
+	/**
+	 * @param canonical holding the lower-cased scheme at its start.
+	 * @param url being normalised.
+	 * @param start of the port number in the URL.
+	 * @param end of the port number in the URL.
+	 * @return true if the port is the default one of the scheme.
+	 */
+	private static boolean isDefaultPort(StringBuilder canonical, String url, int start, int end) {
+		int length = end - start;
+		if (length == 2 && url.startsWith("80", start)) {
+			return canonical.indexOf("http:") == 0;
+		}
+		if (length == 3 && url.startsWith("443", start)) {
+			return canonical.indexOf("https:") == 0;
+		}
+		return false;
+	}
+
+	/**
+	 * @param c character of the URL.
+	 * @return true if it's a hexadecimal digit.
+	 */
+	private static boolean isHex(char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+	}
+
+	/**
+	 * @param c decoded byte of a percent-escape.
+	 * @return true if it's a character that never needs to be escaped.
+	 */
+	private static boolean isUnreserved(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+				|| c == '-' || c == '.' || c == '_' || c == '~';
+	}
+
+	/**
+	 * @param c ASCII character.
+	 * @return the character lower-cased.
+	 */
+	private static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	/**
+	 * Appends a percent-escape of the given byte.
+	 *
+	 * @param canonical to append to.
+	 * @param b byte to be escaped.
+	 */
+	private static void appendEscape(StringBuilder canonical, int b) {
+		canonical.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+	}
+
+	/**
+	 * Appends the percent-escapes of the UTF-8 bytes of the given code point.
+	 *
+	 * @param canonical to append to.
+	 * @param codePoint to be escaped.
+	 */
+	private static void appendUTF8Escapes(StringBuilder canonical, int codePoint) {
+		if (codePoint < 0x80) {
+			appendEscape(canonical, codePoint);
+		}
+		else if (codePoint < 0x800) {
+			appendEscape(canonical, 0xC0 | (codePoint >> 6));
+			appendEscape(canonical, 0x80 | (codePoint & 0x3F));
+		}
+		else if (codePoint < 0x10000) {
+			appendEscape(canonical, 0xE0 | (codePoint >> 12));
+			appendEscape(canonical, 0x80 | ((codePoint >> 6) & 0x3F));
+			appendEscape(canonical, 0x80 | (codePoint & 0x3F));
+		}
+		else {
+			appendEscape(canonical, 0xF0 | (codePoint >> 18));
+			appendEscape(canonical, 0x80 | ((codePoint >> 12) & 0x3F));
+			appendEscape(canonical, 0x80 | ((codePoint >> 6) & 0x3F));
+			appendEscape(canonical, 0x80 | (codePoint & 0x3F));
+		}
+	}
+
+	/**
+	 * @param host to be interned.
+	 * @return the pooled string equal to the host, or the host itself once the pool is full.
+	 */
+	private static String intern(String host) {
+		String interned = INTERNED_HOSTS.get(host);
+		if (interned != null) {
+			return interned;
+		}
+		if (INTERNED_HOSTS.size() >= MAX_INTERNED_HOSTS) {
+			return host;
+		}
+		interned = INTERNED_HOSTS.putIfAbsent(host, host);
+		return interned != null ? interned : host;
+	}
+}
@@ -0,0 +1,259 @@
+package page;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import crawler.PageCrawler;
+
+/**
+ * A {@link LinkRepository} for many {@link PageCrawler}s working at the
+ * same time. Instead of one monitor guarding everything, the set of links
+ * discovered is a thread-safe {@link SeenLinkSet}, the queue of unvisited
+ * links is a lock-free queue, and the bookkeeping of the links in progress is
+ * kept in atomic counters. Crawlers waiting for a link block on a {@link Semaphore} that
+ * counts the links in the queue.
+ *
+ * @author ted.kuo
+ */
+public class ConcurrentHTMLLinkRepository extends LinkRepository {
+
+	/**
+	 * A history of the links that have been inserted to this repository.
+	 */
+	private SeenLinkSet htmlLinks;
+
+	/**
+	 * A queue of links that have not yet been visited.
+	 */
+	private LinkFrontier unvisitedLinkQueue;
+
+	/**
+	 * The number of links in the queue, as the size of the queue itself is not
+	 * constant time.
+	 */
+	private AtomicInteger numberOfUnvisitedLinks;
+
+	/**
+	 * Permits for the links in the queue, a crawler acquires one before taking a link.
+	 */
+	private Semaphore availableLinks;
+
+	/**
+	 * The number of links that are queued, in progress or deferred. The crawl is
+	 * finished once this drops to zero.
+	 */
+	private AtomicInteger numberOfLinksOutstanding;
+
+	/**
+	 * Monitor the crawl waits on until it's finished.
+	 */
+	private final Object crawlFinished;
+
+	/**
+	 * Constructor. Initialises an empty repository.
+	 */
+	public ConcurrentHTMLLinkRepository() {
+		this(new SetBackedSeenLinkSet(ConcurrentHashMap.<HTMLLink>newKeySet()));
+	}
+
+	/**
+	 * Constructor. Initialises an empty repository.
+	 *
+	 * @param seenLinks the set to record the links discovered in, it must be thread-safe.
+	 */
+	public ConcurrentHTMLLinkRepository(SeenLinkSet seenLinks) {
+		this(seenLinks, new QueueLinkFrontier(new ConcurrentLinkedQueue<HTMLLink>()));
+	}
+	
+	/**
+	 * Constructor. Initialises an empty repository.
+	 * 
+	 * @param seenLinks the set to record the links discovered in, it must be thread-safe.
+	 * @param unvisitedLinks the queue to keep the links not yet visited in, it must be thread-safe.
+	 */
+	public ConcurrentHTMLLinkRepository(SeenLinkSet seenLinks, LinkFrontier unvisitedLinks) {
+		this.htmlLinks = seenLinks;
+		this.unvisitedLinkQueue = unvisitedLinks;
+		this.numberOfUnvisitedLinks = new AtomicInteger();
+		this.availableLinks = new Semaphore(0);
+		this.numberOfLinksOutstanding = new AtomicInteger();
+		this.crawlFinished = new Object();
+	}
+
+	@Override
+	public HTMLLink pollUnvisitedPageQueue() {
+		if (!this.availableLinks.tryAcquire()) {
+			return null;
+		}
+		HTMLLink link = pollQueue();
+		if (link != null) {
+			// Polled links are not tracked as in progress.
+			linkFinished();
+		}
+		else {
+			passOnWakeUp();
+		}
+		return link;
+	}
+
+	@Override
+	public HTMLLink takeUnvisitedLink() throws InterruptedException {
+		while (true) {
+			this.availableLinks.acquire();
+			HTMLLink link = pollQueue();
+			if (link != null) {
+				return link;
+			}
+			// The permit was released to wake the crawlers up when the crawl finished.
+			if (passOnWakeUp()) {
+				return null;
+			}
+		}
+	}
+
+	@Override
+	public void markLinkVisited(HTMLLink link) {
+		journalVisited(link);
+		linkFinished();
+	}
+
+	@Override
+	public void deferLink(HTMLLink link) {
+		journalDeferred(link);
+		this.numberOfLinksOutstanding.incrementAndGet();
+	}
+
+	@Override
+	public void requeueDeferredLink(HTMLLink link) {
+		// Still counted as outstanding since deferLink().
+		this.numberOfUnvisitedLinks.incrementAndGet();
+		this.unvisitedLinkQueue.add(link);
+		this.availableLinks.release();
+	}
+
+	@Override
+	public void awaitAllLinksVisited() throws InterruptedException {
+		synchronized (this.crawlFinished) {
+			while (this.numberOfLinksOutstanding.get() != 0) {
+				this.crawlFinished.wait();
+			}
+		}
+	}
+
+	@Override
+	public void insert(HTMLLink page) {
+		if (this.htmlLinks.add(page)) {
+			journalDiscovered(page);
+			enqueue(page);
+		}
+	}
+
+	/**
+	 * Inserts the given Collection of {@link HTMLLink}s into this repository.
+	 * Each link is checked against the concurrent set on its own, and the new
+	 * ones are then queued together.
+	 *
+	 * @param pages to be inserted into this repository
+	 */
+	@Override
+	public void insert(Collection<HTMLLink> pages) {
+		List<HTMLLink> newPages = new ArrayList<>(pages.size());
+		for (HTMLLink page : pages) {
+			if (this.htmlLinks.add(page)) {
+				journalDiscovered(page);
+				newPages.add(page);
+			}
+		}
+		if (!newPages.isEmpty()) {
+			// Counted as outstanding before they can be taken, so the crawl can't finish in between.
+			this.numberOfLinksOutstanding.addAndGet(newPages.size());
+			this.numberOfUnvisitedLinks.addAndGet(newPages.size());
+			for (HTMLLink newPage : newPages) {
+				this.unvisitedLinkQueue.add(newPage);
+			}
+			this.availableLinks.release(newPages.size());
+		}
+	}
+
+	@Override
+	public boolean insertRecovered(HTMLLink page, boolean isVisited) {
+		if (!this.htmlLinks.add(page)) {
+			return false;
+		}
+		if (!isVisited) {
+			enqueue(page);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean isAllLinksVisited() {
+		return this.unvisitedLinkQueue.isEmpty();
+	}
+
+	@Override
+	public int getNumberOfLinksDiscovered() {
+		return this.htmlLinks.size();
+	}
+
+	@Override
+	public int getNumberOfUnvisitedLinks() {
+		return this.numberOfUnvisitedLinks.get();
+	}
+
+	/**
+	 * Queues a link that has just been discovered.
+	 *
+	 * @param page to be queued.
+	 */
+	private void enqueue(HTMLLink page) {
+		this.numberOfLinksOutstanding.incrementAndGet();
+		this.numberOfUnvisitedLinks.incrementAndGet();
+		this.unvisitedLinkQueue.add(page);
+		this.availableLinks.release();
+	}
+
+	/**
+	 * @return the first link in the queue, null if it's empty.
+	 */
+	private HTMLLink pollQueue() {
+		HTMLLink link = this.unvisitedLinkQueue.poll();
+		if (link != null) {
+			this.numberOfUnvisitedLinks.decrementAndGet();
+		}
+		return link;
+	}
+
+	/**
+	 * Passes on the permit of a crawler that found the queue empty to the next
+	 * crawler waiting, if the crawl is finished, so each of them wakes up in turn.
+	 *
+	 * @return true if the crawl is finished.
+	 */
+	private boolean passOnWakeUp() {
+		if (this.numberOfLinksOutstanding.get() != 0) {
+			return false;
+		}
+		this.availableLinks.release();
+		return true;
+	}
+
+	/**
+	 * Records that an outstanding link is done with, and wakes up everyone
+	 * waiting if that was the last one.
+	 */
+	private void linkFinished() {
+		if (this.numberOfLinksOutstanding.decrementAndGet() == 0) {
+			// Wake up a crawler waiting for a link, it will find the queue empty and wake the next.
+			this.availableLinks.release();
+			synchronized (this.crawlFinished) {
+				this.crawlFinished.notifyAll();
+			}
+		}
+	}
+}
@@ -0,0 +1,452 @@
+package page;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A write-ahead log of the changes to a {@link HTMLLinkRepository}, so that a
+ * crawl can be resumed after the JVM running it dies. Every link discovered is
+ * appended as a DISCOVERED record, and every link crawled as a VISITED record.
+ * A link's VISITED record always follows the DISCOVERED records of the links
+ * found on it, so whatever part of the log made it to disk is consistent: a
+ * page whose links were lost is itself not yet visited, and is crawled again.
+ *
+ * The log is rotated every so many records, and the rotated logs are folded
+ * into a compacted snapshot in the background: the same records, but only
+ * one per link, DISCOVERED for the links still to be crawled and VISITED for
+ * the rest. Recovery replays the snapshot and then the logs written since.
+ * Once a crawl has finished, {@link #finish()} deletes the files, so the next
+ * crawl starts afresh rather than recovering every link as visited.
+ *
+ * @author ted.kuo
+ */
+public class CrawlJournal implements Closeable {
+
+	/**
+	 * Record of a link inserted into the repository.
+	 */
+	private static final byte DISCOVERED = 1;
+
+	/**
+	 * Record of a link that has been crawled.
+	 */
+	private static final byte VISITED = 2;
+
+	/**
+	 * Default number of records written to a log before it is rotated.
+	 */
+	private static final int DEFAULT_SNAPSHOT_INTERVAL = 100000;
+
+	/**
+	 * Name of the snapshot file.
+	 */
+	private static final String SNAPSHOT_FILE = "snapshot";
+
+	/**
+	 * Prefix of the names of the log files, followed by their generation.
+	 */
+	private static final String LOG_FILE_PREFIX = "journal-";
+
+	/**
+	 * Suffix of the names of the log files.
+	 */
+	private static final String LOG_FILE_SUFFIX = ".log";
+
+	/**
+	 * Directory of the snapshot and the logs.
+	 */
+	private final Path directory;
+
+	/**
+	 * The number of records written to a log before it is rotated.
+	 */
+	private final int snapshotInterval;
+
+	/**
+	 * Compacts the rotated logs into the snapshot, one at a time.
+	 */
+	private final ExecutorService compactor;
+
+	/**
+	 * The log currently being written.
+	 */
+	private DataOutputStream log;
+
+	/**
+	 * Generation of the log currently being written.
+	 */
+	private long generation;
+
+	/**
+	 * The number of records written to the current log.
+	 */
+	private int numberOfRecords;
+
+	/**
+	 * The last compaction started, null if none has been.
+	 */
+	private Future<?> compaction;
+
+	/**
+	 * Constructor. Rotates the log every {@value #DEFAULT_SNAPSHOT_INTERVAL} records.
+	 *
+	 * @param directory of the snapshot and the logs, created if it doesn't exist.
+	 * @throws IOException if the log can't be created.
+	 */
+	public CrawlJournal(Path directory) throws IOException {
+		this(directory, DEFAULT_SNAPSHOT_INTERVAL);
+	}
+
+	/**
+	 * Constructor. Starts a new log after any left by an earlier crawl.
+	 *
+	 * @param directory of the snapshot and the logs, created if it doesn't exist.
+	 * @param snapshotInterval the number of records written to a log before it's rotated.
+	 * @throws IOException if the log can't be created.
+	 */
+	public CrawlJournal(Path directory, int snapshotInterval) throws IOException {
+		if (snapshotInterval <= 0) {
+			throw new IllegalArgumentException("snapshotInterval must be positive: " + snapshotInterval);
+		}
+		this.directory = directory;
+		this.snapshotInterval = snapshotInterval;
+		this.compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "journal-compactor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		Files.createDirectories(directory);
+		List<Long> generations = getLogGenerations();
+		this.generation = generations.isEmpty() ? 0 : generations.get(generations.size() - 1) + 1;
+		this.log = openLog(this.generation);
+	}
+
+	/**
+	 * Replays the snapshot and logs left by an earlier crawl into the given
+	 * repository, so that the links it discovered are known again and the links
+	 * it didn't visit are queued. This must be done before the journal is set on
+	 * the repository.
+	 *
+	 * @param repository to be restored.
+	 * @return the number of links queued to be crawled.
+	 * @throws IOException if the files can't be read.
+	 */
+	public int recover(LinkRepository repository) throws IOException {
+		List<Path> files = getFilesToReplay(this.generation);
+		FingerprintSeenLinkSet visitedLinks = readVisitedLinks(files);
+
+		int numberOfLinksQueued = 0;
+		for (Path file : files) {
+			try (DataInputStream input = openInput(file)) {
+				String url;
+				while ((url = readDiscovered(input, file)) != null) {
+					HTMLLink link = toLink(url);
+					if (link != null) {
+						boolean isVisited = visitedLinks.containsFingerprint(fingerprint(link));
+						if (repository.insertRecovered(link, isVisited) && !isVisited) {
+							numberOfLinksQueued++;
+						}
+					}
+				}
+			}
+		}
+		return numberOfLinksQueued;
+	}
+
+	/**
+	 * Records that the given link has been inserted into the repository.
+	 *
+	 * @param link that has been discovered.
+	 */
+	public synchronized void discovered(HTMLLink link) {
+		append(DISCOVERED, link);
+	}
+
+	/**
+	 * Records that the given link has been crawled, and writes the log out so far.
+	 *
+	 * @param link that has been visited.
+	 */
+	public synchronized void visited(HTMLLink link) {
+		append(VISITED, link);
+		try {
+			this.log.flush();
+		} catch (IOException e) {
+			System.err.println("Error:" + e.getMessage() + " writing the journal for link: " + link.getPageURL());
+		}
+	}
+
+	/**
+	 * Waits for any compaction in progress and closes the current log.
+	 *
+	 * @throws IOException if the log can't be closed.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		this.log.close();
+		this.compactor.shutdown();
+		try {
+			this.compactor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Closes the journal of a crawl that has finished, and deletes the snapshot
+	 * and the logs, so the next crawl starts afresh.
+	 *
+	 * @throws IOException if the log can't be closed, or the files deleted.
+	 */
+	public synchronized void finish() throws IOException {
+		close();
+		for (Path file : getFilesToReplay(Long.MAX_VALUE)) {
+			Files.delete(file);
+		}
+		Files.deleteIfExists(this.directory.resolve(SNAPSHOT_FILE + ".tmp"));
+	}
+
+	/**
+	 * Appends a record to the log, and rotates it once it has enough records.
+	 * The caller must hold the lock on this journal.
+	 *
+	 * @param type of the record.
+	 * @param link of the record.
+	 */
+	private void append(byte type, HTMLLink link) {
+		try {
+			this.log.writeByte(type);
+			this.log.writeUTF(link.getPageURL().toString());
+			if (++this.numberOfRecords >= this.snapshotInterval) {
+				rotate();
+			}
+		} catch (IOException e) {
+			System.err.println("Error:" + e.getMessage() + " writing the journal for link: " + link.getPageURL());
+		}
+	}
+
+	/**
+	 * Starts a new log, and folds the ones before it into the snapshot in the
+	 * background. If the last compaction hasn't finished, the logs are left for
+	 * the next one.
+	 *
+	 * @throws IOException if the new log can't be created.
+	 */
+	private void rotate() throws IOException {
+		this.log.close();
+		final long lastGeneration = this.generation++;
+		this.log = openLog(this.generation);
+		this.numberOfRecords = 0;
+
+		if (this.compaction == null || this.compaction.isDone()) {
+			this.compaction = this.compactor.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						compact(lastGeneration);
+					} catch (IOException e) {
+						System.err.println("Error:" + e.getMessage() + " compacting the journal.");
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Writes a new snapshot holding the old one and every log up to the given
+	 * generation, one record per link, then deletes those logs. If the JVM
+	 * dies before they are deleted, they are replayed again on top of the new
+	 * snapshot, which changes nothing.
+	 *
+	 * @param lastGeneration of the logs to be compacted.
+	 * @throws IOException if the files can't be read or written.
+	 */
+	private void compact(long lastGeneration) throws IOException {
+		List<Path> files = getFilesToReplay(lastGeneration + 1);
+		FingerprintSeenLinkSet visitedLinks = readVisitedLinks(files);
+		FingerprintSeenLinkSet writtenLinks = new FingerprintSeenLinkSet();
+
+		Path newSnapshot = this.directory.resolve(SNAPSHOT_FILE + ".tmp");
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(newSnapshot)))) {
+			for (Path file : files) {
+				try (DataInputStream input = openInput(file)) {
+					String url;
+					while ((url = readDiscovered(input, file)) != null) {
+						HTMLLink link = toLink(url);
+						if (link != null && writtenLinks.add(link)) {
+							output.writeByte(visitedLinks.containsFingerprint(fingerprint(link)) ? VISITED : DISCOVERED);
+							output.writeUTF(url);
+						}
+					}
+				}
+			}
+		}
+		Files.move(newSnapshot, this.directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		for (Path file : files) {
+			if (!file.getFileName().toString().equals(SNAPSHOT_FILE)) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	/**
+	 * Reads the fingerprints of all the links visited according to the given files.
+	 *
+	 * @param files to be read.
+	 * @return the links visited.
+	 * @throws IOException if the files can't be read.
+	 */
+	private FingerprintSeenLinkSet readVisitedLinks(List<Path> files) throws IOException {
+		FingerprintSeenLinkSet visitedLinks = new FingerprintSeenLinkSet();
+		for (Path file : files) {
+			try (DataInputStream input = openInput(file)) {
+				while (true) {
+					byte type = input.readByte();
+					String url = input.readUTF();
+					if (type == VISITED) {
+						HTMLLink link = toLink(url);
+						if (link != null) {
+							visitedLinks.addFingerprint(fingerprint(link));
+						}
+					}
+				}
+			} catch (EOFException e) {
+				// The end of the file, or of what was written before the JVM died.
+			}
+		}
+		return visitedLinks;
+	}
+
+	/**
+	 * Reads up to the next DISCOVERED record, or a VISITED record in a
+	 * snapshot, which is the only record of its link there.
+	 *
+	 * @param input to read from.
+	 * @param file being read.
+	 * @return the URL of the record, null at the end of the file.
+	 * @throws IOException if the file can't be read.
+	 */
+	private String readDiscovered(DataInputStream input, Path file) throws IOException {
+		boolean isSnapshot = file.getFileName().toString().equals(SNAPSHOT_FILE);
+		try {
+			while (true) {
+				byte type = input.readByte();
+				String url = input.readUTF();
+				if (type == DISCOVERED || isSnapshot) {
+					return url;
+				}
+			}
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the snapshot, if there is one, followed by the logs before the
+	 * given generation, oldest first.
+	 *
+	 * @param endGeneration generation of the first log not to be returned.
+	 * @return the files to replay, in order.
+	 * @throws IOException if the directory can't be listed.
+	 */
+	private List<Path> getFilesToReplay(long endGeneration) throws IOException {
+		List<Path> files = new ArrayList<>();
+		Path snapshot = this.directory.resolve(SNAPSHOT_FILE);
+		if (Files.exists(snapshot)) {
+			files.add(snapshot);
+		}
+		for (long generation : getLogGenerations()) {
+			if (generation < endGeneration) {
+				files.add(getLogFile(generation));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * @return the generations of the logs in the directory, in ascending order.
+	 * @throws IOException if the directory can't be listed.
+	 */
+	private List<Long> getLogGenerations() throws IOException {
+		List<Long> generations = new ArrayList<>();
+		try (DirectoryStream<Path> logs = Files.newDirectoryStream(this.directory, LOG_FILE_PREFIX + "*" + LOG_FILE_SUFFIX)) {
+			for (Path log : logs) {
+				String name = log.getFileName().toString();
+				generations.add(Long.parseLong(name.substring(LOG_FILE_PREFIX.length(), name.length() - LOG_FILE_SUFFIX.length())));
+			}
+		}
+		Collections.sort(generations);
+		return generations;
+	}
+
+	/**
+	 * @param generation of a log.
+	 * @return the file of the log.
+	 */
+	private Path getLogFile(long generation) {
+		return this.directory.resolve(LOG_FILE_PREFIX + generation + LOG_FILE_SUFFIX);
+	}
+
+	/**
+	 * @param generation of the log to be created.
+	 * @return the new log.
+	 * @throws IOException if the log can't be created.
+	 */
+	private DataOutputStream openLog(long generation) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(getLogFile(generation))));
+	}
+
+	/**
+	 * @param file to be read.
+	 * @return a stream of the records in the file.
+	 * @throws IOException if the file can't be opened.
+	 */
+	private static DataInputStream openInput(Path file) throws IOException {
+		return new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+	}
+
+	/**
+	 * @param link to be identified.
+	 * @return the fingerprint of the canonical URL of the link.
+	 */
+	private static long fingerprint(HTMLLink link) {
+		return link.getCanonicalURL().getFingerprint();
+	}
+
+	/**
+	 * @param url read from the journal.
+	 * @return a link to the URL, null if it's malformed.
+	 */
+	private static HTMLLink toLink(String url) {
+		try {
+			return new HTMLLink(new URL(url));
+		} catch (MalformedURLException e) {
+			System.err.println("Error:" + e.getMessage() + " for link: " + url);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,252 @@
+package page;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * A {@link SeenLinkSet} that keeps only the 64-bit {@link URLFingerprint} of
+ * the canonical URL of each link, in open-addressing hash tables of primitive
+ * longs. A link costs 8 bytes per slot instead of a whole {@link HTMLLink} and
+ * {@link java.util.HashSet} entry. The tables can be allocated off the heap,
+ * where they don't add to the work of the garbage collector at all.
+ *
+ * The fingerprints are spread over a number of stripes, each its own table
+ * with its own lock, so crawlers adding links rarely wait for each other.
+ *
+ * @author ted.kuo
+ */
+public class FingerprintSeenLinkSet implements SeenLinkSet {
+
+	/**
+	 * The number of stripes, a power of two.
+	 */
+	private static final int NUMBER_OF_STRIPES = 64;
+
+	/**
+	 * The number of high bits of a fingerprint that select its stripe.
+	 */
+	private static final int STRIPE_BITS = Integer.numberOfTrailingZeros(NUMBER_OF_STRIPES);
+
+	/**
+	 * A table is grown once this fraction of its slots are used.
+	 */
+	private static final double MAX_LOAD_FACTOR = 0.7;
+
+	/**
+	 * Marks an empty slot, so a fingerprint of zero is stored as this instead.
+	 */
+	private static final long EMPTY_SLOT = 0;
+
+	/**
+	 * Stored in place of a fingerprint that happens to be zero.
+	 */
+	private static final long ZERO_FINGERPRINT = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * The stripes of this set.
+	 */
+	private final Stripe[] stripes;
+
+	/**
+	 * Constructor. Keeps the tables on the heap.
+	 */
+	public FingerprintSeenLinkSet() {
+		this(1024, false);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param expectedNumberOfLinks the number of links to size the tables for up front.
+	 * @param isOffHeap true to allocate the tables as direct buffers outside the heap.
+	 */
+	public FingerprintSeenLinkSet(long expectedNumberOfLinks, boolean isOffHeap) {
+		long slotsPerStripe = (long) (expectedNumberOfLinks / NUMBER_OF_STRIPES / MAX_LOAD_FACTOR) + 1;
+		int initialCapacity = Integer.highestOneBit((int) Math.min(slotsPerStripe, 1 << 28) - 1) << 1;
+		this.stripes = new Stripe[NUMBER_OF_STRIPES];
+		for (int i = 0; i < NUMBER_OF_STRIPES; i++) {
+			this.stripes[i] = new Stripe(Math.max(16, initialCapacity), isOffHeap);
+		}
+	}
+
+	@Override
+	public boolean add(HTMLLink link) {
+		return addFingerprint(link.getCanonicalURL().getFingerprint());
+	}
+
+	/**
+	 * Adds the given fingerprint to this set.
+	 *
+	 * @param fingerprint of a link.
+	 * @return true if the fingerprint had not been added before.
+	 */
+	public boolean addFingerprint(long fingerprint) {
+		if (fingerprint == EMPTY_SLOT) {
+			fingerprint = ZERO_FINGERPRINT;
+		}
+		return this.stripes[(int) (fingerprint >>> (Long.SIZE - STRIPE_BITS))].add(fingerprint);
+	}
+
+	/**
+	 * Returns true if the given fingerprint has been added to this set.
+	 * 
+	 * @param fingerprint of a link.
+	 * @return true if the fingerprint has been added before.
+	 */
+	public boolean containsFingerprint(long fingerprint) {
+		if (fingerprint == EMPTY_SLOT) {
+			fingerprint = ZERO_FINGERPRINT;
+		}
+		return this.stripes[(int) (fingerprint >>> (Long.SIZE - STRIPE_BITS))].contains(fingerprint);
+	}
+
+	@Override
+	public int size() {
+		long size = 0;
+		for (Stripe stripe : this.stripes) {
+			size += stripe.size();
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return the number of bytes allocated for the tables.
+	 */
+	public long getAllocatedBytes() {
+		long bytes = 0;
+		for (Stripe stripe : this.stripes) {
+			bytes += stripe.capacity() * (long) Long.BYTES;
+		}
+		return bytes;
+	}
+
+	/**
+	 * One open-addressing table with linear probing, guarded by its own lock.
+	 */
+	private static class Stripe {
+
+		/**
+		 * True if the table is a direct buffer.
+		 */
+		private final boolean isOffHeap;
+
+		/**
+		 * The slots, each empty or holding a fingerprint.
+		 */
+		private LongBuffer slots;
+
+		/**
+		 * The number of fingerprints in the table.
+		 */
+		private int size;
+
+		/**
+		 * Constructor
+		 *
+		 * @param capacity the number of slots, a power of two.
+		 * @param isOffHeap true to allocate the table as a direct buffer.
+		 */
+		Stripe(int capacity, boolean isOffHeap) {
+			this.isOffHeap = isOffHeap;
+			this.slots = allocate(capacity);
+		}
+
+		/**
+		 * @param fingerprint to be added, never {@link #EMPTY_SLOT}.
+		 * @return true if it had not been added before.
+		 */
+		synchronized boolean add(long fingerprint) {
+			if (!insert(this.slots, fingerprint)) {
+				return false;
+			}
+			this.size++;
+			if (this.size > this.slots.capacity() * MAX_LOAD_FACTOR) {
+				grow();
+			}
+			return true;
+		}
+
+		/**
+		 * @param fingerprint to be looked up, never {@link #EMPTY_SLOT}.
+		 * @return true if it has been added.
+		 */
+		synchronized boolean contains(long fingerprint) {
+			int mask = this.slots.capacity() - 1;
+			int slot = (int) fingerprint & mask;
+			while (true) {
+				long existing = this.slots.get(slot);
+				if (existing == EMPTY_SLOT) {
+					return false;
+				}
+				if (existing == fingerprint) {
+					return true;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		/**
+		 * @return the number of fingerprints in the table.
+		 */
+		synchronized int size() {
+			return this.size;
+		}
+
+		/**
+		 * @return the number of slots in the table.
+		 */
+		synchronized int capacity() {
+			return this.slots.capacity();
+		}
+
+		/**
+		 * Doubles the table, and moves every fingerprint to it.
+		 */
+		private void grow() {
+			LongBuffer newSlots = allocate(this.slots.capacity() * 2);
+			for (int i = 0; i < this.slots.capacity(); i++) {
+				long fingerprint = this.slots.get(i);
+				if (fingerprint != EMPTY_SLOT) {
+					insert(newSlots, fingerprint);
+				}
+			}
+			this.slots = newSlots;
+		}
+
+		/**
+		 * Inserts the fingerprint at its slot, or the first empty slot after it.
+		 *
+		 * @param table to insert into.
+		 * @param fingerprint to be inserted.
+		 * @return false if the fingerprint is already in the table.
+		 */
+		private static boolean insert(LongBuffer table, long fingerprint) {
+			int mask = table.capacity() - 1;
+			// The high bits chose the stripe, so the slot comes from the low bits.
+			int slot = (int) fingerprint & mask;
+			while (true) {
+				long existing = table.get(slot);
+				if (existing == EMPTY_SLOT) {
+					table.put(slot, fingerprint);
+					return true;
+				}
+				if (existing == fingerprint) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		/**
+		 * @param capacity the number of slots.
+		 * @return a table of empty slots.
+		 */
+		private LongBuffer allocate(int capacity) {
+			if (this.isOffHeap) {
+				return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+			}
+			return LongBuffer.allocate(capacity);
+		}
+	}
+}
@@ -1,104 +1,274 @@
-package page;
-
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Set;
-
-import crawler.PageCrawler;
-
-/**
- * This specifies a repository of all the {@link HTMLLink}s that have been
- * discovered by the {@link PageCrawler}s. This {@link HTMLLinkRepository} only
- * keeps a unique set of URLs. Duplicate URLs are ignored when they are inserted
- * to this repository.
- * 
- * This repository also maintain {@link HTMLLink}s that have been found but not yet
- * crawled. {@link HTMLLink}s that have not been discovered yet are kept in a
- * simple FIFO queue.
- * 
- * @author ted.kuo
- */
-public class HTMLLinkRepository {
-
-	/**
-	 * A history of the urls that have been inserted to this queue. URLs doesn't get
-	 * removed even when an URL has been popped off the queue. However, provide
-	 * faster performance at query operations. This is important for avoiding looping.
-	 */
-	private Set<HTMLLink> htmlLinks;
-	
-	/**
-	 * A queue of pages that have not yet been visited by the {@link PageCrawler}.
-	 */
-	private LinkedList<HTMLLink> unvisitedLinkQueue;
-	
-	/**
-	 * Constructor. Initialises an empty repository.
-	 */
-	public HTMLLinkRepository() {
-		this.htmlLinks = new HashSet<HTMLLink>();
-		this.unvisitedLinkQueue = new LinkedList<>();
-	}
-	
-	/**
-	 * Return the first item in the unvisited page queue.
-	 * 
-	 * @return the first item in the unvisited page queue, null if the queue is empty.
-	 */
-	public synchronized HTMLLink pollUnvisitedPageQueue() {
-		return this.unvisitedLinkQueue.poll();
-	}
-
-	/**
-	 * Inserts the given page to this repository.
-	 * 
-	 * @param page to be inserted.
-	 */
-	public synchronized void insert(HTMLLink page) {
-		if (!this.htmlLinks.contains(page)) {
-			this.unvisitedLinkQueue.add(page);
-			this.htmlLinks.add(page);
-		}
-	}
-
-	/**
-	 * Inserts the given Collection of {@link HTMLLink}s into this repository.
-	 * HTMLPage that already exists in the repository is ignored.
-	 * 
-	 * @param pages to be inserted into this repository
-	 */
-	public synchronized void insert(Collection<HTMLLink> pages) {
-		for (HTMLLink page : pages) {
-			insert(page);
-		}
-	}
-	
-	/**
-	 * Returns true if all the pages inserted into this repository have been crawled/visited.
-	 * 
-	 * @return true if there is no more pages to visit.
-	 */
-	public synchronized boolean isAllLinksVisited() {
-		return this.unvisitedLinkQueue.size() == 0;
-	}
-	
-	/**
-	 * Returns the number of pages that have been discovered and inserted into this
-	 * repository, regardless of whether its currently in the queue.
-	 * 
-	 * @return the number of pages discovered.
-	 */
-	public synchronized int getNumberOfLinksDiscovered() {
-		return this.htmlLinks.size();
-	}
-	
-	/**
-	 * Return the number of discovered pages that have not yet been visited.
-	 * 
-	 * @return the number of discovered pages that have not yet been visited.
-	 */
-	public synchronized int getNumberOfUnvisitedLinks() {
-		return this.unvisitedLinkQueue.size();
-	}
-}
+package page;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+
+import crawler.PageCrawler;
+
+/**
+ * This specifies a repository of all the {@link HTMLLink}s that have been
+ * discovered by the {@link PageCrawler}s. This {@link HTMLLinkRepository} only
+ * keeps a unique set of URLs. Duplicate URLs are ignored when they are inserted
+ * to this repository.
+ * 
+ * This repository also maintain {@link HTMLLink}s that have been found but not yet
+ * crawled. {@link HTMLLink}s that have not been discovered yet are kept in a
+ * FIFO {@link LinkFrontier}, on the heap unless told otherwise. Everything is
+ * guarded by the lock on the repository.
+ * 
+ * @author ted.kuo
+ */
+public class HTMLLinkRepository extends LinkRepository {
+
+	/**
+	 * A history of the urls that have been inserted to this queue. URLs doesn't get
+	 * removed even when an URL has been popped off the queue. However, provide
+	 * faster performance at query operations. This is important for avoiding looping.
+	 */
+	private SeenLinkSet htmlLinks;
+	
+	/**
+	 * A queue of pages that have not yet been visited by the {@link PageCrawler}.
+	 */
+	private LinkFrontier unvisitedLinkQueue;
+	
+	/**
+	 * The number of links that have been handed out to the crawlers but have not
+	 * yet been marked as visited. The crawl is only finished once this is zero and
+	 * the unvisited queue is empty.
+	 */
+	private int numberOfLinksInProgress;
+	
+	/**
+	 * The number of links that failed for now and will be put back into the
+	 * queue later. The crawl is not finished while any of them is outstanding.
+	 */
+	private int numberOfLinksDeferred;
+	
+	/**
+	 * Constructor. Initialises an empty repository.
+	 */
+	public HTMLLinkRepository() {
+		this(new SetBackedSeenLinkSet(new HashSet<HTMLLink>()));
+	}
+	
+	/**
+	 * Constructor. Initialises an empty repository.
+	 * 
+	 * @param seenLinks the set to record the links discovered in, only accessed
+	 *        while holding the lock on this repository.
+	 */
+	public HTMLLinkRepository(SeenLinkSet seenLinks) {
+		this(seenLinks, new QueueLinkFrontier(new LinkedList<HTMLLink>()));
+	}
+	
+	/**
+	 * Constructor. Initialises an empty repository.
+	 * 
+	 * @param seenLinks the set to record the links discovered in, only accessed
+	 *        while holding the lock on this repository.
+	 * @param unvisitedLinks the queue to keep the links not yet visited in, only
+	 *        accessed while holding the lock on this repository.
+	 */
+	public HTMLLinkRepository(SeenLinkSet seenLinks, LinkFrontier unvisitedLinks) {
+		this.htmlLinks = seenLinks;
+		this.unvisitedLinkQueue = unvisitedLinks;
+	}
+	
+	/**
+	 * Return the first item in the unvisited page queue.
+	 * 
+	 * @return the first item in the unvisited page queue, null if the queue is empty.
+	 */
+	@Override
+	public synchronized HTMLLink pollUnvisitedPageQueue() {
+		return this.unvisitedLinkQueue.poll();
+	}
+
+	/**
+	 * Takes the first item in the unvisited page queue, waiting for one to become
+	 * available if the queue is currently empty but other links are still being
+	 * crawled. The returned link is counted as in progress until
+	 * {@link #markLinkVisited(HTMLLink)} is called for it.
+	 * 
+	 * @return the next link to crawl, null if the queue is empty and no link is in
+	 *         progress or deferred, ie. the crawl is finished.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	@Override
+	public synchronized HTMLLink takeUnvisitedLink() throws InterruptedException {
+		while (this.unvisitedLinkQueue.isEmpty() && !isCrawlFinished()) {
+			this.wait();
+		}
+		
+		HTMLLink link = this.unvisitedLinkQueue.poll();
+		if (link != null) {
+			this.numberOfLinksInProgress++;
+		}
+		return link;
+	}
+	
+	/**
+	 * Marks a link returned by {@link #takeUnvisitedLink()} as visited. Wakes up
+	 * everyone waiting on this repository if that was the last piece of work.
+	 * 
+	 * @param link that has been crawled.
+	 */
+	@Override
+	public synchronized void markLinkVisited(HTMLLink link) {
+		journalVisited(link);
+		this.numberOfLinksInProgress--;
+		if (isCrawlFinished()) {
+			this.notifyAll();
+		}
+	}
+	
+	/**
+	 * Records that the given link, which is in progress, will be put back into
+	 * the queue by {@link #requeueDeferredLink(HTMLLink)}. This must be called
+	 * before the link is marked as visited, so the crawl doesn't finish while the
+	 * link is waiting to be retried.
+	 * 
+	 * @param link to be retried later.
+	 */
+	@Override
+	public synchronized void deferLink(HTMLLink link) {
+		journalDeferred(link);
+		this.numberOfLinksDeferred++;
+	}
+	
+	/**
+	 * Puts a link passed to {@link #deferLink(HTMLLink)} back into the queue of
+	 * unvisited links, bypassing the check for links already discovered.
+	 * 
+	 * @param link to be crawled again.
+	 */
+	@Override
+	public synchronized void requeueDeferredLink(HTMLLink link) {
+		this.numberOfLinksDeferred--;
+		this.unvisitedLinkQueue.add(link);
+		this.notifyAll();
+	}
+	
+	/**
+	 * Blocks until all the links inserted into this repository have been taken and
+	 * marked as visited.
+	 * 
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	@Override
+	public synchronized void awaitAllLinksVisited() throws InterruptedException {
+		while (!isCrawlFinished()) {
+			this.wait();
+		}
+	}
+
+	/**
+	 * Inserts the given page to this repository.
+	 * 
+	 * @param page to be inserted.
+	 */
+	@Override
+	public synchronized void insert(HTMLLink page) {
+		if (add(page)) {
+			this.notifyAll();
+		}
+	}
+
+	/**
+	 * Inserts the given Collection of {@link HTMLLink}s into this repository.
+	 * HTMLPage that already exists in the repository is ignored.
+	 * 
+	 * @param pages to be inserted into this repository
+	 */
+	@Override
+	public synchronized void insert(Collection<HTMLLink> pages) {
+		boolean isAnyPageAdded = false;
+		for (HTMLLink page : pages) {
+			isAnyPageAdded |= add(page);
+		}
+		
+		// Wake the waiting crawlers once per batch rather than once per page.
+		if (isAnyPageAdded) {
+			this.notifyAll();
+		}
+	}
+	
+	/**
+	 * Adds the given page to the queue if it has not been seen before. The caller
+	 * must hold the lock on this repository.
+	 * 
+	 * @param page to be added.
+	 * @return true if the page was new.
+	 */
+	private boolean add(HTMLLink page) {
+		if (this.htmlLinks.add(page)) {
+			journalDiscovered(page);
+			this.unvisitedLinkQueue.add(page);
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Inserts a link replayed from a {@link CrawlJournal} by an earlier crawl.
+	 * The link is recorded as discovered, and only queued if it had not been
+	 * visited. Nothing is written to the journal.
+	 * 
+	 * @param page to be restored.
+	 * @param isVisited true if the page had been crawled.
+	 * @return true if the page was new.
+	 */
+	@Override
+	public synchronized boolean insertRecovered(HTMLLink page, boolean isVisited) {
+		if (!this.htmlLinks.add(page)) {
+			return false;
+		}
+		if (!isVisited) {
+			this.unvisitedLinkQueue.add(page);
+		}
+		return true;
+	}
+	
+	/**
+	 * The caller must hold the lock on this repository.
+	 * 
+	 * @return true if there is nothing left in the queue, in progress or deferred.
+	 */
+	private boolean isCrawlFinished() {
+		return this.unvisitedLinkQueue.isEmpty() && this.numberOfLinksInProgress == 0 
+				&& this.numberOfLinksDeferred == 0;
+	}
+	
+	/**
+	 * Returns true if all the pages inserted into this repository have been crawled/visited.
+	 * 
+	 * @return true if there is no more pages to visit.
+	 */
+	@Override
+	public synchronized boolean isAllLinksVisited() {
+		return this.unvisitedLinkQueue.size() == 0;
+	}
+	
+	/**
+	 * Returns the number of pages that have been discovered and inserted into this
+	 * repository, regardless of whether its currently in the queue.
+	 * 
+	 * @return the number of pages discovered.
+	 */
+	@Override
+	public synchronized int getNumberOfLinksDiscovered() {
+		return this.htmlLinks.size();
+	}
+	
+	/**
+	 * Return the number of discovered pages that have not yet been visited.
+	 * 
+	 * @return the number of discovered pages that have not yet been visited.
+	 */
+	@Override
+	public synchronized int getNumberOfUnvisitedLinks() {
+		return this.unvisitedLinkQueue.size();
+	}
+}
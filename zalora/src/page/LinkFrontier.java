@@ -0,0 +1,39 @@
+package page;
+
+/**
+ * Interface for the queue of links a {@link HTMLLinkRepository} has discovered
+ * but not yet handed out to be crawled. Links come out in the order they went
+ * in. Each implementation decides where the links are kept while they wait.
+ * 
+ * @author ted.kuo
+ */
+public interface LinkFrontier {
+
+	/**
+	 * Adds the given link to the end of this frontier.
+	 * 
+	 * @param link to be added.
+	 */
+	void add(HTMLLink link);
+	
+	/**
+	 * Removes the first link of this frontier.
+	 * 
+	 * @return the first link, null if this frontier is empty.
+	 */
+	HTMLLink poll();
+	
+	/**
+	 * Returns the number of links in this frontier.
+	 * 
+	 * @return the number of links waiting.
+	 */
+	int size();
+	
+	/**
+	 * Returns true if there are no links in this frontier.
+	 * 
+	 * @return true if this frontier is empty.
+	 */
+	boolean isEmpty();
+}
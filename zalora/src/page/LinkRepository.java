@@ -0,0 +1,182 @@
+package page;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import crawler.PageCrawler;
+
+/**
+ * The links of a crawl: those discovered by the {@link PageCrawler}s, which
+ * are only kept once, and those of them not yet crawled, which are handed out
+ * in the order they were discovered. Each implementation decides how the
+ * crawlers working at the same time are kept from getting in each other's way.
+ * The changes can be written to a {@link CrawlJournal}, so a crawl that dies
+ * can be resumed.
+ *
+ * @author ted.kuo
+ */
+public abstract class LinkRepository {
+
+	/**
+	 * Log of the links discovered and visited, null if the crawl isn't journaled.
+	 */
+	private volatile CrawlJournal crawlJournal;
+
+	/**
+	 * The links deferred and not yet marked as visited, whose VISITED record is
+	 * kept out of the journal.
+	 */
+	private final Set<HTMLLink> deferredLinks = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Return the first item in the unvisited page queue. The link is not
+	 * counted as in progress.
+	 *
+	 * @return the first item in the unvisited page queue, null if the queue is empty.
+	 */
+	public abstract HTMLLink pollUnvisitedPageQueue();
+
+	/**
+	 * Takes the first item in the unvisited page queue, waiting for one to become
+	 * available if the queue is currently empty but other links are still being
+	 * crawled. The returned link is counted as in progress until
+	 * {@link #markLinkVisited(HTMLLink)} is called for it.
+	 *
+	 * @return the next link to crawl, null if the queue is empty and no link is in
+	 *         progress or deferred, ie. the crawl is finished.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public abstract HTMLLink takeUnvisitedLink() throws InterruptedException;
+
+	/**
+	 * Marks a link returned by {@link #takeUnvisitedLink()} as visited. Wakes up
+	 * everyone waiting on this repository if that was the last piece of work.
+	 *
+	 * @param link that has been crawled.
+	 */
+	public abstract void markLinkVisited(HTMLLink link);
+
+	/**
+	 * Records that the given link, which is in progress, will be put back into
+	 * the queue by {@link #requeueDeferredLink(HTMLLink)}. This must be called
+	 * before the link is marked as visited, so the crawl doesn't finish while the
+	 * link is waiting to be retried.
+	 *
+	 * @param link to be retried later.
+	 */
+	public abstract void deferLink(HTMLLink link);
+
+	/**
+	 * Puts a link passed to {@link #deferLink(HTMLLink)} back into the queue of
+	 * unvisited links, bypassing the check for links already discovered.
+	 *
+	 * @param link to be crawled again.
+	 */
+	public abstract void requeueDeferredLink(HTMLLink link);
+
+	/**
+	 * Blocks until all the links inserted into this repository have been taken and
+	 * marked as visited.
+	 *
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public abstract void awaitAllLinksVisited() throws InterruptedException;
+
+	/**
+	 * Inserts the given page to this repository, unless it's already there.
+	 *
+	 * @param page to be inserted.
+	 */
+	public abstract void insert(HTMLLink page);
+
+	/**
+	 * Inserts the given Collection of {@link HTMLLink}s into this repository.
+	 * HTMLPage that already exists in the repository is ignored.
+	 *
+	 * @param pages to be inserted into this repository
+	 */
+	public abstract void insert(Collection<HTMLLink> pages);
+
+	/**
+	 * Inserts a link replayed from a {@link CrawlJournal} by an earlier crawl.
+	 * The link is recorded as discovered, and only queued if it had not been
+	 * visited. Nothing is written to the journal.
+	 *
+	 * @param page to be restored.
+	 * @param isVisited true if the page had been crawled.
+	 * @return true if the page was new.
+	 */
+	public abstract boolean insertRecovered(HTMLLink page, boolean isVisited);
+
+	/**
+	 * Returns true if all the pages inserted into this repository have been crawled/visited.
+	 *
+	 * @return true if there is no more pages to visit.
+	 */
+	public abstract boolean isAllLinksVisited();
+
+	/**
+	 * Returns the number of pages that have been discovered and inserted into this
+	 * repository, regardless of whether its currently in the queue.
+	 *
+	 * @return the number of pages discovered.
+	 */
+	public abstract int getNumberOfLinksDiscovered();
+
+	/**
+	 * Return the number of discovered pages that have not yet been visited.
+	 *
+	 * @return the number of discovered pages that have not yet been visited.
+	 */
+	public abstract int getNumberOfUnvisitedLinks();
+
+	/**
+	 * Sets the journal every link discovered or visited from now on is written
+	 * to. Links already in the repository are not written.
+	 *
+	 * @param crawlJournal to write to, null to stop journaling.
+	 */
+	public void setCrawlJournal(CrawlJournal crawlJournal) {
+		this.crawlJournal = crawlJournal;
+	}
+
+	/**
+	 * Writes a link that has just been discovered to the journal, if there is one.
+	 *
+	 * @param page that has been discovered.
+	 */
+	protected void journalDiscovered(HTMLLink page) {
+		CrawlJournal journal = this.crawlJournal;
+		if (journal != null) {
+			journal.discovered(page);
+		}
+	}
+
+	/**
+	 * Records that a link in progress has just been deferred, so marking it as
+	 * visited doesn't write it to the journal: it's still to be crawled, and is
+	 * crawled again if the crawl is resumed before it's retried.
+	 *
+	 * @param page that has been deferred.
+	 */
+	protected void journalDeferred(HTMLLink page) {
+		this.deferredLinks.add(page);
+	}
+
+	/**
+	 * Writes a link that has just been visited to the journal, if there is one,
+	 * unless it was deferred rather than crawled.
+	 *
+	 * @param page that has been visited.
+	 */
+	protected void journalVisited(HTMLLink page) {
+		if (this.deferredLinks.remove(page)) {
+			return;
+		}
+		CrawlJournal journal = this.crawlJournal;
+		if (journal != null) {
+			journal.visited(page);
+		}
+	}
+}
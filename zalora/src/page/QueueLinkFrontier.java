@@ -0,0 +1,47 @@
+package page;
+
+import java.util.Queue;
+
+/**
+ * A {@link LinkFrontier} that keeps every {@link HTMLLink} in a {@link Queue} on
+ * the heap.
+ * 
+ * @author ted.kuo
+ */
+public class QueueLinkFrontier implements LinkFrontier {
+
+	/**
+	 * The links waiting to be crawled.
+	 */
+	private Queue<HTMLLink> unvisitedLinkQueue;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param unvisitedLinkQueue to keep the links in, it must be thread-safe if
+	 *        this frontier is used by more than one thread without a lock.
+	 */
+	public QueueLinkFrontier(Queue<HTMLLink> unvisitedLinkQueue) {
+		this.unvisitedLinkQueue = unvisitedLinkQueue;
+	}
+
+	@Override
+	public void add(HTMLLink link) {
+		this.unvisitedLinkQueue.add(link);
+	}
+
+	@Override
+	public HTMLLink poll() {
+		return this.unvisitedLinkQueue.poll();
+	}
+
+	@Override
+	public int size() {
+		return this.unvisitedLinkQueue.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.unvisitedLinkQueue.isEmpty();
+	}
+}
@@ -0,0 +1,26 @@
+package page;
+
+/**
+ * Interface for the set of links a {@link HTMLLinkRepository} has already
+ * discovered, used to ignore duplicate links. Each implementation decides how
+ * much of a link it keeps to recognise it again.
+ * 
+ * @author ted.kuo
+ */
+public interface SeenLinkSet {
+
+	/**
+	 * Adds the given link to this set.
+	 * 
+	 * @param link to be added.
+	 * @return true if the link had not been seen before.
+	 */
+	boolean add(HTMLLink link);
+	
+	/**
+	 * Returns the number of links in this set.
+	 * 
+	 * @return the number of links added.
+	 */
+	int size();
+}
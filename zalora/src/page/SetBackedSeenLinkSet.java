@@ -0,0 +1,37 @@
+package page;
+
+import java.util.Set;
+
+/**
+ * A {@link SeenLinkSet} that keeps every {@link HTMLLink} in a {@link Set}. It's
+ * exact, but holds on to the whole link, URL included.
+ * 
+ * @author ted.kuo
+ */
+public class SetBackedSeenLinkSet implements SeenLinkSet {
+
+	/**
+	 * The links seen so far.
+	 */
+	private Set<HTMLLink> htmlLinks;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param htmlLinks to keep the links in, it must be thread-safe if this set is
+	 *        used by more than one thread without a lock.
+	 */
+	public SetBackedSeenLinkSet(Set<HTMLLink> htmlLinks) {
+		this.htmlLinks = htmlLinks;
+	}
+
+	@Override
+	public boolean add(HTMLLink link) {
+		return this.htmlLinks.add(link);
+	}
+
+	@Override
+	public int size() {
+		return this.htmlLinks.size();
+	}
+}
@@ -0,0 +1,348 @@
+package page;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A {@link LinkFrontier} that only keeps a few links at each end on the heap.
+ * The first links to be crawled are in a head buffer and the latest links
+ * added in a tail buffer; whenever the tail fills up, it is spilled to
+ * append-only segment files, memory-mapped outside the heap. When the head
+ * runs out, it is refilled from the oldest segment, and a segment is deleted
+ * once every link in it has been read back. However big the frontier grows,
+ * the heap only holds the two buffers.
+ *
+ * Each link is written as its URL in UTF-8, preceded by its length as a
+ * variable-length integer, so a typical link takes a byte more than its URL.
+ *
+ * The methods of this frontier are synchronized, so it can be shared without
+ * a lock of its own.
+ *
+ * @author ted.kuo
+ */
+public class SpillingLinkFrontier implements LinkFrontier, Closeable {
+
+	/**
+	 * Default number of links kept in each of the head and tail buffers.
+	 */
+	private static final int DEFAULT_BUFFER_CAPACITY = 10000;
+
+	/**
+	 * Default size of a segment file, in bytes.
+	 */
+	private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Directory the segment files are created in.
+	 */
+	private final Path directory;
+
+	/**
+	 * Maximum number of links in each of the head and tail buffers.
+	 */
+	private final int bufferCapacity;
+
+	/**
+	 * Size of a segment file, in bytes.
+	 */
+	private final int segmentSize;
+
+	/**
+	 * The first links to be crawled.
+	 */
+	private final Deque<HTMLLink> head;
+
+	/**
+	 * The latest links added, not yet spilled.
+	 */
+	private final Deque<HTMLLink> tail;
+
+	/**
+	 * The segments holding the links between the head and the tail, oldest first.
+	 * Only the last one is still being written to.
+	 */
+	private final Deque<Segment> segments;
+
+	/**
+	 * The number of links in the segments that have not been read back.
+	 */
+	private long numberOfSpilledLinks;
+
+	/**
+	 * The number of segment files created so far, used to name them.
+	 */
+	private long numberOfSegmentsCreated;
+
+	/**
+	 * Constructor. Buffers {@value #DEFAULT_BUFFER_CAPACITY} links at each end
+	 * and spills to segments of {@value #DEFAULT_SEGMENT_SIZE} bytes.
+	 *
+	 * @param directory to create the segment files in.
+	 */
+	public SpillingLinkFrontier(Path directory) {
+		this(directory, DEFAULT_BUFFER_CAPACITY, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory to create the segment files in.
+	 * @param bufferCapacity maximum number of links in each of the head and tail buffers.
+	 * @param segmentSize size of a segment file, in bytes.
+	 */
+	public SpillingLinkFrontier(Path directory, int bufferCapacity, int segmentSize) {
+		if (bufferCapacity <= 0) {
+			throw new IllegalArgumentException("bufferCapacity must be positive: " + bufferCapacity);
+		}
+		if (segmentSize <= 0) {
+			throw new IllegalArgumentException("segmentSize must be positive: " + segmentSize);
+		}
+		this.directory = directory;
+		this.bufferCapacity = bufferCapacity;
+		this.segmentSize = segmentSize;
+		this.head = new ArrayDeque<>();
+		this.tail = new ArrayDeque<>();
+		this.segments = new ArrayDeque<>();
+	}
+
+	/**
+	 * @throws UncheckedIOException if a segment file can't be written.
+	 */
+	@Override
+	public synchronized void add(HTMLLink link) {
+		// Straight into the head while nothing is queued behind it, so a small frontier never spills.
+		if (this.numberOfSpilledLinks == 0 && this.tail.isEmpty() && this.head.size() < this.bufferCapacity) {
+			this.head.add(link);
+			return;
+		}
+		this.tail.add(link);
+		if (this.tail.size() >= this.bufferCapacity) {
+			spillTail();
+		}
+	}
+
+	/**
+	 * @throws UncheckedIOException if a segment file can't be read.
+	 */
+	@Override
+	public synchronized HTMLLink poll() {
+		if (this.head.isEmpty()) {
+			if (this.numberOfSpilledLinks > 0) {
+				refillHead();
+			}
+			else {
+				// Nothing on disk, so the tail is next in line.
+				this.head.addAll(this.tail);
+				this.tail.clear();
+			}
+		}
+		return this.head.poll();
+	}
+
+	@Override
+	public synchronized int size() {
+		return (int) Math.min(this.head.size() + this.numberOfSpilledLinks + this.tail.size(), Integer.MAX_VALUE);
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return this.head.isEmpty() && this.numberOfSpilledLinks == 0 && this.tail.isEmpty();
+	}
+
+	/**
+	 * @return the number of segment files currently on disk.
+	 */
+	public synchronized int getNumberOfSegments() {
+		return this.segments.size();
+	}
+
+	/**
+	 * Deletes every segment file, discarding the links spilled to them.
+	 *
+	 * @throws IOException if a segment file can't be deleted.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		while (!this.segments.isEmpty()) {
+			this.segments.poll().delete();
+		}
+		this.numberOfSpilledLinks = 0;
+	}
+
+	/**
+	 * Writes every link in the tail to the end of the last segment, creating
+	 * new segments as they fill up.
+	 */
+	private void spillTail() {
+		try {
+			for (HTMLLink link : this.tail) {
+				byte[] url = link.getPageURL().toString().getBytes(StandardCharsets.UTF_8);
+				Segment segment = this.segments.peekLast();
+				if (segment == null || segment.isSealed || !segment.write(url)) {
+					if (segment != null) {
+						segment.isSealed = true;
+					}
+					segment = createSegment(url.length);
+					this.segments.add(segment);
+					segment.write(url);
+				}
+				this.numberOfSpilledLinks++;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.tail.clear();
+	}
+
+	/**
+	 * Reads up to a buffer full of links from the oldest segments into the head,
+	 * deleting each segment once it has been read to the end.
+	 */
+	private void refillHead() {
+		try {
+			while (this.head.size() < this.bufferCapacity && this.numberOfSpilledLinks > 0) {
+				Segment segment = this.segments.peek();
+				String url = segment.read();
+				if (url == null) {
+					// Everything written to it has been read, so no link can be lost by sealing it.
+					this.segments.poll().delete();
+					continue;
+				}
+				this.head.add(new HTMLLink(new URL(url)));
+				this.numberOfSpilledLinks--;
+			}
+			// Don't keep a segment on disk once it's been read to the end.
+			Segment segment = this.segments.peek();
+			if (segment != null && !segment.hasUnreadLinks()) {
+				this.segments.poll().delete();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Creates a new segment file, large enough for at least the given URL.
+	 *
+	 * @param urlLength of the URL that did not fit in the last segment, in bytes.
+	 * @return the new segment.
+	 * @throws IOException if the file can't be created.
+	 */
+	private Segment createSegment(int urlLength) throws IOException {
+		Path file = this.directory.resolve("frontier-" + this.numberOfSegmentsCreated++ + ".seg");
+		return new Segment(file, Math.max(this.segmentSize, urlLength + 5));
+	}
+
+	/**
+	 * One segment file, mapped into memory for as long as it exists.
+	 */
+	private static class Segment {
+
+		/**
+		 * The segment file.
+		 */
+		private final Path file;
+
+		/**
+		 * View of the file the links are appended through.
+		 */
+		private final ByteBuffer writeBuffer;
+
+		/**
+		 * View of the same file the links are read back through.
+		 */
+		private final ByteBuffer readBuffer;
+
+		/**
+		 * True once nothing more will be written to this segment.
+		 */
+		private boolean isSealed;
+
+		/**
+		 * Constructor. Creates and maps the file.
+		 *
+		 * @param file to be created.
+		 * @param size of the file, in bytes.
+		 * @throws IOException if the file can't be created.
+		 */
+		Segment(Path file, int size) throws IOException {
+			this.file = file;
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				// The mapping stays valid once the channel is closed.
+				MappedByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+				this.writeBuffer = mappedBuffer;
+				this.readBuffer = mappedBuffer.duplicate();
+			}
+		}
+
+		/**
+		 * Appends the given URL to this segment.
+		 *
+		 * @param url in UTF-8.
+		 * @return false if there isn't enough room left for it.
+		 */
+		boolean write(byte[] url) {
+			if (this.writeBuffer.remaining() < url.length + 5) {
+				return false;
+			}
+			int length = url.length;
+			while ((length & ~0x7F) != 0) {
+				this.writeBuffer.put((byte) ((length & 0x7F) | 0x80));
+				length >>>= 7;
+			}
+			this.writeBuffer.put((byte) length);
+			this.writeBuffer.put(url);
+			return true;
+		}
+
+		/**
+		 * Reads the next URL of this segment.
+		 *
+		 * @return the URL, null if every URL written so far has been read.
+		 */
+		String read() {
+			if (!hasUnreadLinks()) {
+				return null;
+			}
+			int length = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = this.readBuffer.get();
+				length |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			byte[] url = new byte[length];
+			this.readBuffer.get(url);
+			return new String(url, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * @return true if not every URL written so far has been read.
+		 */
+		boolean hasUnreadLinks() {
+			return this.readBuffer.position() < this.writeBuffer.position();
+		}
+
+		/**
+		 * Deletes the file. Its memory is unmapped once the buffers are collected.
+		 *
+		 * @throws IOException if the file can't be deleted.
+		 */
+		void delete() throws IOException {
+			Files.deleteIfExists(this.file);
+		}
+	}
+}
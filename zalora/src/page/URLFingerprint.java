@@ -0,0 +1,60 @@
+package page;
+
+/**
+ * Computes 64-bit fingerprints of URL strings, used to recognise a URL without
+ * keeping the URL itself. With 64 bits, two different URLs of a crawl in the
+ * hundreds of millions share a fingerprint with a probability well below one in
+ * a thousand.
+ * 
+ * @author ted.kuo
+ */
+public final class URLFingerprint {
+
+	/**
+	 * FNV-1a 64-bit offset basis.
+	 */
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	
+	/**
+	 * FNV-1a 64-bit prime.
+	 */
+	private static final long FNV_PRIME = 0x100000001b3L;
+	
+	/**
+	 * Not to be instantiated.
+	 */
+	private URLFingerprint() {
+	}
+	
+	/**
+	 * Returns the fingerprint of the given string. The string is hashed with
+	 * FNV-1a, and the result mixed so that every bit depends on every character.
+	 * 
+	 * @param url to be fingerprinted, usually a canonical URL.
+	 * @return the 64-bit fingerprint of the string.
+	 */
+	public static long of(CharSequence url) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < url.length(); i++) {
+			char c = url.charAt(i);
+			hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+			hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+		}
+		return mix(hash);
+	}
+	
+	/**
+	 * The finalisation step of MurmurHash3, spreads the bits of the given value.
+	 * 
+	 * @param value to be mixed.
+	 * @return the mixed value.
+	 */
+	public static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+}
@@ -0,0 +1,393 @@
+package policy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+
+/**
+ * Learns which subtrees of the pages of a site, such as the mega-menu and the
+ * footer, are the same on every page, so a {@link SinglePassTraversal} can
+ * skip them on the pages that follow rather than show their elements to the
+ * scanners and analysers again, which only find there what they found on the
+ * first pages.
+ *
+ * A subtree is recognised by a cheap signature of its root, the tag, id and
+ * class, and fingerprinted by a hash of all its nodes. The first pages are
+ * observed, fingerprinting every subtree with a signature, and a signature
+ * becomes a template once its subtree has had the same fingerprint, and at
+ * least a minimum number of nodes, on enough pages. The pages that follow
+ * skip the templates, apart from one page in every so many, which is
+ * observed again so that a template whose subtree has changed is forgotten.
+ * A signature found more than once on a page with different subtrees is
+ * never a template.
+ *
+ * A detector is shared by the pages of a crawl, and is thread-safe.
+ *
+ * @author ted.kuo
+ */
+public class BoilerplateDetector {
+
+	/**
+	 * The most signatures remembered, so a site with ids unique to each page
+	 * can't fill the memory.
+	 */
+	private static final int MAX_NUMBER_OF_SIGNATURES = 10000;
+
+	/**
+	 * The number of first pages observed.
+	 */
+	private static final int NUMBER_OF_LEARNING_PAGES = 20;
+
+	/**
+	 * Marks a signature found with different subtrees on the same page.
+	 */
+	private static final long CONFLICTING = 0;
+
+	/**
+	 * The number of pages a subtree must be the same on to become a template.
+	 */
+	private final int minNumberOfPages;
+
+	/**
+	 * The number of nodes a subtree must have to become a template.
+	 */
+	private final int minNumberOfNodes;
+
+	/**
+	 * One page in this many is observed once the first pages have been.
+	 */
+	private final int observationInterval;
+
+	/**
+	 * What is known of each signature.
+	 */
+	private final ConcurrentMap<String, Template> templates;
+
+	/**
+	 * The number of pages started.
+	 */
+	private final AtomicLong numberOfPages;
+
+	/**
+	 * The number of subtrees skipped.
+	 */
+	private final AtomicLong numberOfSubtreesSkipped;
+
+	/**
+	 * The number of nodes in the subtrees skipped.
+	 */
+	private final AtomicLong numberOfNodesSkipped;
+
+	/**
+	 * Constructor. A subtree of at least 20 nodes becomes a template once it is
+	 * the same on 5 pages, and one page in 50 is observed after the first 20.
+	 */
+	public BoilerplateDetector() {
+		this(5, 20, 50);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param minNumberOfPages the number of pages a subtree must be the same on to become a template.
+	 * @param minNumberOfNodes the number of nodes a subtree must have to become a template.
+	 * @param observationInterval one page in this many is observed once the first pages have been.
+	 */
+	public BoilerplateDetector(int minNumberOfPages, int minNumberOfNodes, int observationInterval) {
+		if (minNumberOfPages < 2 || minNumberOfNodes < 1 || observationInterval < 1) {
+			throw new IllegalArgumentException("a subtree must be seen on 2 pages, with 1 node, observed every page or more");
+		}
+		this.minNumberOfPages = minNumberOfPages;
+		this.minNumberOfNodes = minNumberOfNodes;
+		this.observationInterval = observationInterval;
+		this.templates = new ConcurrentHashMap<>();
+		this.numberOfPages = new AtomicLong();
+		this.numberOfSubtreesSkipped = new AtomicLong();
+		this.numberOfNodesSkipped = new AtomicLong();
+	}
+
+	/**
+	 * @return the number of subtrees skipped.
+	 */
+	public long getNumberOfSubtreesSkipped() {
+		return this.numberOfSubtreesSkipped.get();
+	}
+
+	/**
+	 * @return the number of nodes in the subtrees skipped.
+	 */
+	public long getNumberOfNodesSkipped() {
+		return this.numberOfNodesSkipped.get();
+	}
+
+	/**
+	 * @return the number of signatures whose subtrees are skipped.
+	 */
+	public int getNumberOfTemplates() {
+		int numberOfTemplates = 0;
+		for (Template template : this.templates.values()) {
+			if (template.isBoilerplate) {
+				numberOfTemplates++;
+			}
+		}
+		return numberOfTemplates;
+	}
+
+	/**
+	 * Starts the traversal of a page, which is either observed or has the
+	 * templates skipped.
+	 *
+	 * @return the page, to be used by a single traversal.
+	 */
+	PageTraversal startPage() {
+		long pageNumber = this.numberOfPages.incrementAndGet();
+		return new PageTraversal(pageNumber <= NUMBER_OF_LEARNING_PAGES || pageNumber % this.observationInterval == 0);
+	}
+
+	/**
+	 * @param element of a page.
+	 * @return the signature of the element, null if it has neither id nor class.
+	 */
+	private static String getSignature(Element element) {
+		String id = element.id();
+		String classes = element.className();
+		if (id.isEmpty() && classes.isEmpty()) {
+			return null;
+		}
+		return element.normalName() + '#' + id + '.' + classes;
+	}
+
+	/**
+	 * Records the fingerprints of the subtrees of an observed page.
+	 *
+	 * @param fingerprints of the subtrees, by signature.
+	 * @param sizes of the subtrees, by signature.
+	 */
+	private void observe(Map<String, Long> fingerprints, Map<String, Integer> sizes) {
+		for (Map.Entry<String, Long> fingerprint : fingerprints.entrySet()) {
+			Template template = this.templates.get(fingerprint.getKey());
+			if (template == null) {
+				if (this.templates.size() >= MAX_NUMBER_OF_SIGNATURES) {
+					continue;
+				}
+				template = new Template();
+				Template existing = this.templates.putIfAbsent(fingerprint.getKey(), template);
+				if (existing != null) {
+					template = existing;
+				}
+			}
+			template.observe(fingerprint.getValue(), sizes.get(fingerprint.getKey()));
+		}
+	}
+
+	/**
+	 * @return toString
+	 */
+	@Override
+	public String toString() {
+		return "Skipped " + this.numberOfNodesSkipped.get() + " nodes in " + this.numberOfSubtreesSkipped.get()
+				+ " boilerplate subtrees of " + getNumberOfTemplates() + " templates";
+	}
+
+	/**
+	 * What is known of a signature.
+	 */
+	private class Template {
+
+		/**
+		 * The fingerprint of the subtree on the last pages observed.
+		 */
+		private long fingerprint;
+
+		/**
+		 * The number of pages in a row the subtree has had the fingerprint on.
+		 */
+		private int numberOfPages;
+
+		/**
+		 * The number of nodes in the subtree.
+		 */
+		private volatile int numberOfNodes;
+
+		/**
+		 * True if the subtree is skipped.
+		 */
+		private volatile boolean isBoilerplate;
+
+		/**
+		 * @param pageFingerprint of the subtree on an observed page.
+		 * @param pageNumberOfNodes of the subtree on the page.
+		 */
+		synchronized void observe(long pageFingerprint, int pageNumberOfNodes) {
+			if (pageFingerprint == CONFLICTING || pageFingerprint != this.fingerprint) {
+				this.fingerprint = pageFingerprint;
+				this.numberOfPages = 1;
+				this.isBoilerplate = false;
+				return;
+			}
+			this.numberOfPages++;
+			this.numberOfNodes = pageNumberOfNodes;
+			this.isBoilerplate = this.numberOfPages >= minNumberOfPages && pageNumberOfNodes >= minNumberOfNodes;
+		}
+	}
+
+	/**
+	 * The traversal of a page: it either fingerprints the subtrees of the page,
+	 * or tells which subtrees to skip. It isn't thread-safe.
+	 */
+	class PageTraversal {
+
+		/**
+		 * True if the page is observed, rather than has the templates skipped.
+		 */
+		private final boolean isObserved;
+
+		/**
+		 * Fingerprints of the nodes entered and not yet left, by depth.
+		 */
+		private long[] fingerprints;
+
+		/**
+		 * Number of nodes of the nodes entered and not yet left, by depth.
+		 */
+		private int[] sizes;
+
+		/**
+		 * The number of nodes entered and not yet left.
+		 */
+		private int depth;
+
+		/**
+		 * Fingerprints of the subtrees with a signature, by signature.
+		 */
+		private Map<String, Long> subtreeFingerprints;
+
+		/**
+		 * Number of nodes of the subtrees with a signature, by signature.
+		 */
+		private Map<String, Integer> subtreeSizes;
+
+		/**
+		 * Constructor
+		 *
+		 * @param isObserved true if the page is observed, rather than has the templates skipped.
+		 */
+		PageTraversal(boolean isObserved) {
+			this.isObserved = isObserved;
+			if (isObserved) {
+				this.fingerprints = new long[64];
+				this.sizes = new int[64];
+				this.subtreeFingerprints = new HashMap<>();
+				this.subtreeSizes = new HashMap<>();
+			}
+		}
+
+		/**
+		 * Tells whether the subtree of the given element is a template to be
+		 * skipped, and counts it if so.
+		 *
+		 * @param element of the page.
+		 * @return true if the subtree is to be skipped.
+		 */
+		boolean isSkipped(Element element) {
+			if (this.isObserved) {
+				return false;
+			}
+			String signature = getSignature(element);
+			if (signature == null) {
+				return false;
+			}
+			Template template = templates.get(signature);
+			if (template == null || !template.isBoilerplate) {
+				return false;
+			}
+			numberOfSubtreesSkipped.incrementAndGet();
+			numberOfNodesSkipped.addAndGet(template.numberOfNodes);
+			return true;
+		}
+
+		/**
+		 * Starts the fingerprint of the given node, on an observed page.
+		 *
+		 * @param node entered.
+		 */
+		void enter(Node node) {
+			if (!this.isObserved) {
+				return;
+			}
+			if (this.depth == this.fingerprints.length) {
+				this.fingerprints = Arrays.copyOf(this.fingerprints, this.depth * 2);
+				this.sizes = Arrays.copyOf(this.sizes, this.depth * 2);
+			}
+			long fingerprint;
+			if (node instanceof TextNode) {
+				fingerprint = ((TextNode) node).getWholeText().hashCode();
+			}
+			else if (node instanceof Element) {
+				fingerprint = ((long) ((Element) node).normalName().hashCode() << 32) ^ node.attributes().hashCode();
+			}
+			else {
+				fingerprint = node.nodeName().hashCode();
+			}
+			this.fingerprints[this.depth] = fingerprint;
+			this.sizes[this.depth] = 1;
+			this.depth++;
+		}
+
+		/**
+		 * Finishes the fingerprint of the given node, folding it into its
+		 * parent's, on an observed page.
+		 *
+		 * @param node left.
+		 */
+		void exit(Node node) {
+			if (!this.isObserved) {
+				return;
+			}
+			this.depth--;
+			long fingerprint = mix(this.fingerprints[this.depth]);
+			int size = this.sizes[this.depth];
+			if (this.depth > 0) {
+				this.fingerprints[this.depth - 1] = (this.fingerprints[this.depth - 1] ^ fingerprint) * 0x100000001b3L;
+				this.sizes[this.depth - 1] += size;
+			}
+			if (node instanceof Element && size >= minNumberOfNodes) {
+				String signature = getSignature((Element) node);
+				if (signature != null) {
+					Long previous = this.subtreeFingerprints.put(signature, fingerprint);
+					if (previous != null && previous != fingerprint) {
+						this.subtreeFingerprints.put(signature, CONFLICTING);
+					}
+					this.subtreeSizes.put(signature, size);
+				}
+			}
+		}
+
+		/**
+		 * Ends the traversal, recording the fingerprints of an observed page.
+		 */
+		void end() {
+			if (this.isObserved) {
+				observe(this.subtreeFingerprints, this.subtreeSizes);
+			}
+		}
+	}
+
+	/**
+	 * @param fingerprint of a node, with those of its children folded in.
+	 * @return the fingerprint, with its bits mixed so the order of the children counts.
+	 */
+	private static long mix(long fingerprint) {
+		fingerprint ^= fingerprint >>> 33;
+		fingerprint *= 0xff51afd7ed558ccdL;
+		fingerprint ^= fingerprint >>> 33;
+		return fingerprint == CONFLICTING ? 1 : fingerprint;
+	}
+}
@@ -0,0 +1,157 @@
+package policy;
+
+import java.util.Locale;
+
+import org.jsoup.nodes.Element;
+
+/**
+ * The elements a {@link PageVisitor} wants to be shown: those of a tag, of a
+ * class, or with an attribute, optionally of a given value. Names and values
+ * are matched case-insensitively, the way Jsoup's own searches match them.
+ *
+ * @author ted.kuo
+ */
+public final class ElementInterest {
+
+	/**
+	 * The tag name of the elements, lower-cased, null if not matched on.
+	 */
+	private final String tagName;
+
+	/**
+	 * The class of the elements, lower-cased, null if not matched on.
+	 */
+	private final String className;
+
+	/**
+	 * The name of an attribute of the elements, lower-cased, null if not matched on.
+	 */
+	private final String attributeName;
+
+	/**
+	 * The value of the attribute, null for any value.
+	 */
+	private final String attributeValue;
+
+	/**
+	 * Constructor
+	 *
+	 * @param tagName of the elements, null if not matched on.
+	 * @param className of the elements, null if not matched on.
+	 * @param attributeName of the elements, null if not matched on.
+	 * @param attributeValue of the attribute, null for any value.
+	 */
+	private ElementInterest(String tagName, String className, String attributeName, String attributeValue) {
+		this.tagName = toLowerCase(tagName);
+		this.className = toLowerCase(className);
+		this.attributeName = toLowerCase(attributeName);
+		this.attributeValue = attributeValue == null ? null : attributeValue.trim();
+	}
+
+	/**
+	 * @param tagName of the elements.
+	 * @return an interest in the elements of the given tag.
+	 */
+	public static ElementInterest tag(String tagName) {
+		return new ElementInterest(checkNotNull(tagName), null, null, null);
+	}
+
+	/**
+	 * @param className of the elements.
+	 * @return an interest in the elements of the given class.
+	 */
+	public static ElementInterest className(String className) {
+		return new ElementInterest(null, checkNotNull(className), null, null);
+	}
+
+	/**
+	 * @param attributeName of the elements.
+	 * @return an interest in the elements with the given attribute.
+	 */
+	public static ElementInterest attribute(String attributeName) {
+		return new ElementInterest(null, null, checkNotNull(attributeName), null);
+	}
+
+	/**
+	 * @param attributeName of the elements.
+	 * @param attributeValue of the attribute.
+	 * @return an interest in the elements with the given value of the given attribute.
+	 */
+	public static ElementInterest attributeValue(String attributeName, String attributeValue) {
+		return new ElementInterest(null, null, checkNotNull(attributeName), checkNotNull(attributeValue));
+	}
+
+	/**
+	 * @param element to be checked.
+	 * @return true if the element is of interest.
+	 */
+	public boolean matches(Element element) {
+		if (this.tagName != null) {
+			return this.tagName.equals(element.normalName());
+		}
+		if (this.className != null) {
+			return element.hasClass(this.className);
+		}
+		if (!element.hasAttr(this.attributeName)) {
+			return false;
+		}
+		return this.attributeValue == null || this.attributeValue.equalsIgnoreCase(element.attr(this.attributeName).trim());
+	}
+
+	/**
+	 * @return the tag name of the elements, lower-cased, null if not matched on.
+	 */
+	String getTagName() {
+		return tagName;
+	}
+
+	/**
+	 * @return the class of the elements, lower-cased, null if not matched on.
+	 */
+	String getClassName() {
+		return className;
+	}
+
+	/**
+	 * @return the name of an attribute of the elements, lower-cased, null if not matched on.
+	 */
+	String getAttributeName() {
+		return attributeName;
+	}
+
+	/**
+	 * String representation of the interest.
+	 *
+	 * @return toString
+	 */
+	@Override
+	public String toString() {
+		if (this.tagName != null) {
+			return this.tagName;
+		}
+		if (this.className != null) {
+			return "." + this.className;
+		}
+		return "[" + this.attributeName + (this.attributeValue == null ? "" : "=" + this.attributeValue) + "]";
+	}
+
+	/**
+	 * @param name to be lower-cased.
+	 * @return the name lower-cased, null if it's null.
+	 */
+	private static String toLowerCase(String name) {
+		return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @param value to be checked.
+	 * @return the value.
+	 * @throws IllegalArgumentException if the value is null.
+	 */
+	private static String checkNotNull(String value) {
+		if (value == null) {
+			throw new IllegalArgumentException("the name or value cannot be null");
+		}
+		return value;
+	}
+}
@@ -0,0 +1,434 @@
+package policy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which links found on a page are worth crawling, from a list of
+ * {@link LinkFilterRule}s compiled once when the filter is created: the hosts
+ * into sets, the path prefixes into a trie, and the globs and regular
+ * expressions into a single pattern, for the allow and the deny rules each.
+ *
+ * A link is accepted if its host is allowed, which any host is when there is
+ * no rule allowing hosts, and isn't denied, and its path isn't denied, unless
+ * a rule allows the path as an exception. The href value of a link is
+ * resolved against its page just far enough to tell its host and path,
+ * without building a {@link URL}, so the links rejected cost no more than a
+ * look at their characters.
+ *
+ * A filter is immutable, and so can be shared by any number of threads.
+ *
+ * @author ted.kuo
+ */
+public class LinkFilter {
+
+	/**
+	 * Hosts allowed, with "*." domains.
+	 */
+	private final Set<String> allowedHosts;
+
+	/**
+	 * Hosts denied, with "*." domains.
+	 */
+	private final Set<String> deniedHosts;
+
+	/**
+	 * Paths allowed as exceptions to the paths denied.
+	 */
+	private final PathMatcher allowedPaths;
+
+	/**
+	 * Paths denied.
+	 */
+	private final PathMatcher deniedPaths;
+
+	/**
+	 * Constructor
+	 *
+	 * @param rules of the filter.
+	 */
+	public LinkFilter(List<LinkFilterRule> rules) {
+		this.allowedHosts = new HashSet<>();
+		this.deniedHosts = new HashSet<>();
+		List<LinkFilterRule> allowedPathRules = new ArrayList<>();
+		List<LinkFilterRule> deniedPathRules = new ArrayList<>();
+		for (LinkFilterRule rule : rules) {
+			if (rule.getType() == LinkFilterRule.Type.HOST) {
+				(rule.isAllowed() ? this.allowedHosts : this.deniedHosts).add(rule.getValue());
+			}
+			else {
+				(rule.isAllowed() ? allowedPathRules : deniedPathRules).add(rule);
+			}
+		}
+		this.allowedPaths = new PathMatcher(allowedPathRules);
+		this.deniedPaths = new PathMatcher(deniedPathRules);
+	}
+
+	/**
+	 * Reads the rules of a filter from the given file, one per line. Blank lines
+	 * and lines starting with "#" are skipped.
+	 *
+	 * @param rulesFile to be read.
+	 * @return the filter of the rules.
+	 * @throws IOException if the file can't be read.
+	 * @throws IllegalArgumentException if a line isn't a rule.
+	 */
+	public static LinkFilter load(Path rulesFile) throws IOException {
+		List<LinkFilterRule> rules = new ArrayList<>();
+		try (BufferedReader in = Files.newBufferedReader(rulesFile, StandardCharsets.UTF_8)) {
+			String line;
+			int lineNumber = 0;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				try {
+					rules.add(LinkFilterRule.parse(line));
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException(rulesFile + " line " + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+		}
+		return new LinkFilter(rules);
+	}
+
+	/**
+	 * Tells whether the link of the given href value, found on the given page,
+	 * is accepted. Links that aren't http or https, and malformed links, aren't.
+	 *
+	 * @param pageURL of the page the href value was found on.
+	 * @param hrefValue as written on the page.
+	 * @return true if the link is accepted.
+	 */
+	public boolean accepts(URL pageURL, String hrefValue) {
+		String href = hrefValue.trim();
+		int authorityStart = -1;
+		int schemeEnd = findSchemeEnd(href);
+		if (schemeEnd > 0) {
+			if (!isHTTP(href, schemeEnd) || !href.startsWith("//", schemeEnd + 1)) {
+				return false;
+			}
+			authorityStart = schemeEnd + 3;
+		}
+		else if (href.startsWith("//")) {
+			authorityStart = 2;
+		}
+
+		String host;
+		String path;
+		if (authorityStart >= 0) {
+			int authorityEnd = findEnd(href, authorityStart, true);
+			int pathEnd = findEnd(href, authorityEnd, false);
+			host = getHost(href, authorityStart, authorityEnd);
+			path = pathEnd > authorityEnd ? href.substring(authorityEnd, pathEnd) : "/";
+		}
+		else {
+			int pathEnd = findEnd(href, 0, false);
+			host = pageURL.getHost().toLowerCase(Locale.ROOT);
+			if (pathEnd == 0) {
+				path = pageURL.getPath();
+			}
+			else if (href.charAt(0) == '/') {
+				path = href.substring(0, pathEnd);
+			}
+			else {
+				String pagePath = pageURL.getPath();
+				path = pagePath.substring(0, pagePath.lastIndexOf('/') + 1) + href.substring(0, pathEnd);
+				if (path.charAt(0) != '/') {
+					path = "/" + path;
+				}
+			}
+		}
+
+		if (hasDotSegment(path)) {
+			// Rare enough to be left to the full resolution.
+			try {
+				URL link = new URL(pageURL, href);
+				return accepts(link.getHost().toLowerCase(Locale.ROOT), link.getPath());
+			} catch (MalformedURLException e) {
+				return false;
+			}
+		}
+		return accepts(host, path);
+	}
+
+	/**
+	 * @param host of a link, lower-cased.
+	 * @param path of the link.
+	 * @return true if the link is accepted.
+	 */
+	private boolean accepts(String host, String path) {
+		if (host.isEmpty() || isMatched(this.deniedHosts, host)
+				|| (!this.allowedHosts.isEmpty() && !isMatched(this.allowedHosts, host))) {
+			return false;
+		}
+		return !this.deniedPaths.matches(path) || this.allowedPaths.matches(path);
+	}
+
+	/**
+	 * @param hosts of rules, with "*." domains.
+	 * @param host of a link.
+	 * @return true if the host, or one of its domains, is one of the given hosts.
+	 */
+	private static boolean isMatched(Set<String> hosts, String host) {
+		if (hosts.isEmpty()) {
+			return false;
+		}
+		if (hosts.contains(host)) {
+			return true;
+		}
+		for (int dot = host.indexOf('.'); dot >= 0; dot = host.indexOf('.', dot + 1)) {
+			if (hosts.contains("*" + host.substring(dot))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param href value of a link.
+	 * @return the index of the ":" ending the scheme of the link, -1 if it's relative.
+	 */
+	private static int findSchemeEnd(String href) {
+		for (int i = 0; i < href.length(); i++) {
+			char c = href.charAt(i);
+			if (c == ':') {
+				return i > 0 ? i : -1;
+			}
+			boolean isSchemeCharacter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+					|| (i > 0 && ((c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.'));
+			if (!isSchemeCharacter) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param href value of a link.
+	 * @param schemeEnd index of the ":" ending its scheme.
+	 * @return true if the scheme is http or https.
+	 */
+	private static boolean isHTTP(String href, int schemeEnd) {
+		return (schemeEnd == 4 && href.regionMatches(true, 0, "http", 0, 4))
+				|| (schemeEnd == 5 && href.regionMatches(true, 0, "https", 0, 5));
+	}
+
+	/**
+	 * @param href value of a link.
+	 * @param start index to look from.
+	 * @param isPathEnd true if a "/" ends the part looked at too.
+	 * @return the index of the end of the part, at the query, fragment or, if asked, path.
+	 */
+	private static int findEnd(String href, int start, boolean isPathEnd) {
+		for (int i = start; i < href.length(); i++) {
+			char c = href.charAt(i);
+			if (c == '?' || c == '#' || (isPathEnd && c == '/')) {
+				return i;
+			}
+		}
+		return href.length();
+	}
+
+	/**
+	 * @param href value of a link.
+	 * @param start of its authority.
+	 * @param end of its authority.
+	 * @return the host of the authority, without user information or port, lower-cased.
+	 */
+	private static String getHost(String href, int start, int end) {
+		int hostStart = href.lastIndexOf('@', end - 1) + 1;
+		if (hostStart < start) {
+			hostStart = start;
+		}
+		int hostEnd = end;
+		if (hostStart < end && href.charAt(hostStart) == '[') {
+			int bracket = href.indexOf(']', hostStart);
+			hostEnd = bracket < 0 || bracket >= end ? end : bracket + 1;
+		}
+		else {
+			int colon = href.indexOf(':', hostStart);
+			if (colon >= 0 && colon < end) {
+				hostEnd = colon;
+			}
+		}
+		return href.substring(hostStart, hostEnd).toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @param path of a link.
+	 * @return true if the path has a "." or ".." segment.
+	 */
+	private static boolean hasDotSegment(String path) {
+		return path.contains("/./") || path.contains("/../") || path.endsWith("/.") || path.endsWith("/..");
+	}
+
+	/**
+	 * Matches paths against the prefix, glob and regular expression rules of
+	 * one action, compiled into a trie of the prefixes and one pattern of the
+	 * globs and regular expressions.
+	 */
+	private static class PathMatcher {
+
+		/**
+		 * Root of the trie of the prefixes.
+		 */
+		private final TrieNode prefixes;
+
+		/**
+		 * The globs and regular expressions as one pattern, null if there are none.
+		 */
+		private final Pattern pattern;
+
+		/**
+		 * Constructor
+		 *
+		 * @param rules prefix, glob and regular expression rules.
+		 */
+		PathMatcher(List<LinkFilterRule> rules) {
+			this.prefixes = new TrieNode();
+			StringBuilder alternatives = new StringBuilder();
+			for (LinkFilterRule rule : rules) {
+				switch (rule.getType()) {
+				case PREFIX:
+					this.prefixes.add(rule.getValue());
+					break;
+				case GLOB:
+					appendAlternative(alternatives, toRegex(rule.getValue()));
+					break;
+				case REGEX:
+					appendAlternative(alternatives, rule.getValue());
+					break;
+				default:
+					throw new IllegalArgumentException("not a path rule: " + rule);
+				}
+			}
+			this.pattern = alternatives.length() == 0 ? null : Pattern.compile(alternatives.toString());
+		}
+
+		/**
+		 * @param path of a link.
+		 * @return true if a rule matches the path.
+		 */
+		boolean matches(String path) {
+			return this.prefixes.isPrefixOf(path) || (this.pattern != null && this.pattern.matcher(path).find());
+		}
+
+		/**
+		 * @param alternatives to append to.
+		 * @param regex to be appended as an alternative.
+		 */
+		private static void appendAlternative(StringBuilder alternatives, String regex) {
+			if (alternatives.length() > 0) {
+				alternatives.append('|');
+			}
+			alternatives.append("(?:").append(regex).append(')');
+		}
+
+		/**
+		 * @param glob a glob of a whole path.
+		 * @return the regular expression of the glob.
+		 */
+		private static String toRegex(String glob) {
+			StringBuilder regex = new StringBuilder("^");
+			int literalStart = 0;
+			for (int i = 0; i < glob.length(); i++) {
+				char c = glob.charAt(i);
+				if (c == '*' || c == '?') {
+					if (i > literalStart) {
+						regex.append(Pattern.quote(glob.substring(literalStart, i)));
+					}
+					regex.append(c == '*' ? ".*" : ".");
+					literalStart = i + 1;
+				}
+			}
+			if (glob.length() > literalStart) {
+				regex.append(Pattern.quote(glob.substring(literalStart)));
+			}
+			return regex.append('$').toString();
+		}
+	}
+
+	/**
+	 * A node of a trie of characters.
+	 */
+	private static class TrieNode {
+
+		/**
+		 * Characters of the children, in the order they were added.
+		 */
+		private char[] characters = new char[0];
+
+		/**
+		 * Children, by the index of their character.
+		 */
+		private TrieNode[] children = new TrieNode[0];
+
+		/**
+		 * True if a prefix ends at this node.
+		 */
+		private boolean isEnd;
+
+		/**
+		 * @param prefix to be added below this node.
+		 */
+		void add(String prefix) {
+			TrieNode node = this;
+			for (int i = 0; i < prefix.length(); i++) {
+				TrieNode child = node.getChild(prefix.charAt(i));
+				if (child == null) {
+					child = new TrieNode();
+					int length = node.characters.length;
+					node.characters = Arrays.copyOf(node.characters, length + 1);
+					node.children = Arrays.copyOf(node.children, length + 1);
+					node.characters[length] = prefix.charAt(i);
+					node.children[length] = child;
+				}
+				node = child;
+			}
+			node.isEnd = true;
+		}
+
+		/**
+		 * @param path of a link.
+		 * @return true if a prefix below this node starts the path.
+		 */
+		boolean isPrefixOf(String path) {
+			TrieNode node = this;
+			for (int i = 0; i < path.length() && !node.isEnd; i++) {
+				node = node.getChild(path.charAt(i));
+				if (node == null) {
+					return false;
+				}
+			}
+			return node.isEnd;
+		}
+
+		/**
+		 * @param c character of a child.
+		 * @return the child, null if there is none.
+		 */
+		private TrieNode getChild(char c) {
+			for (int i = 0; i < this.characters.length; i++) {
+				if (this.characters[i] == c) {
+					return this.children[i];
+				}
+			}
+			return null;
+		}
+	}
+}
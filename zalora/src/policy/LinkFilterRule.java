@@ -0,0 +1,150 @@
+package policy;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A rule of a {@link LinkFilter}, which allows or denies the links whose host
+ * is a given host, or whose path starts with a given prefix, matches a given
+ * glob, or contains a match of a given regular expression. Rules are written
+ * one per line, as the action, the type and the value separated by spaces:
+ *
+ * <pre>
+ * allow host www.zalora.sg
+ * allow host *.zalora.sg
+ * deny prefix /sendfriend
+ * deny glob /*.jpg
+ * deny regex ^/customer/(account|cart)/
+ * </pre>
+ *
+ * In a glob, "*" matches any characters and "?" a single one, and the glob
+ * must match the whole path.
+ *
+ * @author ted.kuo
+ */
+public final class LinkFilterRule {
+
+	/**
+	 * What a rule looks at.
+	 */
+	public enum Type {
+		/** The host of the link, or a "*." followed by the domain of the hosts. */
+		HOST,
+		/** The start of the path of the link. */
+		PREFIX,
+		/** The whole path of the link, with "*" and "?" wildcards. */
+		GLOB,
+		/** A regular expression found in the path of the link. */
+		REGEX
+	}
+
+	/**
+	 * True if the rule allows the links it matches, false if it denies them.
+	 */
+	private final boolean isAllowed;
+
+	/**
+	 * What the rule looks at.
+	 */
+	private final Type type;
+
+	/**
+	 * The host, prefix, glob or regular expression of the rule.
+	 */
+	private final String value;
+
+	/**
+	 * Constructor
+	 *
+	 * @param isAllowed true if the rule allows the links it matches.
+	 * @param type what the rule looks at.
+	 * @param value the host, prefix, glob or regular expression of the rule.
+	 */
+	private LinkFilterRule(boolean isAllowed, Type type, String value) {
+		if (type == null || value == null || value.isEmpty()) {
+			throw new IllegalArgumentException("the type or value cannot be empty");
+		}
+		if (type == Type.REGEX) {
+			try {
+				Pattern.compile(value);
+			} catch (PatternSyntaxException e) {
+				throw new IllegalArgumentException("the regular expression is invalid: " + value, e);
+			}
+		}
+		this.isAllowed = isAllowed;
+		this.type = type;
+		this.value = type == Type.HOST ? value.toLowerCase(Locale.ROOT) : value;
+	}
+
+	/**
+	 * @param type what the rule looks at.
+	 * @param value the host, prefix, glob or regular expression of the rule.
+	 * @return a rule allowing the links it matches.
+	 */
+	public static LinkFilterRule allow(Type type, String value) {
+		return new LinkFilterRule(true, type, value);
+	}
+
+	/**
+	 * @param type what the rule looks at.
+	 * @param value the host, prefix, glob or regular expression of the rule.
+	 * @return a rule denying the links it matches.
+	 */
+	public static LinkFilterRule deny(Type type, String value) {
+		return new LinkFilterRule(false, type, value);
+	}
+
+	/**
+	 * Reads a rule written as "allow|deny host|prefix|glob|regex value".
+	 *
+	 * @param line the rule is written on.
+	 * @return the rule.
+	 * @throws IllegalArgumentException if the line isn't a rule.
+	 */
+	public static LinkFilterRule parse(String line) {
+		String[] fields = line.trim().split("\\s+", 3);
+		if (fields.length != 3) {
+			throw new IllegalArgumentException("the rule should be an action, a type and a value: " + line);
+		}
+		Type type;
+		try {
+			type = Type.valueOf(fields[1].toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("unknown type of rule: " + fields[1]);
+		}
+		if (fields[0].equalsIgnoreCase("allow")) {
+			return allow(type, fields[2].trim());
+		}
+		if (fields[0].equalsIgnoreCase("deny")) {
+			return deny(type, fields[2].trim());
+		}
+		throw new IllegalArgumentException("unknown action of rule: " + fields[0]);
+	}
+
+	/**
+	 * @return true if the rule allows the links it matches, false if it denies them.
+	 */
+	public boolean isAllowed() {
+		return isAllowed;
+	}
+
+	/**
+	 * @return what the rule looks at.
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the host, prefix, glob or regular expression of the rule, the host lower-cased.
+	 */
+	public String getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return (this.isAllowed ? "allow " : "deny ") + this.type.name().toLowerCase(Locale.ROOT) + " " + this.value;
+	}
+}
@@ -1,79 +1,155 @@
-package policy;
-
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
-
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-
-import page.HTMLLink;
-
-/**
- * This scanner scans for HTML anchor href links.
- * 
- * @author ted.kuo
- */
-public class LinkScanner implements HTMLLinkScanner {
-
-	/**
-	 * Specifies the host, under which all URLs found will be scanned and reported.
-	 */
-	private String host;
-	
-	/**
-	 * Constructor
-	 * 
-	 * @param host, only links under the given host will be scanned and reported.
-	 */
-	public LinkScanner(String host) {
-		if (host == null) {
-			throw new IllegalArgumentException("host cannot be null");
-		}
-		this.host = host;
-	}
-	
-	/**
-   * Scans through the page and return all the anchor reference in a list.
-   * 
-   * return a collection of URLs
-   */
-	@Override
-	public List<HTMLLink> scanPage(HTMLLink page, Document doc) {
-		List<HTMLLink> linksFound = new ArrayList<>();
-		// If the document is null, then return empty list.
-		if (doc == null) {
-			return linksFound;
-		}
-		
-		// Look for a href element values.
-		Elements anchorTags = doc.getElementsByTag("a");
-		for (Element element : anchorTags) {
-			String hrefValue = element.attr("href");
-			try {
-				URL link = new URL(page.getPageURL(), hrefValue);
-				
-				// Only add the link if the host is correct.
-				if (this.host.equals(link.getHost()) && !isZaloraAccountSpecificLink(link)) {
-					linksFound.add(new HTMLLink(link));
-				}
-			} catch (MalformedURLException e) {
-				// If a malformed link is found, log and continue.
-				System.err.println("Malformed link found: " + hrefValue);
-			}
-		}
-		return linksFound;
-	}
-	
-	/**
-	 * Return true if this is an account specific link. It should be ignored.
-	 * 
-	 * @param url to be checked.
-	 * @return true if the given URL is recognised as a link to unhelpful pages.
-	 */
-	private boolean isZaloraAccountSpecificLink(URL url) {
-		return (url.getPath().startsWith("/sendfriend") || url.getPath().startsWith("/customer/wishlist/add/p/"));
-	}
-}
+package policy;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import page.HTMLLink;
+
+/**
+ * This scanner scans for HTML anchor href links.
+ * 
+ * @author ted.kuo
+ */
+public class LinkScanner implements VisitingLinkScanner {
+
+	/**
+	 * The elements looked at, the anchors.
+	 */
+	private static final List<ElementInterest> ANCHOR_INTERESTS = Collections.singletonList(ElementInterest.tag("a"));
+	
+	/**
+	 * Decides which of the links found are reported.
+	 */
+	private LinkFilter linkFilter;
+	
+	/**
+	 * Remembers the href values already dealt with, null to resolve every href value.
+	 */
+	private volatile ResolvedLinkCache resolvedLinkCache;
+	
+	/**
+	 * Constructor. Reports the links under the given host, apart from those to
+	 * account specific pages, which are unhelpful.
+	 * 
+	 * @param host, only links under the given host will be scanned and reported.
+	 */
+	public LinkScanner(String host) {
+		if (host == null) {
+			throw new IllegalArgumentException("host cannot be null");
+		}
+		this.linkFilter = new LinkFilter(Arrays.asList(
+				LinkFilterRule.allow(LinkFilterRule.Type.HOST, host),
+				LinkFilterRule.deny(LinkFilterRule.Type.PREFIX, "/sendfriend"),
+				LinkFilterRule.deny(LinkFilterRule.Type.PREFIX, "/customer/wishlist/add/p/")));
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param linkFilter decides which of the links found are reported.
+	 */
+	public LinkScanner(LinkFilter linkFilter) {
+		if (linkFilter == null) {
+			throw new IllegalArgumentException("linkFilter cannot be null");
+		}
+		this.linkFilter = linkFilter;
+	}
+	
+	/**
+	 * Drops the href values already dealt with on a page of the same directory,
+	 * before they are resolved. The links scanned are then only those this
+	 * scanner hasn't reported yet, as far as the cache remembers.
+	 * 
+	 * @param resolvedLinkCache to remember the href values in, null to resolve
+	 *        every href value.
+	 */
+	public void setResolvedLinkCache(ResolvedLinkCache resolvedLinkCache) {
+		this.resolvedLinkCache = resolvedLinkCache;
+	}
+	
+	/**
+   * Scans through the page and return all the anchor reference in a list.
+   * 
+   * return a collection of URLs
+   */
+	@Override
+	public List<HTMLLink> scanPage(HTMLLink page, Document doc) {
+		List<HTMLLink> linksFound = new ArrayList<>();
+		// If the document is null, then return empty list.
+		if (doc == null) {
+			return linksFound;
+		}
+		
+		SinglePassTraversal.traverse(doc, Collections.singletonList(newPageVisitor(page, linksFound)));
+		return linksFound;
+	}
+	
+	/**
+	 * Returns a visitor that looks at the a href element values of the page.
+	 */
+	@Override
+	public PageVisitor newPageVisitor(final HTMLLink page, final Collection<HTMLLink> linksFound) {
+		return new PageVisitor() {
+			@Override
+			public List<ElementInterest> getElementInterests() {
+				return ANCHOR_INTERESTS;
+			}
+			
+			@Override
+			public void enterElement(Element element, ElementInterest interest) {
+				addLink(page, element.attr("href"), linksFound);
+			}
+			
+			@Override
+			public void exitElement(Element element, ElementInterest interest) {
+			}
+			
+			@Override
+			public void endPage(Document pageContent) {
+			}
+		};
+	}
+	
+	/**
+	 * Adds the links of the given href values that are under the host.
+	 */
+	@Override
+	public void scanHrefs(HTMLLink page, List<String> hrefValues, Collection<HTMLLink> linksFound) {
+		for (String hrefValue : hrefValues) {
+			addLink(page, hrefValue, linksFound);
+		}
+	}
+	
+	/**
+	 * Adds the link of the given href value if the filter accepts it and it
+	 * isn't a repeat. The links rejected and repeated are never resolved into a
+	 * {@link URL}.
+	 * 
+	 * @param page the href value was found on.
+	 * @param hrefValue to be resolved against the page.
+	 * @param linksFound to add the link to.
+	 */
+	private void addLink(HTMLLink page, String hrefValue, Collection<HTMLLink> linksFound) {
+		ResolvedLinkCache cache = this.resolvedLinkCache;
+		if (cache != null && cache.isRepeated(page.getPageURL(), hrefValue)) {
+			return;
+		}
+		if (!this.linkFilter.accepts(page.getPageURL(), hrefValue)) {
+			return;
+		}
+		try {
+			linksFound.add(new HTMLLink(new URL(page.getPageURL(), hrefValue)));
+		} catch (MalformedURLException e) {
+			// If a malformed link is found, log and continue.
+			System.err.println("Malformed link found: " + hrefValue);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package policy;
+
+import java.util.List;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+ * Looks at a single page as part of a {@link SinglePassTraversal}, which walks
+ * the page once for all its visitors. A visitor registers the elements it's
+ * interested in, and is only shown those. A visitor is created for each page,
+ * so it may keep what it has found so far until {@link #endPage(Document)}.
+ *
+ * @author ted.kuo
+ */
+public interface PageVisitor {
+
+	/**
+	 * @return the elements this visitor wants to be shown.
+	 */
+	List<ElementInterest> getElementInterests();
+
+	/**
+	 * Called as the traversal enters an element of interest, before its children.
+	 *
+	 * @param element of interest.
+	 * @param interest the element matched, called once for each one it matches.
+	 */
+	void enterElement(Element element, ElementInterest interest);
+
+	/**
+	 * Called as the traversal leaves an element of interest, after its children.
+	 *
+	 * @param element of interest.
+	 * @param interest the element matched, called once for each one it matches.
+	 */
+	void exitElement(Element element, ElementInterest interest);
+
+	/**
+	 * Called once the whole page has been traversed.
+	 *
+	 * @param pageContent of the page.
+	 */
+	void endPage(Document pageContent);
+}
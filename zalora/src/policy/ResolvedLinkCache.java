@@ -0,0 +1,145 @@
+package policy;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the href values a {@link LinkScanner} has already dealt with, by
+ * the directory of the page they were found on, so the header, footer and
+ * menu anchors repeated on every page are dropped before they are resolved
+ * into a URL, let alone inserted into the repository only to be found there
+ * already. Whether the link of an href value was reported or rejected the
+ * first time, the repeats are dropped all the same, so only the href values
+ * are kept, not their links.
+ *
+ * The cache is bounded, forgetting the href values used least recently, and
+ * split into stripes locked separately, so it can be shared by any number of
+ * threads.
+ *
+ * @author ted.kuo
+ */
+public class ResolvedLinkCache {
+
+	/**
+	 * The number of stripes the cache is split into.
+	 */
+	private static final int NUMBER_OF_STRIPES = 16;
+
+	/**
+	 * The stripes, each a map in access order of its share of the href values.
+	 */
+	private final List<Map<String, Boolean>> stripes;
+
+	/**
+	 * The number of href values found repeated.
+	 */
+	private final AtomicLong numberOfRepeats;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity the number of href values remembered.
+	 */
+	public ResolvedLinkCache(int capacity) {
+		if (capacity < NUMBER_OF_STRIPES) {
+			throw new IllegalArgumentException("capacity must be at least " + NUMBER_OF_STRIPES + ": " + capacity);
+		}
+		final int stripeCapacity = capacity / NUMBER_OF_STRIPES;
+		this.stripes = new ArrayList<>(NUMBER_OF_STRIPES);
+		for (int i = 0; i < NUMBER_OF_STRIPES; i++) {
+			this.stripes.add(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+					return size() > stripeCapacity;
+				}
+			});
+		}
+		this.numberOfRepeats = new AtomicLong();
+	}
+
+	/**
+	 * Tells whether the given href value has already been dealt with on a page
+	 * of the same directory, and remembers it if it hasn't.
+	 *
+	 * @param pageURL of the page the href value was found on.
+	 * @param hrefValue as written on the page.
+	 * @return true if the href value is a repeat, and can be dropped.
+	 */
+	public boolean isRepeated(URL pageURL, String hrefValue) {
+		String key = getKey(pageURL, hrefValue);
+		Map<String, Boolean> stripe = this.stripes.get((key.hashCode() & 0x7fffffff) % NUMBER_OF_STRIPES);
+		synchronized (stripe) {
+			if (stripe.put(key, Boolean.TRUE) == null) {
+				return false;
+			}
+		}
+		this.numberOfRepeats.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * @return the number of href values found repeated.
+	 */
+	public long getNumberOfRepeats() {
+		return this.numberOfRepeats.get();
+	}
+
+	/**
+	 * Returns the key of an href value: the href value itself if it's absolute,
+	 * and otherwise prefixed with as much of the page URL as it's resolved
+	 * against, the origin, the directory or the whole URL.
+	 *
+	 * @param pageURL of the page the href value was found on.
+	 * @param hrefValue as written on the page.
+	 * @return the key, which is the same for href values of the same link.
+	 */
+	static String getKey(URL pageURL, String hrefValue) {
+		if (hasScheme(hrefValue)) {
+			return hrefValue;
+		}
+		if (hrefValue.startsWith("//")) {
+			return pageURL.getProtocol() + ":" + hrefValue;
+		}
+		StringBuilder key = new StringBuilder(pageURL.getProtocol()).append("://").append(pageURL.getAuthority());
+		if (hrefValue.isEmpty() || hrefValue.charAt(0) == '?' || hrefValue.charAt(0) == '#') {
+			key.append(pageURL.getFile());
+		}
+		else if (hrefValue.charAt(0) != '/') {
+			String path = pageURL.getPath();
+			key.append(path, 0, path.lastIndexOf('/') + 1);
+		}
+		// A space can't be in a URL, so the base ends there.
+		return key.append(' ').append(hrefValue).toString();
+	}
+
+	/**
+	 * @param hrefValue as written on a page.
+	 * @return true if it starts with a scheme, and so is absolute.
+	 */
+	private static boolean hasScheme(String hrefValue) {
+		for (int i = 0; i < hrefValue.length(); i++) {
+			char c = hrefValue.charAt(i);
+			if (c == ':') {
+				return i > 0;
+			}
+			if (c == '/' || c == '?' || c == '#') {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return toString
+	 */
+	@Override
+	public String toString() {
+		return "Dropped " + this.numberOfRepeats.get() + " repeated links before resolving them";
+	}
+}
@@ -0,0 +1,268 @@
+package policy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+/**
+ * Walks a page once with a {@link NodeTraversor}, and shows each element to
+ * every {@link PageVisitor} interested in it. The interests are indexed by
+ * tag, class and attribute name, so each element is only checked against the
+ * interests it could match, however many visitors there are. Given a
+ * {@link BoilerplateDetector}, the walk skips the subtrees found the same on
+ * every page of the site, which the visitors have already seen.
+ *
+ * A traversal is built for the visitors of a single page, and isn't thread-safe.
+ *
+ * @author ted.kuo
+ */
+public class SinglePassTraversal implements NodeFilter {
+
+	/**
+	 * The visitors of the page.
+	 */
+	private final List<PageVisitor> visitors;
+
+	/**
+	 * Interests in a tag, by tag name.
+	 */
+	private final Map<String, List<Subscription>> tagSubscriptions;
+
+	/**
+	 * Interests in a class, by class name.
+	 */
+	private final Map<String, List<Subscription>> classSubscriptions;
+
+	/**
+	 * Interests in an attribute, by attribute name.
+	 */
+	private final Map<String, List<Subscription>> attributeSubscriptions;
+
+	/**
+	 * Learns and skips the boilerplate subtrees of the page, null to walk every subtree.
+	 */
+	private final BoilerplateDetector boilerplateDetector;
+
+	/**
+	 * The walk of the page by the detector, null until the walk starts or without a detector.
+	 */
+	private BoilerplateDetector.PageTraversal boilerplateTraversal;
+
+	/**
+	 * Constructor
+	 *
+	 * @param visitors of the page.
+	 */
+	public SinglePassTraversal(List<? extends PageVisitor> visitors) {
+		this(visitors, null);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param visitors of the page.
+	 * @param boilerplateDetector to learn and skip the boilerplate subtrees with,
+	 *        null to walk every subtree.
+	 */
+	public SinglePassTraversal(List<? extends PageVisitor> visitors, BoilerplateDetector boilerplateDetector) {
+		this.boilerplateDetector = boilerplateDetector;
+		this.visitors = new ArrayList<>(visitors);
+		this.tagSubscriptions = new HashMap<>();
+		this.classSubscriptions = new HashMap<>();
+		this.attributeSubscriptions = new HashMap<>();
+		for (PageVisitor visitor : this.visitors) {
+			for (ElementInterest interest : visitor.getElementInterests()) {
+				Subscription subscription = new Subscription(visitor, interest);
+				if (interest.getTagName() != null) {
+					subscribe(this.tagSubscriptions, interest.getTagName(), subscription);
+				}
+				else if (interest.getClassName() != null) {
+					subscribe(this.classSubscriptions, interest.getClassName(), subscription);
+				}
+				else {
+					subscribe(this.attributeSubscriptions, interest.getAttributeName(), subscription);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Walks the given page with the given visitors.
+	 *
+	 * @param pageContent to be walked.
+	 * @param visitors of the page.
+	 */
+	public static void traverse(Document pageContent, List<? extends PageVisitor> visitors) {
+		new SinglePassTraversal(visitors).traverse(pageContent);
+	}
+
+	/**
+	 * Walks the given page with the given visitors, skipping its boilerplate subtrees.
+	 *
+	 * @param pageContent to be walked.
+	 * @param visitors of the page.
+	 * @param boilerplateDetector to learn and skip the boilerplate subtrees with,
+	 *        null to walk every subtree.
+	 */
+	public static void traverse(Document pageContent, List<? extends PageVisitor> visitors,
+			BoilerplateDetector boilerplateDetector) {
+		new SinglePassTraversal(visitors, boilerplateDetector).traverse(pageContent);
+	}
+
+	/**
+	 * Walks the given page, and then ends the page for every visitor.
+	 *
+	 * @param pageContent to be walked.
+	 */
+	public void traverse(Document pageContent) {
+		if (!this.tagSubscriptions.isEmpty() || !this.classSubscriptions.isEmpty()
+				|| !this.attributeSubscriptions.isEmpty()) {
+			if (this.boilerplateDetector != null) {
+				this.boilerplateTraversal = this.boilerplateDetector.startPage();
+			}
+			NodeTraversor.filter(this, pageContent);
+			if (this.boilerplateTraversal != null) {
+				this.boilerplateTraversal.end();
+			}
+		}
+		for (PageVisitor visitor : this.visitors) {
+			visitor.endPage(pageContent);
+		}
+	}
+
+	@Override
+	public FilterResult head(Node node, int depth) {
+		if (this.boilerplateTraversal != null) {
+			if (node instanceof Element && this.boilerplateTraversal.isSkipped((Element) node)) {
+				return FilterResult.SKIP_ENTIRELY;
+			}
+			this.boilerplateTraversal.enter(node);
+		}
+		if (node instanceof Element) {
+			dispatch((Element) node, true);
+		}
+		return FilterResult.CONTINUE;
+	}
+
+	@Override
+	public FilterResult tail(Node node, int depth) {
+		if (node instanceof Element) {
+			dispatch((Element) node, false);
+		}
+		if (this.boilerplateTraversal != null) {
+			this.boilerplateTraversal.exit(node);
+		}
+		return FilterResult.CONTINUE;
+	}
+
+	/**
+	 * Shows the given element to the visitors interested in it.
+	 *
+	 * @param element being entered or left.
+	 * @param isEntering true when entering the element, false when leaving it.
+	 */
+	private void dispatch(Element element, boolean isEntering) {
+		if (!this.tagSubscriptions.isEmpty()) {
+			notify(this.tagSubscriptions.get(element.normalName()), element, isEntering);
+		}
+		if (!this.classSubscriptions.isEmpty()) {
+			String classes = element.attributes().getIgnoreCase("class");
+			int start = 0;
+			int length = classes.length();
+			while (start < length) {
+				while (start < length && Character.isWhitespace(classes.charAt(start))) {
+					start++;
+				}
+				int end = start;
+				while (end < length && !Character.isWhitespace(classes.charAt(end))) {
+					end++;
+				}
+				if (end > start) {
+					notify(this.classSubscriptions.get(classes.substring(start, end).toLowerCase(Locale.ROOT)),
+							element, isEntering);
+				}
+				start = end;
+			}
+		}
+		if (!this.attributeSubscriptions.isEmpty() && element.attributesSize() > 0) {
+			for (Attribute attribute : element.attributes()) {
+				notify(this.attributeSubscriptions.get(attribute.getKey().toLowerCase(Locale.ROOT)), element, isEntering);
+			}
+		}
+	}
+
+	/**
+	 * Shows the given element to the given subscriptions it matches.
+	 *
+	 * @param subscriptions to the element's tag, class or attribute, null if none.
+	 * @param element being entered or left.
+	 * @param isEntering true when entering the element, false when leaving it.
+	 */
+	private static void notify(List<Subscription> subscriptions, Element element, boolean isEntering) {
+		if (subscriptions == null) {
+			return;
+		}
+		for (Subscription subscription : subscriptions) {
+			if (subscription.interest.getTagName() == null && !subscription.interest.matches(element)) {
+				// The attribute is there, but not with the value of interest.
+				continue;
+			}
+			if (isEntering) {
+				subscription.visitor.enterElement(element, subscription.interest);
+			}
+			else {
+				subscription.visitor.exitElement(element, subscription.interest);
+			}
+		}
+	}
+
+	/**
+	 * @param subscriptions to add to.
+	 * @param key of the subscription.
+	 * @param subscription to be added.
+	 */
+	private static void subscribe(Map<String, List<Subscription>> subscriptions, String key, Subscription subscription) {
+		List<Subscription> keySubscriptions = subscriptions.get(key);
+		if (keySubscriptions == null) {
+			keySubscriptions = new ArrayList<>(1);
+			subscriptions.put(key, keySubscriptions);
+		}
+		keySubscriptions.add(subscription);
+	}
+
+	/**
+	 * An interest of a visitor.
+	 */
+	private static class Subscription {
+
+		/**
+		 * The visitor interested.
+		 */
+		private final PageVisitor visitor;
+
+		/**
+		 * What it's interested in.
+		 */
+		private final ElementInterest interest;
+
+		/**
+		 * Constructor
+		 *
+		 * @param visitor interested.
+		 * @param interest what it's interested in.
+		 */
+		Subscription(PageVisitor visitor, ElementInterest interest) {
+			this.visitor = visitor;
+			this.interest = interest;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package policy;
+
+import java.util.Collection;
+import java.util.List;
+
+import page.HTMLLink;
+
+/**
+ * A {@link HTMLLinkScanner} that can scan a page as a {@link PageVisitor}, so
+ * it shares a single traversal of the page with every other visitor rather
+ * than walking the page on its own. It can also scan the href values
+ * streamed out of a page, when no document of the page is built.
+ *
+ * @author ted.kuo
+ */
+public interface VisitingLinkScanner extends HTMLLinkScanner {
+
+	/**
+	 * Returns a visitor that scans the given page for links.
+	 *
+	 * @param htmlLink of the page to be scanned.
+	 * @param linksFound to add the links found to.
+	 * @return the visitor of the page.
+	 */
+	PageVisitor newPageVisitor(HTMLLink htmlLink, Collection<HTMLLink> linksFound);
+
+	/**
+	 * Scans the href values of the anchors of the given page for links.
+	 *
+	 * @param htmlLink of the page the href values were found on.
+	 * @param hrefValues of the anchors of the page.
+	 * @param linksFound to add the links found to.
+	 */
+	void scanHrefs(HTMLLink htmlLink, List<String> hrefValues, Collection<HTMLLink> linksFound);
+}
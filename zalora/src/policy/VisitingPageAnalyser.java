@@ -0,0 +1,34 @@
+package policy;
+
+import fetch.PageResponse;
+import page.HTMLLink;
+
+/**
+ * A {@link PageAnalyser} that can analyse a page as a {@link PageVisitor}, so
+ * it shares a single traversal of the page with every other visitor rather
+ * than walking the page on its own. It also tells which pages it needs to see
+ * at all, so the pages it doesn't need are only scanned for links, without
+ * building a document of them.
+ *
+ * @author ted.kuo
+ */
+public interface VisitingPageAnalyser extends PageAnalyser {
+
+	/**
+	 * Returns a visitor that analyses the given page.
+	 *
+	 * @param link of the page to be analysed.
+	 * @return the visitor of the page.
+	 */
+	PageVisitor newPageVisitor(HTMLLink link);
+
+	/**
+	 * Tells, before the page is parsed, whether the given page needs to be
+	 * analysed. It may look at the body of the response, but must not release it.
+	 *
+	 * @param response of the page.
+	 * @return true if the page needs to be analysed, false if the analyser has
+	 *         nothing to look for on it.
+	 */
+	boolean needsDocument(PageResponse response);
+}
@@ -0,0 +1,31 @@
+package policy;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+ * A {@link PageVisitor} that isn't interested in any element, and only looks
+ * at the page as a whole once it has been traversed. It lets a scanner or
+ * analyser that searches the page on its own take part in a
+ * {@link SinglePassTraversal}.
+ *
+ * @author ted.kuo
+ */
+public abstract class WholePageVisitor implements PageVisitor {
+
+	@Override
+	public List<ElementInterest> getElementInterests() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void enterElement(Element element, ElementInterest interest) {
+	}
+
+	@Override
+	public void exitElement(Element element, ElementInterest interest) {
+	}
+}
@@ -1,86 +1,234 @@
-package price;
-
-/**
- * A simple price class to represent a Price in its amount and its currency.
- * 
- * NOTE: No quantity ratio is used because its assumed all the prices are stated
- * as per item. Nothing like "$40.00 for two".
- * 
- * @author ted.kuo
- */
-public class Price {
-	/**
-	 * Specifies the price.
-	 */
-	private double priceAmount;
-
-	/**
-	 * Currency of a price. 
-	 */
-	private Currency currency;
-
-	/**
-	 * Constructor for a {@link Price}.
-	 * 
-	 * @param priceAmount the price amount of an item
-	 * @param currency which the price is in.
-	 */
-	public Price(double priceAmount, Currency currency) {
-		this.priceAmount = priceAmount;
-		this.currency = currency;
-	}
-
-	/**
-	 * @return the priceAmount
-	 */
-	public double getPriceAmount() {
-		return priceAmount;
-	}
-
-	/**
-	 * @return the currency
-	 */
-	public Currency getCurrency() {
-		return currency;
-	}
-
-	/**
-	 * String representation of {@link Price}
-	 * 
-	 * @return toString
-	 */
-	public String toString() {
-		return "$" + this.priceAmount + " " + this.currency.toString();
-	}
-	
-	/**
-	 * A simple enum to declare all possible currencies of a price.
-	 * 
-	 * @author ted.kuo
-	 */
-	public enum Currency {
-		SGD;
-		
-		/**
-		 * Return the {@link Currency} object that represents the given currency
-		 * string. If no match can be found, or if the given string is null, then
-		 * null is returned.
-		 * 
-		 * @param currencyString to be converted.
-		 * @return the {@link Currency} representation of the given string.
-		 */
-		public static Currency convert(String currencyString) {
-			if (currencyString == null || currencyString.isEmpty()) {
-				return null;
-			}
-			
-			Currency correspondingCurrency = null;
-			for (Currency currency : Currency.values()) {
-				if (currency.toString().equals(currencyString)) {
-					return currency;
-				}
-			}
-			return correspondingCurrency;
-		}
-	}
-}
+package price;
+
+import java.util.Locale;
+
+/**
+ * A simple price class to represent a Price in its amount and its currency.
+ * The amount is held in the minor units of the currency, such as cents, so it
+ * is exact, and prices are compared as plain integers.
+ * 
+ * NOTE: No quantity ratio is used because its assumed all the prices are stated
+ * as per item. Nothing like "$40.00 for two".
+ * 
+ * @author ted.kuo
+ */
+public class Price {
+
+	/**
+	 * The number of digits of the minor units of a price of no known currency.
+	 */
+	public static final int DEFAULT_SCALE = 2;
+
+	/**
+	 * The largest number of digits of the minor units of an ISO 4217 currency.
+	 */
+	public static final int MAX_SCALE = 4;
+
+	/**
+	 * Powers of ten, by the number of digits of the minor units.
+	 */
+	private static final long[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000 };
+
+	/**
+	 * Specifies the price, in the minor units of its currency.
+	 */
+	private long minorUnits;
+
+	/**
+	 * Currency of a price.
+	 */
+	private Currency currency;
+
+	/**
+	 * Identifies the product priced, such as its SKU, null if it's not known.
+	 */
+	private String productId;
+
+	/**
+	 * Constructor for a {@link Price}.
+	 * 
+	 * @param priceAmount the price amount of an item, rounded to the minor units of the currency.
+	 * @param currency which the price is in.
+	 */
+	public Price(double priceAmount, Currency currency) {
+		this(toMinorUnits(priceAmount, getScale(currency)), currency, null);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param minorUnits the price amount of an item, in the minor units of the currency.
+	 * @param currency which the price is in.
+	 * @param productId identifies the product priced, null if it's not known.
+	 */
+	private Price(long minorUnits, Currency currency, String productId) {
+		this.minorUnits = minorUnits;
+		this.currency = currency;
+		this.productId = productId;
+	}
+
+	/**
+	 * @param minorUnits the price amount of an item, in the minor units of the currency.
+	 * @param currency which the price is in, null if it's not known.
+	 * @return the price.
+	 */
+	public static Price ofMinorUnits(long minorUnits, Currency currency) {
+		return new Price(minorUnits, currency, null);
+	}
+
+	/**
+	 * @param minorUnits the price amount of an item, in the minor units of the currency.
+	 * @param currency which the price is in, null if it's not known.
+	 * @param productId identifies the product priced, such as its SKU, null if it's not known.
+	 * @return the price.
+	 */
+	public static Price ofMinorUnits(long minorUnits, Currency currency, String productId) {
+		return new Price(minorUnits, currency, productId);
+	}
+
+	/**
+	 * @param amount an amount.
+	 * @param scale the number of digits of the minor units, up to {@value #MAX_SCALE}.
+	 * @return the amount in minor units, rounded half up.
+	 */
+	public static long toMinorUnits(double amount, int scale) {
+		return Math.round(amount * POWERS_OF_TEN[scale]);
+	}
+
+	/**
+	 * @return the priceAmount
+	 */
+	public double getPriceAmount() {
+		return (double) this.minorUnits / POWERS_OF_TEN[getScale()];
+	}
+
+	/**
+	 * @return the price amount, in the minor units of the currency.
+	 */
+	public long getMinorUnits() {
+		return minorUnits;
+	}
+
+	/**
+	 * @return the number of digits of the minor units of the currency.
+	 */
+	public int getScale() {
+		return getScale(this.currency);
+	}
+
+	/**
+	 * @return the currency
+	 */
+	public Currency getCurrency() {
+		return currency;
+	}
+
+	/**
+	 * @return the id of the product priced, such as its SKU, null if it's not known.
+	 */
+	public String getProductId() {
+		return productId;
+	}
+
+	/**
+	 * String representation of {@link Price}, the amount with at least one
+	 * digit of fraction, as in "$10.0 SGD".
+	 * 
+	 * @return toString
+	 */
+	public String toString() {
+		int scale = getScale();
+		long units = Math.abs(this.minorUnits);
+		StringBuilder amount = new StringBuilder("$");
+		if (this.minorUnits < 0) {
+			amount.append('-');
+		}
+		amount.append(units / POWERS_OF_TEN[scale]).append('.');
+		if (scale == 0) {
+			amount.append('0');
+		}
+		else {
+			String fraction = Long.toString(POWERS_OF_TEN[scale] + units % POWERS_OF_TEN[scale]).substring(1);
+			int fractionEnd = fraction.length();
+			while (fractionEnd > 1 && fraction.charAt(fractionEnd - 1) == '0') {
+				fractionEnd--;
+			}
+			amount.append(fraction, 0, fractionEnd);
+		}
+		return amount.append(' ').append(this.currency).toString();
+	}
+
+	/**
+	 * @param currency of a price, null if it's not known.
+	 * @return the number of digits of the minor units of the currency.
+	 */
+	private static int getScale(Currency currency) {
+		return currency == null ? DEFAULT_SCALE : currency.getScale();
+	}
+
+	/**
+	 * A simple enum to declare all possible currencies of a price, with the
+	 * locale their amounts are written in.
+	 * 
+	 * @author ted.kuo
+	 */
+	public enum Currency {
+		SGD(Locale.forLanguageTag("en-SG"));
+
+		/**
+		 * The number of digits of the minor units, from ISO 4217.
+		 */
+		private final int scale;
+
+		/**
+		 * Parses the amounts, with the separators of the locale of the currency.
+		 */
+		private final PriceParser priceParser;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param locale the amounts are written in.
+		 */
+		private Currency(Locale locale) {
+			this.scale = java.util.Currency.getInstance(name()).getDefaultFractionDigits();
+			this.priceParser = new PriceParser(locale);
+		}
+
+		/**
+		 * @return the number of digits of the minor units, from ISO 4217.
+		 */
+		public int getScale() {
+			return scale;
+		}
+
+		/**
+		 * @return the parser of the amounts, with the separators of the locale of the currency.
+		 */
+		public PriceParser getPriceParser() {
+			return priceParser;
+		}
+
+		/**
+		 * Return the {@link Currency} object that represents the given currency
+		 * string. If no match can be found, or if the given string is null, then
+		 * null is returned.
+		 * 
+		 * @param currencyString to be converted.
+		 * @return the {@link Currency} representation of the given string.
+		 */
+		public static Currency convert(String currencyString) {
+			if (currencyString == null || currencyString.isEmpty()) {
+				return null;
+			}
+
+			Currency correspondingCurrency = null;
+			for (Currency currency : Currency.values()) {
+				if (currency.toString().equals(currencyString)) {
+					return currency;
+				}
+			}
+			return correspondingCurrency;
+		}
+	}
+}
@@ -1,115 +1,340 @@
-package price;
-
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-
-import page.HTMLLink;
-import policy.PageAnalyser;
-import price.Price.Currency;
-
-/**
- * This {@link PriceAnalyser} scans through pages for wrong prices that is outside the given range. 
- * 
- * @author ted.kuo
- */
-public class PriceAnalyser implements PageAnalyser {
-
-	/**
-	 * Specifies the min and max price that indicates the "correct" range.
-	 */
-	private double minPrice, maxPrice;
-	
-	/**
-	 * Constructor
-	 * 
-	 * @param minPrice minimum price range 
-	 * @param maxPrice maximum price range
-	 */
-	public PriceAnalyser(double minPrice, double maxPrice) {
-		this.minPrice = minPrice;
-		this.maxPrice = maxPrice;
-	}
-
-	/**
-	 * Goes through the page content and print out any price that is outside the range.
-	 */
-	@Override
-	public void analyse(HTMLLink link, Document linkContent) {
-		if (link != null & linkContent != null) {
-			// Analyse
-			Collection<Price> pricesFound = getAllPricesFromPage(link, linkContent);
-			for (Price price : pricesFound) {
-				Double priceAmount = price.getPriceAmount();
-				if (priceAmount < this.minPrice || priceAmount > this.maxPrice) {
-					System.out.println("Price Error: " + price + " Link: " + link.getCanonicalPageURLString());
-				}
-			}
-		}		
-	}
-	
-	/**
-	 * This scans through a given {@link HTMLLink} and its content for prices. 
-	 */
-	public List<Price> getAllPricesFromPage(HTMLLink page, Document pageContent) {
-		List<Price> pricesFound = new ArrayList<>();
-		
-		List<Price> productDetailPrices = getPricesFromProductDetailPage(page, pageContent);
-		pricesFound.addAll(productDetailPrices);
-		
-		return pricesFound;
-	}
-
-	/**
-	 * A specific mechanism to search for prices in a Zalora product detail page.
-	 * 
-	 * @param linke to be scanned for prices.
-	 * @param pageContent of the given link.
-	 * @return a list of prices on a product details page.
-	 */
-	private List<Price> getPricesFromProductDetailPage(HTMLLink linke, Document pageContent) {
-		List<Price> pricesFound = new ArrayList<>();
-		
-		if (pageContent == null) {
-			return pricesFound;
-		}
-		
-		/* 
-		 * Only apply this to "leaf" pages which is identified by pages having .html
-		 * extension. At Zalora page, all product detail page ends with .html
-		 * extension.
-		 */
-		if (linke.getPageURL().getPath().endsWith(".html")) {
-			Elements priceElements = pageContent.getElementsByClass("prd-price");
-			for (Element element : priceElements) {
-				Elements priceAmountElements = element.getElementsByAttributeValue("property", "gr:hasCurrencyValue");
-				Elements currencyElements = element.getElementsByAttributeValue("property", "gr:hasCurrency");
-				if (!priceAmountElements.isEmpty() && priceAmountElements.get(0).html() != null) {
-					try {
-						String priceAmountString = priceAmountElements.get(0).html();
-						Double priceAmount = Double.parseDouble(priceAmountString.trim().replace(",", ""));
-
-						// convert the currency
-						Currency currency = null;
-						if (!currencyElements.isEmpty()) {
-							String currencyString = currencyElements.get(0).html();
-							currency = Currency.convert(currencyString);
-						}
-						
-						Price p = new Price(priceAmount, currency);
-						pricesFound.add(p);
-					}
-					catch (NumberFormatException e) {
-						System.err.println(e.getMessage());
-					}
-					
-				}
-			}
-		}
-		return pricesFound;
-	}
-}
+package price;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.TextNode;
+
+import fetch.PageResponse;
+import page.HTMLLink;
+import policy.ElementInterest;
+import policy.PageVisitor;
+import policy.SinglePassTraversal;
+import policy.VisitingPageAnalyser;
+import price.Price.Currency;
+
+/**
+ * This {@link PriceAnalyser} scans through pages for wrong prices that is outside the given range. 
+ * 
+ * @author ted.kuo
+ */
+public class PriceAnalyser implements VisitingPageAnalyser {
+
+	/**
+	 * An element holding a price.
+	 */
+	private static final ElementInterest PRICE_INTEREST = ElementInterest.className("prd-price");
+	
+	/**
+	 * An element holding the amount of a price.
+	 */
+	private static final ElementInterest PRICE_AMOUNT_INTEREST = 
+			ElementInterest.attributeValue("property", "gr:hasCurrencyValue");
+	
+	/**
+	 * An element holding the currency of a price.
+	 */
+	private static final ElementInterest CURRENCY_INTEREST = ElementInterest.attributeValue("property", "gr:hasCurrency");
+	
+	/**
+	 * The elements looked at on a product detail page.
+	 */
+	private static final List<ElementInterest> PRICE_INTERESTS = 
+			Arrays.asList(PRICE_INTEREST, PRICE_AMOUNT_INTEREST, CURRENCY_INTEREST);
+
+	/**
+	 * The elements looked at on a product detail page, structured data included.
+	 */
+	private static final List<ElementInterest> PRODUCT_DETAIL_PAGE_INTERESTS = concat(
+			StructuredDataPriceExtractor.STRUCTURED_DATA_INTERESTS, PRICE_INTERESTS);
+
+	/**
+	 * Parses the amounts of the prices of no known currency.
+	 */
+	private static final PriceParser DEFAULT_PRICE_PARSER = new PriceParser(Locale.ROOT);
+	
+	/**
+	 * Specifies the min and max price that indicates the "correct" range, in
+	 * minor units, by the number of digits of the minor units.
+	 */
+	private long[] minPrices, maxPrices;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param minPrice minimum price range 
+	 * @param maxPrice maximum price range
+	 */
+	public PriceAnalyser(double minPrice, double maxPrice) {
+		this.minPrices = new long[Price.MAX_SCALE + 1];
+		this.maxPrices = new long[Price.MAX_SCALE + 1];
+		for (int scale = 0; scale <= Price.MAX_SCALE; scale++) {
+			this.minPrices[scale] = Price.toMinorUnits(minPrice, scale);
+			this.maxPrices[scale] = Price.toMinorUnits(maxPrice, scale);
+		}
+	}
+
+	/**
+	 * Goes through the page content and print out any price that is outside the range.
+	 */
+	@Override
+	public void analyse(HTMLLink link, Document linkContent) {
+		if (link != null & linkContent != null) {
+			// Analyse
+			reportPricesOutOfRange(link, getAllPricesFromPage(link, linkContent));
+		}		
+	}
+	
+	/**
+	 * Returns a visitor that prints out any price on the page that is outside the range.
+	 */
+	@Override
+	public PageVisitor newPageVisitor(HTMLLink link) {
+		return new PriceVisitor(link, true);
+	}
+	
+	/**
+	 * Product detail pages, whose path ends with .html, hold prices, and so
+	 * does any page declaring structured data, found from a scan of its bytes.
+	 */
+	@Override
+	public boolean needsDocument(PageResponse response) {
+		if (isProductDetailPage(response.getLink())) {
+			return true;
+		}
+		try (InputStream body = response.openBody()) {
+			return StructuredDataPriceExtractor.isDeclaredIn(body);
+		} catch (IOException e) {
+			// Left to be parsed, which reports the error.
+			return true;
+		}
+	}
+	
+	/**
+	 * This scans through a given {@link HTMLLink} and its content for prices. 
+	 */
+	public List<Price> getAllPricesFromPage(HTMLLink page, Document pageContent) {
+		List<Price> pricesFound = new ArrayList<>();
+		
+		if (pageContent == null) {
+			return pricesFound;
+		}
+		
+		PriceVisitor priceVisitor = new PriceVisitor(page, false);
+		SinglePassTraversal.traverse(pageContent, Collections.singletonList(priceVisitor));
+		pricesFound.addAll(priceVisitor.pricesFound);
+		
+		return pricesFound;
+	}
+	
+	/**
+	 * Prints out the given prices that are outside the range.
+	 * 
+	 * @param link the prices were found on.
+	 * @param pricesFound on the page.
+	 */
+	private void reportPricesOutOfRange(HTMLLink link, Collection<Price> pricesFound) {
+		for (Price price : pricesFound) {
+			long minorUnits = price.getMinorUnits();
+			if (minorUnits < this.minPrices[price.getScale()] || minorUnits > this.maxPrices[price.getScale()]) {
+				String product = price.getProductId() == null ? "" : " Product: " + price.getProductId();
+				System.out.println("Price Error: " + price + product + " Link: " + link.getCanonicalPageURLString());
+			}
+		}
+	}
+	
+	/**
+	 * @param link of a page.
+	 * @return true if the page is a product detail page, the path of which ends with .html.
+	 */
+	private static boolean isProductDetailPage(HTMLLink link) {
+		return link.getPageURL().getPath().endsWith(".html");
+	}
+	
+	/**
+	 * @param first interests.
+	 * @param second interests.
+	 * @return both interests.
+	 */
+	private static List<ElementInterest> concat(List<ElementInterest> first, List<ElementInterest> second) {
+		List<ElementInterest> interests = new ArrayList<>(first);
+		interests.addAll(second);
+		return Collections.unmodifiableList(interests);
+	}
+	
+	/**
+	 * Returns the text of the given element. An element holding a single text
+	 * node, as the amount and currency of a price do, gives that node's text as
+	 * it is, without building a string.
+	 * 
+	 * @param element of the page.
+	 * @return the text of the element.
+	 */
+	private static String getText(Element element) {
+		if (element.childNodeSize() == 1 && element.childNode(0) instanceof TextNode) {
+			return ((TextNode) element.childNode(0)).getWholeText();
+		}
+		return element.text();
+	}
+	
+	/**
+	 * A specific mechanism to search for prices in a Zalora product detail page:
+	 * each element of the prd-price class holds a price, the amount and currency
+	 * of which are in the first elements within it with the gr:hasCurrencyValue
+	 * and gr:hasCurrency properties. The prices the page declares as schema.org
+	 * structured data, JSON-LD or microdata, are read in the same walk, and are
+	 * preferred when there are any.
+	 */
+	private class PriceVisitor implements PageVisitor {
+		
+		/**
+		 * The link of the page visited.
+		 */
+		private final HTMLLink link;
+		
+		/**
+		 * True to print out the prices outside the range once the page is visited.
+		 */
+		private final boolean isReported;
+		
+		/**
+		 * The prices found, in the order of the page.
+		 */
+		private final List<Price> pricesFound;
+		
+		/**
+		 * The prices whose element is being visited, innermost last.
+		 */
+		private final Deque<PriceCandidate> openPrices;
+		
+		/**
+		 * All the prices found, in the order of their element.
+		 */
+		private final List<PriceCandidate> priceCandidates;
+		
+		/**
+		 * Reads the prices of the structured data of the page.
+		 */
+		private final StructuredDataPriceExtractor structuredDataPriceExtractor;
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param link of the page visited.
+		 * @param isReported true to print out the prices outside the range once
+		 *        the page is visited.
+		 */
+		PriceVisitor(HTMLLink link, boolean isReported) {
+			this.link = link;
+			this.isReported = isReported;
+			this.pricesFound = new ArrayList<>();
+			this.openPrices = new ArrayDeque<>();
+			this.priceCandidates = new ArrayList<>();
+			this.structuredDataPriceExtractor = new StructuredDataPriceExtractor(link);
+		}
+		
+		/**
+		 * The prd-price elements are only looked for on "leaf" pages which is
+		 * identified by pages having .html extension. At Zalora page, all product
+		 * detail page ends with .html extension. Structured data is read on any
+		 * page, and {@link PriceAnalyser#needsDocument(PageResponse)} has every
+		 * page declaring it parsed.
+		 */
+		@Override
+		public List<ElementInterest> getElementInterests() {
+			if (isProductDetailPage(this.link)) {
+				return PRODUCT_DETAIL_PAGE_INTERESTS;
+			}
+			return this.structuredDataPriceExtractor.getElementInterests();
+		}
+		
+		@Override
+		public void enterElement(Element element, ElementInterest interest) {
+			if (!PRICE_INTERESTS.contains(interest)) {
+				this.structuredDataPriceExtractor.enterElement(element, interest);
+				return;
+			}
+			if (interest == PRICE_INTEREST) {
+				PriceCandidate priceCandidate = new PriceCandidate();
+				this.openPrices.addLast(priceCandidate);
+				this.priceCandidates.add(priceCandidate);
+				return;
+			}
+			for (PriceCandidate priceCandidate : this.openPrices) {
+				if (interest == PRICE_AMOUNT_INTEREST && priceCandidate.priceAmountString == null) {
+					priceCandidate.priceAmountString = getText(element);
+				}
+				else if (interest == CURRENCY_INTEREST && priceCandidate.currencyString == null) {
+					priceCandidate.currencyString = getText(element);
+				}
+			}
+		}
+		
+		@Override
+		public void exitElement(Element element, ElementInterest interest) {
+			if (interest == PRICE_INTEREST) {
+				this.openPrices.pollLast();
+			}
+			else if (!PRICE_INTERESTS.contains(interest)) {
+				this.structuredDataPriceExtractor.exitElement(element, interest);
+			}
+		}
+		
+		@Override
+		public void endPage(Document pageContent) {
+			this.structuredDataPriceExtractor.endPage(pageContent);
+			this.pricesFound.addAll(this.structuredDataPriceExtractor.getPricesFound());
+			if (!this.pricesFound.isEmpty()) {
+				// The structured data is what the page declares its prices to be.
+				this.priceCandidates.clear();
+			}
+			for (PriceCandidate priceCandidate : this.priceCandidates) {
+				if (priceCandidate.priceAmountString != null) {
+					// convert the currency
+					Currency currency = null;
+					if (priceCandidate.currencyString != null) {
+						currency = Currency.convert(priceCandidate.currencyString.trim());
+					}
+					
+					PriceParser priceParser = currency == null ? DEFAULT_PRICE_PARSER : currency.getPriceParser();
+					int scale = currency == null ? Price.DEFAULT_SCALE : currency.getScale();
+					long minorUnits = priceParser.parseMinorUnits(priceCandidate.priceAmountString, scale);
+					if (minorUnits == PriceParser.INVALID) {
+						System.err.println("Invalid price amount: " + priceCandidate.priceAmountString);
+						continue;
+					}
+					this.pricesFound.add(Price.ofMinorUnits(minorUnits, currency));
+				}
+			}
+			if (this.isReported) {
+				reportPricesOutOfRange(this.link, this.pricesFound);
+			}
+		}
+	}
+	
+	/**
+	 * The amount and currency found in a prd-price element so far.
+	 */
+	private static class PriceCandidate {
+		
+		/**
+		 * The amount, null until found.
+		 */
+		private String priceAmountString;
+		
+		/**
+		 * The currency, null until found.
+		 */
+		private String currencyString;
+	}
+}
@@ -0,0 +1,137 @@
+package price;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Parses the amount of a price, as written on a page, into minor units such as
+ * cents. The text is scanned once, character by character, with the grouping
+ * and decimal separators of a locale, and nothing is allocated, so a page full
+ * of prices costs no garbage. Whitespace around the amount is allowed, and so
+ * are a leading sign, so that a negative price is reported as wrong, and
+ * spaces as grouping separators in the locales that group with a space.
+ * Digits beyond the scale of the currency are rounded half up, away from zero.
+ *
+ * A parser is immutable, and so can be shared by any number of threads.
+ *
+ * @author ted.kuo
+ */
+public final class PriceParser {
+
+	/**
+	 * Returned for a text that isn't an amount.
+	 */
+	public static final long INVALID = Long.MIN_VALUE;
+
+	/**
+	 * Separates the groups of digits of the integer part.
+	 */
+	private final char groupingSeparator;
+
+	/**
+	 * Separates the integer part from the fraction.
+	 */
+	private final char decimalSeparator;
+
+	/**
+	 * True if the grouping separator is a space, in which case any space separates groups.
+	 */
+	private final boolean isGroupedBySpace;
+
+	/**
+	 * Constructor
+	 *
+	 * @param locale the separators of which the amounts are written with.
+	 */
+	public PriceParser(Locale locale) {
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+		this.groupingSeparator = symbols.getGroupingSeparator();
+		this.decimalSeparator = symbols.getMonetaryDecimalSeparator();
+		this.isGroupedBySpace = Character.isSpaceChar(this.groupingSeparator);
+	}
+
+	/**
+	 * Parses the given amount into minor units.
+	 *
+	 * @param text of the amount.
+	 * @param scale the number of digits of the minor units of the currency.
+	 * @return the amount in minor units, {@link #INVALID} if the text isn't an
+	 *         amount or is too large.
+	 */
+	public long parseMinorUnits(CharSequence text, int scale) {
+		int end = text.length();
+		while (end > 0 && isWhitespace(text.charAt(end - 1))) {
+			end--;
+		}
+		int i = 0;
+		while (i < end && isWhitespace(text.charAt(i))) {
+			i++;
+		}
+		boolean isNegative = false;
+		if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+			isNegative = text.charAt(i) == '-';
+			i++;
+		}
+
+		long minorUnits = 0;
+		int numberOfDigits = 0;
+		int numberOfFractionDigits = -1;
+		boolean isRoundedUp = false;
+		boolean isAfterDigit = false;
+		for (; i < end; i++) {
+			char c = text.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (numberOfFractionDigits < scale) {
+					if (minorUnits > (Long.MAX_VALUE - 9) / 10) {
+						return INVALID;
+					}
+					minorUnits = minorUnits * 10 + (c - '0');
+					if (numberOfFractionDigits >= 0) {
+						numberOfFractionDigits++;
+					}
+				}
+				else if (numberOfFractionDigits == scale) {
+					// The first digit beyond the scale rounds, the others are ignored.
+					isRoundedUp = c >= '5';
+					numberOfFractionDigits++;
+				}
+				numberOfDigits++;
+				isAfterDigit = true;
+			}
+			else if (c == this.decimalSeparator && numberOfFractionDigits < 0) {
+				numberOfFractionDigits = 0;
+				isAfterDigit = false;
+			}
+			else if (isAfterDigit && numberOfFractionDigits < 0
+					&& (c == this.groupingSeparator || (this.isGroupedBySpace && Character.isSpaceChar(c)))) {
+				isAfterDigit = false;
+			}
+			else {
+				return INVALID;
+			}
+		}
+		if (numberOfDigits == 0 || (!isAfterDigit && numberOfFractionDigits < 0)) {
+			// Nothing but separators, or a trailing grouping separator.
+			return INVALID;
+		}
+
+		for (int digits = Math.max(numberOfFractionDigits, 0); digits < scale; digits++) {
+			if (minorUnits > Long.MAX_VALUE / 10) {
+				return INVALID;
+			}
+			minorUnits *= 10;
+		}
+		if (isRoundedUp) {
+			minorUnits++;
+		}
+		return isNegative ? -minorUnits : minorUnits;
+	}
+
+	/**
+	 * @param c character of an amount.
+	 * @return true if it's whitespace around the amount, a no-break space included.
+	 */
+	private static boolean isWhitespace(char c) {
+		return Character.isWhitespace(c) || Character.isSpaceChar(c);
+	}
+}
@@ -0,0 +1,566 @@
+package price;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.TextNode;
+
+import page.HTMLLink;
+import policy.ElementInterest;
+import policy.PageVisitor;
+import price.Price.Currency;
+
+/**
+ * Extracts the prices a page declares as schema.org structured data, whatever
+ * its markup looks like: the Offer and AggregateOffer items of its JSON-LD
+ * blocks and of its microdata. It's a {@link PageVisitor}, so it shares the
+ * walk of the page with every other visitor. A JSON-LD block is read as a
+ * stream of tokens, without building a tree of it, and the microdata items are
+ * followed as their elements are entered and left, so no part of the page is
+ * searched twice.
+ *
+ * An offer without a currency takes the one of the AggregateOffer it's part
+ * of, and an offer without a SKU or product ID takes the one of the Product it
+ * offers. An AggregateOffer without a price is priced at its low price.
+ *
+ * A visitor is built for a single page, and isn't thread-safe.
+ *
+ * @author ted.kuo
+ */
+public class StructuredDataPriceExtractor implements PageVisitor {
+
+	/**
+	 * A script element, which may be a JSON-LD block.
+	 */
+	private static final ElementInterest SCRIPT_INTEREST = ElementInterest.tag("script");
+
+	/**
+	 * An element that is a microdata item.
+	 */
+	private static final ElementInterest ITEM_INTEREST = ElementInterest.attribute("itemscope");
+
+	/**
+	 * An element that is a property of a microdata item.
+	 */
+	private static final ElementInterest PROPERTY_INTEREST = ElementInterest.attribute("itemprop");
+
+	/**
+	 * The elements looked at.
+	 */
+	static final List<ElementInterest> STRUCTURED_DATA_INTERESTS =
+			Arrays.asList(SCRIPT_INTEREST, ITEM_INTEREST, PROPERTY_INTEREST);
+
+	/**
+	 * Markers one of which, in lower case, is in any page declaring structured
+	 * data: the type of a JSON-LD block and the attribute of a microdata item.
+	 */
+	private static final byte[][] STRUCTURED_DATA_MARKERS = {
+			"application/ld+json".getBytes(StandardCharsets.US_ASCII), "itemscope".getBytes(StandardCharsets.US_ASCII)};
+
+	/**
+	 * Parses the amounts, which structured data writes with a "." decimal separator.
+	 */
+	private static final PriceParser PRICE_PARSER = new PriceParser(Locale.ROOT);
+
+	/**
+	 * The link of the page visited.
+	 */
+	private final HTMLLink link;
+
+	/**
+	 * The microdata items whose element is being visited, innermost last.
+	 */
+	private final Deque<Item> openItems;
+
+	/**
+	 * The offers found, in the order they ended.
+	 */
+	private final List<Item> offers;
+
+	/**
+	 * The prices of the offers, once the page is visited.
+	 */
+	private final List<Price> pricesFound;
+
+	/**
+	 * Constructor
+	 *
+	 * @param link of the page visited.
+	 */
+	public StructuredDataPriceExtractor(HTMLLink link) {
+		this.link = link;
+		this.openItems = new ArrayDeque<>();
+		this.offers = new ArrayList<>();
+		this.pricesFound = new ArrayList<>();
+	}
+
+	/**
+	 * Tells, from a scan of its bytes, whether a page may declare structured
+	 * data: whether it has the type of a JSON-LD block or the attribute of a
+	 * microdata item anywhere in it. It's far cheaper than parsing the page, so
+	 * the pages without any can be left unparsed.
+	 *
+	 * @param body of the page, read to its end unless a marker is found.
+	 * @return true if the page may declare structured data.
+	 * @throws IOException if the body cannot be read.
+	 */
+	public static boolean isDeclaredIn(InputStream body) throws IOException {
+		int[][] borders = new int[STRUCTURED_DATA_MARKERS.length][];
+		for (int i = 0; i < STRUCTURED_DATA_MARKERS.length; i++) {
+			borders[i] = getBorders(STRUCTURED_DATA_MARKERS[i]);
+		}
+		// The number of bytes of each marker matched so far, as in Knuth-Morris-Pratt.
+		int[] matched = new int[STRUCTURED_DATA_MARKERS.length];
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = body.read(buffer)) != -1) {
+			for (int b = 0; b < read; b++) {
+				int c = buffer[b] >= 'A' && buffer[b] <= 'Z' ? buffer[b] + ('a' - 'A') : buffer[b];
+				for (int i = 0; i < STRUCTURED_DATA_MARKERS.length; i++) {
+					byte[] marker = STRUCTURED_DATA_MARKERS[i];
+					while (matched[i] > 0 && marker[matched[i]] != c) {
+						matched[i] = borders[i][matched[i] - 1];
+					}
+					if (marker[matched[i]] == c && ++matched[i] == marker.length) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the prices found, once the page is visited.
+	 */
+	public List<Price> getPricesFound() {
+		return pricesFound;
+	}
+
+	@Override
+	public List<ElementInterest> getElementInterests() {
+		return STRUCTURED_DATA_INTERESTS;
+	}
+
+	@Override
+	public void enterElement(Element element, ElementInterest interest) {
+		if (interest == SCRIPT_INTEREST) {
+			if ("application/ld+json".equalsIgnoreCase(element.attr("type").trim())) {
+				readJsonLd(element);
+			}
+		}
+		else if (interest == ITEM_INTEREST) {
+			Item item = new Item();
+			for (String type : element.attr("itemtype").trim().split("\\s+")) {
+				item.addType(type);
+			}
+			this.openItems.addLast(item);
+		}
+		else if (interest == PROPERTY_INTEREST && !element.hasAttr("itemscope")) {
+			// An item that is a property is the value of the item around it, not a value of its own.
+			Item item = this.openItems.peekLast();
+			if (item != null) {
+				String value = element.hasAttr("content") ? element.attr("content") : getText(element);
+				for (String name : element.attr("itemprop").trim().split("\\s+")) {
+					item.set(name, value);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void exitElement(Element element, ElementInterest interest) {
+		if (interest == ITEM_INTEREST) {
+			Item item = this.openItems.pollLast();
+			if (item != null) {
+				item.end(this.openItems.peekLast(), this.offers);
+			}
+		}
+	}
+
+	@Override
+	public void endPage(Document pageContent) {
+		for (Item offer : this.offers) {
+			Currency currency = offer.currency == null ? null : Currency.convert(offer.currency.trim());
+			String amount = offer.price != null ? offer.price : offer.lowPrice;
+			long minorUnits = PRICE_PARSER.parseMinorUnits(amount, currency == null ? Price.DEFAULT_SCALE : currency.getScale());
+			if (minorUnits == PriceParser.INVALID) {
+				System.err.println("Invalid price amount: " + amount + " for link: " + this.link.getCanonicalPageURLString());
+				continue;
+			}
+			this.pricesFound.add(Price.ofMinorUnits(minorUnits, currency, offer.productId));
+		}
+	}
+
+	/**
+	 * Reads the offers of a JSON-LD block.
+	 *
+	 * @param script element of the block.
+	 */
+	private void readJsonLd(Element script) {
+		String json = script.childNodeSize() == 1 && script.childNode(0) instanceof DataNode
+				? ((DataNode) script.childNode(0)).getWholeData() : script.data();
+		List<Item> blockOffers = new ArrayList<>();
+		try {
+			new JsonLdReader(json).read(blockOffers);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Error:" + e.getMessage() + " for link: " + this.link.getCanonicalPageURLString());
+			return;
+		}
+		this.offers.addAll(blockOffers);
+	}
+
+	/**
+	 * @param marker to be looked for.
+	 * @return for each prefix of the marker, the length of the longest proper
+	 *         prefix that is also a suffix of it.
+	 */
+	private static int[] getBorders(byte[] marker) {
+		int[] borders = new int[marker.length];
+		for (int i = 1, border = 0; i < marker.length; i++) {
+			while (border > 0 && marker[i] != marker[border]) {
+				border = borders[border - 1];
+			}
+			if (marker[i] == marker[border]) {
+				border++;
+			}
+			borders[i] = border;
+		}
+		return borders;
+	}
+
+	/**
+	 * @param element of the page.
+	 * @return the text of the element, that of its single text node as it is.
+	 */
+	private static String getText(Element element) {
+		if (element.childNodeSize() == 1 && element.childNode(0) instanceof TextNode) {
+			return ((TextNode) element.childNode(0)).getWholeText();
+		}
+		return element.text();
+	}
+
+	/**
+	 * A schema.org item, of JSON-LD or microdata, with the properties of it
+	 * that make up a price.
+	 */
+	private static class Item {
+
+		/**
+		 * True if the item is an Offer or an AggregateOffer.
+		 */
+		private boolean isOffer;
+
+		/**
+		 * The price, null if it has none.
+		 */
+		private String price;
+
+		/**
+		 * The low price of an AggregateOffer, null if it has none.
+		 */
+		private String lowPrice;
+
+		/**
+		 * The currency, null if it has none.
+		 */
+		private String currency;
+
+		/**
+		 * The SKU or product ID, null if it has none.
+		 */
+		private String productId;
+
+		/**
+		 * The offers within the item, which ended before it.
+		 */
+		private final List<Item> offersWithin;
+
+		/**
+		 * Constructor
+		 */
+		Item() {
+			this.offersWithin = new ArrayList<>(0);
+		}
+
+		/**
+		 * @param type of the item, a schema.org URL or name.
+		 */
+		void addType(String type) {
+			int nameStart = type.lastIndexOf('/') + 1;
+			this.isOffer |= type.regionMatches(nameStart, "Offer", 0, type.length() - nameStart)
+					|| type.regionMatches(nameStart, "AggregateOffer", 0, type.length() - nameStart);
+		}
+
+		/**
+		 * @param name of a property of the item.
+		 * @param value of the property.
+		 */
+		void set(String name, String value) {
+			switch (name) {
+			case "@type":
+				addType(value);
+				break;
+			case "price":
+				this.price = this.price == null ? value : this.price;
+				break;
+			case "lowPrice":
+				this.lowPrice = this.lowPrice == null ? value : this.lowPrice;
+				break;
+			case "priceCurrency":
+				this.currency = this.currency == null ? value : this.currency;
+				break;
+			case "sku":
+			case "productID":
+				this.productId = this.productId == null ? value : this.productId;
+				break;
+			default:
+				break;
+			}
+		}
+
+		/**
+		 * Ends the item: the offers within take its currency and product id if
+		 * they have none, and are handed, with the item if it's an offer itself,
+		 * to the item around it.
+		 *
+		 * @param around the item around it, null if there is none.
+		 * @param offers to add the offers to if there's no item around it.
+		 */
+		void end(Item around, List<Item> offers) {
+			if (this.isOffer && (this.price != null || this.lowPrice != null)) {
+				this.offersWithin.add(this);
+			}
+			for (Item offer : this.offersWithin) {
+				if (offer.currency == null) {
+					offer.currency = this.currency;
+				}
+				if (offer.productId == null) {
+					offer.productId = this.productId;
+				}
+			}
+			(around == null ? offers : around.offersWithin).addAll(this.offersWithin);
+		}
+	}
+
+	/**
+	 * Reads the items of a JSON-LD block as a stream of tokens, keeping only
+	 * the items it's in, and the properties of them that make up a price.
+	 */
+	private static class JsonLdReader {
+
+		/**
+		 * The block.
+		 */
+		private final String json;
+
+		/**
+		 * Where the next token starts.
+		 */
+		private int position;
+
+		/**
+		 * Constructor
+		 *
+		 * @param json the block.
+		 */
+		JsonLdReader(String json) {
+			this.json = json;
+		}
+
+		/**
+		 * Reads the block.
+		 *
+		 * @param offers to add the offers of the block to.
+		 * @throws IllegalArgumentException if the block isn't JSON.
+		 */
+		void read(List<Item> offers) {
+			readValue(null, null, offers);
+			if (skipWhitespace() != -1) {
+				throw error("unexpected content");
+			}
+		}
+
+		/**
+		 * Reads a value.
+		 *
+		 * @param item the value is a property of, null at the top of the block.
+		 * @param name of the property, null for an element of an array at the top.
+		 * @param offers to add the offers at the top of the block to.
+		 */
+		private void readValue(Item item, String name, List<Item> offers) {
+			int c = skipWhitespace();
+			if (c == '{') {
+				this.position++;
+				readObject(item, offers);
+			}
+			else if (c == '[') {
+				this.position++;
+				if (skipWhitespace() == ']') {
+					this.position++;
+					return;
+				}
+				do {
+					readValue(item, name, offers);
+				} while (readSeparator(']'));
+			}
+			else if (c == '"') {
+				String value = readString();
+				if (item != null && name != null) {
+					item.set(name, value);
+				}
+			}
+			else {
+				int start = this.position;
+				while (this.position < this.json.length() && "{}[],: \t\r\n".indexOf(this.json.charAt(this.position)) < 0) {
+					this.position++;
+				}
+				if (start == this.position) {
+					throw error("value expected");
+				}
+				if (item != null && name != null && c != 't' && c != 'f' && c != 'n') {
+					// A number, such as a price written without quotes.
+					item.set(name, this.json.substring(start, this.position));
+				}
+			}
+		}
+
+		/**
+		 * Reads an object, after its "{".
+		 *
+		 * @param around the item around it, null at the top of the block.
+		 * @param offers to add the offers at the top of the block to.
+		 */
+		private void readObject(Item around, List<Item> offers) {
+			Item item = new Item();
+			if (skipWhitespace() == '}') {
+				this.position++;
+			}
+			else {
+				do {
+					if (skipWhitespace() != '"') {
+						throw error("property name expected");
+					}
+					String name = readString();
+					if (skipWhitespace() != ':') {
+						throw error("':' expected");
+					}
+					this.position++;
+					readValue(item, name, offers);
+				} while (readSeparator('}'));
+			}
+			item.end(around, offers);
+		}
+
+		/**
+		 * Reads the "," between the members of an object or array, or its end.
+		 *
+		 * @param end of the object or array.
+		 * @return true if another member follows, false at the end.
+		 */
+		private boolean readSeparator(char end) {
+			int c = skipWhitespace();
+			this.position++;
+			if (c == ',') {
+				return true;
+			}
+			if (c == end) {
+				return false;
+			}
+			throw error("',' or '" + end + "' expected");
+		}
+
+		/**
+		 * Reads a string, at its opening quote.
+		 *
+		 * @return the string, unescaped.
+		 */
+		private String readString() {
+			int start = ++this.position;
+			StringBuilder unescaped = null;
+			while (this.position < this.json.length()) {
+				char c = this.json.charAt(this.position);
+				if (c == '"') {
+					String value = unescaped == null ? this.json.substring(start, this.position)
+							: unescaped.append(this.json, start, this.position).toString();
+					this.position++;
+					return value;
+				}
+				if (c == '\\') {
+					if (unescaped == null) {
+						unescaped = new StringBuilder();
+					}
+					unescaped.append(this.json, start, this.position);
+					this.position = readEscape(unescaped, this.position + 1);
+					start = this.position;
+					continue;
+				}
+				this.position++;
+			}
+			throw error("unterminated string");
+		}
+
+		/**
+		 * Reads an escape sequence of a string.
+		 *
+		 * @param unescaped to append the character to.
+		 * @param index of the character after the "\".
+		 * @return the index after the escape sequence.
+		 */
+		private int readEscape(StringBuilder unescaped, int index) {
+			if (index >= this.json.length()) {
+				throw error("unterminated string");
+			}
+			char c = this.json.charAt(index);
+			switch (c) {
+			case 'b': unescaped.append('\b'); break;
+			case 'f': unescaped.append('\f'); break;
+			case 'n': unescaped.append('\n'); break;
+			case 'r': unescaped.append('\r'); break;
+			case 't': unescaped.append('\t'); break;
+			case 'u':
+				if (index + 5 > this.json.length()) {
+					throw error("invalid escape");
+				}
+				try {
+					unescaped.append((char) Integer.parseInt(this.json.substring(index + 1, index + 5), 16));
+				} catch (NumberFormatException e) {
+					throw error("invalid escape");
+				}
+				return index + 5;
+			default:
+				unescaped.append(c);
+				break;
+			}
+			return index + 1;
+		}
+
+		/**
+		 * @return the next character that isn't whitespace, -1 at the end of the block.
+		 */
+		private int skipWhitespace() {
+			while (this.position < this.json.length() && Character.isWhitespace(this.json.charAt(this.position))) {
+				this.position++;
+			}
+			return this.position < this.json.length() ? this.json.charAt(this.position) : -1;
+		}
+
+		/**
+		 * @param message of the error.
+		 * @return the error, with where it was found.
+		 */
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException("invalid JSON-LD, " + message + " at " + this.position);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package crawler;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import crawler.ContentDeduplicator.DuplicateStatus;
+import fetch.PageResponse;
+import page.HTMLLink;
+
+/**
+ * Test-case for {@link ContentDeduplicator}
+ * 
+ * @author ted.kuo
+ */
+public class TestContentDeduplicator {
+
+	@Test
+	public void testCheck_exactDuplicate() throws Exception {
+		// Given a page already seen
+		ContentDeduplicator deduplicator = new ContentDeduplicator();
+		String page = createListing("Dress", -1);
+		assertEquals(DuplicateStatus.UNIQUE, deduplicator.check(createResponse("http://www.zalora.sg/dress", page)));
+		
+		// When the same page is found under another URL
+		DuplicateStatus status = deduplicator.check(createResponse("http://www.zalora.sg/dress?colour=red", page));
+		
+		// Then
+		assertEquals(DuplicateStatus.EXACT_DUPLICATE, status);
+		assertEquals(1, deduplicator.getNumberOfExactDuplicates());
+		assertEquals(0, deduplicator.getNumberOfNearDuplicates());
+	}
+	
+	@Test
+	public void testCheck_nearDuplicateDifferingByOneWord() throws Exception {
+		// Given a page already seen, by a deduplicator looking for near duplicates
+		ContentDeduplicator deduplicator = new ContentDeduplicator(ContentDeduplicator.DEFAULT_MAX_HAMMING_DISTANCE);
+		assertEquals(DuplicateStatus.UNIQUE, 
+				deduplicator.check(createResponse("http://www.zalora.sg/dress", createListing("Dress", -1))));
+		
+		// When a page with one word changed is found, its markup changed as well
+		String page = createListing("Dress", 42).replace("<li>", "<li class=\"item\">");
+		DuplicateStatus status = deduplicator.check(createResponse("http://www.zalora.sg/dress?sort=price", page));
+		
+		// Then
+		assertEquals(DuplicateStatus.NEAR_DUPLICATE, status);
+		assertEquals(0, deduplicator.getNumberOfExactDuplicates());
+		assertEquals(1, deduplicator.getNumberOfNearDuplicates());
+	}
+	
+	@Test
+	public void testCheck_nearDuplicatesNotLookedForByDefault() throws Exception {
+		// Given a page already seen
+		ContentDeduplicator deduplicator = new ContentDeduplicator();
+		assertEquals(DuplicateStatus.UNIQUE, 
+				deduplicator.check(createResponse("http://www.zalora.sg/dress", createListing("Dress", -1))));
+		
+		// When a page with one word changed is found
+		DuplicateStatus status = deduplicator.check(createResponse("http://www.zalora.sg/dress?sort=price", 
+				createListing("Dress", 42)));
+		
+		// Then it's still analysed
+		assertEquals(DuplicateStatus.UNIQUE, status);
+		assertEquals(0, deduplicator.getNumberOfNearDuplicates());
+	}
+	
+	@Test
+	public void testCheck_differentPagesUnique() throws Exception {
+		// Given
+		ContentDeduplicator deduplicator = new ContentDeduplicator();
+		
+		// When & Then
+		assertEquals(DuplicateStatus.UNIQUE, 
+				deduplicator.check(createResponse("http://www.zalora.sg/dress", createListing("Dress", -1))));
+		assertEquals(DuplicateStatus.UNIQUE, 
+				deduplicator.check(createResponse("http://www.zalora.sg/shoes", createListing("Shoes", -1))));
+		assertEquals("Skipped 0 exact and 0 near duplicate pages", deduplicator.toString());
+	}
+	
+	/**
+	 * @param product named in every item of the listing.
+	 * @param changedItem index of the item whose name is changed, -1 for none.
+	 * @return a listing page of a thousand items.
+	 */
+	private static String createListing(String product, int changedItem) {
+		StringBuilder page = new StringBuilder("<html><body><ul>");
+		for (int i = 0; i < 1000; i++) {
+			page.append("<li>").append(i == changedItem ? "Sold out" : product).append(' ').append(i)
+					.append(" colour").append(i % 7).append(" size").append(i % 13).append("</li>");
+		}
+		return page.append("</ul></body></html>").toString();
+	}
+	
+	/**
+	 * @param url of the page.
+	 * @param page content of the page.
+	 * @return a successful response with the given content.
+	 */
+	private static PageResponse createResponse(String url, String page) throws Exception {
+		return new PageResponse(new HTMLLink(new URL(url)), 200, Collections.<String, List<String>>emptyMap(), 
+				page.getBytes(StandardCharsets.UTF_8));
+	}
+}
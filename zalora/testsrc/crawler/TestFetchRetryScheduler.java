@@ -0,0 +1,94 @@
+package crawler;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import page.HTMLLink;
+import page.HTMLLinkRepository;
+
+/**
+ * Test-case for {@link FetchRetryScheduler}
+ * 
+ * @author ted.kuo
+ */
+public class TestFetchRetryScheduler {
+
+	/**
+	 * Repository the links are put back into.
+	 */
+	private HTMLLinkRepository repository;
+	
+	/**
+	 * Object in test
+	 */
+	private FetchRetryScheduler retryScheduler;
+	
+	@Before
+	public void setup() {
+		this.repository = new HTMLLinkRepository();
+		this.retryScheduler = new FetchRetryScheduler(this.repository, 2, 10, 40);
+	}
+	
+	@Test
+	public void testGetBackoffMillis_doublesUpToMax() {
+		for (int i = 0; i < 20; i++) {
+			assertBetween(5, 10, this.retryScheduler.getBackoffMillis(1));
+			assertBetween(10, 20, this.retryScheduler.getBackoffMillis(2));
+			assertBetween(20, 40, this.retryScheduler.getBackoffMillis(3));
+			assertBetween(20, 40, this.retryScheduler.getBackoffMillis(40));
+		}
+	}
+	
+	@Test(timeout = 5000)
+	public void testScheduleRetry_linkComesBackAfterBackoff() throws Exception {
+		// Given a link that has been taken, and failed
+		HTMLLink link = new HTMLLink(new URL("http://www.zalora.sg"));
+		this.repository.insert(link);
+		assertEquals(link, this.repository.takeUnvisitedLink());
+		
+		// When
+		assertTrue(this.retryScheduler.scheduleRetry(link));
+		this.repository.markLinkVisited(link);
+		
+		// Then the crawl is not finished, the link is handed out again once it's due.
+		assertEquals(link, this.repository.takeUnvisitedLink());
+	}
+	
+	@Test
+	public void testScheduleRetry_givesUpAfterMaxRetries() throws Exception {
+		// Given
+		HTMLLink link = new HTMLLink(new URL("http://www.zalora.sg"));
+		
+		// When & Then
+		assertTrue(this.retryScheduler.scheduleRetry(link));
+		assertTrue(this.retryScheduler.scheduleRetry(link));
+		assertFalse(this.retryScheduler.scheduleRetry(link));
+	}
+	
+	@Test
+	public void testScheduleRetry_givesUpOnceShutDown() throws Exception {
+		// Given
+		HTMLLink link = new HTMLLink(new URL("http://www.zalora.sg"));
+		this.repository.insert(link);
+		assertEquals(link, this.repository.takeUnvisitedLink());
+		
+		// When
+		this.retryScheduler.shutdown();
+		
+		// Then the link isn't deferred, so the crawl can finish.
+		assertFalse(this.retryScheduler.scheduleRetry(link));
+		this.repository.markLinkVisited(link);
+		assertNull(this.repository.takeUnvisitedLink());
+	}
+	
+	/**
+	 * Asserts the given value is within the given range.
+	 */
+	private static void assertBetween(long min, long max, long actual) {
+		assertTrue(actual + " is not between " + min + " and " + max, actual >= min && actual <= max);
+	}
+}
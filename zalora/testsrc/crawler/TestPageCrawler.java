@@ -1,95 +1,117 @@
-package crawler;
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
-import static org.mockito.Mockito.*;
-
-import java.net.ConnectException;
-import java.net.SocketException;
-import java.net.URL;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Queue;
-
-import org.jsoup.nodes.Document;
-import org.junit.Before;
-import org.junit.Test;
-import org.mockito.Mock;
-import org.mockito.MockitoAnnotations;
-import org.mockito.exceptions.verification.NeverWantedButInvoked;
-
-import page.HTMLLink;
-import page.HTMLLinkRepository;
-import policy.HTMLLinkScanner;
-import policy.LinkScanner;
-import policy.PageAnalyser;
-
-/**
- * Test-Case for {@link PageCrawler}
- * 
- * @author ted.kuo
- *
- */
-public class TestPageCrawler {
-
-	@Mock HTMLLinkRepository linkRepository;
-	@Mock HTMLLinkScanner linkScanner;
-	@Mock Queue<PageCrawler> freeCrawlersPool;
-	@Mock PageAnalyser priceAnalyser;
-	@Mock HTMLLink htmlLink;
-	@Mock Document docRetreived;
-	
-	/**
-	 * Object in test
-	 */
-	PageCrawler pageCrawler;
-	
-	@Before
-	public void setup() {
-		MockitoAnnotations.initMocks(this);
-		this.pageCrawler = new PageCrawler(linkRepository, Arrays.asList(linkScanner), freeCrawlersPool, Arrays.asList(priceAnalyser));
-	}
-	
-	@Test
-	public void testCrawl_secondAttemptAndSucceed() throws Exception {
-		// Given a link to crawl
-		this.pageCrawler.startCrawling(htmlLink);
-		assertTrue(this.pageCrawler.hasPageToCrawl()); //pre-condition.
-		
-		stub(htmlLink.getContent()).toThrow(new ConnectException()).toReturn(docRetreived);
-		List<HTMLLink> linksFound = Arrays.asList(new HTMLLink(new URL("http://google.com")));
-		stub(linkScanner.scanPage(htmlLink, docRetreived)).toReturn(linksFound);
-		
-		// When 
-		this.pageCrawler.crawl();
-		
-		// Then: not crawling and has added itself back to be available.
-		assertFalse(this.pageCrawler.hasPageToCrawl());
-		verify(this.linkRepository).insert(linksFound);
-		verify(this.priceAnalyser).analyse(htmlLink, docRetreived);
-	}
-
-	@Test
-	public void testStartCrawling() throws Exception {
-		// When
-		this.pageCrawler.startCrawling(htmlLink);
-		
-		// Then should become busy 
-		assertTrue(this.pageCrawler.hasPageToCrawl());
-	}
-	
-	public void testCrawl_attemptThreeTimeAndFail() throws Exception {
-		// Given a link to crawl
-		this.pageCrawler.startCrawling(htmlLink);
-		assertTrue(this.pageCrawler.hasPageToCrawl()); // pre-condition.
-
-		stub(htmlLink.getContent()).toThrow(new SocketException());
-
-		// When
-		this.pageCrawler.crawl();
-
-		// Then: not crawling and has added itself back to be available.
-		assertFalse(this.pageCrawler.hasPageToCrawl());
-		verifyZeroInteractions(this.linkRepository);
-		verifyZeroInteractions(this.priceAnalyser);
-	}	
-}
+package crawler;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.jsoup.nodes.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.exceptions.verification.NeverWantedButInvoked;
+
+import fetch.PageFetcher;
+import fetch.PageResponse;
+import page.CanonicalURL;
+import page.HTMLLink;
+import page.HTMLLinkRepository;
+import policy.HTMLLinkScanner;
+import policy.LinkScanner;
+import policy.PageAnalyser;
+
+/**
+ * Test-Case for {@link PageCrawler}
+ * 
+ * @author ted.kuo
+ *
+ */
+public class TestPageCrawler {
+
+	@Mock HTMLLinkRepository linkRepository;
+	@Mock HTMLLinkScanner linkScanner;
+	@Mock PageAnalyser priceAnalyser;
+	@Mock HTMLLink htmlLink;
+	@Mock PageFetcher pageFetcher;
+	@Mock PageResponse pageResponse;
+	@Mock FetchRetryScheduler retryScheduler;
+	@Mock Document docRetreived;
+	
+	/**
+	 * Object in test
+	 */
+	PageCrawler pageCrawler;
+	
+	@Before
+	public void setup() {
+		MockitoAnnotations.initMocks(this);
+		this.pageCrawler = new PageCrawler(linkRepository, new PageProcessor(linkRepository, pageFetcher, 
+				retryScheduler, Arrays.asList(linkScanner), Arrays.asList(priceAnalyser)));
+		stub(pageResponse.isSuccessful()).toReturn(true);
+		stub(htmlLink.getCanonicalURL()).toReturn(CanonicalURL.of("http://www.zalora.sg/shoes", false));
+	}
+	
+	@Test
+	public void testCrawl_secondAttemptAndSucceed() throws Exception {
+		// Given a link to crawl
+		this.pageCrawler.startCrawling(htmlLink);
+		assertTrue(this.pageCrawler.hasPageToCrawl()); //pre-condition.
+		
+		stub(pageFetcher.fetch(htmlLink)).toReturn(CompletableFuture.<PageResponse>failedFuture(new ConnectException()))
+				.toReturn(CompletableFuture.completedFuture(pageResponse));
+		stub(retryScheduler.scheduleRetry(htmlLink)).toReturn(true);
+		stub(pageResponse.parse()).toReturn(docRetreived);
+		List<HTMLLink> linksFound = Arrays.asList(new HTMLLink(new URL("http://google.com")));
+		stub(linkScanner.scanPage(htmlLink, docRetreived)).toReturn(linksFound);
+		
+		// When the first attempt fails
+		this.pageCrawler.crawl();
+		
+		// Then: not crawling, and the link is left to be retried later rather than straight away.
+		assertFalse(this.pageCrawler.hasPageToCrawl());
+		verify(this.retryScheduler).scheduleRetry(htmlLink);
+		verifyZeroInteractions(this.priceAnalyser);
+		
+		// When the link comes back from the repository and succeeds
+		this.pageCrawler.startCrawling(htmlLink);
+		this.pageCrawler.crawl();
+		
+		// Then
+		verify(this.retryScheduler).recordSuccess(htmlLink);
+		verify(this.linkRepository).insert(linksFound);
+		verify(this.priceAnalyser).analyse(htmlLink, docRetreived);
+	}
+
+	@Test
+	public void testStartCrawling() throws Exception {
+		// When
+		this.pageCrawler.startCrawling(htmlLink);
+		
+		// Then should become busy 
+		assertTrue(this.pageCrawler.hasPageToCrawl());
+	}
+	
+	@Test
+	public void testCrawl_attemptThreeTimeAndFail() throws Exception {
+		// Given a link to crawl, which has already been retried too many times
+		this.pageCrawler.startCrawling(htmlLink);
+		assertTrue(this.pageCrawler.hasPageToCrawl()); // pre-condition.
+
+		stub(pageFetcher.fetch(htmlLink)).toReturn(CompletableFuture.<PageResponse>failedFuture(new SocketException()));
+		stub(retryScheduler.scheduleRetry(htmlLink)).toReturn(false);
+
+		// When
+		this.pageCrawler.crawl();
+
+		// Then: not crawling and has added itself back to be available.
+		assertFalse(this.pageCrawler.hasPageToCrawl());
+		verifyZeroInteractions(this.linkRepository);
+		verifyZeroInteractions(this.priceAnalyser);
+	}	
+}
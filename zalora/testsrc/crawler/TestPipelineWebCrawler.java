@@ -0,0 +1,111 @@
+package crawler;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.jsoup.nodes.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import fetch.PageFetcher;
+import fetch.PageResponse;
+import page.HTMLLink;
+import page.HTMLLinkRepository;
+import policy.BoilerplateDetector;
+import policy.HTMLLinkScanner;
+import policy.LinkScanner;
+import policy.PageAnalyser;
+import price.PriceAnalyser;
+
+/**
+ * Test-case for {@link PipelineWebCrawler}
+ * 
+ * @author ted.kuo
+ */
+public class TestPipelineWebCrawler {
+
+	@Mock PageAnalyser pageAnalyser;
+	
+	/**
+	 * Pages served by the fetcher, keyed by canonical URL.
+	 */
+	private Map<String, String> pages;
+	
+	@Before
+	public void setup() {
+		MockitoAnnotations.initMocks(this);
+		this.pages = new HashMap<>();
+		this.pages.put("http://www.zalora.sg", "<a href=\"/women\">Women</a><a href=\"/men\">Men</a>");
+		this.pages.put("http://www.zalora.sg/women", "<a href=\"/women/shoe-1.html\">Shoe</a><a href=\"/men\">Men</a>");
+		this.pages.put("http://www.zalora.sg/men", "<a href=\"/\">Home</a>");
+		this.pages.put("http://www.zalora.sg/women/shoe-1.html", "<span>88.00</span>");
+	}
+	
+	@Test(timeout = 10000)
+	public void testCrawl_everyPageGoesThroughAllStages() throws Exception {
+		// Given a pipeline with one thread per stage, and the smallest possible queues
+		PipelineSettings settings = new PipelineSettings();
+		settings.setFetchThreads(2);
+		settings.setParseThreads(1);
+		settings.setVisitThreads(1);
+		settings.setQueueCapacity(1);
+		HTMLLinkRepository repository = new HTMLLinkRepository();
+		List<HTMLLinkScanner> linkScanners = Arrays.<HTMLLinkScanner>asList(new LinkScanner("www.zalora.sg"));
+		PipelineWebCrawler webCrawler = new PipelineWebCrawler(linkScanners, repository, 
+				Arrays.asList(this.pageAnalyser), new MapPageFetcher(), settings);
+		
+		// When
+		webCrawler.crawl(new URL("http://www.zalora.sg"));
+		
+		// Then every page has been found and analysed once.
+		assertEquals(4, repository.getNumberOfLinksDiscovered());
+		assertTrue(repository.isAllLinksVisited());
+		verify(this.pageAnalyser, times(4)).analyse(any(HTMLLink.class), any(Document.class));
+		verify(this.pageAnalyser).analyse(eq(new HTMLLink(new URL("http://www.zalora.sg/women/shoe-1.html"))), 
+				any(Document.class));
+	}
+	
+	@Test(timeout = 10000)
+	public void testCrawl_boilerplateDetectorSeesEachPageOnce() throws Exception {
+		// Given a single page with microdata, so it's analysed, and a detector taking a subtree seen twice as a template
+		this.pages.clear();
+		this.pages.put("http://www.zalora.sg", "<div class=\"menu\" itemscope><a href=\"/women\">Women</a></div>");
+		HTMLLinkRepository repository = new HTMLLinkRepository();
+		List<HTMLLinkScanner> linkScanners = Arrays.<HTMLLinkScanner>asList(new LinkScanner("www.zalora.sg"));
+		PipelineWebCrawler webCrawler = new PipelineWebCrawler(linkScanners, repository, 
+				Arrays.<PageAnalyser>asList(new PriceAnalyser(20, 2000)), new MapPageFetcher(), new PipelineSettings());
+		BoilerplateDetector boilerplateDetector = new BoilerplateDetector(2, 1, 50);
+		webCrawler.setBoilerplateDetector(boilerplateDetector);
+		
+		// When
+		webCrawler.crawl(new URL("http://www.zalora.sg"));
+		
+		// Then the menu, only on one page, is no template, though the page was scanned and analysed.
+		assertEquals(0, boilerplateDetector.getNumberOfTemplates());
+	}
+	
+	/**
+	 * Serves the pages from the map, and a 404 for anything else.
+	 */
+	private class MapPageFetcher implements PageFetcher {
+		@Override
+		public CompletableFuture<PageResponse> fetch(HTMLLink link) {
+			String page = pages.get(link.getCanonicalPageURLString());
+			Map<String, List<String>> headers = Collections.singletonMap("Content-Type", 
+					Collections.singletonList("text/html; charset=UTF-8"));
+			return CompletableFuture.completedFuture(new PageResponse(link, page == null ? 404 : 200, headers, 
+					page == null ? null : page.getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package crawler;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import page.HTMLLink;
+
+/**
+ * Test-case for {@link RejectedLinkPatterns}
+ * 
+ * @author ted.kuo
+ */
+public class TestRejectedLinkPatterns {
+
+	@Test
+	public void testGetPattern_extensionOrDirectory() throws Exception {
+		// When & Then
+		assertEquals("www.zalora.sg *.jpg", 
+				RejectedLinkPatterns.getPattern(new HTMLLink(new URL("http://www.zalora.sg/images/Shoe.JPG"))));
+		assertEquals("www.zalora.sg /api/", 
+				RejectedLinkPatterns.getPattern(new HTMLLink(new URL("http://www.zalora.sg/api/products?page=2"))));
+		assertEquals("www.zalora.sg /", 
+				RejectedLinkPatterns.getPattern(new HTMLLink(new URL("http://www.zalora.sg/women"))));
+	}
+	
+	@Test
+	public void testFilter_rejectedOftenEnough() throws Exception {
+		// Given images rejected twice, with a threshold of two
+		RejectedLinkPatterns rejectedLinkPatterns = new RejectedLinkPatterns(2);
+		rejectedLinkPatterns.recordRejected(new HTMLLink(new URL("http://www.zalora.sg/images/1.jpg")));
+		rejectedLinkPatterns.recordRejected(new HTMLLink(new URL("http://www.zalora.sg/images/2.jpg")));
+		rejectedLinkPatterns.recordRejected(new HTMLLink(new URL("http://www.zalora.sg/catalogue.pdf")));
+		List<HTMLLink> links = new ArrayList<>(Arrays.asList(
+				new HTMLLink(new URL("http://www.zalora.sg/images/3.jpg")), 
+				new HTMLLink(new URL("http://www.zalora.sg/sale.pdf")), 
+				new HTMLLink(new URL("http://www.zalora.sg/shoes"))));
+		
+		// When
+		rejectedLinkPatterns.filter(links);
+		
+		// Then only the images are filtered
+		assertEquals(2, links.size());
+		assertFalse(links.contains(new HTMLLink(new URL("http://www.zalora.sg/images/3.jpg"))));
+		assertEquals(1, rejectedLinkPatterns.getNumberOfLinksFiltered());
+	}
+	
+	@Test
+	public void testIsRejected_neverOnceAccepted() throws Exception {
+		// Given a directory with a page in it
+		RejectedLinkPatterns rejectedLinkPatterns = new RejectedLinkPatterns(1);
+		rejectedLinkPatterns.recordAccepted(new HTMLLink(new URL("http://www.zalora.sg/women")));
+		
+		// When links in the same directory are rejected
+		rejectedLinkPatterns.recordRejected(new HTMLLink(new URL("http://www.zalora.sg/feed")));
+		rejectedLinkPatterns.recordRejected(new HTMLLink(new URL("http://www.zalora.sg/export")));
+		
+		// Then
+		assertFalse(rejectedLinkPatterns.isRejected(new HTMLLink(new URL("http://www.zalora.sg/men"))));
+	}
+}
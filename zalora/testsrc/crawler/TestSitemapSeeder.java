@@ -0,0 +1,130 @@
+package crawler;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import page.HTMLLink;
+import page.HTMLLinkRepository;
+
+/**
+ * Test-case for {@link SitemapSeeder}
+ * 
+ * @author ted.kuo
+ */
+public class TestSitemapSeeder {
+
+	/**
+	 * Local server the sitemaps are read from.
+	 */
+	private HttpServer server;
+	
+	/**
+	 * Root URL of the local server.
+	 */
+	private String rootURL;
+	
+	@Before
+	public void setup() throws Exception {
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.rootURL = "http://127.0.0.1:" + this.server.getAddress().getPort();
+		serve("/robots.txt", false, "User-agent: *\nDisallow: /customer/\nSitemap: " + this.rootURL + "/sitemap_index.xml\n");
+		serve("/sitemap_index.xml", false, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+				+ "<sitemap><loc>" + this.rootURL + "/products.xml.gz</loc></sitemap>"
+				+ "<sitemap><loc>/missing.xml</loc></sitemap>"
+				+ "</sitemapindex>");
+		serve("/products.xml.gz", true, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\" "
+				+ "xmlns:image=\"http://www.google.com/schemas/sitemap-image/1.1\">"
+				+ "<url><loc>" + this.rootURL + "/old-dress.html</loc><lastmod>2015-01-01</lastmod></url>"
+				+ "<url><loc>" + this.rootURL + "/new-dress.html</loc><lastmod>2015-03-01T10:00:00+08:00</lastmod>"
+				+ "<image:image><image:loc>" + this.rootURL + "/dress.jpg</image:loc></image:image></url>"
+				+ "<url><loc>http://www.example.com/elsewhere.html</loc></url>"
+				+ "<url><loc>" + this.rootURL + "/undated-dress.html</loc></url>"
+				+ "</urlset>");
+		this.server.start();
+	}
+	
+	@After
+	public void tearDown() {
+		this.server.stop(0);
+	}
+	
+	@Test
+	public void testSeed_fromRobotsThroughSitemapIndex() throws Exception {
+		// Given
+		HTMLLinkRepository repository = new HTMLLinkRepository();
+		SitemapSeeder seeder = new SitemapSeeder(repository, "127.0.0.1");
+		
+		// When
+		long numberOfURLs = seeder.seed(new URL(this.rootURL));
+		
+		// Then the pages under the host are inserted most recently modified first
+		assertEquals(3, numberOfURLs);
+		assertEquals(new HTMLLink(new URL(this.rootURL + "/new-dress.html")), repository.pollUnvisitedPageQueue());
+		assertEquals(new HTMLLink(new URL(this.rootURL + "/old-dress.html")), repository.pollUnvisitedPageQueue());
+		assertEquals(new HTMLLink(new URL(this.rootURL + "/undated-dress.html")), repository.pollUnvisitedPageQueue());
+		assertNull(repository.pollUnvisitedPageQueue());
+	}
+	
+	@Test
+	public void testSeed_insertedInBatches() throws Exception {
+		// Given batches of one URL
+		HTMLLinkRepository repository = new HTMLLinkRepository();
+		SitemapSeeder seeder = new SitemapSeeder(repository, "127.0.0.1", 1);
+		
+		// When
+		seeder.seed(new URL(this.rootURL));
+		
+		// Then each batch is inserted as it fills up, so in the order of the sitemap
+		assertEquals(new HTMLLink(new URL(this.rootURL + "/old-dress.html")), repository.pollUnvisitedPageQueue());
+		assertEquals(new HTMLLink(new URL(this.rootURL + "/new-dress.html")), repository.pollUnvisitedPageQueue());
+	}
+	
+	@Test
+	public void testParseLastModified() {
+		// When & Then
+		assertEquals(0, SitemapSeeder.parseLastModified(null));
+		assertEquals(0, SitemapSeeder.parseLastModified("yesterday"));
+		assertEquals(86400000L, SitemapSeeder.parseLastModified("1970-01-02"));
+		assertEquals(3600000L, SitemapSeeder.parseLastModified("1970-01-01T09:00:00+08:00"));
+	}
+	
+	/**
+	 * Serves the given content at the given path.
+	 * 
+	 * @param path to serve the content at.
+	 * @param isGzipped true to serve the content gzip compressed.
+	 * @param content to be served.
+	 */
+	private void serve(String path, final boolean isGzipped, final String content) {
+		this.server.createContext(path, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				try (OutputStream out = isGzipped ? new GZIPOutputStream(body) : body) {
+					out.write(content.getBytes(StandardCharsets.UTF_8));
+				}
+				exchange.sendResponseHeaders(200, body.size());
+				try (OutputStream out = exchange.getResponseBody()) {
+					body.writeTo(out);
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,150 @@
+package crawler;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.PrintStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+
+import org.jsoup.nodes.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import fetch.PageFetcher;
+import fetch.PageResponse;
+import page.HTMLLink;
+import page.HTMLLinkRepository;
+import policy.HTMLLinkScanner;
+import policy.LinkScanner;
+import policy.PageAnalyser;
+import price.PriceAnalyser;
+
+/**
+ * Test-case for {@link VirtualThreadWebCrawler}
+ * 
+ * @author ted.kuo
+ */
+public class TestVirtualThreadWebCrawler {
+
+	@Mock PageAnalyser pageAnalyser;
+	@Mock PrintStream mockOut;
+	
+	/**
+	 * Pages served by the fetcher, keyed by canonical URL.
+	 */
+	private Map<String, String> pages;
+	
+	/**
+	 * Repository the crawl in test works on.
+	 */
+	private HTMLLinkRepository repository;
+	
+	/**
+	 * Scanners for the links of the pages.
+	 */
+	private List<HTMLLinkScanner> linkScanners;
+	
+	@Before
+	public void setup() {
+		MockitoAnnotations.initMocks(this);
+		this.pages = new HashMap<>();
+		this.pages.put("http://www.zalora.sg", "<a href=\"/women\">Women</a><a href=\"/men\">Men</a>");
+		this.pages.put("http://www.zalora.sg/women", "<a href=\"/women/shoe-1.html\">Shoe</a><a href=\"/men\">Men</a>");
+		this.pages.put("http://www.zalora.sg/men", "<a href=\"/\">Home</a>");
+		this.pages.put("http://www.zalora.sg/women/shoe-1.html", "<span>88.00</span>");
+		this.repository = new HTMLLinkRepository();
+		this.linkScanners = Arrays.<HTMLLinkScanner>asList(new LinkScanner("www.zalora.sg"));
+	}
+	
+	@Test(timeout = 10000)
+	public void testCrawl_everyPageCrawledOnItsOwnThread() throws Exception {
+		// Given a single permit, so the links are crawled one after the other
+		VirtualThreadWebCrawler webCrawler = new VirtualThreadWebCrawler(this.linkScanners, this.repository, 1, 
+				Arrays.asList(this.pageAnalyser), new MapPageFetcher());
+		
+		// When
+		webCrawler.crawl(new URL("http://www.zalora.sg"));
+		
+		// Then every page has been found and analysed once.
+		assertEquals(4, this.repository.getNumberOfLinksDiscovered());
+		assertTrue(this.repository.isAllLinksVisited());
+		verify(this.pageAnalyser, times(4)).analyse(any(HTMLLink.class), any(Document.class));
+		verify(this.pageAnalyser).analyse(eq(new HTMLLink(new URL("http://www.zalora.sg/women/shoe-1.html"))), 
+				any(Document.class));
+	}
+	
+	@Test(timeout = 10000)
+	public void testCrawl_structuredDataReadOnPagesOtherThanProductDetailPages() throws Exception {
+		// Given a promotion page, not ending with .html, with an offer out of range in its JSON-LD
+		this.pages.put("http://www.zalora.sg/men", "<a href=\"/promotions\">Promotions</a>");
+		this.pages.put("http://www.zalora.sg/promotions", "<script type=\"application/ld+json\">"
+				+ "{\"@type\": \"Offer\", \"sku\": \"P1\", \"price\": \"5000.00\", \"priceCurrency\": \"SGD\"}"
+				+ "</script>");
+		VirtualThreadWebCrawler webCrawler = new VirtualThreadWebCrawler(this.linkScanners, this.repository, 1, 
+				Arrays.<PageAnalyser>asList(new PriceAnalyser(20, 2000)), new MapPageFetcher());
+		PrintStream out = System.out;
+		System.setOut(this.mockOut);
+		
+		// When
+		try {
+			webCrawler.crawl(new URL("http://www.zalora.sg"));
+		}
+		finally {
+			System.setOut(out);
+		}
+		
+		// Then the offer is found, though the page is not a product detail page.
+		assertEquals(5, this.repository.getNumberOfLinksDiscovered());
+		verify(this.mockOut).println(contains("Product: P1 Link: http://www.zalora.sg/promotions"));
+	}
+	
+	@Test(timeout = 10000)
+	public void testCrawl_linkNotLeftInProgressWhenThreadFailsToStart() throws Exception {
+		// Given a thread factory that can't create any thread
+		ThreadFactory threadFactory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				throw new IllegalStateException("no more threads");
+			}
+		};
+		VirtualThreadWebCrawler webCrawler = new VirtualThreadWebCrawler(this.linkScanners, this.repository, 1, 
+				Arrays.asList(this.pageAnalyser), new MapPageFetcher(), threadFactory);
+		
+		// When
+		try {
+			webCrawler.crawl(new URL("http://www.zalora.sg"));
+			fail("the thread failing to start should be reported");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		
+		// Then the root link is not left in progress, so the crawl can be waited on.
+		assertTrue(this.repository.isAllLinksVisited());
+		this.repository.awaitAllLinksVisited();
+		verify(this.pageAnalyser, never()).analyse(any(HTMLLink.class), any(Document.class));
+	}
+	
+	/**
+	 * Serves the pages from the map, and a 404 for anything else.
+	 */
+	private class MapPageFetcher implements PageFetcher {
+		@Override
+		public CompletableFuture<PageResponse> fetch(HTMLLink link) {
+			String page = pages.get(link.getCanonicalPageURLString());
+			Map<String, List<String>> headers = Collections.singletonMap("Content-Type", 
+					Collections.singletonList("text/html; charset=UTF-8"));
+			return CompletableFuture.completedFuture(new PageResponse(link, page == null ? 404 : 200, headers, 
+					page == null ? null : page.getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+}
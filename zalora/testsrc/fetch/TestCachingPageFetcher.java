@@ -0,0 +1,110 @@
+package fetch;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import page.HTMLLink;
+
+/**
+ * Test-case for {@link CachingPageFetcher}
+ * 
+ * @author ted.kuo
+ */
+public class TestCachingPageFetcher {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	/**
+	 * Local server the pages are fetched from.
+	 */
+	private HttpServer server;
+	
+	/**
+	 * The number of full bodies sent by the server.
+	 */
+	private AtomicInteger numberOfBodiesSent;
+	
+	@Before
+	public void setup() throws Exception {
+		this.numberOfBodiesSent = new AtomicInteger();
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext("/shoes.html", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+					exchange.sendResponseHeaders(304, -1);
+					exchange.close();
+					return;
+				}
+				byte[] page = "<html><body><p>Shoes</p></body></html>".getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+				exchange.getResponseHeaders().add("ETag", "\"v1\"");
+				exchange.sendResponseHeaders(200, page.length);
+				try (OutputStream body = exchange.getResponseBody()) {
+					body.write(page);
+				}
+				numberOfBodiesSent.incrementAndGet();
+			}
+		});
+		this.server.start();
+	}
+	
+	@After
+	public void tearDown() {
+		this.server.stop(0);
+	}
+	
+	@Test
+	public void testFetch_notModifiedFromCache() throws Exception {
+		// Given a page fetched once
+		HTMLLink link = new HTMLLink(new URL("http://127.0.0.1:" + this.server.getAddress().getPort() + "/shoes.html"));
+		CachingPageFetcher pageFetcher = new CachingPageFetcher(new URLConnectionPageFetcher(), folder.getRoot().toPath());
+		PageResponse firstResponse = pageFetcher.fetch(link).get();
+		assertFalse(firstResponse.isNotModified());
+		assertEquals("Shoes", firstResponse.parse().getElementsByTag("p").text());
+		
+		// When it's fetched again, by the next crawl
+		pageFetcher = new CachingPageFetcher(new URLConnectionPageFetcher(), folder.getRoot().toPath());
+		PageResponse secondResponse = pageFetcher.fetch(link).get();
+		
+		// Then it's revalidated, and the body comes from the cache
+		assertEquals(1, this.numberOfBodiesSent.get());
+		assertTrue(secondResponse.isNotModified());
+		assertEquals(200, secondResponse.getStatusCode());
+		assertEquals("UTF-8", secondResponse.getCharset());
+		assertEquals("Shoes", secondResponse.parse().getElementsByTag("p").text());
+		assertEquals(1, pageFetcher.getNumberOfPagesNotModified());
+		assertEquals(0, pageFetcher.getNumberOfPagesDownloaded());
+	}
+	
+	@Test
+	public void testFetch_notCachedWithoutValidator() throws Exception {
+		// Given a page without a validator
+		HTMLLink link = new HTMLLink(new URL("http://127.0.0.1:" + this.server.getAddress().getPort() + "/missing.html"));
+		CachingPageFetcher pageFetcher = new CachingPageFetcher(new URLConnectionPageFetcher(), folder.getRoot().toPath());
+		
+		// When
+		PageResponse response = pageFetcher.fetch(link).get();
+		
+		// Then
+		assertEquals(404, response.getStatusCode());
+		assertEquals(0, folder.getRoot().list().length);
+	}
+}
@@ -0,0 +1,75 @@
+package fetch;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.net.SocketTimeoutException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/**
+ * Test-case for {@link HostThrottle}
+ * 
+ * @author ted.kuo
+ */
+public class TestHostThrottle {
+
+	@Mock PageResponse okResponse;
+	@Mock PageResponse throttledResponse;
+	
+	/**
+	 * Object in test
+	 */
+	private HostThrottle hostThrottle;
+	
+	@Before
+	public void setup() {
+		MockitoAnnotations.initMocks(this);
+		stub(okResponse.getStatusCode()).toReturn(200);
+		stub(throttledResponse.getStatusCode()).toReturn(429);
+		stub(throttledResponse.getHeader("Retry-After")).toReturn("0");
+		
+		PolitenessSettings settings = new PolitenessSettings();
+		settings.setRequestsPerSecond(1000);
+		settings.setBurstSize(100);
+		settings.setInitialConcurrency(4);
+		settings.setMaxConcurrency(8);
+		this.hostThrottle = new HostThrottle(settings);
+	}
+	
+	@Test
+	public void testRelease_healthyResponsesIncreaseLimitUpToMax() throws Exception {
+		// When a few rounds of requests succeed quickly
+		for (int i = 0; i < 50; i++) {
+			this.hostThrottle.acquire();
+			this.hostThrottle.release(1000, okResponse, null);
+		}
+		
+		// Then the limit grows, but not past the maximum
+		assertEquals(8, this.hostThrottle.getConcurrencyLimit());
+		assertEquals(0, this.hostThrottle.getRequestsInFlight());
+	}
+	
+	@Test
+	public void testRelease_throttledResponseHalvesLimit() throws Exception {
+		// When
+		this.hostThrottle.acquire();
+		this.hostThrottle.release(1000, throttledResponse, null);
+		
+		// Then
+		assertEquals(2, this.hostThrottle.getConcurrencyLimit());
+	}
+	
+	@Test
+	public void testRelease_singleFailureDoesNotDecrease() throws Exception {
+		// When one request out of many fails
+		this.hostThrottle.acquire();
+		this.hostThrottle.release(1000, null, new SocketTimeoutException());
+		
+		// Then the limit stays, the error rate is still low.
+		assertEquals(4, this.hostThrottle.getConcurrencyLimit());
+	}
+}
@@ -0,0 +1,65 @@
+package fetch;
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+/**
+ * Test-case for {@link HrefTokenizer}
+ *
+ * @author ted.kuo
+ */
+public class TestHrefTokenizer {
+
+	@Test
+	public void testExtractHrefs_quotedAndUnquotedValues() throws Exception {
+		// Given
+		String page = "<html><body><A HREF=\"/women/\">Women</A><a class='x' href='/men/'>Men</a>"
+				+ "<a href=/kids/ title=Kids>Kids</a><a name=\"top\"></a><link href=\"/style.css\">"
+				+ "<a href = \"/shoes/?a=1&amp;b=2\"/></body></html>";
+
+		// When
+		List<String> hrefs = HrefTokenizer.extractHrefs(new StringReader(page));
+
+		// Then only the anchors are found, with their entities decoded.
+		assertEquals(Arrays.asList("/women/", "/men/", "/kids/", "/shoes/?a=1&b=2"), hrefs);
+	}
+
+	@Test
+	public void testExtractHrefs_skipsCommentsAndRawText() throws Exception {
+		// Given
+		String page = "<!DOCTYPE html><head><title><a href=\"/title/\"></title>"
+				+ "<script>var s = '</a><a href=\"/script/\">'; if (a<b) {}</script>"
+				+ "<style>a[href=\"/style/\"] {}</style></head>"
+				+ "<!-- <a href=\"/comment/\"> --->"
+				+ "<body>1 < 2<a href=\"/found/\">Found</a><textarea><a href=\"/textarea/\"></TEXTAREA></body>";
+
+		// When
+		List<String> hrefs = HrefTokenizer.extractHrefs(new StringReader(page));
+
+		// Then only the anchor in the markup is found.
+		assertEquals(Arrays.asList("/found/"), hrefs);
+	}
+
+	@Test
+	public void testExtractHrefs_sameAsParser() throws Exception {
+		// Given
+		String page = "<div><a href=\"/a/\" href=\"/b/\">A</a><p><a\nhref=\"/caf&eacute;/\">Caf\u00e9</a>"
+				+ "<a href=\"/c/&copy=1\">C</a></div>";
+
+		// When
+		List<String> hrefs = HrefTokenizer.extractHrefs(new StringReader(page));
+
+		// Then the href values are those of the parsed document.
+		int i = 0;
+		for (Element anchor : Jsoup.parse(page).select("a")) {
+			assertEquals(anchor.attr("href"), hrefs.get(i++));
+		}
+		assertEquals(i, hrefs.size());
+	}
+}
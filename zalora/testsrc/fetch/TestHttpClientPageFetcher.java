@@ -0,0 +1,191 @@
+package fetch;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import page.HTMLLink;
+
+/**
+ * Test-case for {@link HttpClientPageFetcher}
+ * 
+ * @author ted.kuo
+ */
+public class TestHttpClientPageFetcher {
+
+	/**
+	 * Local server the pages are fetched from.
+	 */
+	private HttpServer server;
+	
+	/**
+	 * Object in test
+	 */
+	private HttpClientPageFetcher pageFetcher;
+	
+	/**
+	 * The pool the bodies are read into.
+	 */
+	private BufferPool bufferPool;
+	
+	@Before
+	public void setup() throws Exception {
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext("/gzipped.html", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+				try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+					out.write("<html><body><a href=\"/shoes\">Shoes</a></body></html>".getBytes(StandardCharsets.UTF_8));
+				}
+				exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+				exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+				exchange.sendResponseHeaders(200, gzipped.size());
+				try (OutputStream body = exchange.getResponseBody()) {
+					gzipped.writeTo(body);
+				}
+			}
+		});
+		this.server.createContext("/big.html", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				// Chunked, so the size is only known as it arrives.
+				exchange.sendResponseHeaders(200, 0);
+				try (OutputStream body = exchange.getResponseBody()) {
+					for (int i = 0; i < 1000; i++) {
+						body.write(new byte[1024]);
+					}
+				} catch (IOException e) {
+					// The client hung up.
+				}
+			}
+		});
+		this.server.createContext("/latin1.html", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] page = "<html><head><meta charset=\"ISO-8859-1\"></head><body><p>Caf\u00e9</p></body></html>"
+						.getBytes(Charset.forName("ISO-8859-1"));
+				exchange.getResponseHeaders().add("Content-Type", "text/html");
+				exchange.sendResponseHeaders(200, page.length);
+				try (OutputStream body = exchange.getResponseBody()) {
+					body.write(page);
+				}
+			}
+		});
+		this.server.createContext("/photo.jpg", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+				exchange.sendResponseHeaders(200, 0);
+				try (OutputStream body = exchange.getResponseBody()) {
+					for (int i = 0; i < 1000; i++) {
+						body.write(new byte[1024]);
+					}
+				} catch (IOException e) {
+					// The client hung up.
+				}
+			}
+		});
+		this.server.start();
+		this.bufferPool = new BufferPool(1024, 100);
+		this.pageFetcher = new HttpClientPageFetcher(HttpClient.newHttpClient(), this.bufferPool, 64 * 1024);
+	}
+	
+	@After
+	public void tearDown() {
+		this.server.stop(0);
+	}
+	
+	@Test
+	public void testFetch_gzippedPage() throws Exception {
+		// Given
+		HTMLLink link = new HTMLLink(new URL("http://127.0.0.1:" + this.server.getAddress().getPort() + "/gzipped.html"));
+		
+		// When
+		PageResponse response = this.pageFetcher.fetch(link).get();
+		
+		// Then the body is decoded
+		assertTrue(response.isSuccessful());
+		assertEquals("UTF-8", response.getCharset());
+		Document pageContent = response.parse();
+		assertEquals("Shoes", pageContent.getElementsByTag("a").text());
+	}
+	
+	@Test
+	public void testFetch_brokenLink() throws Exception {
+		// Given
+		HTMLLink link = new HTMLLink(new URL("http://127.0.0.1:" + this.server.getAddress().getPort() + "/missing.html"));
+		
+		// When
+		PageResponse response = this.pageFetcher.fetch(link).get();
+		
+		// Then
+		assertEquals(404, response.getStatusCode());
+		assertFalse(response.isSuccessful());
+	}
+	
+	@Test
+	public void testFetch_bodyTooLarge() throws Exception {
+		// Given a body of 1000KB, and a maximum of 64KB
+		HTMLLink link = new HTMLLink(new URL("http://127.0.0.1:" + this.server.getAddress().getPort() + "/big.html"));
+		
+		// When
+		try {
+			this.pageFetcher.fetch(link).get();
+			fail("the download should have been abandoned");
+		} catch (ExecutionException e) {
+			// Then
+			assertTrue(e.getCause() instanceof BodyTooLargeException);
+		}
+		assertTrue(this.bufferPool.getNumberOfFreeChunks() > 0);
+	}
+	
+	@Test
+	public void testFetch_notHTML() throws Exception {
+		// Given an image
+		HTMLLink link = new HTMLLink(new URL("http://127.0.0.1:" + this.server.getAddress().getPort() + "/photo.jpg"));
+		
+		// When
+		try {
+			this.pageFetcher.fetch(link).get();
+			fail("the download should have been abandoned");
+		} catch (ExecutionException e) {
+			// Then it's rejected from its headers, before a chunk is taken for the body
+			assertTrue(e.getCause() instanceof UnsupportedContentTypeException);
+		}
+		assertEquals(0, this.bufferPool.getNumberOfFreeChunks());
+	}
+	
+	@Test
+	public void testParse_charsetFromMetaTag() throws Exception {
+		// Given a page whose Content-Type doesn't declare the charset
+		HTMLLink link = new HTMLLink(new URL("http://127.0.0.1:" + this.server.getAddress().getPort() + "/latin1.html"));
+		PageResponse response = this.pageFetcher.fetch(link).get();
+		assertNull(response.getCharset());
+		
+		// When
+		Document pageContent = response.parse();
+		
+		// Then the charset is sniffed, and the buffers are given back
+		assertEquals("Caf\u00e9", pageContent.getElementsByTag("p").text());
+		assertEquals(1, this.bufferPool.getNumberOfFreeChunks());
+	}
+}
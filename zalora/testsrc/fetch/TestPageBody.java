@@ -0,0 +1,87 @@
+package fetch;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test-case for {@link PageBody}
+ * 
+ * @author ted.kuo
+ */
+public class TestPageBody {
+
+	/**
+	 * Pool of small chunks, so a body spans several of them.
+	 */
+	private BufferPool bufferPool;
+	
+	@Before
+	public void setup() {
+		this.bufferPool = new BufferPool(16, 8);
+	}
+	
+	@Test
+	public void testRead_bodyOfExactlyMaxLength() throws Exception {
+		// Given a body filling exactly two chunks, and as large as allowed
+		byte[] bytes = newBytes(32);
+		
+		// When
+		PageBody body = PageBody.read(new ByteArrayInputStream(bytes), this.bufferPool, 32);
+		
+		// Then
+		assertEquals(32, body.getLength());
+		assertArrayEquals(bytes, body.toByteArray());
+	}
+	
+	@Test
+	public void testRead_bodyOneByteTooLarge() throws Exception {
+		// Given
+		byte[] bytes = newBytes(33);
+		
+		// When
+		try {
+			PageBody.read(new ByteArrayInputStream(bytes), this.bufferPool, 32);
+			fail("the body should be too large");
+		} catch (BodyTooLargeException e) {
+			// Then the chunks have been given back.
+			assertEquals(2, this.bufferPool.getNumberOfFreeChunks());
+		}
+	}
+	
+	@Test
+	public void testAppend_bodyOfExactlyMaxLength() throws Exception {
+		// Given
+		byte[] bytes = newBytes(32);
+		PageBody body = new PageBody(this.bufferPool, 32);
+		
+		// When
+		body.append(ByteBuffer.wrap(bytes, 0, 20));
+		body.append(ByteBuffer.wrap(bytes, 20, 12));
+		
+		// Then
+		assertArrayEquals(bytes, body.toByteArray());
+		try {
+			body.append(ByteBuffer.wrap(new byte[1]));
+			fail("the body should be too large");
+		} catch (BodyTooLargeException e) {
+			// expected
+		}
+	}
+	
+	/**
+	 * @param length of the array.
+	 * @return an array of the given length, with a different value in each byte.
+	 */
+	private static byte[] newBytes(int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) i;
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,108 @@
+package fetch;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import page.HTMLLink;
+
+/**
+ * Test-case for {@link PageResponse}
+ *
+ * @author ted.kuo
+ */
+public class TestPageResponse {
+
+	@Test
+	public void testExtractHrefs_charsetOfMetaTag() throws Exception {
+		// Given a Latin-1 page, with no charset in the Content-Type header
+		String page = "<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=ISO-8859-1\">"
+				+ "</head><body><a href=\"/caf\u00e9/\">Caf\u00e9</a></body></html>";
+		PageResponse response = newResponse("text/html", page.getBytes(StandardCharsets.ISO_8859_1));
+
+		// When
+		List<String> hrefs = response.extractHrefs();
+
+		// Then
+		assertEquals(Arrays.asList("/caf\u00e9/"), hrefs);
+		assertEquals(hrefs, parseHrefs(response));
+	}
+
+	@Test
+	public void testExtractHrefs_charsetAttributeOfMetaTag() throws Exception {
+		// Given a Latin-1 page declaring its charset after a comment and a script mentioning another
+		String page = "<html><head><!-- <meta charset=\"UTF-16\"> --><script>var m = '<meta charset=\"UTF-16\">';</script>"
+				+ "<meta charset='iso-8859-1'></head><body><a href=\"/caf\u00e9/\">Caf\u00e9</a></body></html>";
+		PageResponse response = newResponse("text/html", page.getBytes(StandardCharsets.ISO_8859_1));
+
+		// When
+		List<String> hrefs = response.extractHrefs();
+
+		// Then
+		assertEquals(Arrays.asList("/caf\u00e9/"), hrefs);
+		assertEquals(hrefs, parseHrefs(response));
+	}
+
+	@Test
+	public void testExtractHrefs_charsetOfXmlDeclaration() throws Exception {
+		// Given a Latin-1 XHTML page declaring its charset only in the XML declaration
+		String page = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<html><body><a href=\"/caf\u00e9/\">Caf\u00e9</a>"
+				+ "</body></html>";
+		PageResponse response = newResponse("application/xhtml+xml", page.getBytes(StandardCharsets.ISO_8859_1));
+
+		// When
+		List<String> hrefs = response.extractHrefs();
+
+		// Then
+		assertEquals(Arrays.asList("/caf\u00e9/"), hrefs);
+		assertEquals(hrefs, parseHrefs(response));
+	}
+
+	@Test
+	public void testExtractHrefs_charsetOfByteOrderMark() throws Exception {
+		// Given a UTF-16 page, though the Content-Type header says otherwise
+		String page = "\ufeff<html><body><a href=\"/\u00e9t\u00e9/\">\u00c9t\u00e9</a></body></html>";
+		PageResponse response = newResponse("text/html; charset=ISO-8859-1", 
+				page.getBytes(Charset.forName("UTF-16LE")));
+
+		// When
+		List<String> hrefs = response.extractHrefs();
+
+		// Then
+		assertEquals(Arrays.asList("/\u00e9t\u00e9/"), hrefs);
+		assertEquals(hrefs, parseHrefs(response));
+	}
+
+	/**
+	 * @param contentType the value of the Content-Type header.
+	 * @param body of the response.
+	 * @return a successful response with the given body.
+	 */
+	private static PageResponse newResponse(String contentType, byte[] body) throws Exception {
+		Map<String, List<String>> headers = Collections.singletonMap("Content-Type", 
+				Collections.singletonList(contentType));
+		return new PageResponse(new HTMLLink(new URL("http://www.zalora.sg")), 200, headers, body);
+	}
+
+	/**
+	 * @param response to be parsed.
+	 * @return the href values of the anchors of the parsed document.
+	 */
+	private static List<String> parseHrefs(PageResponse response) throws Exception {
+		List<String> hrefs = new ArrayList<>();
+		for (Element anchor : response.parse().select("a")) {
+			hrefs.add(anchor.attr("href"));
+		}
+		return hrefs;
+	}
+}
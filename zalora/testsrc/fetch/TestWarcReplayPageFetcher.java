@@ -0,0 +1,107 @@
+package fetch;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import page.HTMLLink;
+
+/**
+ * Test-case for {@link WarcReplayPageFetcher}, replaying what a
+ * {@link WarcRecordingPageFetcher} recorded.
+ * 
+ * @author ted.kuo
+ */
+public class TestWarcReplayPageFetcher {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testFetch_replaysRecordedResponses() throws Exception {
+		// Given two responses recorded, in segments so small each record starts a new one
+		Path archive = this.folder.getRoot().toPath();
+		HTMLLink shoes = new HTMLLink(new URL("http://www.zalora.sg/shoes.html"));
+		HTMLLink missing = new HTMLLink(new URL("http://www.zalora.sg/missing.html"));
+		Map<String, List<String>> headers = Collections.singletonMap("Content-Type", 
+				Arrays.asList("text/html; charset=UTF-8"));
+		PageFetcher liveFetcher = mock(PageFetcher.class);
+		stub(liveFetcher.fetch(eq(shoes), anyMapOf(String.class, String.class))).toReturn(CompletableFuture.completedFuture(
+				new PageResponse(shoes, 200, headers, "<html><body><p>Caf\u00e9</p></body></html>".getBytes(StandardCharsets.UTF_8))));
+		stub(liveFetcher.fetch(eq(missing), anyMapOf(String.class, String.class))).toReturn(CompletableFuture.completedFuture(
+				new PageResponse(missing, 410, Collections.<String, List<String>>emptyMap(), new byte[0])));
+		try (WarcRecordingPageFetcher recordingFetcher = new WarcRecordingPageFetcher(liveFetcher, archive, 1)) {
+			recordingFetcher.fetch(shoes).get();
+			recordingFetcher.fetch(missing).get();
+		}
+		assertTrue(Files.exists(archive.resolve("segment-1.warc.gz")));
+		
+		// When
+		try (WarcReplayPageFetcher replayFetcher = new WarcReplayPageFetcher(archive)) {
+			PageResponse shoesResponse = replayFetcher.fetch(shoes).get();
+			PageResponse missingResponse = replayFetcher.fetch(missing).get();
+			PageResponse unrecordedResponse = replayFetcher.fetch(new HTMLLink(new URL("http://www.zalora.sg/bags.html"))).get();
+			
+			// Then
+			assertEquals(2, replayFetcher.getNumberOfRecords());
+			assertEquals(200, shoesResponse.getStatusCode());
+			assertEquals("UTF-8", shoesResponse.getCharset());
+			assertEquals("Caf\u00e9", shoesResponse.parse().getElementsByTag("p").text());
+			assertEquals(410, missingResponse.getStatusCode());
+			assertEquals(0, missingResponse.getBodyLength());
+			assertEquals(404, unrecordedResponse.getStatusCode());
+		}
+	}
+	
+	@Test
+	public void testFetch_replaysRejectedResponses() throws Exception {
+		// Given an image and a large page, both rejected from their headers when recorded
+		Path archive = this.folder.getRoot().toPath();
+		HTMLLink image = new HTMLLink(new URL("http://www.zalora.sg/shoes.jpg"));
+		HTMLLink large = new HTMLLink(new URL("http://www.zalora.sg/all.html"));
+		PageFetcher liveFetcher = mock(PageFetcher.class);
+		stub(liveFetcher.fetch(eq(image), anyMapOf(String.class, String.class))).toReturn(
+				CompletableFuture.<PageResponse>failedFuture(new UnsupportedContentTypeException(200, "image/jpeg", 2048)));
+		stub(liveFetcher.fetch(eq(large), anyMapOf(String.class, String.class))).toReturn(
+				CompletableFuture.<PageResponse>failedFuture(new BodyTooLargeException(1024, 200, "text/html", 4096)));
+		try (WarcRecordingPageFetcher recordingFetcher = new WarcRecordingPageFetcher(liveFetcher, archive)) {
+			assertRejected(recordingFetcher.fetch(image), UnsupportedContentTypeException.class);
+			assertRejected(recordingFetcher.fetch(large), BodyTooLargeException.class);
+		}
+		
+		// When & Then they're rejected again rather than answered 404
+		try (WarcReplayPageFetcher replayFetcher = new WarcReplayPageFetcher(archive, new BufferPool(1024, 4), 1024)) {
+			assertEquals(2, replayFetcher.getNumberOfRecords());
+			assertRejected(replayFetcher.fetch(image), UnsupportedContentTypeException.class);
+			assertRejected(replayFetcher.fetch(large), BodyTooLargeException.class);
+		}
+	}
+	
+	/**
+	 * @param response of a fetch.
+	 * @param rejection the fetch is expected to fail with.
+	 */
+	private static void assertRejected(CompletableFuture<PageResponse> response, 
+			Class<? extends RejectedResponseException> rejection) throws InterruptedException {
+		try {
+			response.get();
+			fail("expected " + rejection.getSimpleName());
+		} catch (ExecutionException e) {
+			assertTrue(rejection.isInstance(e.getCause()));
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package page;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test-case for {@link BloomSeenLinkSet}
+ * 
+ * @author ted.kuo
+ */
+public class TestBloomSeenLinkSet {
+
+	@Test
+	public void testAdd_sameCanonicalURLSeenOnce() throws Exception {
+		// Given
+		BloomSeenLinkSet seenLinks = new BloomSeenLinkSet(1024, 0.01);
+		
+		// When & Then
+		assertTrue(seenLinks.add(new HTMLLink(new URL("http://www.zalora.sg/shoes"))));
+		assertFalse(seenLinks.add(new HTMLLink(new URL("http://www.zalora.sg/shoes/?sort=price#top"))));
+		assertTrue(seenLinks.add(new HTMLLink(new URL("http://www.zalora.sg/bags"))));
+		assertEquals(2, seenLinks.size());
+	}
+	
+	@Test
+	public void testAddFingerprint_falsePositiveRateWithinTarget() {
+		// Given a filter of 128KB, sized for about 110000 links at 1%
+		BloomSeenLinkSet seenLinks = new BloomSeenLinkSet(128 * 1024, 0.01);
+		
+		// When filled to its capacity
+		long capacity = seenLinks.getCapacity();
+		for (long i = 0; i < capacity; i++) {
+			seenLinks.addFingerprint(URLFingerprint.mix(i));
+		}
+		
+		// Then nothing added is ever taken as new
+		for (long i = 0; i < capacity; i++) {
+			assertFalse(seenLinks.addFingerprint(URLFingerprint.mix(i)));
+		}
+		
+		// And new fingerprints are taken as seen at about the target rate
+		int falsePositives = 0;
+		for (long i = capacity; i < capacity + 10000; i++) {
+			if (!seenLinks.addFingerprint(URLFingerprint.mix(i))) {
+				falsePositives++;
+			}
+		}
+		assertTrue(falsePositives > 0 && falsePositives < 200);
+		assertTrue(seenLinks.getEstimatedFalsePositiveRate() > 0.005);
+		assertTrue(seenLinks.size() > capacity);
+	}
+	
+	@Test
+	public void testGetFillRatio_estimatesNumberOfLinks() {
+		// Given
+		BloomSeenLinkSet seenLinks = new BloomSeenLinkSet(64 * 1024, 0.001);
+		assertEquals(0.0, seenLinks.getFillRatio(), 0.0);
+		
+		// When
+		for (long i = 0; i < 10000; i++) {
+			seenLinks.addFingerprint(URLFingerprint.mix(i));
+		}
+		
+		// Then
+		assertTrue(seenLinks.getFillRatio() > 0 && seenLinks.getFillRatio() < 0.5);
+		assertEquals(10000, seenLinks.getEstimatedNumberOfLinks(), 500);
+		assertTrue(seenLinks.getEstimatedFalsePositiveRate() < 0.001);
+	}
+	
+	@Test(timeout = 10000)
+	public void testAddFingerprint_concurrentAddsOfTheSameLinkNewOnce() throws Exception {
+		// Given crawlers that all find the same new links at the same time
+		final BloomSeenLinkSet seenLinks = new BloomSeenLinkSet(64 * 1024, 0.001);
+		final int numberOfLinks = 200;
+		final AtomicInteger[] numberOfTimesNew = new AtomicInteger[numberOfLinks];
+		for (int i = 0; i < numberOfLinks; i++) {
+			numberOfTimesNew[i] = new AtomicInteger();
+		}
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> crawlers = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			crawlers.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int link = 0; link < numberOfLinks; link++) {
+						if (seenLinks.addFingerprint(URLFingerprint.mix(link))) {
+							numberOfTimesNew[link].incrementAndGet();
+						}
+					}
+				}
+			});
+		}
+		for (Thread crawler : crawlers) {
+			crawler.start();
+		}
+		
+		// When
+		start.countDown();
+		for (Thread crawler : crawlers) {
+			crawler.join();
+		}
+		
+		// Then each link is new to exactly one crawler
+		for (int link = 0; link < numberOfLinks; link++) {
+			assertEquals(1, numberOfTimesNew[link].get());
+		}
+		assertEquals(numberOfLinks, seenLinks.size());
+	}
+}
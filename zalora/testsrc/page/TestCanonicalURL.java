@@ -0,0 +1,66 @@
+package page;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+
+import org.junit.Test;
+
+/**
+ * Test-case for {@link CanonicalURL}
+ * 
+ * @author ted.kuo
+ */
+public class TestCanonicalURL {
+
+	@Test
+	public void testOf_caseAndDefaultPort() throws Exception {
+		// Given
+		URL url = new URL("HTTP://WWW.Zalora.SG:80/Women/Shoes/");
+		
+		// When
+		CanonicalURL canonicalURL = CanonicalURL.of(url);
+		
+		// Then the path keeps its case
+		assertEquals("http://www.zalora.sg/Women/Shoes", canonicalURL.toString());
+		assertEquals("www.zalora.sg", canonicalURL.getHost());
+	}
+	
+	@Test
+	public void testOf_otherPortKept() throws Exception {
+		assertEquals("https://www.zalora.sg:8443/shoes", CanonicalURL.of(new URL("https://www.zalora.sg:8443/shoes")).toString());
+		assertEquals("https://www.zalora.sg/shoes", CanonicalURL.of(new URL("https://www.zalora.sg:443/shoes")).toString());
+		assertEquals("http://www.zalora.sg:443/shoes", CanonicalURL.of(new URL("http://www.zalora.sg:443/shoes")).toString());
+	}
+	
+	@Test
+	public void testOf_dotSegments() throws Exception {
+		assertEquals("http://www.zalora.sg/women/bags", CanonicalURL.of(new URL("http://www.zalora.sg/women/./shoes/../bags")).toString());
+		assertEquals("http://www.zalora.sg", CanonicalURL.of(new URL("http://www.zalora.sg/../..")).toString());
+		assertEquals("http://www.zalora.sg/women", CanonicalURL.of(new URL("http://www.zalora.sg/women/shoes/..")).toString());
+	}
+	
+	@Test
+	public void testOf_percentEncoding() throws Exception {
+		// Escapes of unreserved characters are decoded, the others upper-cased
+		assertEquals("http://www.zalora.sg/soap-%2F-300ml", CanonicalURL.of(new URL("http://www.zalora.sg/%73oap%2d%2f-300ml")).toString());
+		// Characters not allowed are escaped as UTF-8
+		assertEquals("http://www.zalora.sg/caf%C3%A9%20noir", CanonicalURL.of("http://www.zalora.sg/caf\u00e9 noir", false).toString());
+		// A stray percent sign is escaped
+		assertEquals("http://www.zalora.sg/50%25", CanonicalURL.of("http://www.zalora.sg/50%", false).toString());
+	}
+	
+	@Test
+	public void testEquals_sameCanonicalForm() throws Exception {
+		// Given
+		CanonicalURL canonicalURL = CanonicalURL.of(new URL("http://www.zalora.sg/shoes/?sort=price#top"));
+		CanonicalURL otherURL = CanonicalURL.of(new URL("http://WWW.ZALORA.SG/shoes"));
+		
+		// Then
+		assertEquals(canonicalURL, otherURL);
+		assertEquals(canonicalURL.hashCode(), otherURL.hashCode());
+		assertEquals(canonicalURL.getFingerprint(), otherURL.getFingerprint());
+		assertSame(canonicalURL.getHost(), otherURL.getHost());
+		assertFalse(canonicalURL.equals(CanonicalURL.of(new URL("http://www.zalora.sg/Shoes"))));
+	}
+}
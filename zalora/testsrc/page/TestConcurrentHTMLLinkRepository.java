@@ -0,0 +1,95 @@
+package page;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test-case for {@link ConcurrentHTMLLinkRepository}
+ * 
+ * @author ted.kuo
+ */
+public class TestConcurrentHTMLLinkRepository {
+
+	@Test
+	public void testInsert_URLAlreadyExists() throws Exception {
+		// Given the URL already exist in the queue,
+		LinkRepository linkQueue = new ConcurrentHTMLLinkRepository();
+		linkQueue.insert(new HTMLLink(new URL("http://www.zalora.sg")));
+		assertEquals(1, linkQueue.getNumberOfUnvisitedLinks());
+		
+		// When 
+		linkQueue.insert(new HTMLLink(new URL("http://www.zalora.sg/")));
+		
+		// Then
+		assertEquals(1, linkQueue.getNumberOfUnvisitedLinks());
+		assertEquals(1, linkQueue.getNumberOfLinksDiscovered());
+	}
+	
+	@Test
+	public void testTakeUnvisitedLink_finishedOnceAllLinksVisited() throws Exception {
+		// Given a link that has been taken by a crawler
+		LinkRepository htmlLinkQueue = new ConcurrentHTMLLinkRepository();
+		HTMLLink link = new HTMLLink(new URL("http://www.zalora.sg"));
+		htmlLinkQueue.insert(link);
+		assertEquals(link, htmlLinkQueue.takeUnvisitedLink());
+		assertTrue(htmlLinkQueue.isAllLinksVisited());
+		
+		// When
+		htmlLinkQueue.markLinkVisited(link);
+		
+		// Then there is nothing left to take, and waiting returns immediately.
+		assertNull(htmlLinkQueue.takeUnvisitedLink());
+		htmlLinkQueue.awaitAllLinksVisited();
+	}
+	
+	@Test(timeout = 10000)
+	public void testInsert_concurrentCrawlersVisitEachLinkOnce() throws Exception {
+		// Given crawlers that each find the same links on every page
+		final LinkRepository htmlLinkQueue = new ConcurrentHTMLLinkRepository();
+		final List<HTMLLink> allLinks = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			allLinks.add(new HTMLLink(new URL("http://www.zalora.sg/page-" + i)));
+		}
+		final int[] linksVisited = new int[1];
+		List<Thread> crawlers = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			crawlers.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						HTMLLink link;
+						while ((link = htmlLinkQueue.takeUnvisitedLink()) != null) {
+							htmlLinkQueue.insert(allLinks);
+							synchronized (linksVisited) {
+								linksVisited[0]++;
+							}
+							htmlLinkQueue.markLinkVisited(link);
+						}
+					} catch (InterruptedException e) {
+						// Fail below on the count.
+					}
+				}
+			});
+		}
+		
+		// When
+		htmlLinkQueue.insert(new HTMLLink(new URL("http://www.zalora.sg")));
+		for (Thread crawler : crawlers) {
+			crawler.start();
+		}
+		htmlLinkQueue.awaitAllLinksVisited();
+		for (Thread crawler : crawlers) {
+			crawler.join();
+		}
+		
+		// Then
+		assertEquals(201, htmlLinkQueue.getNumberOfLinksDiscovered());
+		assertEquals(201, linksVisited[0]);
+		assertEquals(0, htmlLinkQueue.getNumberOfUnvisitedLinks());
+	}
+}
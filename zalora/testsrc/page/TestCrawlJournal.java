@@ -0,0 +1,125 @@
+package page;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test-case for {@link CrawlJournal}
+ * 
+ * @author ted.kuo
+ */
+public class TestCrawlJournal {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testRecover_resumesUnvisitedLinks() throws Exception {
+		// Given a crawl that visited the root and found two links before dying
+		HTMLLinkRepository repository = new HTMLLinkRepository();
+		CrawlJournal journal = new CrawlJournal(folder.getRoot().toPath());
+		repository.setCrawlJournal(journal);
+		HTMLLink root = new HTMLLink(new URL("http://www.zalora.sg"));
+		repository.insert(root);
+		assertEquals(root, repository.takeUnvisitedLink());
+		repository.insert(Arrays.asList(new HTMLLink(new URL("http://www.zalora.sg/shoes")), 
+				new HTMLLink(new URL("http://www.zalora.sg/bags"))));
+		repository.markLinkVisited(root);
+		journal.close();
+		
+		// When
+		HTMLLinkRepository resumed = new HTMLLinkRepository();
+		int numberOfLinksQueued = new CrawlJournal(folder.getRoot().toPath()).recover(resumed);
+		
+		// Then the root is known but not crawled again
+		assertEquals(2, numberOfLinksQueued);
+		assertEquals(3, resumed.getNumberOfLinksDiscovered());
+		assertEquals(new HTMLLink(new URL("http://www.zalora.sg/shoes")), resumed.pollUnvisitedPageQueue());
+		assertEquals(new HTMLLink(new URL("http://www.zalora.sg/bags")), resumed.pollUnvisitedPageQueue());
+		resumed.insert(root);
+		assertTrue(resumed.isAllLinksVisited());
+	}
+	
+	@Test
+	public void testRecover_resumesLinksDeferredForRetry() throws Exception {
+		// Given a crawl that died while the root was waiting to be retried
+		HTMLLinkRepository repository = new HTMLLinkRepository();
+		CrawlJournal journal = new CrawlJournal(folder.getRoot().toPath());
+		repository.setCrawlJournal(journal);
+		HTMLLink root = new HTMLLink(new URL("http://www.zalora.sg"));
+		repository.insert(root);
+		assertEquals(root, repository.takeUnvisitedLink());
+		repository.deferLink(root);
+		repository.markLinkVisited(root);
+		journal.close();
+		
+		// When
+		HTMLLinkRepository resumed = new HTMLLinkRepository();
+		CrawlJournal resumedJournal = new CrawlJournal(folder.getRoot().toPath());
+		int numberOfLinksQueued = resumedJournal.recover(resumed);
+		resumed.setCrawlJournal(resumedJournal);
+		
+		// Then the root is crawled again, and is visited for good once it is
+		assertEquals(1, numberOfLinksQueued);
+		assertEquals(root, resumed.takeUnvisitedLink());
+		resumed.markLinkVisited(root);
+		resumedJournal.close();
+		assertEquals(0, new CrawlJournal(folder.getRoot().toPath()).recover(new HTMLLinkRepository()));
+	}
+	
+	@Test
+	public void testRecover_startsAfreshOnceFinished() throws Exception {
+		// Given a crawl that visited every link it found, and finished
+		HTMLLinkRepository repository = new HTMLLinkRepository();
+		CrawlJournal journal = new CrawlJournal(folder.getRoot().toPath(), 2);
+		repository.setCrawlJournal(journal);
+		HTMLLink root = new HTMLLink(new URL("http://www.zalora.sg"));
+		repository.insert(root);
+		assertEquals(root, repository.takeUnvisitedLink());
+		repository.insert(new HTMLLink(new URL("http://www.zalora.sg/shoes")));
+		repository.markLinkVisited(root);
+		repository.markLinkVisited(repository.takeUnvisitedLink());
+		journal.finish();
+		
+		// When
+		HTMLLinkRepository next = new HTMLLinkRepository();
+		int numberOfLinksQueued = new CrawlJournal(folder.getRoot().toPath()).recover(next);
+		
+		// Then nothing is recovered, so the next crawl visits the root again
+		assertEquals(0, numberOfLinksQueued);
+		assertEquals(0, next.getNumberOfLinksDiscovered());
+		next.insert(root);
+		assertEquals(root, next.pollUnvisitedPageQueue());
+	}
+	
+	@Test
+	public void testRecover_fromCompactedSnapshot() throws Exception {
+		// Given a journal rotated every 10 records
+		LinkRepository repository = new ConcurrentHTMLLinkRepository();
+		CrawlJournal journal = new CrawlJournal(folder.getRoot().toPath(), 10);
+		repository.setCrawlJournal(journal);
+		for (int i = 0; i < 100; i++) {
+			repository.insert(new HTMLLink(new URL("http://www.zalora.sg/" + i)));
+		}
+		for (int i = 0; i < 60; i++) {
+			repository.markLinkVisited(repository.takeUnvisitedLink());
+		}
+		journal.close();
+		
+		// When
+		LinkRepository resumed = new ConcurrentHTMLLinkRepository();
+		int numberOfLinksQueued = new CrawlJournal(folder.getRoot().toPath(), 10).recover(resumed);
+		
+		// Then
+		assertTrue(folder.getRoot().toPath().resolve("snapshot").toFile().exists());
+		assertEquals(40, numberOfLinksQueued);
+		assertEquals(100, resumed.getNumberOfLinksDiscovered());
+		assertEquals(new HTMLLink(new URL("http://www.zalora.sg/60")), resumed.takeUnvisitedLink());
+	}
+}
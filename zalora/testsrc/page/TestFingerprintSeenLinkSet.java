@@ -0,0 +1,47 @@
+package page;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+
+import org.junit.Test;
+
+/**
+ * Test-case for {@link FingerprintSeenLinkSet}
+ * 
+ * @author ted.kuo
+ */
+public class TestFingerprintSeenLinkSet {
+
+	@Test
+	public void testAdd_sameCanonicalURLSeenOnce() throws Exception {
+		// Given
+		FingerprintSeenLinkSet seenLinks = new FingerprintSeenLinkSet();
+		
+		// When & Then
+		assertTrue(seenLinks.add(new HTMLLink(new URL("http://www.zalora.sg/shoes"))));
+		assertFalse(seenLinks.add(new HTMLLink(new URL("http://www.zalora.sg/shoes/?sort=price#top"))));
+		assertTrue(seenLinks.add(new HTMLLink(new URL("http://www.zalora.sg/bags"))));
+		assertEquals(2, seenLinks.size());
+	}
+	
+	@Test
+	public void testAddFingerprint_growsPastInitialCapacity() {
+		// Given small tables off the heap
+		FingerprintSeenLinkSet seenLinks = new FingerprintSeenLinkSet(16, true);
+		long initialBytes = seenLinks.getAllocatedBytes();
+		
+		// When
+		for (long i = 0; i < 100000; i++) {
+			assertTrue(seenLinks.addFingerprint(URLFingerprint.mix(i)));
+		}
+		
+		// Then every fingerprint is still there
+		assertEquals(100000, seenLinks.size());
+		for (long i = 0; i < 100000; i++) {
+			assertFalse(seenLinks.addFingerprint(URLFingerprint.mix(i)));
+		}
+		assertTrue(seenLinks.getAllocatedBytes() > initialBytes);
+		assertFalse(seenLinks.addFingerprint(0));
+	}
+}
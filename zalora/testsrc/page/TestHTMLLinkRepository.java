@@ -1,67 +1,115 @@
-package page;
-import static org.junit.Assert.*;
-
-import java.net.URL;
-
-import org.junit.Test;
-
-/**
- * Test case for URLQueue
- * 
- * @author ted.kuo
- *
- */
-public class TestHTMLLinkRepository {
-
-	@Test
-	public void testInsert_isUniqueURL() throws Exception {
-		// Given the URL already exist in the queue,
-		HTMLLinkRepository htmlLinkQueue = new HTMLLinkRepository();
-		htmlLinkQueue.insert(new HTMLLink(new URL("http://www.zalora.sg")));
-		assertTrue(htmlLinkQueue.getNumberOfUnvisitedLinks() == 1);
-
-		// When
-		htmlLinkQueue.insert(new HTMLLink(new URL("http://www.zalora.sg/shoes/")));
-
-		// Then
-		assertTrue(htmlLinkQueue.getNumberOfUnvisitedLinks() == 2);	
-	}
-
-	@Test
-	public void testInsert_URLAlreadyExists() throws Exception {
-		// Given the URL already exist in the queue,
-		HTMLLinkRepository linkQueue = new HTMLLinkRepository();
-		linkQueue.insert(new HTMLLink(new URL("http://www.zalora.sg")));
-		assertTrue(linkQueue.getNumberOfUnvisitedLinks() == 1);
-		
-		// When 
-		linkQueue.insert(new HTMLLink(new URL("http://www.zalora.sg")));
-		
-		// Then
-		assertTrue(linkQueue.getNumberOfUnvisitedLinks() == 1);
-	}
-	
-	@Test
-	public void testPollUnvisitedLinkQueue() throws Exception {
-		// Given
-		HTMLLinkRepository htmlLinkQueue = new HTMLLinkRepository();
-		HTMLLink link1 = new HTMLLink(new URL("http://www.zalora.sg"));
-		HTMLLink link2 = new HTMLLink(new URL("http://www.zalora.sg/shoes/"));
-		htmlLinkQueue.insert(link1);
-		htmlLinkQueue.insert(link2);
-		assertEquals(2, htmlLinkQueue.getNumberOfUnvisitedLinks());
-		assertEquals(2, htmlLinkQueue.getNumberOfLinksDiscovered());
-
-		// When & Then
-		HTMLLink actualLink1 = htmlLinkQueue.pollUnvisitedPageQueue();
-		assertEquals(link1, actualLink1);
-		assertEquals(1, htmlLinkQueue.getNumberOfUnvisitedLinks());
-		
-		HTMLLink actualLink2 = htmlLinkQueue.pollUnvisitedPageQueue();
-		assertEquals(link2, actualLink2);
-		assertEquals(0, htmlLinkQueue.getNumberOfUnvisitedLinks());
-
-		assertNull(htmlLinkQueue.pollUnvisitedPageQueue());
-		
-	}
-}
+package page;
+import static org.junit.Assert.*;
+
+import java.net.URL;
+
+import org.junit.Test;
+
+/**
+ * Test case for URLQueue
+ * 
+ * @author ted.kuo
+ *
+ */
+public class TestHTMLLinkRepository {
+
+	@Test
+	public void testInsert_isUniqueURL() throws Exception {
+		// Given the URL already exist in the queue,
+		HTMLLinkRepository htmlLinkQueue = new HTMLLinkRepository();
+		htmlLinkQueue.insert(new HTMLLink(new URL("http://www.zalora.sg")));
+		assertTrue(htmlLinkQueue.getNumberOfUnvisitedLinks() == 1);
+
+		// When
+		htmlLinkQueue.insert(new HTMLLink(new URL("http://www.zalora.sg/shoes/")));
+
+		// Then
+		assertTrue(htmlLinkQueue.getNumberOfUnvisitedLinks() == 2);	
+	}
+
+	@Test
+	public void testInsert_URLAlreadyExists() throws Exception {
+		// Given the URL already exist in the queue,
+		HTMLLinkRepository linkQueue = new HTMLLinkRepository();
+		linkQueue.insert(new HTMLLink(new URL("http://www.zalora.sg")));
+		assertTrue(linkQueue.getNumberOfUnvisitedLinks() == 1);
+		
+		// When 
+		linkQueue.insert(new HTMLLink(new URL("http://www.zalora.sg")));
+		
+		// Then
+		assertTrue(linkQueue.getNumberOfUnvisitedLinks() == 1);
+	}
+	
+	@Test
+	public void testPollUnvisitedLinkQueue() throws Exception {
+		// Given
+		HTMLLinkRepository htmlLinkQueue = new HTMLLinkRepository();
+		HTMLLink link1 = new HTMLLink(new URL("http://www.zalora.sg"));
+		HTMLLink link2 = new HTMLLink(new URL("http://www.zalora.sg/shoes/"));
+		htmlLinkQueue.insert(link1);
+		htmlLinkQueue.insert(link2);
+		assertEquals(2, htmlLinkQueue.getNumberOfUnvisitedLinks());
+		assertEquals(2, htmlLinkQueue.getNumberOfLinksDiscovered());
+
+		// When & Then
+		HTMLLink actualLink1 = htmlLinkQueue.pollUnvisitedPageQueue();
+		assertEquals(link1, actualLink1);
+		assertEquals(1, htmlLinkQueue.getNumberOfUnvisitedLinks());
+		
+		HTMLLink actualLink2 = htmlLinkQueue.pollUnvisitedPageQueue();
+		assertEquals(link2, actualLink2);
+		assertEquals(0, htmlLinkQueue.getNumberOfUnvisitedLinks());
+
+		assertNull(htmlLinkQueue.pollUnvisitedPageQueue());
+		
+	}
+
+	@Test
+	public void testTakeUnvisitedLink_finishedOnceAllLinksVisited() throws Exception {
+		// Given a link that has been taken by a crawler
+		HTMLLinkRepository htmlLinkQueue = new HTMLLinkRepository();
+		HTMLLink link = new HTMLLink(new URL("http://www.zalora.sg"));
+		htmlLinkQueue.insert(link);
+		assertEquals(link, htmlLinkQueue.takeUnvisitedLink());
+		
+		// When
+		htmlLinkQueue.markLinkVisited(link);
+		
+		// Then there is nothing left to take, and waiting returns immediately.
+		assertNull(htmlLinkQueue.takeUnvisitedLink());
+		htmlLinkQueue.awaitAllLinksVisited();
+	}
+	
+	@Test(timeout = 5000)
+	public void testTakeUnvisitedLink_waitsForLinksFromCrawlerInProgress() throws Exception {
+		// Given a link in progress, and another crawler waiting for work
+		final HTMLLinkRepository htmlLinkQueue = new HTMLLinkRepository();
+		final HTMLLink link1 = new HTMLLink(new URL("http://www.zalora.sg"));
+		final HTMLLink link2 = new HTMLLink(new URL("http://www.zalora.sg/shoes/"));
+		htmlLinkQueue.insert(link1);
+		htmlLinkQueue.takeUnvisitedLink();
+		
+		final HTMLLink[] linkTaken = new HTMLLink[1];
+		Thread waitingCrawler = new Thread() {
+			@Override
+			public void run() {
+				try {
+					linkTaken[0] = htmlLinkQueue.takeUnvisitedLink();
+				} catch (InterruptedException e) {
+					// Leave the link as null.
+				}
+			}
+		};
+		waitingCrawler.start();
+		
+		// When the link in progress produces another link
+		htmlLinkQueue.insert(link2);
+		htmlLinkQueue.markLinkVisited(link1);
+		waitingCrawler.join();
+		
+		// Then the waiting crawler is handed the new link.
+		assertEquals(link2, linkTaken[0]);
+		assertEquals(0, htmlLinkQueue.getNumberOfUnvisitedLinks());
+	}
+}
@@ -0,0 +1,85 @@
+package page;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.URL;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test-case for {@link SpillingLinkFrontier}
+ * 
+ * @author ted.kuo
+ */
+public class TestSpillingLinkFrontier {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testPoll_smallFrontierNeverSpills() throws Exception {
+		// Given
+		SpillingLinkFrontier frontier = new SpillingLinkFrontier(folder.getRoot().toPath(), 10, 1024);
+		
+		// When
+		frontier.add(new HTMLLink(new URL("http://www.zalora.sg/shoes")));
+		frontier.add(new HTMLLink(new URL("http://www.zalora.sg/bags")));
+		
+		// Then
+		assertEquals(0, frontier.getNumberOfSegments());
+		assertEquals(2, frontier.size());
+		assertEquals(new HTMLLink(new URL("http://www.zalora.sg/shoes")), frontier.poll());
+		assertEquals(new HTMLLink(new URL("http://www.zalora.sg/bags")), frontier.poll());
+		assertNull(frontier.poll());
+		assertTrue(frontier.isEmpty());
+	}
+	
+	@Test
+	public void testPoll_spilledLinksComeBackInOrder() throws Exception {
+		// Given buffers of 10 links, and segments of a few dozen links
+		SpillingLinkFrontier frontier = new SpillingLinkFrontier(folder.getRoot().toPath(), 10, 1024);
+		
+		// When
+		for (int i = 0; i < 1000; i++) {
+			frontier.add(new HTMLLink(new URL("http://www.zalora.sg/product-" + i + ".html")));
+		}
+		
+		// Then
+		assertEquals(1000, frontier.size());
+		assertTrue(frontier.getNumberOfSegments() > 1);
+		assertEquals(frontier.getNumberOfSegments(), folder.getRoot().list().length);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("http://www.zalora.sg/product-" + i + ".html", frontier.poll().getPageURL().toString());
+		}
+		assertTrue(frontier.isEmpty());
+		assertEquals(0, frontier.getNumberOfSegments());
+		assertEquals(0, folder.getRoot().list().length);
+	}
+	
+	@Test
+	public void testPoll_addWhilePolling() throws Exception {
+		// Given a frontier that has spilled
+		SpillingLinkFrontier frontier = new SpillingLinkFrontier(folder.getRoot().toPath(), 4, 256);
+		int added = 0;
+		int polled = 0;
+		
+		// When links are added faster than they are polled
+		for (int round = 0; round < 200; round++) {
+			for (int i = 0; i < 3; i++) {
+				frontier.add(new HTMLLink(new URL("http://www.zalora.sg/" + added++)));
+			}
+			assertEquals("http://www.zalora.sg/" + polled++, frontier.poll().getPageURL().toString());
+		}
+		
+		// Then they all still come out in order
+		while (!frontier.isEmpty()) {
+			assertEquals("http://www.zalora.sg/" + polled++, frontier.poll().getPageURL().toString());
+		}
+		assertEquals(added, polled);
+		frontier.close();
+		assertEquals(0, folder.getRoot().listFiles(File::isFile).length);
+	}
+}
@@ -0,0 +1,107 @@
+package policy;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test-case for {@link BoilerplateDetector}
+ *
+ * @author ted.kuo
+ */
+public class TestBoilerplateDetector {
+
+	/**
+	 * The menu on every page.
+	 */
+	private static final String MENU = "<ul id=\"menu\" class=\"mega-menu\">"
+			+ "<li><a href=\"/women/\">Women</a></li><li><a href=\"/men/\">Men</a></li>"
+			+ "<li><a href=\"/kids/\">Kids</a></li><li><a href=\"/sale/\">Sale</a></li></ul>";
+
+	/**
+	 * Object in test
+	 */
+	BoilerplateDetector boilerplateDetector;
+
+	@Before
+	public void setup() {
+		this.boilerplateDetector = new BoilerplateDetector(2, 10, 1000);
+	}
+
+	@Test
+	public void testTraverse_skipsTheSubtreesSameOnEveryPage() {
+		// Given the first pages have the same menu, and a product of their own.
+		for (int i = 0; i < 20; i++) {
+			assertEquals(5, countAnchors(i));
+		}
+
+		// When
+		int numberOfAnchors = countAnchors(20);
+
+		// Then only the product is walked.
+		assertEquals(1, numberOfAnchors);
+		assertEquals(1, this.boilerplateDetector.getNumberOfTemplates());
+		assertEquals(1, this.boilerplateDetector.getNumberOfSubtreesSkipped());
+		assertEquals(13, this.boilerplateDetector.getNumberOfNodesSkipped());
+	}
+
+	@Test
+	public void testTraverse_subtreesThatDifferAreWalked() {
+		// Given the first pages have the same menu, but with a different item each.
+		for (int i = 0; i < 20; i++) {
+			walk("<div id=\"menu\">" + MENU + "<a href=\"/product-" + i + ".html\">Product</a></div>");
+		}
+
+		// When
+		int numberOfAnchors = walk("<div id=\"menu\">" + MENU + "<a href=\"/product-20.html\">Product</a></div>");
+
+		// Then only the menu within is skipped.
+		assertEquals(1, numberOfAnchors);
+		assertEquals(1, this.boilerplateDetector.getNumberOfTemplates());
+	}
+
+	/**
+	 * @param productNumber of the page.
+	 * @return the number of anchors walked on a page with the menu and a product.
+	 */
+	private int countAnchors(int productNumber) {
+		return walk(MENU + "<div class=\"product\"><a href=\"/product-" + productNumber + ".html\">Product</a></div>");
+	}
+
+	/**
+	 * @param body of the page.
+	 * @return the number of anchors walked on the page.
+	 */
+	private int walk(String body) {
+		Document pageContent = Jsoup.parse("<html><body>" + body + "</body></html>");
+		final List<Element> anchors = new ArrayList<>();
+		SinglePassTraversal.traverse(pageContent, Collections.singletonList(new PageVisitor() {
+			@Override
+			public List<ElementInterest> getElementInterests() {
+				return Collections.singletonList(ElementInterest.tag("a"));
+			}
+
+			@Override
+			public void enterElement(Element element, ElementInterest interest) {
+				anchors.add(element);
+			}
+
+			@Override
+			public void exitElement(Element element, ElementInterest interest) {
+			}
+
+			@Override
+			public void endPage(Document pageContent) {
+			}
+		}), this.boilerplateDetector);
+		return anchors.size();
+	}
+}
@@ -0,0 +1,94 @@
+package policy;
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test-case for {@link LinkFilter}
+ *
+ * @author ted.kuo
+ */
+public class TestLinkFilter {
+
+	/**
+	 * The page the links are found on.
+	 */
+	URL pageURL;
+
+	@Before
+	public void setup() throws Exception {
+		this.pageURL = new URL("http://www.zalora.sg/women/shoes/heels.html");
+	}
+
+	@Test
+	public void testAccepts_resolvesTheHostAndPath() throws Exception {
+		// Given
+		LinkFilter linkFilter = new LinkFilter(Arrays.asList(
+				LinkFilterRule.allow(LinkFilterRule.Type.HOST, "www.zalora.sg"),
+				LinkFilterRule.deny(LinkFilterRule.Type.PREFIX, "/women/shoes/flats")));
+
+		// When, Then the links are resolved against the page.
+		assertTrue(linkFilter.accepts(this.pageURL, "/men/"));
+		assertTrue(linkFilter.accepts(this.pageURL, "HTTPS://user@WWW.Zalora.SG:443/men/?sort=price"));
+		assertTrue(linkFilter.accepts(this.pageURL, "?page=2"));
+		assertTrue(linkFilter.accepts(this.pageURL, "#top"));
+		assertFalse(linkFilter.accepts(this.pageURL, "flats/ballet.html"));
+		assertFalse(linkFilter.accepts(this.pageURL, "//www.zalora.sg/women/shoes/flats/"));
+		assertFalse(linkFilter.accepts(this.pageURL, "../shoes/./flats/"));
+		assertFalse(linkFilter.accepts(this.pageURL, "http://cosmopolitan.sg/women/"));
+		assertFalse(linkFilter.accepts(this.pageURL, "mailto:help@zalora.sg"));
+		assertFalse(linkFilter.accepts(this.pageURL, "javascript:void(0)"));
+	}
+
+	@Test
+	public void testAccepts_globsRegexesAndExceptions() throws Exception {
+		// Given
+		LinkFilter linkFilter = new LinkFilter(Arrays.asList(
+				LinkFilterRule.allow(LinkFilterRule.Type.HOST, "*.zalora.sg"),
+				LinkFilterRule.deny(LinkFilterRule.Type.HOST, "api.zalora.sg"),
+				LinkFilterRule.deny(LinkFilterRule.Type.GLOB, "/*.jpg"),
+				LinkFilterRule.deny(LinkFilterRule.Type.REGEX, "^/customer/(account|cart)/"),
+				LinkFilterRule.allow(LinkFilterRule.Type.PREFIX, "/customer/account/login")));
+
+		// When, Then
+		assertTrue(linkFilter.accepts(this.pageURL, "http://m.zalora.sg/women/"));
+		assertFalse(linkFilter.accepts(this.pageURL, "http://api.zalora.sg/women/"));
+		assertFalse(linkFilter.accepts(this.pageURL, "http://zalora.com/women/"));
+		assertFalse(linkFilter.accepts(this.pageURL, "/images/banner.jpg"));
+		assertTrue(linkFilter.accepts(this.pageURL, "/images/banner.jpg.html"));
+		assertFalse(linkFilter.accepts(this.pageURL, "/customer/cart/"));
+		assertTrue(linkFilter.accepts(this.pageURL, "/customer/account/login/"));
+	}
+
+	@Test
+	public void testLoad_rulesFile() throws Exception {
+		// Given
+		Path rulesFile = Files.createTempFile("link-filter", ".rules");
+		Files.write(rulesFile, Arrays.asList("# Zalora", "", "allow host www.zalora.sg", "deny  prefix /sendfriend"),
+				StandardCharsets.UTF_8);
+
+		try {
+			// When
+			LinkFilter linkFilter = LinkFilter.load(rulesFile);
+
+			// Then
+			assertTrue(linkFilter.accepts(this.pageURL, "/women/"));
+			assertFalse(linkFilter.accepts(this.pageURL, "/sendfriend/index/sku/GL262AA90YJX"));
+		}
+		finally {
+			Files.delete(rulesFile);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParse_unknownType() {
+		LinkFilterRule.parse("deny path /sendfriend");
+	}
+}
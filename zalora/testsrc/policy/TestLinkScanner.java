@@ -1,70 +1,110 @@
-package policy;
-import static org.mockito.Mockito.*;
-import static org.junit.Assert.*;
-import java.net.URL;
-import java.util.List;
-
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.junit.Before;
-import org.junit.Test;
-import org.mockito.Mock;
-import org.mockito.MockitoAnnotations;
-
-import page.HTMLLink;
-import page.HTMLLinkRepository;
-
-/**
- * Test-case for {@link LinkScanner}
- * 
- * @author ted.kuo
- */
-public class TestLinkScanner {
-
-	/**
-	 * Object in test
-	 */
-	LinkScanner linkScanner;
-	
-	@Before
-	public void setup() {
-		this.linkScanner = new LinkScanner("www.zalora.sg");
-	}
-	
-	@Test
-	public void testScanePage_malformedLink() {
-		
-		// Then ignore the malformed link and carry on.
-	}
-	
-	@Test
-	public void testScanPage_onlyFindLinksUnderTheSameHost() throws Exception {
-		// Given
-		HTMLLink link = new HTMLLink(new URL("http://www.zalora.sg/shoes"));
-		Document content = Jsoup.parse("<h4 class=\"ui-borderBottom pbs\"><a href=\"/women/new-arrivals/\">Women</a></h4>" +
-		"<a href=\"http://cosmopolitan.sg/2012/09/19/for-your-surfing-pleasure/\"><span style=\"margin:6px\">" +
-		"<img src=\"http://d1iv60t95n7wx3.cloudfront.net/cms/icon/cosmopolitan.png\"  width=\"80\" alt=\"\" " +
-		" title=\"Best Fashion Site\" /></span></a>");
-		
-		// When
-		List<HTMLLink> linksFound = this.linkScanner.scanPage(link, content);
-		
-		// Then all the href tag is found.
-		assertEquals(1, linksFound.size());
-		assertEquals("http://www.zalora.sg/women/new-arrivals", linksFound.get(0).getPageURL().toString());
-	}
-	
-	@Test
-	public void testScanPage_avoidZaloraAccountSpecificLinks() throws Exception {
-		// Given
-		HTMLLink link = new HTMLLink(new URL("http://zalora.sg/shoes"));
-		Document content = Jsoup.parse("<a class=\"ui-block icon i-recommend mbs\" id=\"send-to-a-friend-link\" title=\"Send to a friend\" href=\"/sendfriend/index/sku/GL262AA90YJX\">" + 
-				"<a class=\"\" href=\"/customer/wishlist\" title=\"Wishlist\" rel=\"follow\">My Wishlist</a>");
-		
-		// When
-		List<HTMLLink> linksFound = this.linkScanner.scanPage(link, content);
-		
-		// Then all the href tag is found.
-		assertEquals(0, linksFound.size());
-	}
-}
+package policy;
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.*;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import page.HTMLLink;
+import page.HTMLLinkRepository;
+
+/**
+ * Test-case for {@link LinkScanner}
+ * 
+ * @author ted.kuo
+ */
+public class TestLinkScanner {
+
+	/**
+	 * Object in test
+	 */
+	LinkScanner linkScanner;
+	
+	@Before
+	public void setup() {
+		this.linkScanner = new LinkScanner("www.zalora.sg");
+	}
+	
+	@Test
+	public void testScanePage_malformedLink() {
+		
+		// Then ignore the malformed link and carry on.
+	}
+	
+	@Test
+	public void testScanPage_onlyFindLinksUnderTheSameHost() throws Exception {
+		// Given
+		HTMLLink link = new HTMLLink(new URL("http://www.zalora.sg/shoes"));
+		Document content = Jsoup.parse("<h4 class=\"ui-borderBottom pbs\"><a href=\"/women/new-arrivals/\">Women</a></h4>" +
+		"<a href=\"http://cosmopolitan.sg/2012/09/19/for-your-surfing-pleasure/\"><span style=\"margin:6px\">" +
+		"<img src=\"http://d1iv60t95n7wx3.cloudfront.net/cms/icon/cosmopolitan.png\"  width=\"80\" alt=\"\" " +
+		" title=\"Best Fashion Site\" /></span></a>");
+		
+		// When
+		List<HTMLLink> linksFound = this.linkScanner.scanPage(link, content);
+		
+		// Then all the href tag is found.
+		assertEquals(1, linksFound.size());
+		assertEquals("http://www.zalora.sg/women/new-arrivals", linksFound.get(0).getPageURL().toString());
+	}
+	
+	@Test
+	public void testScanPage_avoidZaloraAccountSpecificLinks() throws Exception {
+		// Given
+		HTMLLink link = new HTMLLink(new URL("http://zalora.sg/shoes"));
+		Document content = Jsoup.parse("<a class=\"ui-block icon i-recommend mbs\" id=\"send-to-a-friend-link\" title=\"Send to a friend\" href=\"/sendfriend/index/sku/GL262AA90YJX\">" + 
+				"<a class=\"\" href=\"/customer/wishlist\" title=\"Wishlist\" rel=\"follow\">My Wishlist</a>");
+		
+		// When
+		List<HTMLLink> linksFound = this.linkScanner.scanPage(link, content);
+		
+		// Then all the href tag is found.
+		assertEquals(0, linksFound.size());
+	}
+	
+	@Test
+	public void testScanHrefs_sameLinksAsScanPage() throws Exception {
+		// Given
+		HTMLLink link = new HTMLLink(new URL("http://www.zalora.sg/shoes"));
+		List<String> hrefValues = Arrays.asList("/women/new-arrivals/", "http://cosmopolitan.sg/", "/sendfriend/index");
+		StringBuilder page = new StringBuilder();
+		for (String hrefValue : hrefValues) {
+			page.append("<a href=\"").append(hrefValue).append("\">Link</a>");
+		}
+		
+		// When
+		List<HTMLLink> linksFound = new ArrayList<>();
+		this.linkScanner.scanHrefs(link, hrefValues, linksFound);
+		
+		// Then only the link under the host is found, as when the page is scanned.
+		assertEquals(1, linksFound.size());
+		assertEquals("http://www.zalora.sg/women/new-arrivals", linksFound.get(0).getPageURL().toString());
+		assertEquals(this.linkScanner.scanPage(link, Jsoup.parse(page.toString())), linksFound);
+	}
+	
+	@Test
+	public void testScanPage_dropsLinksRepeatedOnPagesOfTheSameDirectory() throws Exception {
+		// Given two pages of the same directory, with the same menu.
+		this.linkScanner.setResolvedLinkCache(new ResolvedLinkCache(1024));
+		HTMLLink firstPage = new HTMLLink(new URL("http://www.zalora.sg/women/shoes"));
+		HTMLLink secondPage = new HTMLLink(new URL("http://www.zalora.sg/women/bags"));
+		Document menu = Jsoup.parse("<a href=\"/men/\">Men</a><a href=\"sale/\">Sale</a>");
+		this.linkScanner.scanPage(firstPage, menu);
+		
+		// When
+		List<HTMLLink> linksFound = this.linkScanner.scanPage(secondPage, 
+				Jsoup.parse("<a href=\"/men/\">Men</a><a href=\"sale/\">Sale</a><a href=\"/kids/\">Kids</a>"));
+		
+		// Then only the link not on the first page is found.
+		assertEquals(1, linksFound.size());
+		assertEquals("http://www.zalora.sg/kids", linksFound.get(0).getPageURL().toString());
+	}
+}
@@ -0,0 +1,62 @@
+package policy;
+import static org.junit.Assert.*;
+
+import java.net.URL;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test-case for {@link ResolvedLinkCache}
+ *
+ * @author ted.kuo
+ */
+public class TestResolvedLinkCache {
+
+	/**
+	 * Object in test
+	 */
+	ResolvedLinkCache resolvedLinkCache;
+
+	@Before
+	public void setup() {
+		this.resolvedLinkCache = new ResolvedLinkCache(1024);
+	}
+
+	@Test
+	public void testIsRepeated_relativeToTheDirectory() throws Exception {
+		// Given a relative href found on a page.
+		URL pageURL = new URL("http://www.zalora.sg/women/shoes");
+		assertFalse(this.resolvedLinkCache.isRepeated(pageURL, "sale/"));
+
+		// When, Then it's a repeat in the same directory only.
+		assertTrue(this.resolvedLinkCache.isRepeated(new URL("http://www.zalora.sg/women/bags"), "sale/"));
+		assertFalse(this.resolvedLinkCache.isRepeated(new URL("http://www.zalora.sg/men/bags"), "sale/"));
+		assertFalse(this.resolvedLinkCache.isRepeated(new URL("https://www.zalora.sg/women/bags"), "sale/"));
+		assertEquals(1, this.resolvedLinkCache.getNumberOfRepeats());
+	}
+
+	@Test
+	public void testIsRepeated_queriesAreRelativeToThePage() throws Exception {
+		// Given
+		assertFalse(this.resolvedLinkCache.isRepeated(new URL("http://www.zalora.sg/women/shoes"), "?page=2"));
+		assertFalse(this.resolvedLinkCache.isRepeated(new URL("http://www.zalora.sg/women/shoes"), "/men/"));
+
+		// When, Then
+		assertFalse(this.resolvedLinkCache.isRepeated(new URL("http://www.zalora.sg/women/bags"), "?page=2"));
+		assertTrue(this.resolvedLinkCache.isRepeated(new URL("http://www.zalora.sg/kids/bags"), "/men/"));
+	}
+
+	@Test
+	public void testIsRepeated_boundedCapacity() throws Exception {
+		// Given more href values than the cache remembers.
+		URL pageURL = new URL("http://www.zalora.sg/women/shoes");
+		for (int i = 0; i < 10000; i++) {
+			this.resolvedLinkCache.isRepeated(pageURL, "/product-" + i + ".html");
+		}
+
+		// When, Then the first ones are forgotten.
+		assertFalse(this.resolvedLinkCache.isRepeated(pageURL, "/product-0.html"));
+		assertTrue(this.resolvedLinkCache.isRepeated(pageURL, "/product-9999.html"));
+	}
+}
@@ -0,0 +1,87 @@
+package policy;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+/**
+ * Test-case for {@link SinglePassTraversal}
+ * 
+ * @author ted.kuo
+ */
+public class TestSinglePassTraversal {
+
+	@Test
+	public void testTraverse_dispatchesToInterestedVisitors() {
+		// Given
+		Document pageContent = Jsoup.parse("<div class=\"Product prd-price\">"
+				+ "<a href=\"/shoes\">Shoes</a>"
+				+ "<span property=\"gr:hasCurrency\">SGD</span>"
+				+ "<span property=\"gr:hasCurrencyValue\">88.00</span>"
+				+ "</div><a href=\"/bags\">Bags</a>");
+		RecordingVisitor anchorVisitor = new RecordingVisitor(ElementInterest.tag("A"));
+		RecordingVisitor priceVisitor = new RecordingVisitor(ElementInterest.className("PRD-price"), 
+				ElementInterest.attributeValue("property", "gr:hasCurrencyValue"));
+		
+		// When
+		SinglePassTraversal.traverse(pageContent, Arrays.asList(anchorVisitor, priceVisitor));
+		
+		// Then each visitor only sees what it's interested in, in the order of the page
+		assertEquals(Arrays.asList("enter a /shoes", "exit a /shoes", "enter a /bags", "exit a /bags", "end"), 
+				anchorVisitor.events);
+		assertEquals(Arrays.asList("enter .prd-price ", "enter [property=gr:hasCurrencyValue] ", 
+				"exit [property=gr:hasCurrencyValue] ", "exit .prd-price ", "end"), priceVisitor.events);
+	}
+	
+	/**
+	 * Records what it's shown.
+	 */
+	private static class RecordingVisitor implements PageVisitor {
+		
+		/**
+		 * What the visitor is interested in.
+		 */
+		private final List<ElementInterest> interests;
+		
+		/**
+		 * What the visitor has been shown.
+		 */
+		private final List<String> events = new ArrayList<>();
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param interests of the visitor.
+		 */
+		RecordingVisitor(ElementInterest... interests) {
+			this.interests = Arrays.asList(interests);
+		}
+
+		@Override
+		public List<ElementInterest> getElementInterests() {
+			return this.interests;
+		}
+
+		@Override
+		public void enterElement(Element element, ElementInterest interest) {
+			this.events.add("enter " + interest + " " + element.attr("href"));
+		}
+
+		@Override
+		public void exitElement(Element element, ElementInterest interest) {
+			this.events.add("exit " + interest + " " + element.attr("href"));
+		}
+
+		@Override
+		public void endPage(Document pageContent) {
+			this.events.add("end");
+		}
+	}
+}
@@ -1,29 +1,40 @@
-package price;
-
-import static org.junit.Assert.*;
-
-import org.junit.Before;
-import org.junit.Test;
-
-import price.Price.Currency;
-
-/**
- * Test-case for {@link Price}
- * 
- * @author ted.kuo  
- */
-public class TestPrice {
-
-	@Test
-	public void testCurrency_convert() {
-		Currency currency = Price.Currency.convert("SGD");
-		Currency currency3 = Price.Currency.convert("SGDD");
-		Currency currency2 = Price.Currency.convert("");
-		Currency currency4 = Price.Currency.convert(null);
-		
-		assertEquals(Currency.SGD, currency);
-		assertEquals(null, currency2);
-		assertEquals(null, currency3);
-		assertEquals(null, currency4);
-	}
-}
+package price;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import price.Price.Currency;
+
+/**
+ * Test-case for {@link Price}
+ * 
+ * @author ted.kuo  
+ */
+public class TestPrice {
+
+	@Test
+	public void testCurrency_convert() {
+		Currency currency = Price.Currency.convert("SGD");
+		Currency currency3 = Price.Currency.convert("SGDD");
+		Currency currency2 = Price.Currency.convert("");
+		Currency currency4 = Price.Currency.convert(null);
+		
+		assertEquals(Currency.SGD, currency);
+		assertEquals(null, currency2);
+		assertEquals(null, currency3);
+		assertEquals(null, currency4);
+	}
+	
+	@Test
+	public void testToString_minorUnits() {
+		Price price = Price.ofMinorUnits(200090001L, Currency.SGD);
+		
+		assertEquals(2, price.getScale());
+		assertEquals(2000900.01d, price.getPriceAmount(), 0.001d);
+		assertEquals("$2000900.01 SGD", price.toString());
+		assertEquals("$10.0 SGD", new Price(10, Currency.SGD).toString());
+		assertEquals(1010L, new Price(10.1, Currency.SGD).getMinorUnits());
+	}
+}
@@ -0,0 +1,70 @@
+package price;
+
+import static org.junit.Assert.*;
+
+import java.util.Locale;
+
+import org.junit.Test;
+
+/**
+ * Test-case for {@link PriceParser}
+ * 
+ * @author ted.kuo
+ */
+public class TestPriceParser {
+
+	@Test
+	public void testParseMinorUnits_groupingAndDecimalSeparators() {
+		// Given
+		PriceParser priceParser = new PriceParser(Locale.forLanguageTag("en-SG"));
+		
+		// When, Then
+		assertEquals(200090000L, priceParser.parseMinorUnits(" 2,000,900.00\n", 2));
+		assertEquals(1000L, priceParser.parseMinorUnits("10", 2));
+		assertEquals(1050L, priceParser.parseMinorUnits("10.5", 2));
+		assertEquals(1999L, priceParser.parseMinorUnits("19.99", 2));
+		assertEquals(2000L, priceParser.parseMinorUnits("19.995", 2));
+		assertEquals(20L, priceParser.parseMinorUnits("19.5", 0));
+	}
+	
+	@Test
+	public void testParseMinorUnits_locale() {
+		// Given amounts written the German and French way.
+		PriceParser germanParser = new PriceParser(Locale.GERMANY);
+		PriceParser frenchParser = new PriceParser(Locale.FRANCE);
+		
+		// When, Then
+		assertEquals(123456L, germanParser.parseMinorUnits("1.234,56", 2));
+		assertEquals(123456L, frenchParser.parseMinorUnits("1\u00a0234,56\u00a0", 2));
+		assertEquals(123456L, frenchParser.parseMinorUnits("1 234,56", 2));
+	}
+	
+	@Test
+	public void testParseMinorUnits_sign() {
+		// Given
+		PriceParser priceParser = new PriceParser(Locale.forLanguageTag("en-SG"));
+		
+		// When, Then
+		assertEquals(-500L, priceParser.parseMinorUnits("-5.00", 2));
+		assertEquals(-200090000L, priceParser.parseMinorUnits(" -2,000,900.00", 2));
+		assertEquals(-2000L, priceParser.parseMinorUnits("-19.995", 2));
+		assertEquals(500L, priceParser.parseMinorUnits("+5", 2));
+		assertEquals(PriceParser.INVALID, priceParser.parseMinorUnits("-", 2));
+		assertEquals(PriceParser.INVALID, priceParser.parseMinorUnits("--5", 2));
+		assertEquals(PriceParser.INVALID, priceParser.parseMinorUnits("5-", 2));
+	}
+	
+	@Test
+	public void testParseMinorUnits_invalid() {
+		// Given
+		PriceParser priceParser = new PriceParser(Locale.forLanguageTag("en-SG"));
+		
+		// When, Then
+		assertEquals(PriceParser.INVALID, priceParser.parseMinorUnits("", 2));
+		assertEquals(PriceParser.INVALID, priceParser.parseMinorUnits("SGD 10", 2));
+		assertEquals(PriceParser.INVALID, priceParser.parseMinorUnits("10.00.00", 2));
+		assertEquals(PriceParser.INVALID, priceParser.parseMinorUnits(",100", 2));
+		assertEquals(PriceParser.INVALID, priceParser.parseMinorUnits("100,", 2));
+		assertEquals(PriceParser.INVALID, priceParser.parseMinorUnits("99999999999999999999", 2));
+	}
+}
@@ -0,0 +1,96 @@
+package price;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.net.URL;
+import java.util.List;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import page.HTMLLink;
+
+/**
+ * Test-case for {@link StructuredDataPriceExtractor}, and its use by {@link PriceAnalyser}
+ *
+ * @author ted.kuo
+ */
+public class TestStructuredDataPriceExtractor {
+
+	@Mock HTMLLink testPage;
+
+	/**
+	 * Reads the prices found.
+	 */
+	private PriceAnalyser priceAnalyser;
+
+	@Before
+	public void setup() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		stub(testPage.getPageURL()).toReturn(new URL("http://www.zalora.sg/C5172dd2.html"));
+		priceAnalyser = new PriceAnalyser(20, 2000);
+	}
+
+	@Test
+	public void testGetAllPricesFromPage_jsonLdAggregateOffer() {
+		// Given a product whose offers are an AggregateOffer with a low price only.
+		Document pageContent = Jsoup.parse("<html><head><script type=\"application/ld+json\">"
+				+ "{\"@context\": \"https://schema.org\", \"@type\": \"Product\", \"name\": \"Caf\\u00e9 \\\"Dress\\\"\","
+				+ " \"sku\": \"C5172DD2\", \"image\": [\"a.jpg\", \"b.jpg\"],"
+				+ " \"offers\": {\"@type\": \"AggregateOffer\", \"lowPrice\": 59.9, \"highPrice\": \"89.00\","
+				+ " \"priceCurrency\": \"SGD\", \"offerCount\": 3, \"available\": true}}"
+				+ "</script></head><body></body></html>");
+
+		// When
+		List<Price> pricesFound = this.priceAnalyser.getAllPricesFromPage(testPage, pageContent);
+
+		// Then
+		assertEquals(1, pricesFound.size());
+		assertEquals(5990, pricesFound.get(0).getMinorUnits());
+		assertEquals(Price.Currency.SGD, pricesFound.get(0).getCurrency());
+		assertEquals("C5172DD2", pricesFound.get(0).getProductId());
+	}
+
+	@Test
+	public void testGetAllPricesFromPage_microdataOffer() {
+		// Given a product whose offer is microdata, next to an RDFa price.
+		Document pageContent = Jsoup.parse("<div itemscope itemtype=\"https://schema.org/Product\">"
+				+ "<meta itemprop=\"sku\" content=\"C5172DD2\">"
+				+ "<div itemprop=\"offers\" itemscope itemtype=\"https://schema.org/Offer\">"
+				+ "<span itemprop=\"priceCurrency\" content=\"SGD\">S$</span>"
+				+ "<span itemprop=\"price\">88.00</span></div>"
+				+ "<span class=\"prd-price\"><span property=\"gr:hasCurrencyValue\">88.00</span>"
+				+ "<span property=\"gr:hasCurrency\">SGD</span></span></div>");
+
+		// When
+		List<Price> pricesFound = this.priceAnalyser.getAllPricesFromPage(testPage, pageContent);
+
+		// Then only the structured data is read.
+		assertEquals(1, pricesFound.size());
+		assertEquals(8800, pricesFound.get(0).getMinorUnits());
+		assertEquals(Price.Currency.SGD, pricesFound.get(0).getCurrency());
+		assertEquals("C5172DD2", pricesFound.get(0).getProductId());
+	}
+
+	@Test
+	public void testGetAllPricesFromPage_malformedJsonLdFallsBackToRdfa() {
+		// Given a broken JSON-LD block, and an RDFa price.
+		Document pageContent = Jsoup.parse("<script type=\"application/ld+json\">"
+				+ "{\"@type\": \"Offer\", \"price\": \"10.00\"</script>"
+				+ "<span class=\"prd-price\"><span property=\"gr:hasCurrencyValue\">88.00</span>"
+				+ "<span property=\"gr:hasCurrency\">SGD</span></span>");
+
+		// When
+		List<Price> pricesFound = this.priceAnalyser.getAllPricesFromPage(testPage, pageContent);
+
+		// Then
+		assertEquals(1, pricesFound.size());
+		assertEquals(8800, pricesFound.get(0).getMinorUnits());
+		assertNull(pricesFound.get(0).getProductId());
+	}
+}